@@ -334,6 +334,12 @@ public final class Application {
                 GroupInfo ginfo = globalGroups.get(group);
                 if (ginfo == null) {
                     ginfo = new GroupInfo(group, protocol, conf.getValue("kind", ""), new LinkedHashSet<>());
+                    ginfo.setMultiplex(conf.getIntValue("multiplex", 0));
+                    ginfo.setStrategy(conf.getValue("strategy"));
+                    ginfo.setMinconns(conf.getIntValue("minconns", 0));
+                    ginfo.setIdletimeout(conf.getIntValue("idletimeout", 60));
+                    ginfo.setMaxfailures(conf.getIntValue("maxfailures", 3));
+                    ginfo.setEjecttime(conf.getIntValue("ejecttime", 10));
                     globalGroups.put(group, ginfo);
                 }
                 for (AnyValue node : conf.getAnyValues("node")) {
@@ -23,6 +23,18 @@ public class GroupInfo {
 
     protected String kind;
 
+    protected int multiplex;
+
+    protected String strategy;
+
+    protected int minconns;
+
+    protected int idletimeout = 60;
+
+    protected int maxfailures = 3;
+
+    protected int ejecttime = 10;
+
     protected Set<InetSocketAddress> addrs;
 
     public GroupInfo() {
@@ -59,6 +71,54 @@ public class GroupInfo {
         this.kind = kind;
     }
 
+    public int getMultiplex() {
+        return multiplex;
+    }
+
+    public void setMultiplex(int multiplex) {
+        this.multiplex = multiplex;
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(String strategy) {
+        this.strategy = strategy;
+    }
+
+    public int getMinconns() {
+        return minconns;
+    }
+
+    public void setMinconns(int minconns) {
+        this.minconns = minconns;
+    }
+
+    public int getIdletimeout() {
+        return idletimeout;
+    }
+
+    public void setIdletimeout(int idletimeout) {
+        this.idletimeout = idletimeout;
+    }
+
+    public int getMaxfailures() {
+        return maxfailures;
+    }
+
+    public void setMaxfailures(int maxfailures) {
+        this.maxfailures = maxfailures;
+    }
+
+    public int getEjecttime() {
+        return ejecttime;
+    }
+
+    public void setEjecttime(int ejecttime) {
+        this.ejecttime = ejecttime;
+    }
+
     public Set<InetSocketAddress> getAddrs() {
         return addrs;
     }
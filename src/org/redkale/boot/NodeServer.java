@@ -404,6 +404,7 @@ public abstract class NodeServer {
         GroupInfo ginfo = application.findGroupInfo(first.getName());
         Transport newTransport = new Transport(groupid, ginfo.getProtocol(), application.getWatchFactory(),
             ginfo.getKind(), application.transportBufferPool, application.transportChannelGroup, this.sncpAddress, addrs);
+        configTransport(newTransport, ginfo);
         synchronized (application.resourceFactory) {
             transport = application.resourceFactory.find(groupid, Transport.class);
             if (transport == null) {
@@ -430,11 +431,21 @@ public abstract class NodeServer {
             if (addrs == null) throw new RuntimeException("Not found <group> = " + group + " on <resources> ");
             transport = new Transport(group, ginfo.getProtocol(), application.getWatchFactory(),
                 ginfo.getKind(), application.transportBufferPool, application.transportChannelGroup, this.sncpAddress, addrs);
+            configTransport(transport, ginfo);
             application.resourceFactory.register(group, transport);
         }
         return transport;
     }
 
+    private static void configTransport(Transport transport, GroupInfo ginfo) {
+        transport.setMultiplex(ginfo.getMultiplex());
+        transport.setStrategy(ginfo.getStrategy());
+        transport.setMinConnections(ginfo.getMinconns());
+        transport.setIdleTimeoutSeconds(ginfo.getIdletimeout());
+        transport.setMaxFailures(ginfo.getMaxfailures());
+        transport.setEjectTimeSeconds(ginfo.getEjecttime());
+    }
+
     protected abstract ClassFilter<Servlet> createServletClassFilter();
 
     protected ClassFilter<Service> createServiceClassFilter() {
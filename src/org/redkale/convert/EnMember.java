@@ -6,6 +6,7 @@
 package org.redkale.convert;
 
 import java.lang.reflect.*;
+import java.nio.charset.StandardCharsets;
 import org.redkale.util.Attribute;
 
 /**
@@ -30,6 +31,12 @@ public final class EnMember<W extends Writer, T, F> implements Comparable<EnMemb
     //final boolean isnumber;
     final boolean isbool;
 
+    //JSON格式预先编码好的字段名: ,"name":  没有逗号分隔符时从下标1开始输出
+    final char[] jsonFieldNameChars;
+
+    //jsonFieldNameChars的UTF-8编码
+    final byte[] jsonFieldNameBytes;
+
     public EnMember(Attribute<T, F> attribute, Encodeable<W, F> encoder) {
         this.attribute = attribute;
         this.encoder = encoder;
@@ -37,6 +44,9 @@ public final class EnMember<W extends Writer, T, F> implements Comparable<EnMemb
         this.istring = CharSequence.class.isAssignableFrom(t);
         this.isbool = t == Boolean.class || t == boolean.class;
         //this.isnumber = Number.class.isAssignableFrom(t) || (!this.isbool && t.isPrimitive());
+        final String jsonFieldName = ",\"" + attribute.field() + "\":";
+        this.jsonFieldNameChars = jsonFieldName.toCharArray();
+        this.jsonFieldNameBytes = jsonFieldName.getBytes(StandardCharsets.UTF_8);
     }
 
     public static <W extends Writer, T, F> EnMember<W, T, F> create(final ConvertFactory factory, final Class<T> clazz, final String fieldname) {
@@ -56,6 +66,18 @@ public final class EnMember<W extends Writer, T, F> implements Comparable<EnMemb
         return new EnMember<>(attribute, factory.loadEncoder(fieldtype));
     }
 
+    public Attribute<T, F> getAttribute() {
+        return attribute;
+    }
+
+    public char[] getJsonFieldNameChars() {
+        return jsonFieldNameChars;
+    }
+
+    public byte[] getJsonFieldNameBytes() {
+        return jsonFieldNameBytes;
+    }
+
     public final boolean match(String name) {
         return attribute.field().equals(name);
     }
@@ -83,7 +83,7 @@ public abstract class Writer {
                 if (!((Boolean) value)) return;
             }
         }
-        this.writeFieldName(member.attribute);
+        this.writeFieldName(member);
         member.encoder.convertTo(this, value);
         this.comma = true;
     }
@@ -140,6 +140,15 @@ public abstract class Writer {
      */
     public abstract void writeFieldName(Attribute attribute);
 
+    /**
+     * 输出一个对象字段的字段名， 子类可使用EnMember中预先编码好的字段名
+     *
+     * @param member 字段
+     */
+    public void writeFieldName(EnMember member) {
+        writeFieldName(member.attribute);
+    }
+
     /**
      * 写入一个boolean值
      *
@@ -27,6 +27,9 @@ public class JsonByteBufferWriter extends JsonWriter {
 
     private final Supplier<ByteBuffer> supplier;
 
+    //不为null时每写满一个ByteBuffer就交给flusher输出, 输出后的ByteBuffer不再由本对象持有
+    private final Consumer<ByteBuffer> flusher;
+
     private ByteBuffer[] buffers;
 
     private int index;
@@ -36,9 +39,14 @@ public class JsonByteBufferWriter extends JsonWriter {
     }
 
     protected JsonByteBufferWriter(boolean tiny, Charset charset, Supplier<ByteBuffer> supplier) {
+        this(tiny, charset, supplier, null);
+    }
+
+    protected JsonByteBufferWriter(boolean tiny, Charset charset, Supplier<ByteBuffer> supplier, Consumer<ByteBuffer> flusher) {
         this.tiny = tiny;
         this.charset = UTF8.equals(charset) ? null : charset;
         this.supplier = supplier;
+        this.flusher = flusher;
     }
 
     @Override
@@ -76,6 +84,7 @@ public class JsonByteBufferWriter extends JsonWriter {
     }
 
     private int expand(final int byteLength) {
+        if (this.flusher != null && this.index > 0) flushFilled();
         if (this.buffers == null) {
             this.index = 0;
             this.buffers = new ByteBuffer[]{supplier.get()};
@@ -104,6 +113,15 @@ public class JsonByteBufferWriter extends JsonWriter {
         return size;
     }
 
+    //index之前的ByteBuffer都已写满并flip
+    private void flushFilled() {
+        for (int i = 0; i < this.index; i++) {
+            this.flusher.accept(this.buffers[i]);
+        }
+        this.buffers = Arrays.copyOfRange(this.buffers, this.index, this.buffers.length);
+        this.index = 0;
+    }
+
     @Override
     public void writeTo(final char ch) {
         if (ch > Byte.MAX_VALUE) throw new ConvertException("writeTo char(int.value = " + (int) ch + ") must be less 127");
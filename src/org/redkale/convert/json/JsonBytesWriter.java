@@ -0,0 +1,448 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.convert.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Supplier;
+import org.redkale.convert.EnMember;
+
+/**
+ * 直接输出UTF-8字节的JsonWriter <br>
+ * 内容写在可复用的byte[]中， 不经过char[]再转码: 字段名使用EnMember中预先编码好的字节， 不含转义字符的ASCII字符串逐字节复制， int/long直接写数字字节。 <br>
+ * 设置了bufferSupplier时byte[]写满后整块复制到supplier提供的ByteBuffer中， byte[]不随内容增长。
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ */
+public class JsonBytesWriter extends JsonWriter {
+
+    private static final int defaultSize = Integer.getInteger("convert.json.writer.buffer.defsize", 1024);
+
+    //回收时保留的最大缓冲区， 超过则重新分配defaultSize大小
+    private static final int retainSize = Integer.getInteger("convert.json.writer.buffer.retainsize", 64 * 1024);
+
+    //设置bufferSupplier时byte[]的最小长度， 写满后才复制到ByteBuffer， 避免频繁的小块复制
+    private static final int flushSize = 16 * 1024;
+
+    private int count;
+
+    private byte[] content;
+
+    //不为null时content写满后复制到supplier提供的ByteBuffer中
+    private Supplier<ByteBuffer> supplier;
+
+    //已写入内容的ByteBuffer， 未flip
+    private ByteBuffer[] buffers;
+
+    private int index;
+
+    //已复制到buffers中的字节数
+    private int flushed;
+
+    public JsonBytesWriter() {
+        this(defaultSize);
+    }
+
+    public JsonBytesWriter(int size) {
+        super(false);
+        this.content = new byte[size > 128 ? size : 128];
+    }
+
+    @Override
+    public JsonBytesWriter tiny(boolean tiny) {
+        this.tiny = tiny;
+        return this;
+    }
+
+    /**
+     * 设置ByteBuffer提供者， 之后输出的内容超过byte[]的长度时直接复制到ByteBuffer中， 结束时通过toBuffers获取
+     *
+     * @param supplier ByteBuffer提供者， 一般为连接的ByteBuffer池
+     *
+     * @return JsonBytesWriter
+     */
+    public JsonBytesWriter bufferSupplier(Supplier<ByteBuffer> supplier) {
+        this.supplier = supplier;
+        if (count == 0 && content.length < flushSize) this.content = new byte[flushSize];
+        return this;
+    }
+
+    //调用方必须在expand之后再读取count， 复制到ByteBuffer后count会归零
+    private byte[] expand(int len) {
+        int newcount = count + len;
+        if (newcount <= content.length) return content;
+        if (supplier != null && count > 0) {
+            flush();
+            if (len <= content.length) return content;
+        }
+        byte[] newdata = new byte[Math.max(content.length * 3 / 2, count + len)];
+        System.arraycopy(content, 0, newdata, 0, count);
+        this.content = newdata;
+        return newdata;
+    }
+
+    //将content中的内容复制到ByteBuffer中
+    private void flush() {
+        int pos = 0;
+        while (pos < count) {
+            ByteBuffer buffer = index == 0 ? null : buffers[index - 1];
+            if (buffer == null || !buffer.hasRemaining()) {
+                buffer = supplier.get();
+                if (buffers == null) {
+                    buffers = new ByteBuffer[4];
+                } else if (index == buffers.length) {
+                    buffers = Arrays.copyOf(buffers, index * 2);
+                }
+                buffers[index++] = buffer;
+            }
+            int len = Math.min(buffer.remaining(), count - pos);
+            buffer.put(content, pos, len);
+            pos += len;
+        }
+        flushed += count;
+        count = 0;
+    }
+
+    private void writeBytes(final byte[] bs, final int start, final int len) {
+        expand(len);
+        System.arraycopy(bs, start, content, count, len);
+        count += len;
+    }
+
+    @Override
+    public void writeTo(final char ch) {
+        if (ch < 0x80) {
+            expand(1);
+            content[count++] = (byte) ch;
+        } else {
+            writeTo(new char[]{ch}, 0, 1);
+        }
+    }
+
+    @Override
+    public void writeTo(final char[] chs, final int start, final int len) {
+        final byte[] bytes = expand(len * 3);
+        int pos = count;
+        final int limit = start + len;
+        for (int i = start; i < limit; i++) {
+            char c = chs[i];
+            if (c < 0x80) {
+                bytes[pos++] = (byte) c;
+            } else {
+                pos = putChar(bytes, pos, c, i + 1 < limit ? chs[i + 1] : 0);
+                if (Character.isHighSurrogate(c) && i + 1 < limit && Character.isLowSurrogate(chs[i + 1])) i++;
+            }
+        }
+        count = pos;
+    }
+
+    /**
+     * <b>注意：</b> 该String值不能为null且不会进行转义， 只用于不含需要转义字符的字符串，例如enum、double、BigInteger转换的String
+     *
+     * @param quote 是否加双引号
+     * @param value 非null且不含需要转义的字符的String值
+     */
+    @Override
+    public void writeTo(final boolean quote, final String value) {
+        final int len = value.length();
+        byte[] bytes = expand(len + (quote ? 2 : 0));
+        int pos = count;
+        if (quote) bytes[pos++] = '"';
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes[pos++] = (byte) c;
+            } else { //含非ASCII字符
+                count = pos;
+                bytes = expand((len - i) * 3 + 1);
+                pos = count;
+                for (; i < len; i++) {
+                    c = value.charAt(i);
+                    if (c < 0x80) {
+                        bytes[pos++] = (byte) c;
+                    } else {
+                        pos = putChar(bytes, pos, c, i + 1 < len ? value.charAt(i + 1) : 0);
+                        if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) i++;
+                    }
+                }
+                break;
+            }
+        }
+        if (quote) bytes[pos++] = '"';
+        count = pos;
+    }
+
+    @Override
+    public void writeString(String value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        final int len = value.length();
+        byte[] bytes = expand(len + 2);
+        int pos = count;
+        bytes[pos++] = '"';
+        int i = 0;
+        for (; i < len; i++) { //不含转义字符的ASCII字符串直接逐字节复制
+            char c = value.charAt(i);
+            if (c >= 0x80 || c == '"' || c == '\\' || c == '\n' || c == '\r' || c == '\t') break;
+            bytes[pos++] = (byte) c;
+        }
+        if (i < len) {
+            count = pos;
+            bytes = expand((len - i) * 3 + 1); //转义最多2个字节, UTF-8最多3个字节(代理对是2个char输出4个字节)
+            pos = count;
+            for (; i < len; i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\n':
+                        bytes[pos++] = '\\';
+                        bytes[pos++] = 'n';
+                        break;
+                    case '\r':
+                        bytes[pos++] = '\\';
+                        bytes[pos++] = 'r';
+                        break;
+                    case '\t':
+                        bytes[pos++] = '\\';
+                        bytes[pos++] = 't';
+                        break;
+                    case '\\':
+                        bytes[pos++] = '\\';
+                        bytes[pos++] = '\\';
+                        break;
+                    case '"':
+                        bytes[pos++] = '\\';
+                        bytes[pos++] = '"';
+                        break;
+                    default:
+                        if (c < 0x80) {
+                            bytes[pos++] = (byte) c;
+                        } else {
+                            pos = putChar(bytes, pos, c, i + 1 < len ? value.charAt(i + 1) : 0);
+                            if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) i++;
+                        }
+                        break;
+                }
+            }
+        }
+        bytes[pos++] = '"';
+        count = pos;
+    }
+
+    //输出一个非ASCII字符， c为高代理且next为低代理时输出4个字节
+    private static int putChar(final byte[] bytes, int pos, final char c, final char next) {
+        if (c < 0x800) {
+            bytes[pos++] = (byte) (0xc0 | (c >> 6));
+            bytes[pos++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c) && Character.isLowSurrogate(next)) {
+            final int uc = Character.toCodePoint(c, next);
+            bytes[pos++] = (byte) (0xf0 | ((uc >> 18)));
+            bytes[pos++] = (byte) (0x80 | ((uc >> 12) & 0x3f));
+            bytes[pos++] = (byte) (0x80 | ((uc >> 6) & 0x3f));
+            bytes[pos++] = (byte) (0x80 | (uc & 0x3f));
+        } else {
+            bytes[pos++] = (byte) (0xe0 | ((c >> 12)));
+            bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            bytes[pos++] = (byte) (0x80 | (c & 0x3f));
+        }
+        return pos;
+    }
+
+    @Override
+    public void writeFieldName(EnMember member) {
+        final byte[] bs = member.getJsonFieldNameBytes();
+        if (this.comma) {
+            writeBytes(bs, 0, bs.length);
+        } else {
+            writeBytes(bs, 1, bs.length - 1);
+        }
+    }
+
+    @Override
+    public void writeInt(int value) {
+        if (value == Integer.MIN_VALUE) {
+            writeTo(false, "-2147483648");
+            return;
+        }
+        final boolean negative = value < 0;
+        if (negative) value = -value;
+        int size;
+        for (int i = 0;; i++) {
+            if (value <= sizeTable[i]) {
+                size = i + 1;
+                break;
+            }
+        }
+        if (negative) size++;
+        final byte[] bytes = expand(size);
+        int q, r;
+        int charPos = count + size;
+        while (value >= 65536) {
+            q = value / 100;
+            r = value - ((q << 6) + (q << 5) + (q << 2));
+            value = q;
+            bytes[--charPos] = DigitOnes[r];
+            bytes[--charPos] = DigitTens[r];
+        }
+        for (;;) {
+            q = (value * 52429) >>> (16 + 3);
+            r = value - ((q << 3) + (q << 1));
+            bytes[--charPos] = (byte) ('0' + r);
+            value = q;
+            if (value == 0) break;
+        }
+        if (negative) bytes[--charPos] = '-';
+        count += size;
+    }
+
+    @Override
+    public void writeLong(long value) {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            writeInt((int) value);
+            return;
+        }
+        if (value == Long.MIN_VALUE) {
+            writeTo(false, "-9223372036854775808");
+            return;
+        }
+        final boolean negative = value < 0;
+        if (negative) value = -value;
+        int size = 19;
+        long p = 10;
+        for (int i = 1; i < 19; i++) {
+            if (value < p) {
+                size = i;
+                break;
+            }
+            p = 10 * p;
+        }
+        if (negative) size++;
+        final byte[] bytes = expand(size);
+        long q;
+        int r;
+        int charPos = count + size;
+        while (value > Integer.MAX_VALUE) {
+            q = value / 100;
+            r = (int) (value - ((q << 6) + (q << 5) + (q << 2)));
+            value = q;
+            bytes[--charPos] = DigitOnes[r];
+            bytes[--charPos] = DigitTens[r];
+        }
+        int q2;
+        int i2 = (int) value;
+        while (i2 >= 65536) {
+            q2 = i2 / 100;
+            r = i2 - ((q2 << 6) + (q2 << 5) + (q2 << 2));
+            i2 = q2;
+            bytes[--charPos] = DigitOnes[r];
+            bytes[--charPos] = DigitTens[r];
+        }
+        for (;;) {
+            q2 = (i2 * 52429) >>> (16 + 3);
+            r = i2 - ((q2 << 3) + (q2 << 1));
+            bytes[--charPos] = (byte) ('0' + r);
+            i2 = q2;
+            if (i2 == 0) break;
+        }
+        if (negative) bytes[--charPos] = '-';
+        count += size;
+    }
+
+    @Override
+    protected boolean recycle() {
+        this.count = 0;
+        this.supplier = null;
+        if (this.buffers != null) Arrays.fill(this.buffers, 0, this.index, null);
+        this.index = 0;
+        this.flushed = 0;
+        if (this.content.length > retainSize) {
+            this.content = new byte[defaultSize];
+        }
+        return true;
+    }
+
+    /**
+     * 复制一份输出的内容
+     *
+     * @return UTF-8字节
+     */
+    public byte[] toBytes() {
+        byte[] bs = new byte[flushed + count];
+        int pos = 0;
+        for (int i = 0; i < index; i++) {
+            ByteBuffer buffer = buffers[i].duplicate();
+            buffer.flip();
+            int len = buffer.remaining();
+            buffer.get(bs, pos, len);
+            pos += len;
+        }
+        System.arraycopy(content, 0, bs, pos, count);
+        return bs;
+    }
+
+    /**
+     * 设置了bufferSupplier时返回写入内容的ByteBuffer， 否则返回包装toBytes的ByteBuffer
+     *
+     * @return ByteBuffer数组
+     */
+    @Override
+    public ByteBuffer[] toBuffers() {
+        if (supplier == null) return new ByteBuffer[]{ByteBuffer.wrap(toBytes())};
+        return toBuffers(supplier);
+    }
+
+    /**
+     * 将未复制的内容复制到supplier提供的ByteBuffer中， 返回的ByteBuffer都已flip， 之后不再由本对象持有
+     *
+     * @param supplier ByteBuffer提供者， 一般为连接的ByteBuffer池， 已设置bufferSupplier时忽略此参数
+     *
+     * @return ByteBuffer数组
+     */
+    public ByteBuffer[] toBuffers(final Supplier<ByteBuffer> supplier) {
+        if (this.supplier == null) this.supplier = supplier;
+        flush();
+        if (index == 0) { //没有内容
+            ByteBuffer buffer = this.supplier.get();
+            buffer.flip();
+            return new ByteBuffer[]{buffer};
+        }
+        final ByteBuffer[] rs = Arrays.copyOf(buffers, index);
+        for (ByteBuffer buffer : rs) {
+            buffer.flip();
+        }
+        Arrays.fill(buffers, 0, index, null);
+        this.index = 0;
+        this.flushed = 0;
+        return rs;
+    }
+
+    @Override
+    public int count() {
+        return this.flushed + this.count;
+    }
+
+    @Override
+    public String toString() {
+        if (index == 0) return new String(content, 0, count, StandardCharsets.UTF_8);
+        return new String(toBytes(), StandardCharsets.UTF_8);
+    }
+
+    private final static byte[] DigitTens = new byte[100];
+
+    private final static byte[] DigitOnes = new byte[100];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            DigitTens[i] = (byte) JsonWriter.DigitTens[i];
+            DigitOnes[i] = (byte) JsonWriter.DigitOnes[i];
+        }
+    }
+}
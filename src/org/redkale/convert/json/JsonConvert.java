@@ -30,6 +30,9 @@ public final class JsonConvert extends Convert<JsonReader, JsonWriter> {
 
     private static final ObjectPool<JsonWriter> writerPool = JsonWriter.createPool(Integer.getInteger("convert.json.pool.size", 16));
 
+    private static final ObjectPool<JsonBytesWriter> bytesWriterPool = new ObjectPool<>(Integer.getInteger("convert.json.pool.size", 16),
+        (Object... params) -> new JsonBytesWriter(), null, (JsonBytesWriter t) -> t.recycle());
+
     private final boolean tiny;
 
     protected JsonConvert(JsonFactory factory, boolean tiny) {
@@ -84,6 +87,14 @@ public final class JsonConvert extends Convert<JsonReader, JsonWriter> {
         if (out != null) writerPool.offer(out);
     }
 
+    public JsonBytesWriter pollJsonBytesWriter() {
+        return bytesWriterPool.get().tiny(tiny);
+    }
+
+    public void offerJsonBytesWriter(final JsonBytesWriter out) {
+        if (out != null) bytesWriterPool.offer(out);
+    }
+
     //------------------------------ convertFrom -----------------------------------------------------------
     public <T> T convertFrom(final Type type, final String text) {
         if (text == null) return null;
@@ -154,28 +165,59 @@ public final class JsonConvert extends Convert<JsonReader, JsonWriter> {
         }
     }
 
+    //JsonBytesWriter输出UTF-8字节， byte[]写满后整块复制到supplier的ByteBuffer中
     public ByteBuffer[] convertTo(final Supplier<ByteBuffer> supplier, final Object value) {
         if (supplier == null) return null;
-        JsonByteBufferWriter out = new JsonByteBufferWriter(tiny, null, supplier);
+        final JsonBytesWriter out = bytesWriterPool.get().tiny(tiny).bufferSupplier(supplier);
         if (value == null) {
             out.writeNull();
         } else {
             factory.loadEncoder(value.getClass()).convertTo(out, value);
         }
-        return out.toBuffers();
+        ByteBuffer[] result = out.toBuffers();
+        bytesWriterPool.offer(out);
+        return result;
     }
 
     public ByteBuffer[] convertTo(final Supplier<ByteBuffer> supplier, final Type type, final Object value) {
         if (supplier == null || type == null) return null;
-        JsonByteBufferWriter out = new JsonByteBufferWriter(tiny, null, supplier);
+        final JsonBytesWriter out = bytesWriterPool.get().tiny(tiny).bufferSupplier(supplier);
         if (value == null) {
             out.writeNull();
         } else {
             factory.loadEncoder(type).convertTo(out, value);
         }
+        ByteBuffer[] result = out.toBuffers();
+        bytesWriterPool.offer(out);
+        return result;
+    }
+
+    public ByteBuffer[] convertTo(final Supplier<ByteBuffer> supplier, final Consumer<ByteBuffer> flusher, final Type type, final Object value) {
+        if (supplier == null || flusher == null) return null;
+        JsonByteBufferWriter out = new JsonByteBufferWriter(tiny, null, supplier, flusher);
+        if (value == null) {
+            out.writeNull();
+        } else {
+            factory.loadEncoder(type == null ? value.getClass() : type).convertTo(out, value);
+        }
         return out.toBuffers();
     }
 
+    public byte[] convertToBytes(final Object value) {
+        if (value == null) return new byte[]{'n', 'u', 'l', 'l'};
+        return convertToBytes(value.getClass(), value);
+    }
+
+    public byte[] convertToBytes(final Type type, final Object value) {
+        if (type == null) return null;
+        if (value == null) return new byte[]{'n', 'u', 'l', 'l'};
+        final JsonBytesWriter out = bytesWriterPool.get().tiny(tiny);
+        factory.loadEncoder(type).convertTo(out, value);
+        byte[] result = out.toBytes();
+        bytesWriterPool.offer(out);
+        return result;
+    }
+
     public void convertTo(final JsonWriter writer, final Object value) {
         if (value == null) {
             writer.writeNull();
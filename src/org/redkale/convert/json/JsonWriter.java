@@ -6,7 +6,7 @@
 package org.redkale.convert.json;
 
 import java.nio.ByteBuffer;
-import org.redkale.convert.Writer;
+import org.redkale.convert.*;
 import org.redkale.util.*;
 
 /**
@@ -43,6 +43,11 @@ public class JsonWriter extends Writer {
         this.content = new char[size > 128 ? size : 128];
     }
 
+    //子类自行管理输出缓冲区时使用， 不分配char[]
+    JsonWriter(boolean tiny) {
+        this.tiny = tiny;
+    }
+
     @Override
     public boolean tiny() {
         return tiny;
@@ -157,6 +162,16 @@ public class JsonWriter extends Writer {
         writeTo(':');
     }
 
+    @Override
+    public void writeFieldName(EnMember member) {
+        final char[] chs = member.getJsonFieldNameChars();
+        if (this.comma) {
+            writeTo(chs, 0, chs.length);
+        } else {
+            writeTo(chs, 1, chs.length - 1);
+        }
+    }
+
     @Override
     public final void writeSmallString(String value) {
         writeTo(true, value);
@@ -194,6 +209,10 @@ public class JsonWriter extends Writer {
 
     @Override
     public void writeInt(int value) {
+        if (value == Integer.MIN_VALUE) { //取负数会溢出
+            writeTo(false, "-2147483648");
+            return;
+        }
         final char sign = value >= 0 ? 0 : '-';
         if (value < 0) value = -value;
         int size;
@@ -234,6 +253,10 @@ public class JsonWriter extends Writer {
 
     @Override
     public void writeLong(long value) {
+        if (value == Long.MIN_VALUE) { //取负数会溢出
+            writeTo(false, "-9223372036854775808");
+            return;
+        }
         final char sign = value >= 0 ? 0 : '-';
         if (value < 0) value = -value;
         int size = 19;
@@ -5,9 +5,9 @@
  */
 package org.redkale.net;
 
-import java.io.IOException;
+import java.io.*;
 import java.net.*;
-import java.nio.ByteBuffer;
+import java.nio.*;
 import java.nio.channels.*;
 import java.util.*;
 import java.util.concurrent.*;
@@ -25,6 +25,9 @@ public abstract class AsyncConnection implements AsynchronousByteChannel, AutoCl
 
     protected Object subobject; //用于存储绑定在Connection上的对象， 同attributes， 只绑定单个对象时尽量使用subobject而非attributes
 
+    //transferFrom每次映射的文件区域大小
+    private static final long TRANSFER_MAP_SIZE = 8 * 1024 * 1024;
+
     public abstract boolean isTCP();
 
     public abstract SocketAddress getRemoteAddress();
@@ -45,6 +48,60 @@ public abstract class AsyncConnection implements AsynchronousByteChannel, AutoCl
 
     protected abstract <A> void write(ByteBuffer[] srcs, int offset, int length, A attachment, CompletionHandler<Integer, ? super A> handler);
 
+    /**
+     * 将文件的指定区域输出到连接中， 完成后handler得到输出的字节数 <br>
+     * 默认实现按块将文件映射为MappedByteBuffer后直接写出， 文件内容不再经过读取缓冲区的复制;
+     * 可以写WritableByteChannel的连接使用FileChannel.transferTo(sendfile)。 <br>
+     * file由调用方关闭
+     *
+     * @param <A>        附件对象泛型
+     * @param file       文件
+     * @param position   开始位置
+     * @param count      字节数
+     * @param attachment 附件对象
+     * @param handler    回调函数
+     */
+    public <A> void transferFrom(final FileChannel file, final long position, final long count, final A attachment, final CompletionHandler<Long, ? super A> handler) {
+        transferMapped(file, position, count, 0L, attachment, handler);
+    }
+
+    private <A> void transferMapped(final FileChannel file, final long position, final long remain, final long written, final A attachment, final CompletionHandler<Long, ? super A> handler) {
+        if (remain <= 0) {
+            handler.completed(written, attachment);
+            return;
+        }
+        final MappedByteBuffer mapped;
+        try {
+            mapped = file.map(FileChannel.MapMode.READ_ONLY, position, Math.min(remain, Math.min(TRANSFER_MAP_SIZE, file.size() - position)));
+        } catch (IOException | RuntimeException e) {
+            handler.failed(e, attachment);
+            return;
+        }
+        if (!mapped.hasRemaining()) { //已到文件结尾
+            handler.completed(written, attachment);
+            return;
+        }
+        write(mapped, attachment, new CompletionHandler<Integer, A>() {
+
+            @Override
+            public void completed(Integer result, A attachment) {
+                if (result < 0) {
+                    failed(new EOFException("write to closed connection"), attachment);
+                } else if (mapped.hasRemaining()) {
+                    write(mapped, attachment, this);
+                } else {
+                    final int size = mapped.limit();
+                    transferMapped(file, position + size, remain - size, written + size, attachment, handler);
+                }
+            }
+
+            @Override
+            public void failed(Throwable exc, A attachment) {
+                handler.failed(exc, attachment);
+            }
+        });
+    }
+
     public void dispose() {//同close， 只是去掉throws IOException
         try {
             this.close();
@@ -308,6 +365,9 @@ public abstract class AsyncConnection implements AsynchronousByteChannel, AutoCl
 
         private final WritableByteChannel writeChannel;
 
+        //Socket由SocketChannel创建时为该SocketChannel， transferTo可使用sendfile
+        private final WritableByteChannel transferChannel;
+
         private final SocketAddress remoteAddress;
 
         public BIOTCPAsyncConnection(final Socket socket, final SocketAddress addr0, final int readTimeoutSecond0, final int writeTimeoutSecond0) {
@@ -323,6 +383,7 @@ public abstract class AsyncConnection implements AsynchronousByteChannel, AutoCl
             }
             this.readChannel = rc;
             this.writeChannel = wc;
+            this.transferChannel = socket.getChannel() != null ? socket.getChannel() : wc;
             this.readTimeoutSecond = readTimeoutSecond0;
             this.writeTimeoutSecond = writeTimeoutSecond0;
             SocketAddress addr = addr0;
@@ -384,6 +445,21 @@ public abstract class AsyncConnection implements AsynchronousByteChannel, AutoCl
             }
         }
 
+        @Override
+        public <A> void transferFrom(final FileChannel file, final long position, final long count, final A attachment, final CompletionHandler<Long, ? super A> handler) {
+            try {
+                long rs = 0;
+                while (rs < count) {
+                    long n = file.transferTo(position + rs, count - rs, transferChannel);
+                    if (n <= 0) break; //已到文件结尾
+                    rs += n;
+                }
+                handler.completed(rs, attachment);
+            } catch (IOException e) {
+                handler.failed(e, attachment);
+            }
+        }
+
         @Override
         public <A> void read(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
             try {
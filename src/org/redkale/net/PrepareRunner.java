@@ -7,6 +7,7 @@ package org.redkale.net;
 
 import java.nio.*;
 import java.nio.channels.*;
+import java.util.ArrayDeque;
 import java.util.logging.*;
 import org.redkale.util.*;
 
@@ -18,25 +19,66 @@ import org.redkale.util.*;
 @SuppressWarnings("unchecked")
 public final class PrepareRunner implements Runnable {
 
+    //一个线程中连续执行的PrepareRunner的最大数量， 超过后交给线程池， 避免一个pipelining连接长期占用当前线程
+    private static final int MAX_INLINE_RUNS = 16;
+
+    private static final ThreadLocal<Trampoline> trampolines = ThreadLocal.withInitial(Trampoline::new);
+
     private final AsyncConnection channel;
 
     private final Context context;
 
     private ByteBuffer data;
 
+    private final boolean pipelined;
+
     public PrepareRunner(Context context, AsyncConnection channel, ByteBuffer data) {
+        this(context, channel, data, false);
+    }
+
+    public PrepareRunner(Context context, AsyncConnection channel, ByteBuffer data, boolean pipelined) {
         this.context = context;
         this.channel = channel;
         this.data = data;
+        this.pipelined = pipelined;
     }
 
+    /**
+     * 在当前线程中执行。 当前线程正在执行其他PrepareRunner时(如请求在Servlet中同步finish后recycle出下一个pipelining请求)， 排到其后执行，
+     * 调用栈深度不随pipelining请求数增加， 且Servlet中finish之后的代码先于下一个请求执行
+     */
     @Override
     public void run() {
+        final Trampoline trampoline = trampolines.get();
+        if (trampoline.running) {
+            if (trampoline.count + trampoline.queue.size() < MAX_INLINE_RUNS) {
+                trampoline.queue.add(this);
+            } else {
+                context.submit(this);
+            }
+            return;
+        }
+        trampoline.running = true;
+        try {
+            prepare();
+            PrepareRunner next;
+            while ((next = trampoline.queue.poll()) != null) {
+                trampoline.count++;
+                next.prepare();
+            }
+        } finally {
+            trampoline.running = false;
+            trampoline.count = 0;
+        }
+    }
+
+    private void prepare() {
         final PrepareServlet prepare = context.prepare;
         final ObjectPool<? extends Response> responsePool = context.responsePool;
-        if (data != null) { //BIO模式的UDP连接创建AsyncConnection时已经获取到ByteBuffer数据了
+        if (data != null) { //BIO模式的UDP连接创建AsyncConnection时已经获取到ByteBuffer数据了; keep-alive连接中上一个请求读取到的后续请求数据
             final Response response = responsePool.get();
             response.init(channel);
+            response.request.pipelined = pipelined;
             try {
                 prepare.prepare(data, response.request, response);
             } catch (Throwable t) {
@@ -66,14 +108,9 @@ public final class PrepareRunner implements Runnable {
 //                        System.println(new String(bs));
 //                    }
                     buffer.flip();
-                    final Response response = responsePool.get();
-                    response.init(channel);
-                    try {
-                        prepare.prepare(buffer, response.request, response);
-                    } catch (Throwable t) {  //此处不可  context.offerBuffer(buffer); 以免prepare.prepare内部异常导致重复 offerBuffer
-                        context.logger.log(Level.WARNING, "prepare servlet abort, forece to close channel ", t);
-                        response.finish(true);
-                    }
+                    //读取到的请求同样经过run()执行， 处理中recycle出的pipelining请求排在其后
+                    PrepareRunner.this.data = buffer;
+                    PrepareRunner.this.run();
                 }
 
                 @Override
@@ -96,4 +133,13 @@ public final class PrepareRunner implements Runnable {
         }
     }
 
+    private static class Trampoline {
+
+        private final ArrayDeque<PrepareRunner> queue = new ArrayDeque<>();
+
+        private boolean running;
+
+        private int count; //当前连续执行的数量
+
+    }
 }
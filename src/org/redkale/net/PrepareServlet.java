@@ -39,13 +39,50 @@ public abstract class PrepareServlet<K extends Serializable, C extends Context,
 
     public final void prepare(final ByteBuffer buffer, final R request, final P response) throws IOException {
         executeCounter.incrementAndGet();
+        prepareHeader(buffer, request, response);
+    }
+
+    private void prepareHeader(final ByteBuffer buffer, final R request, final P response) throws IOException {
         final int rs = request.readHeader(buffer);
-        if (rs < 0) {
+        if (rs == -2) { //header不完整， 继续读取
+            buffer.clear();
+            final CompletionHandler<Integer, ByteBuffer> handler = new CompletionHandler<Integer, ByteBuffer>() {
+
+                @Override
+                public void completed(Integer result, ByteBuffer attachment) {
+                    if (result < 1) {
+                        failed(null, attachment);
+                        return;
+                    }
+                    buffer.flip();
+                    try {
+                        prepareHeader(buffer, request, response);
+                    } catch (Exception e) {
+                        illRequestCounter.incrementAndGet();
+                        response.finish(true);
+                        request.context.logger.log(Level.WARNING, "prepare servlet abort, forece to close channel ", e);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable exc, ByteBuffer attachment) {
+                    illRequestCounter.incrementAndGet();
+                    response.context.offerBuffer(buffer);
+                    response.finish(true);
+                    if (exc != null) request.context.logger.log(Level.FINER, "Servlet read channel erroneous, forece to close channel ", exc);
+                }
+            };
+            try {
+                request.channel.read(buffer, buffer, handler);
+            } catch (Exception e) { //连接已关闭时read直接抛出异常而不回调failed， 需在此归还buffer
+                handler.failed(e, buffer);
+            }
+        } else if (rs < 0) {
             response.context.offerBuffer(buffer);
             if (rs != Integer.MIN_VALUE) illRequestCounter.incrementAndGet();
             response.finish(true);
         } else if (rs == 0) {
-            response.context.offerBuffer(buffer);
+            offerOrPipeline(buffer, request);
             request.prepare();
             this.execute(request, response);
         } else {
@@ -61,7 +98,7 @@ public abstract class PrepareServlet<K extends Serializable, C extends Context,
                         buffer.clear();
                         request.channel.read(buffer, buffer, this);
                     } else {
-                        response.context.offerBuffer(buffer);
+                        offerOrPipeline(buffer, request);
                         request.prepare();
                         try {
                             execute(request, response);
@@ -84,6 +121,15 @@ public abstract class PrepareServlet<K extends Serializable, C extends Context,
         }
     }
 
+    //buffer中剩余的数据属于同一连接的下一个请求， 保留到当前请求结束后再解析
+    private void offerOrPipeline(final ByteBuffer buffer, final R request) {
+        if (buffer.hasRemaining()) {
+            request.pipelineBuffer = buffer;
+        } else {
+            request.context.offerBuffer(buffer);
+        }
+    }
+
     protected AnyValue getServletConf(Servlet servlet) {
         return servlet._conf;
     }
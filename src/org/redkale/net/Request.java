@@ -32,6 +32,16 @@ public abstract class Request<C extends Context> {
 
     protected AsyncConnection channel;
 
+    /**
+     * keep-alive连接中与当前请求一起读取到的后续请求数据(如HTTP pipelining)， 由Response在recycle时交给下一个请求解析
+     */
+    protected ByteBuffer pipelineBuffer;
+
+    /**
+     * 当前请求的数据是否来自上一个请求留下的pipelineBuffer， 此时buffer开头可能只是请求头的一部分
+     */
+    protected boolean pipelined;
+
     /**
      * properties 与 attributes 的区别在于：调用recycle时， attributes会被清空而properties会保留;
      * properties 通常存放需要永久绑定在request里的一些对象
@@ -47,7 +57,8 @@ public abstract class Request<C extends Context> {
     }
 
     /**
-     * 返回值：Integer.MIN_VALUE: 帧数据； -1：数据不合法； 0：解析完毕； &gt;0: 需再读取的字节数。
+     * 返回值：Integer.MIN_VALUE: 帧数据； -1：数据不合法； -2：header数据不完整，需继续读取后再次调用readHeader； 0：解析完毕； &gt;0: 需再读取的字节数。 <br>
+     * 返回-2时实现类需自行保存已读取的header数据和解析状态，因为buffer会被清空后复用。
      *
      * @param buffer ByteBuffer对象
      * @return 缺少的字节数
@@ -55,7 +66,7 @@ public abstract class Request<C extends Context> {
     protected abstract int readHeader(ByteBuffer buffer);
 
     /**
-     * 读取buffer，并返回读取的有效数据长度
+     * 读取buffer，并返回读取的有效数据长度, 不属于当前请求的数据须保留在buffer中
      *
      * @param buffer ByteBuffer对象
      * @return 有效数据长度
@@ -67,6 +78,7 @@ public abstract class Request<C extends Context> {
     protected void recycle() {
         createtime = 0;
         keepAlive = false;
+        pipelined = false;
         attributes.clear();
         channel = null; //   close it by  response
     }
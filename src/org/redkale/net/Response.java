@@ -113,19 +113,33 @@ public abstract class Response<C extends Context, R extends Request<C>> {
             }
             recycleListener = null;
         }
+        final ByteBuffer pipelineBuffer = request.pipelineBuffer;
+        request.pipelineBuffer = null;
         request.recycle();
+        PrepareRunner runner = null;
         if (channel != null) {
             if (keepAlive) {
-                this.context.submit(new PrepareRunner(context, channel, null));
+                runner = new PrepareRunner(context, channel, pipelineBuffer, pipelineBuffer != null);
             } else {
+                if (pipelineBuffer != null) context.offerBuffer(pipelineBuffer);
                 try {
                     if (channel.isOpen()) channel.close();
                 } catch (Exception e) {
                 }
             }
             channel = null;
+        } else if (pipelineBuffer != null) {
+            context.offerBuffer(pipelineBuffer);
         }
         this.inited = false;
+        if (runner != null) {
+            //已读取到的pipelining请求在当前线程中执行， 由PrepareRunner保证调用栈深度与执行顺序; 需要从连接中读取的交给线程池
+            if (pipelineBuffer != null) {
+                runner.run();
+            } else {
+                this.context.submit(runner);
+            }
+        }
         return true;
     }
 
@@ -5,18 +5,23 @@
  */
 package org.redkale.net;
 
+import java.io.*;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.function.Supplier;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.*;
+import java.util.logging.*;
 import java.util.stream.Collectors;
 import org.redkale.util.ObjectPool;
 import org.redkale.watch.WatchFactory;
 
 /**
- * 传输客户端
+ * 传输客户端 <br>
+ * TCP连接按远程节点分池管理， 建立连接为非阻塞方式; 节点的选择由TransportStrategy决定， 连续失败的节点会被暂时剔除。 <br>
+ * 首次使用后加入公共定时任务维护连接池: 预建minconns个连接、关闭空闲超过idletimeout的连接， 所有Transport共用一个定时任务， 关闭后移出。
  *
  * <p>
  * 详情见: https://redkale.org
@@ -29,8 +34,23 @@ public final class Transport {
 
     protected static final int MAX_POOL_LIMIT = Runtime.getRuntime().availableProcessors() * 16;
 
+    protected static final int CONNECT_TIMEOUT_MILLIS = 2000;
+
+    //连接池维护任务的执行间隔毫秒数
+    protected static final int MAINTAIN_INTERVAL_MILLIS = 1000;
+
     protected static final boolean supportTcpNoDelay;
 
+    private static final Logger logger = Logger.getLogger(Transport.class.getSimpleName());
+
+    private static final ScheduledThreadPoolExecutor scheduler;
+
+    //需要维护连接池的Transport
+    private static final Set<Transport> maintainTransports = ConcurrentHashMap.newKeySet();
+
+    //公共的连接池维护任务， 没有需要维护的Transport时取消
+    private static ScheduledFuture<?> maintainFuture;
+
     static {
         boolean tcpNoDelay = false;
         try {
@@ -40,6 +60,12 @@ public final class Transport {
         } catch (Exception e) {
         }
         supportTcpNoDelay = tcpNoDelay;
+        scheduler = new ScheduledThreadPoolExecutor(1, (Runnable r) -> {
+            Thread t = new Thread(r, "Redkale-Transport-Maintain-Thread");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
     }
 
     protected final String name; //即<group>的name属性
@@ -58,9 +84,30 @@ public final class Transport {
 
     protected InetSocketAddress[] remoteAddres = new InetSocketAddress[0];
 
+    protected TransportNode[] remoteNodes = new TransportNode[0]; //与remoteAddres一一对应
+
+    protected int multiplex; //即<group>的multiplex属性， 大于0表示SNCP请求使用多路复用连接
+
+    protected String strategyName; //即<group>的strategy属性
+
+    protected TransportStrategy strategy = TransportStrategy.create(null);
+
+    protected int minConnections; //即<group>的minconns属性， 每个节点预建的最少连接数
+
+    protected int idleTimeoutSeconds = 60; //即<group>的idletimeout属性， 连接空闲超过该秒数将被关闭， 0表示不关闭
+
+    protected int maxFailures = 3; //即<group>的maxfailures属性， 节点连续失败达到该次数将被剔除
+
+    protected int ejectTimeSeconds = 10; //即<group>的ejecttime属性， 节点被剔除的秒数
+
     protected final ObjectPool<ByteBuffer> bufferPool;
 
-    protected final ConcurrentHashMap<SocketAddress, BlockingQueue<AsyncConnection>> connPool = new ConcurrentHashMap<>();
+    protected final ConcurrentHashMap<SocketAddress, TransportNode> nodes = new ConcurrentHashMap<>();
+
+    //多路复用连接， 每个远程地址multiplex个槽位， 连接由协议层(如SNCP)建立， 地址被移除或Transport关闭时一并关闭
+    protected final ConcurrentHashMap<SocketAddress, AtomicReferenceArray<CompletableFuture<? extends Closeable>>> multiplexConnections = new ConcurrentHashMap<>();
+
+    private volatile boolean started;
 
     public Transport(String name, WatchFactory watch, String kind, final ObjectPool<ByteBuffer> transportBufferPool,
         final AsynchronousChannelGroup transportChannelGroup, final InetSocketAddress clientAddress, final Collection<InetSocketAddress> addresses) {
@@ -96,6 +143,12 @@ public final class Transport {
         this.group = first.group;
         this.bufferPool = first.bufferPool;
         this.clientAddress = first.clientAddress;
+        this.multiplex = first.multiplex;
+        this.minConnections = first.minConnections;
+        this.idleTimeoutSeconds = first.idleTimeoutSeconds;
+        this.maxFailures = first.maxFailures;
+        this.ejectTimeSeconds = first.ejectTimeSeconds;
+        setStrategy(first.strategyName);
         Set<InetSocketAddress> addrs = new HashSet<>();
         transports.forEach(t -> addrs.addAll(Arrays.asList(t.getRemoteAddresses())));
         updateRemoteAddresses(addrs);
@@ -110,7 +163,18 @@ public final class Transport {
                 list.add(addr);
             }
         }
+        TransportNode[] newNodes = new TransportNode[list.size()];
+        for (int i = 0; i < newNodes.length; i++) {
+            newNodes[i] = nodes.computeIfAbsent(list.get(i), a -> new TransportNode((InetSocketAddress) a));
+        }
+        this.remoteNodes = newNodes;
         this.remoteAddres = list.toArray(new InetSocketAddress[list.size()]);
+        for (InetSocketAddress addr : oldAddresses) {
+            if (list.contains(addr)) continue;
+            TransportNode node = nodes.remove(addr);
+            if (node != null) node.clearIdle();
+            closeMultiplexConnections(multiplexConnections.remove(addr));
+        }
         return oldAddresses;
     }
 
@@ -122,8 +186,176 @@ public final class Transport {
         return kind;
     }
 
+    public int getMultiplex() {
+        return multiplex;
+    }
+
+    public void setMultiplex(int multiplex) {
+        this.multiplex = multiplex;
+    }
+
+    public TransportStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * 设置负载均衡策略
+     *
+     * @param strategyName 策略名或TransportStrategy实现类的类名， 见TransportStrategy.create
+     */
+    public void setStrategy(String strategyName) {
+        this.strategy = TransportStrategy.create(strategyName);
+        this.strategyName = strategyName;
+    }
+
+    public int getMinConnections() {
+        return minConnections;
+    }
+
+    public void setMinConnections(int minConnections) {
+        this.minConnections = Math.min(Math.max(0, minConnections), MAX_POOL_LIMIT);
+    }
+
+    public int getIdleTimeoutSeconds() {
+        return idleTimeoutSeconds;
+    }
+
+    public void setIdleTimeoutSeconds(int idleTimeoutSeconds) {
+        this.idleTimeoutSeconds = Math.max(0, idleTimeoutSeconds);
+    }
+
+    public int getMaxFailures() {
+        return maxFailures;
+    }
+
+    public void setMaxFailures(int maxFailures) {
+        this.maxFailures = Math.max(1, maxFailures);
+    }
+
+    public int getEjectTimeSeconds() {
+        return ejectTimeSeconds;
+    }
+
+    public void setEjectTimeSeconds(int ejectTimeSeconds) {
+        this.ejectTimeSeconds = Math.max(0, ejectTimeSeconds);
+    }
+
+    /**
+     * 启动连接池的维护任务， 首次获取连接时会自动调用， 可重复调用
+     */
+    public void start() {
+        if (started || !tcp) return;
+        synchronized (Transport.class) {
+            if (started) return;
+            started = true;
+            maintainTransports.add(this);
+            if (maintainFuture == null) {
+                maintainFuture = scheduler.scheduleWithFixedDelay(Transport::maintainAll, MAINTAIN_INTERVAL_MILLIS, MAINTAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+        scheduler.execute(this::maintain); //立即预建连接， 不等下一次定时任务
+    }
+
     public void close() {
-        connPool.forEach((k, v) -> v.forEach(c -> c.dispose()));
+        synchronized (Transport.class) {
+            if (started) {
+                started = false;
+                maintainTransports.remove(this);
+                if (maintainTransports.isEmpty() && maintainFuture != null) {
+                    maintainFuture.cancel(false);
+                    maintainFuture = null;
+                }
+            }
+        }
+        nodes.forEach((k, v) -> v.clearIdle());
+        for (SocketAddress addr : new ArrayList<>(multiplexConnections.keySet())) {
+            closeMultiplexConnections(multiplexConnections.remove(addr));
+        }
+    }
+
+    /**
+     * 获取指定地址的第index个多路复用连接， 槽位为空或validator判定连接已失效时调用creator建立新连接。 <br>
+     * 建立连接不加锁， 同一槽位的并发调用共用同一个建立中的连接。
+     *
+     * @param <T>       连接的类型
+     * @param addr      远程地址
+     * @param index     序号， 按multiplex取模得到槽位
+     * @param validator 判断已建立的连接是否可用
+     * @param creator   建立新连接
+     *
+     * @return CompletableFuture
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Closeable> CompletableFuture<T> pollMultiplexConnection(final SocketAddress addr, final int index,
+        final Predicate<T> validator, final Supplier<CompletableFuture<T>> creator) {
+        final AtomicReferenceArray<CompletableFuture<? extends Closeable>> array = multiplexConnections.computeIfAbsent(addr, a -> new AtomicReferenceArray<>(Math.max(1, multiplex)));
+        final int pos = index % array.length();
+        for (;;) {
+            final CompletableFuture<T> old = (CompletableFuture<T>) array.get(pos);
+            if (old != null && (!old.isDone() || (!old.isCompletedExceptionally() && validator.test(old.join())))) return old;
+            final CompletableFuture<T> future = new CompletableFuture<>();
+            if (!array.compareAndSet(pos, old, future)) continue;
+            creator.get().whenComplete((conn, exc) -> {
+                if (exc != null) {
+                    array.compareAndSet(pos, future, null);
+                    future.completeExceptionally(exc);
+                } else if (multiplexConnections.get(addr) != array) { //建立过程中地址被移除或Transport已关闭
+                    closeMultiplexConnection(conn);
+                    future.completeExceptionally(new IOException(this.name + " transport multiplex connection " + addr + " closed"));
+                } else {
+                    future.complete(conn);
+                }
+            });
+            return future;
+        }
+    }
+
+    private void closeMultiplexConnections(AtomicReferenceArray<CompletableFuture<? extends Closeable>> array) {
+        if (array == null) return;
+        for (int i = 0; i < array.length(); i++) {
+            CompletableFuture<? extends Closeable> future = array.getAndSet(i, null);
+            if (future != null) future.thenAccept(this::closeMultiplexConnection);
+        }
+    }
+
+    private void closeMultiplexConnection(Closeable conn) {
+        try {
+            conn.close();
+        } catch (IOException e) {
+            //do nothing
+        }
+    }
+
+    private static void maintainAll() {
+        for (Transport transport : maintainTransports) {
+            transport.maintain();
+        }
+    }
+
+    private void maintain() {
+        if (!started) return;
+        try {
+            final long idleTimestamp = idleTimeoutSeconds > 0 ? System.currentTimeMillis() - idleTimeoutSeconds * 1000L : Long.MIN_VALUE;
+            final long now = System.currentTimeMillis();
+            for (TransportNode node : nodes.values()) {
+                node.evictIdle(minConnections, idleTimestamp);
+            }
+            if (minConnections < 1) return;
+            for (TransportNode node : remoteNodes) {
+                if (!node.isAvailable(now)) continue;
+                for (int i = node.idleCount.get() + node.connecting.get(); i < minConnections; i++) {
+                    node.connecting.incrementAndGet();
+                    CompletableFuture<AsyncConnection> future = new CompletableFuture<>();
+                    future.whenComplete((conn, exc) -> {
+                        node.connecting.decrementAndGet();
+                        if (conn != null && !node.offerIdle(conn, MAX_POOL_LIMIT)) conn.dispose();
+                    });
+                    connect(node, future);
+                }
+            }
+        } catch (Throwable t) {
+            logger.log(Level.WARNING, this + " maintain connections error", t);
+        }
     }
 
     public InetSocketAddress getClientAddress() {
@@ -134,6 +366,10 @@ public final class Transport {
         return remoteAddres;
     }
 
+    public TransportNode[] getRemoteNodes() {
+        return remoteNodes;
+    }
+
     @Override
     public String toString() {
         return Transport.class.getSimpleName() + "{name = " + name + ", protocol = " + protocol + ", clientAddress = " + clientAddress + ", remoteAddres = " + Arrays.toString(remoteAddres) + "}";
@@ -159,74 +395,236 @@ public final class Transport {
         return tcp;
     }
 
+    /**
+     * 按负载均衡策略选择一个远程地址， 被剔除的节点不参与选择， 所有节点都被剔除时从全部节点中选择
+     *
+     * @param hashKey 一致性哈希的参数， 可以为null
+     *
+     * @return 远程地址
+     */
+    public InetSocketAddress selectAddress(Object hashKey) {
+        return selectNode(hashKey, null).address;
+    }
+
+    private TransportNode selectNode(Object hashKey, Collection<TransportNode> excludes) {
+        final TransportNode[] all = this.remoteNodes;
+        if (all.length < 1) throw new RuntimeException("Transport (" + this.name + ") has no remoteAddress list");
+        final long now = System.currentTimeMillis();
+        TransportNode[] candidates = all;
+        int count = 0;
+        for (TransportNode node : all) {
+            if (node.isAvailable(now) && (excludes == null || !excludes.contains(node))) count++;
+        }
+        if (count == 0 && excludes != null) return null;
+        if (count > 0 && count < all.length) {
+            candidates = new TransportNode[count];
+            int index = 0;
+            for (TransportNode node : all) {
+                if (node.isAvailable(now) && (excludes == null || !excludes.contains(node))) candidates[index++] = node;
+            }
+        }
+        return strategy.select(candidates, hashKey);
+    }
+
+    /**
+     * 记录节点的一次请求失败， 连续失败达到maxfailures次后该节点被暂时剔除
+     *
+     * @param addr 远程地址
+     * @param exc  异常
+     */
+    public void markFailure(SocketAddress addr, Throwable exc) {
+        TransportNode node = addr == null ? null : nodes.get(addr);
+        if (node == null) return;
+        if (node.markFailure(maxFailures, ejectTimeSeconds * 1000L)) {
+            node.clearIdle();
+            logger.log(Level.WARNING, this.name + " transport node " + addr + " ejected for " + ejectTimeSeconds + " seconds, cause: " + exc);
+        } else if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, this.name + " transport node " + addr + " failed", exc);
+        }
+    }
+
+    /**
+     * 记录节点的一次请求成功
+     *
+     * @param addr 远程地址
+     */
+    public void markSuccess(SocketAddress addr) {
+        TransportNode node = addr == null ? null : nodes.get(addr);
+        if (node != null) node.markSuccess();
+    }
+
+    /**
+     * 记录节点开始一个请求， 用于不经过连接池取还连接的请求(如多路复用连接上的请求)， leastactive策略按此计数选择节点
+     *
+     * @param addr 远程地址
+     */
+    public void incrementInflight(SocketAddress addr) {
+        TransportNode node = addr == null ? null : nodes.get(addr);
+        if (node != null) node.inflight.incrementAndGet();
+    }
+
+    /**
+     * 记录节点结束一个请求， 与incrementInflight成对调用
+     *
+     * @param addr 远程地址
+     */
+    public void decrementInflight(SocketAddress addr) {
+        TransportNode node = addr == null ? null : nodes.get(addr);
+        if (node != null) node.inflight.decrementAndGet();
+    }
+
+    /**
+     * 同步获取连接， 无法连接时抛出异常
+     *
+     * @param addr 远程地址， 为null时按负载均衡策略选择
+     *
+     * @return AsyncConnection
+     */
     public AsyncConnection pollConnection(SocketAddress addr) {
+        try {
+            return pollConnectionAsync(addr, null).get(CONNECT_TIMEOUT_MILLIS * 2, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException("transport address = " + addr, e.getCause());
+        } catch (Exception ex) {
+            throw new RuntimeException("transport address = " + addr, ex);
+        }
+    }
+
+    /**
+     * 异步获取连接， 空闲连接池中没有可用连接时以非阻塞方式建立新连接。 <br>
+     * addr为null时按负载均衡策略选择节点， 连接失败会依次尝试其他可用节点。
+     *
+     * @param addr    远程地址， 为null时按负载均衡策略选择
+     * @param hashKey 一致性哈希的参数， 可以为null
+     *
+     * @return CompletableFuture
+     */
+    public CompletableFuture<AsyncConnection> pollConnectionAsync(SocketAddress addr, Object hashKey) {
+        final CompletableFuture<AsyncConnection> future = new CompletableFuture<>();
         if (addr == null && remoteAddres.length == 1) addr = remoteAddres[0];
-        final boolean rand = addr == null;
-        if (rand && remoteAddres.length < 1) throw new RuntimeException("Transport (" + this.name + ") has no remoteAddress list");
         try {
-            if (tcp) {
-                AsynchronousSocketChannel channel = null;
-                if (rand) {   //取地址
-                    for (int i = 0; i < remoteAddres.length; i++) {
-                        addr = remoteAddres[i];
-                        BlockingQueue<AsyncConnection> queue = connPool.get(addr);
-                        if (queue != null && !queue.isEmpty()) {
-                            AsyncConnection conn;
-                            while ((conn = queue.poll()) != null) {
-                                if (conn.isOpen()) return conn;
-                            }
-                        }
-                        if (channel == null) {
-                            channel = AsynchronousSocketChannel.open(group);
-                            if (supportTcpNoDelay) channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
-                        }
-                        try {
-                            channel.connect(addr).get(2, TimeUnit.SECONDS);
-                            break;
-                        } catch (Exception iex) {
-                            iex.printStackTrace();
-                            if (i == remoteAddres.length - 1) channel = null;
-                        }
-                    }
-                } else {
-                    channel = AsynchronousSocketChannel.open(group);
-                    if (supportTcpNoDelay) channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
-                    channel.connect(addr).get(2, TimeUnit.SECONDS);
-                }
-                if (channel == null) return null;
-                return AsyncConnection.create(channel, addr, 3000, 3000);
-            } else { // UDP
-                if (rand) addr = remoteAddres[0];
+            if (!tcp) { // UDP
+                if (addr == null) addr = selectAddress(hashKey);
                 DatagramChannel channel = DatagramChannel.open();
                 channel.configureBlocking(true);
                 channel.connect(addr);
-                return AsyncConnection.create(channel, addr, true, 3000, 3000);
+                future.complete(AsyncConnection.create(channel, addr, true, 3000, 3000));
 //                AsyncDatagramChannel channel = AsyncDatagramChannel.open(group);
 //                channel.connect(addr);
 //                return AsyncConnection.create(channel, addr, true, 3000, 3000);
+                return future;
+            }
+            start();
+            if (addr != null) {
+                acquire(nodes.computeIfAbsent(addr, a -> new TransportNode((InetSocketAddress) a)), future, null, hashKey);
+            } else {
+                acquire(selectNode(hashKey, null), future, new ArrayList<>(), hashKey);
             }
         } catch (Exception ex) {
-            throw new RuntimeException("transport address = " + addr, ex);
+            future.completeExceptionally(ex instanceof RuntimeException ? ex : new RuntimeException("transport address = " + addr, ex));
         }
+        return future;
     }
 
-    public void offerConnection(final boolean forceClose, AsyncConnection conn) {
-        if (!forceClose && conn.isTCP()) {
-            if (conn.isOpen()) {
-                BlockingQueue<AsyncConnection> queue = connPool.get(conn.getRemoteAddress());
-                if (queue == null) {
-                    queue = new ArrayBlockingQueue<>(MAX_POOL_LIMIT);
-                    connPool.put(conn.getRemoteAddress(), queue);
+    //tried不为null表示连接失败时可尝试其他节点
+    private void acquire(final TransportNode node, final CompletableFuture<AsyncConnection> future, final List<TransportNode> tried, final Object hashKey) {
+        AsyncConnection conn = node.pollIdle();
+        if (conn != null) {
+            node.inflight.incrementAndGet();
+            if (!future.complete(conn)) offerConnection(false, conn);
+            return;
+        }
+        final CompletableFuture<AsyncConnection> connFuture = new CompletableFuture<>();
+        connFuture.whenComplete((c, exc) -> {
+            if (c != null) {
+                node.inflight.incrementAndGet();
+                if (!future.complete(c)) offerConnection(false, c);
+                return;
+            }
+            markFailure(node.address, exc);
+            TransportNode next = null;
+            if (tried != null) {
+                tried.add(node);
+                next = selectNode(hashKey, tried);
+            }
+            if (next != null) {
+                acquire(next, future, tried, hashKey);
+            } else {
+                future.completeExceptionally(new RuntimeException("transport address = " + node.address + " cannot connect", exc));
+            }
+        });
+        connect(node, connFuture);
+    }
+
+    private void connect(final TransportNode node, final CompletableFuture<AsyncConnection> future) {
+        final AsynchronousSocketChannel channel;
+        try {
+            channel = AsynchronousSocketChannel.open(group);
+            if (supportTcpNoDelay) channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return;
+        }
+        final ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            if (future.completeExceptionally(new TimeoutException("connect " + node.address + " timeout"))) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
                 }
-                if (!queue.offer(conn)) conn.dispose();
             }
-        } else {
+        }, CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        channel.connect(node.address, null, new CompletionHandler<Void, Void>() {
+
+            @Override
+            public void completed(Void result, Void attachment) {
+                timer.cancel(false);
+                AsyncConnection conn = AsyncConnection.create(channel, node.address, 3000, 3000);
+                if (!future.complete(conn)) conn.dispose();
+            }
+
+            @Override
+            public void failed(Throwable exc, Void attachment) {
+                timer.cancel(false);
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                }
+                future.completeExceptionally(exc);
+            }
+        });
+    }
+
+    public void offerConnection(final boolean forceClose, AsyncConnection conn) {
+        if (!conn.isTCP()) {
+            conn.dispose();
+            return;
+        }
+        final TransportNode node = nodes.get(conn.getRemoteAddress());
+        if (node == null) {
+            conn.dispose();
+            return;
+        }
+        node.inflight.decrementAndGet();
+        if (forceClose || !conn.isOpen()) {
             conn.dispose();
+            return;
         }
+        node.markSuccess();
+        if (!node.offerIdle(conn, MAX_POOL_LIMIT)) conn.dispose();
     }
 
     public <A> void async(SocketAddress addr, final ByteBuffer buffer, A att, final CompletionHandler<Integer, A> handler) {
-        final AsyncConnection conn = pollConnection(addr);
+        pollConnectionAsync(addr, null).whenComplete((conn, exc) -> {
+            if (exc != null) {
+                offerBuffer(buffer);
+                if (handler != null) handler.failed(exc, att);
+                return;
+            }
+            async(conn, buffer, att, handler);
+        });
+    }
+
+    private <A> void async(final AsyncConnection conn, final ByteBuffer buffer, A att, final CompletionHandler<Integer, A> handler) {
         conn.write(buffer, buffer, new CompletionHandler<Integer, ByteBuffer>() {
 
             @Override
@@ -0,0 +1,162 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transport中的一个远程节点， 包含该节点的空闲连接池、进行中的请求数和健康状态。 <br>
+ * 连续失败次数达到Transport的maxfailures后节点被剔除ejecttime毫秒， 剔除期满后节点恢复使用， 此时再失败一次会立即重新剔除。
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ */
+public final class TransportNode {
+
+    protected final InetSocketAddress address;
+
+    //进行中的请求数， 从连接池取出连接时加1， 归还连接时减1; 多路复用连接上按请求加减
+    protected final AtomicInteger inflight = new AtomicInteger();
+
+    //连续失败次数
+    protected final AtomicInteger failures = new AtomicInteger();
+
+    //正在建立的连接数
+    protected final AtomicInteger connecting = new AtomicInteger();
+
+    protected final AtomicInteger idleCount = new AtomicInteger();
+
+    //空闲连接， 头部为最近归还的连接， 尾部为空闲最久的连接
+    protected final ConcurrentLinkedDeque<IdleConnection> idles = new ConcurrentLinkedDeque<>();
+
+    //剔除的截止时间， 0表示未被剔除过或已恢复正常
+    protected volatile long ejectTime;
+
+    public TransportNode(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public int getFailures() {
+        return failures.get();
+    }
+
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * 判断节点当前是否可用
+     *
+     * @param now 当前时间
+     *
+     * @return 是否可用
+     */
+    public boolean isAvailable(long now) {
+        return ejectTime <= now;
+    }
+
+    /**
+     * 记录一次成功的请求， 清除失败记录
+     */
+    void markSuccess() {
+        if (failures.get() != 0) failures.set(0);
+        if (ejectTime != 0) ejectTime = 0;
+    }
+
+    /**
+     * 记录一次失败
+     *
+     * @param maxFailures 最大连续失败次数
+     * @param ejectMillis 剔除的时长
+     *
+     * @return 本次失败是否导致节点被剔除
+     */
+    boolean markFailure(int maxFailures, long ejectMillis) {
+        final long now = System.currentTimeMillis();
+        if (ejectTime > now) return false; //已处于剔除期
+        if (ejectTime > 0 || failures.incrementAndGet() >= maxFailures) {
+            failures.set(0);
+            ejectTime = now + ejectMillis;
+            return true;
+        }
+        return false;
+    }
+
+    AsyncConnection pollIdle() {
+        IdleConnection idle;
+        while ((idle = idles.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            if (idle.conn.isOpen()) return idle.conn;
+            idle.conn.dispose();
+        }
+        return null;
+    }
+
+    boolean offerIdle(AsyncConnection conn, int limit) {
+        if (idleCount.incrementAndGet() > limit) {
+            idleCount.decrementAndGet();
+            return false;
+        }
+        idles.offerFirst(new IdleConnection(conn, System.currentTimeMillis()));
+        return true;
+    }
+
+    /**
+     * 关闭空闲超时的连接， 至少保留min个连接
+     *
+     * @param min       最少保留的连接数
+     * @param timestamp 最后使用时间早于该值的连接视为超时
+     */
+    void evictIdle(int min, long timestamp) {
+        IdleConnection idle;
+        while (idleCount.get() > min && (idle = idles.pollLast()) != null) {
+            if (idle.conn.isOpen() && idle.time >= timestamp) {
+                idles.offerLast(idle);
+                break;
+            }
+            idleCount.decrementAndGet();
+            idle.conn.dispose();
+        }
+    }
+
+    void clearIdle() {
+        IdleConnection idle;
+        while ((idle = idles.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            idle.conn.dispose();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return TransportNode.class.getSimpleName() + "{address = " + address + ", inflight = " + inflight + ", idles = " + idleCount
+            + ", failures = " + failures + ", ejected = " + (ejectTime > System.currentTimeMillis()) + "}";
+    }
+
+    static final class IdleConnection {
+
+        final AsyncConnection conn;
+
+        final long time; //归还到池中的时间
+
+        IdleConnection(AsyncConnection conn, long time) {
+            this.conn = conn;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transport选择远程节点的负载均衡策略， 由&lt;group&gt;节点的strategy属性指定: <br>
+ * roundrobin: 轮询(默认) <br>
+ * leastactive: 选择进行中请求数最少的节点 <br>
+ * hash: 按请求参数做一致性哈希， 参数由Service方法中标记&#64;RpcHashKey的参数提供， 没有该参数时按轮询 <br>
+ * 其他值视为TransportStrategy实现类的类名。
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ */
+public interface TransportStrategy {
+
+    /**
+     * 从可用节点中选择一个节点
+     *
+     * @param nodes   可用节点， 不会为空数组
+     * @param hashKey 哈希参数， 可能为null
+     *
+     * @return 选中的节点
+     */
+    public TransportNode select(TransportNode[] nodes, Object hashKey);
+
+    /**
+     * 根据名称创建策略对象
+     *
+     * @param name 策略名或实现类的类名， 为空时返回轮询策略
+     *
+     * @return TransportStrategy
+     */
+    public static TransportStrategy create(String name) {
+        if (name == null || name.trim().isEmpty() || "roundrobin".equalsIgnoreCase(name.trim())) return new RoundRobinStrategy();
+        name = name.trim();
+        if ("leastactive".equalsIgnoreCase(name)) return new LeastActiveStrategy();
+        if ("hash".equalsIgnoreCase(name)) return new ConsistentHashStrategy();
+        try {
+            return (TransportStrategy) Thread.currentThread().getContextClassLoader().loadClass(name).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Not supported Transport strategy " + name, e);
+        }
+    }
+
+    /**
+     * 轮询策略
+     */
+    public static class RoundRobinStrategy implements TransportStrategy {
+
+        protected final AtomicInteger sequence = new AtomicInteger();
+
+        @Override
+        public TransportNode select(TransportNode[] nodes, Object hashKey) {
+            if (nodes.length == 1) return nodes[0];
+            return nodes[(sequence.getAndIncrement() & 0x7fffffff) % nodes.length];
+        }
+    }
+
+    /**
+     * 最少进行中请求数策略， 请求数相同的节点间轮询
+     */
+    public static class LeastActiveStrategy implements TransportStrategy {
+
+        protected final AtomicInteger sequence = new AtomicInteger();
+
+        @Override
+        public TransportNode select(TransportNode[] nodes, Object hashKey) {
+            if (nodes.length == 1) return nodes[0];
+            final int start = (sequence.getAndIncrement() & 0x7fffffff) % nodes.length;
+            TransportNode rs = null;
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < nodes.length; i++) {
+                TransportNode node = nodes[(start + i) % nodes.length];
+                int active = node.inflight.get();
+                if (active < min) {
+                    min = active;
+                    rs = node;
+                    if (active == 0) break;
+                }
+            }
+            return rs;
+        }
+    }
+
+    /**
+     * 一致性哈希策略， 每个节点在哈希环上有VIRTUAL_NODES个虚拟节点， 节点被剔除时只有落在该节点上的参数会迁移
+     */
+    public static class ConsistentHashStrategy extends RoundRobinStrategy {
+
+        protected static final int VIRTUAL_NODES = 160;
+
+        protected volatile HashRing ring;
+
+        @Override
+        public TransportNode select(TransportNode[] nodes, Object hashKey) {
+            if (hashKey == null || nodes.length == 1) return super.select(nodes, hashKey);
+            HashRing r = this.ring;
+            if (r == null || !r.same(nodes)) {
+                r = new HashRing(nodes);
+                this.ring = r;
+            }
+            return r.find(hash(String.valueOf(hashKey)));
+        }
+
+        //FNV-1a， 不使用hashCode以保证不同进程中结果一致
+        protected static int hash(String key) {
+            int h = 0x811c9dc5;
+            for (int i = 0; i < key.length(); i++) {
+                h ^= key.charAt(i);
+                h *= 0x01000193;
+            }
+            h ^= h >>> 16; //FNV对短字符串的高位分布较差
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            return h;
+        }
+
+        protected static final class HashRing {
+
+            private final TransportNode[] nodes;
+
+            private final int[] hashes;
+
+            private final TransportNode[] owners;
+
+            public HashRing(TransportNode[] nodes) {
+                this.nodes = nodes;
+                final long[] points = new long[nodes.length * VIRTUAL_NODES]; //高32位为hash， 低32位为节点下标
+                int index = 0;
+                for (int i = 0; i < nodes.length; i++) {
+                    String prefix = nodes[i].address.getHostString() + ":" + nodes[i].address.getPort() + "#";
+                    for (int j = 0; j < VIRTUAL_NODES; j++) {
+                        points[index++] = ((long) hash(prefix + j) << 32) | i;
+                    }
+                }
+                Arrays.sort(points);
+                this.hashes = new int[points.length];
+                this.owners = new TransportNode[points.length];
+                for (int i = 0; i < points.length; i++) {
+                    this.hashes[i] = (int) (points[i] >> 32);
+                    this.owners[i] = nodes[(int) points[i]];
+                }
+            }
+
+            public boolean same(TransportNode[] other) {
+                return this.nodes == other || Arrays.equals(this.nodes, other);
+            }
+
+            public TransportNode find(int hash) {
+                int pos = Arrays.binarySearch(hashes, hash);
+                if (pos < 0) pos = -pos - 1;
+                return owners[pos == hashes.length ? 0 : pos];
+            }
+        }
+    }
+}
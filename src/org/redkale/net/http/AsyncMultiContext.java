@@ -0,0 +1,375 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.Charset;
+import java.util.concurrent.*;
+import org.redkale.net.AsyncConnection;
+import org.redkale.util.ByteArray;
+
+/**
+ * 非阻塞的文件上传(multipart/form-data)解析器 <br>
+ * 由AsyncConnection.read的完成回调驱动， 不占用工作线程: 每次读取到数据后在缓冲区中用Boyer-Moore-Horspool算法查找boundary，
+ * 普通表单字段放入HttpRequest的参数中， 文件内容分段交给MultiPartHandler， 在其返回的CompletableFuture完成后才继续读取。 <br>
+ * 读取使用Context中的ByteBuffer池， 解析结束后归还。
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ */
+public final class AsyncMultiContext {
+
+    private static final int STATE_HEADER = 1;
+
+    private static final int STATE_BODY = 2;
+
+    private static final int STATE_PART_END = 3;
+
+    private static final int STATE_BOUNDARY_END = 4;
+
+    private static final int STATE_DONE = 5;
+
+    private static final int PART_SKIP = 0;
+
+    private static final int PART_FIELD = 1;
+
+    private static final int PART_FILE = 2;
+
+    private final HttpContext context;
+
+    private final AsyncConnection channel;
+
+    private final Charset charset;
+
+    private final HttpValues params;
+
+    private final String boundary;
+
+    //part之间的分隔符: \r\n--boundary
+    private final byte[] delimiter;
+
+    //Boyer-Moore-Horspool的坏字符跳跃表
+    private final int[] skips = new int[256];
+
+    //HttpRequest读取header时已读到的body内容
+    private final byte[] initial;
+
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    private final ByteArray fieldValue = new ByteArray();
+
+    private MultiPartHandler handler;
+
+    private long maxPartSize;
+
+    private ByteBuffer buffer;
+
+    private boolean pooled;
+
+    private int state;
+
+    private int partKind;
+
+    private String partDisposition;
+
+    private String partContentType;
+
+    private long partSize;
+
+    AsyncMultiContext(final HttpContext context, final String contentType, final HttpValues params, final AsyncConnection channel, final ByteArray initial) {
+        this.context = context;
+        this.channel = channel;
+        this.charset = context.getCharset() == null ? Charset.forName("UTF-8") : context.getCharset();
+        this.params = params;
+        this.boundary = contentType == null ? null : parseBoundary(contentType);
+        this.delimiter = this.boundary == null ? null : ("\r\n--" + this.boundary).getBytes();
+        if (this.delimiter != null) {
+            final int last = this.delimiter.length - 1;
+            for (int i = 0; i < this.skips.length; i++) {
+                this.skips[i] = this.delimiter.length;
+            }
+            for (int i = 0; i < last; i++) {
+                this.skips[this.delimiter[i] & 0xff] = last - i;
+            }
+        }
+        this.initial = initial.getBytes();
+    }
+
+    private static String parseBoundary(String contentType) {
+        if (!contentType.trim().startsWith("multipart/")) return null;
+        for (String str : contentType.split(";")) {
+            int pos = str.indexOf("boundary=");
+            if (pos >= 0) {
+                String rs = str.substring(pos + "boundary=".length()).trim();
+                if (rs.length() > 1 && rs.charAt(0) == '"' && rs.charAt(rs.length() - 1) == '"') rs = rs.substring(1, rs.length() - 1);
+                return rs.isEmpty() ? null : rs;
+            }
+        }
+        return null;
+    }
+
+    public boolean isMultipart() {
+        return this.boundary != null;
+    }
+
+    /**
+     * 开始解析， 只能调用一次
+     *
+     * @param maxPartSize 每个part的最大字节数， 小于1表示不限制
+     * @param handler     文件内容的接收器
+     *
+     * @return 解析完成的CompletableFuture， 连接断开、格式错误或part超出大小限制时异常完成
+     */
+    public CompletableFuture<Void> parts(final long maxPartSize, final MultiPartHandler handler) {
+        if (!isMultipart()) {
+            this.future.complete(null);
+            return this.future;
+        }
+        if (this.handler != null) throw new IllegalStateException("multipart parts already parsing");
+        this.handler = handler;
+        this.maxPartSize = maxPartSize;
+        final ByteBuffer buf = context.pollBuffer();
+        final int size = this.initial.length + 2;
+        if (buf.capacity() >= size && buf.capacity() > this.delimiter.length * 2) {
+            this.buffer = buf;
+            this.pooled = true;
+        } else {
+            context.offerBuffer(buf);
+            this.buffer = ByteBuffer.allocate(Math.max(size, Math.max(8192, this.delimiter.length * 2)));
+        }
+        //在内容前补上\r\n， 第一个boundary前的内容作为跳过的part处理
+        this.buffer.clear();
+        this.buffer.put((byte) '\r').put((byte) '\n');
+        this.buffer.put(this.initial);
+        this.buffer.flip();
+        this.partKind = PART_SKIP;
+        this.state = STATE_BODY;
+        process();
+        return this.future;
+    }
+
+    //解析缓冲区中[position, limit)的内容， 数据不足时继续读取， 等待MultiPartHandler时挂起
+    private void process() {
+        try {
+            for (;;) {
+                final ByteBuffer buf = this.buffer;
+                switch (this.state) {
+                    case STATE_HEADER: {
+                        final int start = buf.position();
+                        final int end = findLineEnd(buf, start, buf.limit());
+                        if (end < 0) {
+                            if (start == 0 && buf.limit() == buf.capacity()) throw new IOException("multipart header line too long");
+                            readMore();
+                            return;
+                        }
+                        buf.position(end + 2);
+                        if (end == start) {
+                            beginPart();
+                        } else {
+                            parseHeaderLine(toString(buf, start, end));
+                        }
+                        break;
+                    }
+                    case STATE_BODY: {
+                        final int start = buf.position();
+                        final int index = indexOf(buf, start, buf.limit());
+                        final int end;
+                        if (index >= 0) {
+                            end = index;
+                            buf.position(index + this.delimiter.length);
+                            this.state = STATE_PART_END;
+                        } else { //末尾可能是分隔符的开头， 保留到下次读取
+                            end = Math.max(start, buf.limit() - this.delimiter.length + 1);
+                            buf.position(end);
+                        }
+                        if (end > start) {
+                            final CompletableFuture<?> f = partData(buf, start, end);
+                            if (f != null) {
+                                if (!f.isDone()) {
+                                    f.whenComplete((r, t) -> {
+                                        if (t == null) {
+                                            process();
+                                        } else {
+                                            failed(t);
+                                        }
+                                    });
+                                    return;
+                                }
+                                f.join();
+                            }
+                        }
+                        if (index < 0) {
+                            readMore();
+                            return;
+                        }
+                        break;
+                    }
+                    case STATE_PART_END: {
+                        endPart();
+                        this.state = STATE_BOUNDARY_END;
+                        break;
+                    }
+                    case STATE_BOUNDARY_END: { //boundary后是--表示结束， 否则跳过空白后是\r\n
+                        int pos = buf.position();
+                        while (pos < buf.limit() && (buf.get(pos) == ' ' || buf.get(pos) == '\t')) pos++;
+                        buf.position(pos);
+                        if (buf.remaining() < 2) {
+                            readMore();
+                            return;
+                        }
+                        final byte b1 = buf.get(pos);
+                        final byte b2 = buf.get(pos + 1);
+                        if (b1 == '-' && b2 == '-') {
+                            this.state = STATE_DONE;
+                            complete(null);
+                            return;
+                        }
+                        if (b1 != '\r' || b2 != '\n') throw new IOException("malformed multipart boundary line");
+                        buf.position(pos + 2);
+                        this.partDisposition = null;
+                        this.partContentType = "";
+                        this.state = STATE_HEADER;
+                        break;
+                    }
+                    default:
+                        return;
+                }
+            }
+        } catch (Throwable t) {
+            failed(t);
+        }
+    }
+
+    private void readMore() {
+        final ByteBuffer buf = this.buffer;
+        buf.compact();
+        this.channel.read(buf, null, new CompletionHandler<Integer, Void>() {
+
+            @Override
+            public void completed(Integer count, Void attachment) {
+                if (count < 0) {
+                    AsyncMultiContext.this.failed(new EOFException("multipart stream ended before the close boundary"));
+                    return;
+                }
+                buf.flip();
+                process();
+            }
+
+            @Override
+            public void failed(Throwable exc, Void attachment) {
+                AsyncMultiContext.this.failed(exc);
+            }
+        });
+    }
+
+    private void parseHeaderLine(final String line) {
+        if (line.regionMatches(true, 0, "Content-Disposition:", 0, 20)) {
+            this.partDisposition = line.substring(20).trim();
+        } else if (line.regionMatches(true, 0, "Content-Type:", 0, 13)) {
+            this.partContentType = line.substring(13).trim();
+        }
+    }
+
+    private void beginPart() throws IOException {
+        this.partSize = 0;
+        this.state = STATE_BODY;
+        final String disposition = this.partDisposition == null ? "" : this.partDisposition;
+        final String name = MultiContext.parseValue(disposition, "name");
+        if (!disposition.contains("; filename=\"")) {
+            this.partKind = name == null ? PART_SKIP : PART_FIELD;
+            this.fieldValue.clear();
+            return;
+        }
+        String filename = MultiContext.parseValue(disposition, "filename");
+        if (filename == null || filename.isEmpty()) { //没有上传
+            this.partKind = PART_SKIP;
+            return;
+        }
+        int p1 = filename.lastIndexOf('/');
+        if (p1 < 0) p1 = filename.lastIndexOf('\\');
+        if (p1 >= 0) filename = filename.substring(p1 + 1);
+        this.partKind = this.handler.begin(name, filename, this.partContentType) ? PART_FILE : PART_SKIP;
+    }
+
+    private CompletableFuture<?> partData(final ByteBuffer buf, final int start, final int end) throws IOException {
+        if (this.partKind == PART_SKIP) return null;
+        this.partSize += end - start;
+        if (this.maxPartSize > 0 && this.partSize > this.maxPartSize) {
+            throw new IOException("multipart part (" + this.partDisposition + ") exceeds max size " + this.maxPartSize);
+        }
+        final ByteBuffer data = buf.duplicate();
+        data.limit(end).position(start);
+        if (this.partKind == PART_FIELD) {
+            this.fieldValue.write(data, end - start);
+            return null;
+        }
+        return this.handler.data(data);
+    }
+
+    private void endPart() throws IOException {
+        if (this.partKind == PART_FIELD) {
+            this.params.addValue(MultiContext.parseValue(this.partDisposition, "name"), this.fieldValue.toString(this.charset));
+        } else if (this.partKind == PART_FILE) {
+            this.partKind = PART_SKIP;
+            this.handler.end(this.partSize);
+        }
+    }
+
+    private void complete(Void rs) {
+        releaseBuffer();
+        this.future.complete(rs);
+    }
+
+    private void failed(Throwable exc) {
+        if (this.future.isDone()) return;
+        if (exc instanceof CompletionException && exc.getCause() != null) exc = exc.getCause();
+        this.state = STATE_DONE;
+        releaseBuffer();
+        if (this.handler != null) this.handler.failed(exc);
+        this.future.completeExceptionally(exc);
+    }
+
+    private void releaseBuffer() {
+        if (this.buffer != null && this.pooled) context.offerBuffer(this.buffer);
+        this.buffer = null;
+    }
+
+    //Boyer-Moore-Horspool查找分隔符， 没有返回-1
+    private int indexOf(final ByteBuffer buf, final int from, final int to) {
+        final byte[] pattern = this.delimiter;
+        final int[] table = this.skips;
+        final int last = pattern.length - 1;
+        int i = from;
+        while (i + last < to) {
+            int j = last;
+            while (buf.get(i + j) == pattern[j]) {
+                if (j == 0) return i;
+                j--;
+            }
+            i += table[buf.get(i + last) & 0xff];
+        }
+        return -1;
+    }
+
+    private static int findLineEnd(final ByteBuffer buf, final int from, final int to) {
+        for (int i = from; i < to - 1; i++) {
+            if (buf.get(i) == '\r' && buf.get(i + 1) == '\n') return i;
+        }
+        return -1;
+    }
+
+    private String toString(final ByteBuffer buf, final int start, final int end) {
+        final byte[] bs = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            bs[i - start] = buf.get(i);
+        }
+        return new String(bs, this.charset);
+    }
+}
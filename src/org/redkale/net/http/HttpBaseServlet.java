@@ -208,11 +208,11 @@ public abstract class HttpBaseServlet extends HttpServlet {
     public abstract boolean authenticate(int moduleid, int actionid, HttpRequest request, HttpResponse response) throws IOException;
 
     protected void setHeader(HttpRequest request, String name, Serializable value) {
-        request.header.setValue(name, String.valueOf(value));
+        request.parsedHeader().setValue(name, String.valueOf(value));
     }
 
     protected void addHeader(HttpRequest request, String name, Serializable value) {
-        request.header.addValue(name, String.valueOf(value));
+        request.parsedHeader().addValue(name, String.valueOf(value));
     }
 
     protected String _prefix(HttpServlet servlet) {
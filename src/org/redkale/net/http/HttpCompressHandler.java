@@ -0,0 +1,257 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.zip.*;
+import org.redkale.util.AnyValue;
+
+/**
+ * HTTP响应内容的gzip/deflate压缩， 由&lt;response&gt;节点下的&lt;compress&gt;节点配置: <br>
+ * &lt;compress minlength="1K" level="6" types="text/;application/json;application/javascript;application/xml"/&gt; <br>
+ * 只有Content-Type以types中某项开头且内容长度不小于minlength的响应才会被压缩。 <br>
+ * Deflater对象与工作线程绑定复用，不会在每次请求时创建。
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ */
+public class HttpCompressHandler implements HttpResponse.BufferHandler {
+
+    private static final byte[] GZIP_HEADER = new byte[]{(byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private static final String DEFAULT_TYPES = "text/;application/json;application/javascript;application/x-javascript;application/xml";
+
+    //最小压缩长度
+    private final int minLength;
+
+    //压缩级别 1-9
+    private final int level;
+
+    //可压缩的Content-Type前缀
+    private final String[] types;
+
+    private final ThreadLocal<Deflater> gzipDeflaters;
+
+    private final ThreadLocal<Deflater> deflateDeflaters;
+
+    private final ThreadLocal<CRC32> crcs = ThreadLocal.withInitial(() -> new CRC32());
+
+    private final ThreadLocal<byte[]> inputBytes = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    private final ThreadLocal<byte[]> outputBytes = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    public HttpCompressHandler(int minLength, int level, String... types) {
+        this.minLength = minLength;
+        this.level = level;
+        this.types = types;
+        this.gzipDeflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+        this.deflateDeflaters = ThreadLocal.withInitial(() -> new Deflater(level, false));
+    }
+
+    /**
+     * 根据&lt;compress&gt;节点创建对象， 节点不存在或enable=false时返回null
+     *
+     * @param conf compress节点
+     *
+     * @return HttpCompressHandler
+     */
+    public static HttpCompressHandler create(AnyValue conf) {
+        if (conf == null || !conf.getBoolValue("enable", true)) return null;
+        int minLength = (int) HttpResourceServlet.parseLenth(conf.getValue("minlength"), 1024L);
+        int level = conf.getIntValue("level", Deflater.DEFAULT_COMPRESSION);
+        String[] types = conf.getValue("types", DEFAULT_TYPES).split(";");
+        return new HttpCompressHandler(minLength, level, types);
+    }
+
+    /**
+     * 判断指定类型和长度的内容是否需要压缩
+     *
+     * @param contentType Content-Type, null视为text/plain
+     * @param length      内容长度
+     *
+     * @return 是否需要压缩
+     */
+    public boolean isCompressible(String contentType, long length) {
+        if (length < minLength) return false;
+        if (contentType == null) contentType = "text/plain";
+        for (String type : types) {
+            if (!type.isEmpty() && contentType.startsWith(type)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 获取请求方可接受的压缩方式，按Accept-Encoding的q值选择， q值相同时优先gzip， 都不支持返回null
+     *
+     * @param request HttpRequest
+     *
+     * @return gzip、deflate或null
+     */
+    public static String acceptEncoding(HttpRequest request) {
+        return acceptEncoding(request.getHeader("Accept-Encoding"));
+    }
+
+    /**
+     * 解析Accept-Encoding的值， 例如: gzip;q=0, deflate 返回deflate <br>
+     * q=0表示不接受; 没有列出的压缩方式取*的q值， 没有*时视为不接受
+     *
+     * @param accept Accept-Encoding的值
+     *
+     * @return gzip、deflate或null
+     */
+    static String acceptEncoding(String accept) {
+        if (accept == null || accept.isEmpty()) return null;
+        float gzip = -1, deflate = -1, any = -1;
+        for (String item : accept.split(",")) {
+            int pos = item.indexOf(';');
+            String name = (pos < 0 ? item : item.substring(0, pos)).trim().toLowerCase();
+            float q = pos < 0 ? 1f : parseQuality(item.substring(pos + 1));
+            switch (name) {
+                case "gzip":
+                case "x-gzip":
+                    gzip = q;
+                    break;
+                case "deflate":
+                    deflate = q;
+                    break;
+                case "*":
+                    any = q;
+                    break;
+            }
+        }
+        if (gzip < 0) gzip = any;
+        if (deflate < 0) deflate = any;
+        if (gzip <= 0 && deflate <= 0) return null;
+        return gzip >= deflate ? "gzip" : "deflate";
+    }
+
+    //解析;q=0.5形式的参数， 没有q参数为1， 格式错误视为0
+    private static float parseQuality(String params) {
+        for (String param : params.split(";")) {
+            param = param.trim();
+            if (param.length() < 2 || (param.charAt(0) != 'q' && param.charAt(0) != 'Q') || param.charAt(1) != '=') continue;
+            try {
+                float q = Float.parseFloat(param.substring(2).trim());
+                return q >= 0 && q <= 1 ? q : 0f;
+            } catch (NumberFormatException e) {
+                return 0f;
+            }
+        }
+        return 1f;
+    }
+
+    @Override
+    public ByteBuffer[] execute(final HttpResponse response, final ByteBuffer[] buffers) {
+        if (buffers == null || buffers.length == 0) return null;
+        long length = 0;
+        for (ByteBuffer buf : buffers) {
+            length += buf.remaining();
+        }
+        if (!isCompressible(response.getContentType(), length)) return null;
+        final String encoding = acceptEncoding(response.getRequest());
+        if (encoding == null) return null;
+        final boolean gzip = "gzip".equals(encoding);
+        final Deflater deflater = gzip ? gzipDeflaters.get() : deflateDeflaters.get();
+        final CRC32 crc = gzip ? crcs.get() : null;
+        final byte[] input = inputBytes.get();
+        final byte[] output = outputBytes.get();
+        final HttpContext context = response.getContext();
+        final Supplier<ByteBuffer> supplier = context.getBufferSupplier();
+        final List<ByteBuffer> list = new ArrayList<>();
+        deflater.reset();
+        if (crc != null) crc.reset();
+        ByteBuffer current = supplier.get();
+        list.add(current);
+        if (gzip) current.put(GZIP_HEADER);
+        for (ByteBuffer buf : buffers) {
+            while (buf.hasRemaining()) {
+                int len = Math.min(input.length, buf.remaining());
+                buf.get(input, 0, len);
+                if (crc != null) crc.update(input, 0, len);
+                deflater.setInput(input, 0, len);
+                while (!deflater.needsInput()) {
+                    current = drain(deflater, output, current, list, supplier);
+                }
+            }
+            context.offerBuffer(buf);
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            current = drain(deflater, output, current, list, supplier);
+        }
+        if (crc != null) {
+            if (current.remaining() < 8) {
+                current = supplier.get();
+                list.add(current);
+            }
+            writeIntLE(current, (int) crc.getValue());
+            writeIntLE(current, (int) length);
+        }
+        for (ByteBuffer buf : list) {
+            buf.flip();
+        }
+        response.setHeader("Content-Encoding", encoding);
+        response.setHeader("Vary", "Accept-Encoding");
+        return list.toArray(new ByteBuffer[list.size()]);
+    }
+
+    /**
+     * 将内容压缩成gzip格式， 用于静态资源的预压缩
+     *
+     * @param bytes 内容
+     *
+     * @return gzip内容
+     */
+    public byte[] gzip(byte[] bytes) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 3));
+        final Deflater deflater = new Deflater(level, true);
+        try {
+            out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+            deflater.setInput(bytes);
+            deflater.finish();
+            final byte[] output = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(output, 0, deflater.deflate(output));
+            }
+        } finally {
+            deflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ByteBuffer trailer = ByteBuffer.allocate(8);
+        writeIntLE(trailer, (int) crc.getValue());
+        writeIntLE(trailer, bytes.length);
+        out.write(trailer.array(), 0, 8);
+        return out.toByteArray();
+    }
+
+    private static ByteBuffer drain(Deflater deflater, byte[] output, ByteBuffer current, List<ByteBuffer> list, Supplier<ByteBuffer> supplier) {
+        int count = deflater.deflate(output, 0, output.length);
+        int offset = 0;
+        while (offset < count) {
+            if (!current.hasRemaining()) {
+                current = supplier.get();
+                list.add(current);
+            }
+            int len = Math.min(current.remaining(), count - offset);
+            current.put(output, offset, len);
+            offset += len;
+        }
+        return current;
+    }
+
+    private static void writeIntLE(ByteBuffer buffer, int value) {
+        buffer.put((byte) value);
+        buffer.put((byte) (value >> 8));
+        buffer.put((byte) (value >> 16));
+        buffer.put((byte) (value >> 24));
+    }
+}
@@ -26,6 +26,12 @@ public class HttpContext extends Context {
 
     protected final SecureRandom random = new SecureRandom();
 
+    //响应内容压缩器， 没有配置<compress>节点时为null
+    protected HttpCompressHandler compressHandler;
+
+    //请求行与header的总长度上限， 与body的上限maxbody分开配置
+    protected int maxheader = 16 * 1024;
+
     public HttpContext(long serverStartTime, Logger logger, ExecutorService executor, int bufferCapacity, ObjectPool<ByteBuffer> bufferPool,
             ObjectPool<Response> responsePool, int maxbody, Charset charset, InetSocketAddress address, PrepareServlet prepare,
             WatchFactory watch, int readTimeoutSecond, int writeTimeoutSecond) {
@@ -53,4 +59,20 @@ public class HttpContext extends Context {
         return responsePool;
     }
 
+    protected HttpCompressHandler getCompressHandler() {
+        return compressHandler;
+    }
+
+    protected void setCompressHandler(HttpCompressHandler compressHandler) {
+        this.compressHandler = compressHandler;
+    }
+
+    protected int getMaxheader() {
+        return maxheader;
+    }
+
+    protected void setMaxheader(int maxheader) {
+        this.maxheader = maxheader;
+    }
+
 }
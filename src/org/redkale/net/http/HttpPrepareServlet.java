@@ -8,8 +8,6 @@ package org.redkale.net.http;
 import org.redkale.util.AnyValue.DefaultAnyValue;
 import java.io.*;
 import java.util.*;
-import java.util.AbstractMap.SimpleEntry;
-import java.util.function.*;
 import java.util.logging.*;
 import java.util.regex.*;
 import org.redkale.net.*;
@@ -27,7 +25,8 @@ public class HttpPrepareServlet extends PrepareServlet<String, HttpContext, Http
 
     protected final Logger logger = Logger.getLogger(this.getClass().getSimpleName());
 
-    protected SimpleEntry<Predicate<String>, HttpServlet>[] regArray = new SimpleEntry[0];
+    //以/开头的mapping: 精确、前缀(/*)、路径参数({name})形式的进入前缀树， 其他按正则表达式匹配， 优先级见HttpRouter
+    protected final HttpRouter<HttpServlet> router = new HttpRouter<>();
 
     protected HttpServlet resourceHttpServlet = new HttpResourceServlet();
 
@@ -80,15 +79,8 @@ public class HttpPrepareServlet extends PrepareServlet<String, HttpContext, Http
     public void execute(HttpRequest request, HttpResponse response) throws IOException {
         try {
             final String uri = request.getRequestURI();
-            Servlet<HttpContext, HttpRequest, HttpResponse> servlet = this.mappings.isEmpty() ? null : this.mappings.get(uri);
-            if (servlet == null && this.regArray != null) {
-                for (SimpleEntry<Predicate<String>, HttpServlet> en : regArray) {
-                    if (en.getKey().test(uri)) {
-                        servlet = en.getValue();
-                        break;
-                    }
-                }
-            }
+            Servlet<HttpContext, HttpRequest, HttpResponse> servlet = this.router.match(request);
+            if (servlet == null && !uri.isEmpty() && uri.charAt(0) != '/') servlet = this.mappings.get(uri); //非/开头的mapping
             if (servlet == null) servlet = this.resourceHttpServlet;
             servlet.execute(request, response);
         } catch (Exception e) {
@@ -112,20 +104,17 @@ public class HttpPrepareServlet extends PrepareServlet<String, HttpContext, Http
                 if (mapping == null) continue;
                 if (!prefix.toString().isEmpty()) mapping = prefix + mapping;
 
-                if (contains(mapping, '.', '*', '{', '[', '(', '|', '^', '$', '+', '?', '\\')) { //是否是正则表达式))
+                if (HttpRouter.isRoutable(mapping)) {
+                    this.router.put(mapping, servlet);
+                    if (!contains(mapping, '*', '{')) super.mappings.put(mapping, servlet);
+                } else if (contains(mapping, '.', '*', '{', '[', '(', '|', '^', '$', '+', '?', '\\')) { //是否是正则表达式))
                     if (mapping.charAt(0) != '^') mapping = '^' + mapping;
                     if (mapping.endsWith("/*")) {
                         mapping = mapping.substring(0, mapping.length() - 1) + ".*";
                     } else {
                         mapping = mapping + "$";
                     }
-                    if (regArray == null) {
-                        regArray = new SimpleEntry[1];
-                        regArray[0] = new SimpleEntry<>(Pattern.compile(mapping).asPredicate(), servlet);
-                    } else {
-                        regArray = Arrays.copyOf(regArray, regArray.length + 1);
-                        regArray[regArray.length - 1] = new SimpleEntry<>(Pattern.compile(mapping).asPredicate(), servlet);
-                    }
+                    this.router.putPattern(Pattern.compile(mapping).asPredicate(), servlet);
                 } else if (mapping != null && !mapping.isEmpty()) {
                     super.mappings.put(mapping, servlet);
                 }
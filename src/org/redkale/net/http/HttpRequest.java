@@ -10,9 +10,10 @@ import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 import org.redkale.convert.json.JsonConvert;
 import org.redkale.net.*;
-import org.redkale.util.AnyValue.DefaultAnyValue;
 import org.redkale.util.ByteArray;
 
 /**
@@ -34,6 +35,18 @@ public class HttpRequest extends Request<HttpContext> {
 
     protected static final String SESSIONID_NAME = "JSESSIONID";
 
+    private static final int READ_STATE_ROUTE = 1;
+
+    private static final int READ_STATE_HEADER = 2;
+
+    private static final int READ_STATE_BODY = 3;
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS", "PATCH"};
+
+    private static final String[] PROTOCOLS = {"HTTP/1.1", "HTTP/1.0"};
+
+    private static final String[] CONNECTIONS = {"keep-alive", "Keep-Alive", "Upgrade"};
+
     private String method;
 
     private String protocol;
@@ -54,16 +67,51 @@ public class HttpRequest extends Request<HttpContext> {
 
     protected String newsessionid;
 
-    protected final DefaultAnyValue header = new DefaultAnyValue();
+    protected final HttpValues header = new HttpValues(true);
 
-    protected final DefaultAnyValue params = new DefaultAnyValue();
+    protected final HttpValues params = new HttpValues(false);
 
     private final ByteArray array = new ByteArray();
 
+    //请求行与header的原始内容， 跨多次read保留， header字符串在使用时才生成
+    private final ByteArray headerBytes = new ByteArray();
+
+    //每个header占4个位置: name开始、name结束、value开始、value结束
+    private int[] headerIndexs = new int[64];
+
+    private int headerCount;
+
+    //Cookie可能存在多行， 每行占2个位置: value开始、value结束
+    private int[] cookieIndexs = new int[4];
+
+    private int cookieCount;
+
+    private int hostStart = -1;
+
+    private int hostEnd = -1;
+
+    private boolean headerParsed = false;
+
+    private int readState = READ_STATE_ROUTE;
+
+    //当前行在headerBytes中的开始位置
+    private int lineStart;
+
     private boolean bodyparsed = false;
 
     protected boolean boundary = false;
 
+    //请求带有Transfer-Encoding(如chunked)， body长度未知
+    private boolean chunked = false;
+
+    //HttpRouter匹配的路径参数名， 与pathIndexs一一对应
+    protected String[] pathNames;
+
+    //路径参数值在requestURI中的位置， 每两个int为一个参数的[start, end)
+    protected int[] pathIndexs = new int[8];
+
+    protected int pathCount;
+
     private final String remoteAddrHeader;
 
     public HttpRequest(HttpContext context, String remoteAddrHeader) {
@@ -89,77 +137,206 @@ public class HttpRequest extends Request<HttpContext> {
 
     @Override
     protected int readHeader(final ByteBuffer buffer) {
-        if (!readLine(buffer, array)) return -1;
-        Charset charset = this.context.getCharset();
-        int index = 0;
-        int offset = array.find(index, ' ');
-        if (offset <= 0) return -1;
-        this.method = array.toString(index, offset, charset).trim();
-        index = ++offset;
-        offset = array.find(index, ' ');
-        if (offset <= 0) return -1;
-        int off = array.find(index, '#');
-        if (off > 0) offset = off;
-        int qst = array.find(index, offset, (byte) '?');
-        if (qst > 0) {
-            this.requestURI = array.toDecodeString(index, qst - index, charset).trim();
-            addParameter(array, qst + 1, offset - qst - 1);
-        } else {
-            this.requestURI = array.toDecodeString(index, offset - index, charset).trim();
-        }
-        if (this.requestURI.contains("../")) return -1;
-        index = ++offset;
-        this.protocol = array.toString(index, array.size() - index, charset).trim();
-        while (readLine(buffer, array)) {
-            if (array.size() < 2) break;
-            index = 0;
-            offset = array.find(index, ':');
-            if (offset <= 0) return -1;
-            String name = array.toString(index, offset, charset).trim();
-            index = offset + 1;
-            String value = array.toString(index, array.size() - index, charset).trim();
-            switch (name) {
-                case "Content-Type":
-                    this.contentType = value;
-                    break;
-                case "Content-Length":
-                    this.contentLength = Long.decode(value);
-                    break;
-                case "Host":
-                    this.host = value;
-                    break;
-                case "Cookie":
-                    if (this.cookiestr == null || this.cookiestr.isEmpty()) {
-                        this.cookiestr = value;
-                    } else {
-                        this.cookiestr += ";" + value;
-                    }
-                    break;
-                case "Connection":
-                    this.connection = value;
-                    this.setKeepAlive(!"close".equalsIgnoreCase(value));
-                    break;
-                default:
-                    header.addValue(name, value);
+        final ByteArray bytes = this.headerBytes;
+        final int maxheader = context.getMaxheader();
+        while (this.readState != READ_STATE_BODY) {
+            if (!buffer.hasRemaining()) return -2; //header未读完整， 需继续读取
+            byte b = buffer.get();
+            if (b != '\n') {
+                bytes.write(b);
+                if (bytes.size() > maxheader) return -1;
+                continue;
             }
+            int end = bytes.size();
+            if (end > this.lineStart && bytes.get(end - 1) == '\r') end--;
+            final int rs = this.readState == READ_STATE_ROUTE ? readMethodLine(bytes, this.lineStart, end) : readHeaderLine(bytes, this.lineStart, end);
+            if (rs < 0) return rs;
+            this.lineStart = bytes.size();
         }
-        array.clear();
-        if (buffer.hasRemaining()) array.write(buffer, buffer.remaining());
         if (this.contentType != null && this.contentType.contains("boundary=")) {
             this.boundary = true;
         }
         if (this.boundary) this.keepAlive = false; //文件上传必须设置keepAlive为false，因为文件过大时用户不一定会skip掉多余的数据
-        if (this.contentLength > 0 && (this.contentType == null || !this.boundary)) {
+        //chunked等长度未知的body无法确定下一个请求的开始位置， 不能继续keep-alive和pipelining
+        if (this.chunked && this.contentLength < 0) this.keepAlive = false;
+        if (this.contentLength > 0 && !this.boundary) {
             if (this.contentLength > context.getMaxbody()) return -1;
+            array.write(buffer, (int) Math.min(buffer.remaining(), this.contentLength));
             int lr = (int) this.contentLength - array.size();
             return lr > 0 ? lr : 0;
         }
+        //keep-alive连接中buffer剩余的数据属于下一个请求(pipelining)
+        if (this.boundary || (this.contentLength < 0 && !this.keepAlive)) {
+            if (buffer.hasRemaining()) array.write(buffer, buffer.remaining());
+        }
+        return 0;
+    }
+
+    //解析请求行 [start, end): METHOD URI PROTOCOL
+    private int readMethodLine(final ByteArray bytes, final int start, final int end) {
+        Charset charset = this.context.getCharset();
+        int offset = bytes.find(start, end, (byte) ' ');
+        if (offset <= start) return -1;
+        this.method = bytesToString(bytes, start, offset, METHODS, charset);
+        int index = offset + 1;
+        offset = bytes.find(index, end, (byte) ' ');
+        if (offset <= index) return -1;
+        final int protocolStart = offset + 1;
+        int off = bytes.find(index, offset, (byte) '#');
+        if (off > 0) offset = off;
+        int qst = bytes.find(index, offset, (byte) '?');
+        if (qst > 0) {
+            this.requestURI = bytes.toDecodeString(index, qst - index, charset).trim();
+            addParameter(bytes, qst + 1, offset - qst - 1);
+        } else {
+            this.requestURI = bytes.toDecodeString(index, offset - index, charset).trim();
+        }
+        if (this.requestURI.contains("../")) return -1;
+        this.protocol = bytesToString(bytes, trimStart(bytes, protocolStart, end), trimEnd(bytes, protocolStart, end), PROTOCOLS, charset);
+        this.readState = READ_STATE_HEADER;
+        return 0;
+    }
+
+    //解析单个header行 [start, end), 只有Content-Type、Content-Length、Connection需要即时解析， 其他header只记录位置，在getHeader时才生成字符串
+    private int readHeaderLine(final ByteArray bytes, final int start, final int end) {
+        if (end <= start) { //空行表示header结束
+            this.readState = READ_STATE_BODY;
+            return 0;
+        }
+        final int colon = bytes.find(start, end, (byte) ':');
+        if (colon <= start) return -1;
+        final int nameStart = trimStart(bytes, start, colon);
+        final int nameEnd = trimEnd(bytes, start, colon);
+        final int valueStart = trimStart(bytes, colon + 1, end);
+        final int valueEnd = trimEnd(bytes, colon + 1, end);
+        if (equalsIgnoreCase(bytes, nameStart, nameEnd, "Content-Type")) {
+            this.contentType = bytes.toString(valueStart, valueEnd - valueStart, this.context.getCharset());
+        } else if (equalsIgnoreCase(bytes, nameStart, nameEnd, "Content-Length")) {
+            if (valueEnd <= valueStart) return -1;
+            long len = 0;
+            for (int i = valueStart; i < valueEnd; i++) {
+                byte b = bytes.get(i);
+                if (b < '0' || b > '9') return -1;
+                len = len * 10 + (b - '0');
+            }
+            this.contentLength = len;
+        } else if (equalsIgnoreCase(bytes, nameStart, nameEnd, "Connection")) {
+            final boolean close = equalsIgnoreCase(bytes, valueStart, valueEnd, "close");
+            this.connection = close ? "close" : bytesToString(bytes, valueStart, valueEnd, CONNECTIONS, this.context.getCharset());
+            this.setKeepAlive(!close);
+        } else if (equalsIgnoreCase(bytes, nameStart, nameEnd, "Host")) {
+            this.hostStart = valueStart;
+            this.hostEnd = valueEnd;
+        } else if (equalsIgnoreCase(bytes, nameStart, nameEnd, "Cookie")) {
+            int pos = this.cookieCount * 2;
+            if (pos >= this.cookieIndexs.length) this.cookieIndexs = Arrays.copyOf(this.cookieIndexs, this.cookieIndexs.length * 2);
+            this.cookieIndexs[pos] = valueStart;
+            this.cookieIndexs[pos + 1] = valueEnd;
+            this.cookieCount++;
+        } else {
+            if (equalsIgnoreCase(bytes, nameStart, nameEnd, "Transfer-Encoding")) {
+                this.chunked = !equalsIgnoreCase(bytes, valueStart, valueEnd, "identity");
+            }
+            int pos = this.headerCount * 4;
+            if (pos >= this.headerIndexs.length) this.headerIndexs = Arrays.copyOf(this.headerIndexs, this.headerIndexs.length * 2);
+            this.headerIndexs[pos] = nameStart;
+            this.headerIndexs[pos + 1] = nameEnd;
+            this.headerIndexs[pos + 2] = valueStart;
+            this.headerIndexs[pos + 3] = valueEnd;
+            this.headerCount++;
+        }
         return 0;
     }
 
+    private static int trimStart(final ByteArray bytes, int start, final int end) {
+        while (start < end && bytes.get(start) <= ' ') start++;
+        return start;
+    }
+
+    private static int trimEnd(final ByteArray bytes, final int start, int end) {
+        while (end > start && bytes.get(end - 1) <= ' ') end--;
+        return end;
+    }
+
+    private static boolean equalsIgnoreCase(final ByteArray bytes, final int start, final int end, final String value) {
+        if (end - start != value.length()) return false;
+        for (int i = start; i < end; i++) {
+            int ch = bytes.get(i);
+            int ch2 = value.charAt(i - start);
+            if (ch == ch2) continue;
+            if (ch >= 'A' && ch <= 'Z') ch += 32;
+            if (ch2 >= 'A' && ch2 <= 'Z') ch2 += 32;
+            if (ch != ch2) return false;
+        }
+        return true;
+    }
+
+    private static boolean equals(final ByteArray bytes, final int start, final int end, final String value) {
+        if (end - start != value.length()) return false;
+        for (int i = start; i < end; i++) {
+            if (bytes.get(i) != value.charAt(i - start)) return false;
+        }
+        return true;
+    }
+
+    //优先返回常量字符串， 避免创建新的String
+    private static String bytesToString(final ByteArray bytes, final int start, final int end, final String[] constants, final Charset charset) {
+        for (String constant : constants) {
+            if (equals(bytes, start, end, constant)) return constant;
+        }
+        return bytes.toString(start, end - start, charset);
+    }
+
+    //查找未解析的header值， 没有返回null
+    private String findRawHeader(final String name) {
+        final int[] indexs = this.headerIndexs;
+        for (int i = 0; i < this.headerCount; i++) {
+            int pos = i * 4;
+            if (equalsIgnoreCase(headerBytes, indexs[pos], indexs[pos + 1], name)) {
+                return headerBytes.toString(indexs[pos + 2], indexs[pos + 3] - indexs[pos + 2], this.context.getCharset());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 将未解析的header内容转换到header对象中并返回， Host与Cookie单独存放不放入header中
+     *
+     * @return header对象
+     */
+    protected HttpValues parsedHeader() {
+        if (this.headerParsed) return this.header;
+        this.headerParsed = true;
+        final Charset charset = this.context.getCharset();
+        final int[] indexs = this.headerIndexs;
+        for (int i = 0; i < this.headerCount; i++) {
+            int pos = i * 4;
+            header.addValue(headerBytes, indexs[pos], indexs[pos + 1], headerBytes.toString(indexs[pos + 2], indexs[pos + 3] - indexs[pos + 2], charset), charset);
+        }
+        return this.header;
+    }
+
+    private String getCookiestr() {
+        if (this.cookiestr == null && this.cookieCount > 0) {
+            final Charset charset = this.context.getCharset();
+            String str = null;
+            for (int i = 0; i < this.cookieCount; i++) {
+                int pos = i * 2;
+                String value = headerBytes.toString(cookieIndexs[pos], cookieIndexs[pos + 1] - cookieIndexs[pos], charset);
+                if (str == null || str.isEmpty()) {
+                    str = value;
+                } else {
+                    str += ";" + value;
+                }
+            }
+            this.cookiestr = str;
+        }
+        return this.cookiestr;
+    }
+
     @Override
     protected int readBody(ByteBuffer buffer) {
-        int len = buffer.remaining();
+        int len = (int) Math.min(buffer.remaining(), this.contentLength - array.size());
         array.write(buffer, len);
         return len;
     }
@@ -198,22 +375,6 @@ public class HttpRequest extends Request<HttpContext> {
         }
     }
 
-    private boolean readLine(ByteBuffer buffer, ByteArray bytes) {
-        byte lasted = '\r';
-        bytes.clear();
-        for (;;) {
-            if (!buffer.hasRemaining()) {
-                if (lasted != '\r') bytes.write(lasted);
-                return false;
-            }
-            byte b = buffer.get();
-            if (b == -1 || (lasted == '\r' && b == '\n')) break;
-            if (lasted != '\r') bytes.write(lasted);
-            lasted = b;
-        }
-        return true;
-    }
-
     @Override
     protected <T> T setProperty(String name, T value) {
         return super.setProperty(name, value);
@@ -289,10 +450,10 @@ public class HttpRequest extends Request<HttpContext> {
     public String toString() {
         parseBody();
         return this.getClass().getSimpleName() + "{\r\n    method: " + this.method + ", \r\n    requestURI: " + this.requestURI
-            + ", \r\n    remoteAddr: " + this.getRemoteAddr() + ", \r\n    cookies: " + this.cookiestr + ", \r\n    contentType: " + this.contentType
-            + ", \r\n    connection: " + this.connection + ", \r\n    protocol: " + this.protocol + ", \r\n    host: " + this.host
+            + ", \r\n    remoteAddr: " + this.getRemoteAddr() + ", \r\n    cookies: " + this.getCookiestr() + ", \r\n    contentType: " + this.contentType
+            + ", \r\n    connection: " + this.connection + ", \r\n    protocol: " + this.protocol + ", \r\n    host: " + this.getHost()
             + ", \r\n    contentLength: " + this.contentLength + ", \r\n    bodyLength: " + this.array.size() + (this.boundary || this.array.isEmpty() ? "" : (", \r\n    bodyContent: " + this.getBodyUTF8()))
-            + ", \r\n    params: " + this.params.toString(4) + ", \r\n    header: " + this.header.toString(4) + "\r\n}";
+            + ", \r\n    params: " + this.params.toString(4) + ", \r\n    header: " + this.parsedHeader().toString(4) + "\r\n}";
     }
 
     /**
@@ -321,6 +482,28 @@ public class HttpRequest extends Request<HttpContext> {
         return getMultiContext().parts();
     }
 
+    /**
+     * 获取非阻塞的文件上传解析器
+     *
+     * @return 文件上传解析器
+     */
+    public final AsyncMultiContext getAsyncMultiContext() {
+        return new AsyncMultiContext(context, this.getContentType(), this.params, this.channel, this.array);
+    }
+
+    /**
+     * 非阻塞地解析文件上传内容， 普通表单字段放入参数中， 文件内容交给handler， 解析过程不占用工作线程 <br>
+     * 须在返回的CompletableFuture完成后再输出response
+     *
+     * @param maxPartSize 每个part的最大字节数， 小于1表示不限制
+     * @param handler     文件内容的接收器
+     *
+     * @return 解析完成的CompletableFuture
+     */
+    public final CompletableFuture<Void> multiParts(long maxPartSize, MultiPartHandler handler) {
+        return getAsyncMultiContext().parts(maxPartSize, handler);
+    }
+
     @Override
     protected void recycle() {
         this.cookiestr = null;
@@ -334,7 +517,19 @@ public class HttpRequest extends Request<HttpContext> {
         this.connection = null;
         this.contentLength = -1;
         this.boundary = false;
+        this.chunked = false;
         this.bodyparsed = false;
+        this.pathNames = null;
+        this.pathCount = 0;
+
+        this.headerBytes.clear();
+        this.headerCount = 0;
+        this.cookieCount = 0;
+        this.hostStart = -1;
+        this.hostEnd = -1;
+        this.headerParsed = false;
+        this.readState = READ_STATE_ROUTE;
+        this.lineStart = 0;
 
         this.header.clear();
         this.params.clear();
@@ -381,7 +576,7 @@ public class HttpRequest extends Request<HttpContext> {
      * @return cookie对象数组
      */
     public HttpCookie[] getCookies() {
-        if (this.cookies == null) this.cookies = parseCookies(this.cookiestr);
+        if (this.cookies == null) this.cookies = parseCookies(getCookiestr());
         return this.cookies;
     }
 
@@ -478,6 +673,7 @@ public class HttpRequest extends Request<HttpContext> {
      * @return Host
      */
     public String getHost() {
+        if (this.host == null && this.hostStart >= 0) this.host = headerBytes.toString(hostStart, hostEnd - hostStart, this.context.getCharset());
         return host;
     }
 
@@ -490,6 +686,60 @@ public class HttpRequest extends Request<HttpContext> {
         return requestURI;
     }
 
+    /**
+     * 获取URL中的路径参数值， 只有mapping含路径参数时才有值  <br>
+     * 例如mapping为 /user/{userid}/info , 请求URL为 /user/1234/info  <br>
+     * 获取userid参数: String userid = request.getPathVariable("userid");
+     *
+     * @param name 参数名
+     *
+     * @return 参数值， 没有返回null
+     */
+    public String getPathVariable(String name) {
+        return getPathVariable(name, null);
+    }
+
+    /**
+     * 获取URL中的路径参数值， 只有mapping含路径参数时才有值
+     *
+     * @param name     参数名
+     * @param defvalue 默认值
+     *
+     * @return 参数值
+     */
+    public String getPathVariable(String name, String defvalue) {
+        for (int i = 0; i < pathCount; i++) {
+            if (pathNames[i].equals(name)) return requestURI.substring(pathIndexs[i * 2], pathIndexs[i * 2 + 1]);
+        }
+        return defvalue;
+    }
+
+    /**
+     * 获取URL中的路径参数int值， 只有mapping含路径参数时才有值
+     *
+     * @param name     参数名
+     * @param defvalue 默认int值
+     *
+     * @return 参数值
+     */
+    public int getPathVariable(String name, int defvalue) {
+        String val = getPathVariable(name, null);
+        return val == null ? defvalue : Integer.parseInt(val);
+    }
+
+    /**
+     * 获取URL中的路径参数long值， 只有mapping含路径参数时才有值
+     *
+     * @param name     参数名
+     * @param defvalue 默认long值
+     *
+     * @return 参数值
+     */
+    public long getPathVariable(String name, long defvalue) {
+        String val = getPathVariable(name, null);
+        return val == null ? defvalue : Long.parseLong(val);
+    }
+
     /**
      * 截取getRequestURI最后的一个/后面的部分
      *
@@ -527,9 +777,9 @@ public class HttpRequest extends Request<HttpContext> {
         if (requestURI == null || prefix == null || prefix.isEmpty()) return defvalue;
         int pos = requestURI.indexOf(prefix);
         if (pos < 0) return defvalue;
-        String sub = requestURI.substring(pos + prefix.length());
-        pos = sub.indexOf('/');
-        return pos < 0 ? sub : sub.substring(0, pos);
+        pos += prefix.length();
+        int end = requestURI.indexOf('/', pos);
+        return requestURI.substring(pos, end < 0 ? requestURI.length() : end);
     }
 
     /**
@@ -664,7 +914,7 @@ public class HttpRequest extends Request<HttpContext> {
      * @return header名数组
      */
     public String[] getHeaderNames() {
-        return header.getNames();
+        return parsedHeader().getNames();
     }
 
     /**
@@ -675,7 +925,7 @@ public class HttpRequest extends Request<HttpContext> {
      * @return header值
      */
     public String getHeader(String name) {
-        return header.getValue(name);
+        return getHeader(name, null);
     }
 
     /**
@@ -687,6 +937,10 @@ public class HttpRequest extends Request<HttpContext> {
      * @return header值
      */
     public String getHeader(String name, String defaultValue) {
+        if (!this.headerParsed) {
+            String value = findRawHeader(name);
+            return value == null ? defaultValue : value;
+        }
         return header.getValue(name, defaultValue);
     }
 
@@ -728,7 +982,7 @@ public class HttpRequest extends Request<HttpContext> {
      * @return header值
      */
     public boolean getBooleanHeader(String name, boolean defaultValue) {
-        return header.getBoolValue(name, defaultValue);
+        return parsedHeader().getBoolValue(name, defaultValue);
     }
 
     /**
@@ -740,7 +994,7 @@ public class HttpRequest extends Request<HttpContext> {
      * @return header值
      */
     public short getShortHeader(String name, short defaultValue) {
-        return header.getShortValue(name, defaultValue);
+        return parsedHeader().getShortValue(name, defaultValue);
     }
 
     /**
@@ -753,7 +1007,7 @@ public class HttpRequest extends Request<HttpContext> {
      * @return header值
      */
     public short getShortHeader(int radix, String name, short defaultValue) {
-        return header.getShortValue(name, defaultValue);
+        return parsedHeader().getShortValue(name, defaultValue);
     }
 
     /**
@@ -765,7 +1019,7 @@ public class HttpRequest extends Request<HttpContext> {
      * @return header值
      */
     public short getShortHeader(String name, int defaultValue) {
-        return header.getShortValue(name, (short) defaultValue);
+        return parsedHeader().getShortValue(name, (short) defaultValue);
     }
 
     /**
@@ -778,7 +1032,7 @@ public class HttpRequest extends Request<HttpContext> {
      * @return header值
      */
     public short getShortHeader(int radix, String name, int defaultValue) {
-        return header.getShortValue(radix, name, (short) defaultValue);
+        return parsedHeader().getShortValue(radix, name, (short) defaultValue);
     }
 
     /**
@@ -790,7 +1044,7 @@ public class HttpRequest extends Request<HttpContext> {
      * @return header值
      */
     public int getIntHeader(String name, int defaultValue) {
-        return header.getIntValue(name, defaultValue);
+        return parsedHeader().getIntValue(name, defaultValue);
     }
 
     /**
@@ -803,7 +1057,7 @@ public class HttpRequest extends Request<HttpContext> {
      * @return header值
      */
     public int getIntHeader(int radix, String name, int defaultValue) {
-        return header.getIntValue(radix, name, defaultValue);
+        return parsedHeader().getIntValue(radix, name, defaultValue);
     }
 
     /**
@@ -815,7 +1069,7 @@ public class HttpRequest extends Request<HttpContext> {
      * @return header值
      */
     public long getLongHeader(String name, long defaultValue) {
-        return header.getLongValue(name, defaultValue);
+        return parsedHeader().getLongValue(name, defaultValue);
     }
 
     /**
@@ -828,7 +1082,7 @@ public class HttpRequest extends Request<HttpContext> {
      * @return header值
      */
     public long getLongHeader(int radix, String name, long defaultValue) {
-        return header.getLongValue(radix, name, defaultValue);
+        return parsedHeader().getLongValue(radix, name, defaultValue);
     }
 
     /**
@@ -840,7 +1094,7 @@ public class HttpRequest extends Request<HttpContext> {
      * @return header值
      */
     public float getFloatHeader(String name, float defaultValue) {
-        return header.getFloatValue(name, defaultValue);
+        return parsedHeader().getFloatValue(name, defaultValue);
     }
 
     /**
@@ -852,7 +1106,7 @@ public class HttpRequest extends Request<HttpContext> {
      * @return header值
      */
     public double getDoubleHeader(String name, double defaultValue) {
-        return header.getDoubleValue(name, defaultValue);
+        return parsedHeader().getDoubleValue(name, defaultValue);
     }
 
     //------------------------------------------------------------------------------
@@ -12,12 +12,16 @@ import java.nio.file.*;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.atomic.*;
 import java.util.logging.*;
 import java.util.regex.*;
 import org.redkale.util.AnyValue;
+import org.redkale.watch.WatchFactory;
 
 /**
+ * 静态资源Servlet <br>
+ * 文件的长度、修改时间、ETag、Content-Type缓存在FileEntry中， 不需要每次请求都访问文件系统；
+ * 不超过cache.lengthmax的文件内容缓存在内存中， 总大小超过cache.limit时按最近访问时间淘汰(LRU)。
  *
  * <p>
  * 详情见: https://redkale.org
@@ -57,8 +61,13 @@ public class HttpResourceServlet extends HttpServlet {
                             Path path = parent.resolve((Path) event.context());
                             final String uri = path.toString().substring(rootstr.length()).replace('\\', '/');
                             //logger.log(Level.FINEST, "file(" + uri + ") happen " + event.kind() + " event");
+                            if (uri.endsWith(".gz")) { //预压缩文件变化时需要刷新原文件的缓存
+                                FileEntry en = files.get(uri.substring(0, uri.length() - 3));
+                                if (en != null) en.update();
+                            }
                             if (event.kind() == ENTRY_DELETE) {
-                                files.remove(uri);
+                                FileEntry en = files.remove(uri);
+                                if (en != null) en.release();
                             } else if (event.kind() == ENTRY_MODIFY) {
                                 FileEntry en = files.get(uri);
                                 if (en != null && en.file != null) {
@@ -95,6 +104,21 @@ public class HttpResourceServlet extends HttpServlet {
     //是否监控缓存文件的变化， 默认不监控
     protected boolean watch = false;
 
+    //不监控文件变化时重新检查文件长度和修改时间的间隔毫秒数， 默认2秒
+    protected long statinterval = 2000L;
+
+    //内存缓存命中次数
+    protected AtomicLong cacheHitCounter = new AtomicLong();
+
+    //内存缓存未命中(从文件输出)次数
+    protected AtomicLong cacheMissCounter = new AtomicLong();
+
+    //缓存内容被淘汰的次数
+    protected AtomicLong cacheEvictCounter = new AtomicLong();
+
+    //淘汰缓存内容时的锁
+    protected final Object evictLock = new Object();
+
     protected File root = new File("./root/");
 
     protected String indexHtml = "index.html";
@@ -107,8 +131,12 @@ public class HttpResourceServlet extends HttpServlet {
 
     protected WatchThread watchThread;
 
+    //响应内容压缩器， 为null表示不提供gzip格式的静态资源
+    protected HttpCompressHandler compressHandler;
+
     @Override
     public void init(HttpContext context, AnyValue config) {
+        this.compressHandler = context.getCompressHandler();
         if (config != null) {
             String rootstr = config.getValue("webroot", "root");
             this.indexHtml = config.getValue("index", "index.html");
@@ -125,6 +153,7 @@ public class HttpResourceServlet extends HttpServlet {
                 this.cachelimit = parseLenth(cacheconf.getValue("limit"), 0 * 1024 * 1024L);
                 this.cachelengthmax = parseLenth(cacheconf.getValue("lengthmax"), 1 * 1024 * 1024L);
                 this.watch = cacheconf.getBoolValue("watch", false);
+                this.statinterval = cacheconf.getLongValue("statinterval", 2000L);
             }
             List<SimpleEntry<Pattern, String>> locations = new ArrayList<>();
             for (AnyValue av : config.getAnyValues("rewrite")) {
@@ -138,6 +167,14 @@ public class HttpResourceServlet extends HttpServlet {
             }
             this.locationRewrites = locations.isEmpty() ? null : locations.toArray(new SimpleEntry[locations.size()]);
         }
+        final WatchFactory wf = context.getWatchFactory();
+        if (wf != null) {
+            final String prefix = "HTTP_" + (context.getServerAddress() == null ? 0 : context.getServerAddress().getPort()) + ".Resource.";
+            this.cacheHitCounter = wf.createWatchNumber(prefix + "cacheHitCounter", "静态资源内存缓存命中次数");
+            this.cacheMissCounter = wf.createWatchNumber(prefix + "cacheMissCounter", "静态资源内存缓存未命中次数");
+            this.cacheEvictCounter = wf.createWatchNumber(prefix + "cacheEvictCounter", "静态资源内存缓存淘汰次数");
+            wf.register(prefix + "cachedLength", "静态资源内存缓存的字节数", () -> cachedLength.longValue());
+        }
         if (this.cachelimit < 1) return;  //不缓存不需要开启WatchThread监听
         if (this.root != null && this.watch) {
             try {
@@ -189,19 +226,97 @@ public class HttpResourceServlet extends HttpServlet {
             uri = this.indexHtml.indexOf('/') == 0 ? this.indexHtml : ("/" + this.indexHtml);
         }
         //System.out.println(request);
-        FileEntry entry;
-        if (watchThread == null && files.isEmpty()) {
-            entry = createFileEntry(uri);
-        } else {  //有缓存
-            entry = files.computeIfAbsent(uri, x -> createFileEntry(x));
-        }
+        final FileEntry entry = findFileEntry(uri);
         if (entry == null) {
             if (finest) logger.log(Level.FINEST, "Not found resource (404), request = " + request);
             response.finish404();
         } else {
+            //只读取一次各个快照， 内存中的内容使用其自身的长度与ETag， 不与文件信息混用
+            final FileStat stat = entry.stat;
+            final CachedContent content = entry.content;
+            final CachedContent gzipContent = entry.gzipContent;
+            final File gzipFile = stat.gzipFile;
+            if ((gzipContent != null || gzipFile != null) && request.getHeader("Range") == null
+                && "gzip".equals(HttpCompressHandler.acceptEncoding(request))) {
+                if (gzipContent != null) {
+                    response.finishFile(entry.filename, gzipFile == null ? entry.file : gzipFile, gzipContent.buffer, "gzip", gzipContent.length(), gzipContent.etag, entry.contentType);
+                } else {
+                    response.finishFile(entry.filename, gzipFile, null, "gzip", stat.gzipFileLength, stat.gzipFileEtag, entry.contentType);
+                }
+                return;
+            }
+            if (gzipContent != null || gzipFile != null) response.setHeader("Vary", "Accept-Encoding");
             //file = null 表示资源内容在内存而不是在File中
             //file = null 时必须传 filename
-            response.finishFile(entry.file == null ? entry.filename : null, entry.file, entry.content);
+            if (content != null) {
+                response.finishFile(entry.file == null ? entry.filename : null, entry.file, content.buffer, null, content.length(), content.etag, entry.contentType);
+            } else {
+                response.finishFile(null, entry.file, null, null, stat.length, stat.etag, entry.contentType);
+            }
+        }
+    }
+
+    /**
+     * 获取uri对应的FileEntry并记录访问时间， 内容未缓存(被淘汰过或之前缓存已满)且可缓存时重新载入
+     *
+     * @param uri 请求的uri
+     *
+     * @return 文件不存在返回null
+     */
+    protected FileEntry findFileEntry(String uri) {
+        FileEntry entry = files.get(uri);
+        if (entry == null) { //读文件、gzip压缩和淘汰缓存都在map外进行， 载入完成后才放入map
+            final FileEntry en = createFileEntry(uri);
+            if (en == null) return null;
+            entry = files.putIfAbsent(uri, en);
+            if (entry == null) {
+                entry = en;
+            } else {
+                en.release(); //并发创建时保留先放入的， 归还自己预留的缓存空间
+            }
+        }
+        if (!entry.validate()) { //文件已被删除
+            if (files.remove(uri, entry)) entry.release();
+            return null;
+        }
+        final boolean hit = entry.content != null && entry.lastAccess != 0; //第一次访问时的内容是创建时载入的
+        entry.lastAccess = System.nanoTime();
+        if (entry.file == null) return entry;
+        if (!hit && entry.content == null && this.cachelimit > 0) entry.load();
+        (hit ? cacheHitCounter : cacheMissCounter).incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * 为即将缓存的内容预留空间， 预留成功时length已计入cachedLength， 调用方放弃缓存时须自行减去。 <br>
+     * 总大小超过cachelimit时按最近访问时间淘汰其他文件的缓存内容， 一次淘汰到cachelimit的90%以下， 避免每次载入新文件都要排序。
+     *
+     * @param entry  即将缓存内容的FileEntry
+     * @param length 即将缓存的字节数
+     *
+     * @return 是否预留成功
+     */
+    protected boolean reserveCache(FileEntry entry, long length) {
+        if (length > this.cachelimit) return false;
+        synchronized (evictLock) { //检查与计入在同一个锁内， 并发载入不会超过cachelimit
+            if (this.cachedLength.longValue() + length <= this.cachelimit) {
+                this.cachedLength.add(length);
+                return true;
+            }
+            final long target = this.cachelimit - this.cachelimit / 10 - length;
+            final List<FileEntry> list = new ArrayList<>();
+            for (FileEntry en : files.values()) {
+                //file = null的资源没有文件可以重新载入， 不能淘汰
+                if (en != entry && en.file != null && en.getCachedLength() > 0) list.add(en);
+            }
+            list.sort((a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+            for (FileEntry en : list) {
+                if (this.cachedLength.longValue() <= target) break;
+                if (en.release()) cacheEvictCounter.incrementAndGet();
+            }
+            if (this.cachedLength.longValue() + length > this.cachelimit) return false;
+            this.cachedLength.add(length);
+            return true;
         }
     }
 
@@ -230,12 +345,25 @@ public class HttpResourceServlet extends HttpServlet {
 
         protected final HttpResourceServlet servlet;
 
-        protected ByteBuffer content;
+        protected final String contentType;
+
+        protected volatile FileStat stat; //文件的长度、修改时间、ETag等信息
+
+        protected volatile CachedContent content; //缓存的文件内容
+
+        protected volatile CachedContent gzipContent; //gzip压缩后的内容
+
+        protected volatile long lastAccess; //最近访问时间， 用于LRU淘汰
+
+        protected volatile long lastChecked; //最近检查文件的时间
+
+        private volatile boolean loading;
 
         public FileEntry(final HttpResourceServlet servlet, File file) {
             this.servlet = servlet;
             this.file = file;
             this.filename = file.getName();
+            this.contentType = mimeType(this.filename);
             update();
         }
 
@@ -243,8 +371,8 @@ public class HttpResourceServlet extends HttpServlet {
             this.servlet = servlet;
             this.file = null;
             this.filename = filename;
-            this.content = content.asReadOnlyBuffer();
-            this.servlet.cachedLength.add(this.content.remaining());
+            this.contentType = mimeType(this.filename);
+            setContent(content);
         }
 
         public FileEntry(final HttpResourceServlet servlet, String filename, InputStream in) throws IOException {
@@ -262,48 +390,215 @@ public class HttpResourceServlet extends HttpServlet {
             this.servlet = servlet;
             this.file = null;
             this.filename = filename;
-            this.content = buf.asReadOnlyBuffer();
-            this.servlet.cachedLength.add(this.content.remaining());
+            this.contentType = mimeType(this.filename);
+            setContent(buf);
         }
 
+        //file = null 的资源内容常驻内存
+        private void setContent(ByteBuffer buf) {
+            final long length = buf.remaining();
+            this.stat = new FileStat(0L, length, "0-" + length, null);
+            this.content = new CachedContent(buf.asReadOnlyBuffer(), this.stat.etag);
+            this.servlet.cachedLength.add(length);
+        }
+
+        protected static String mimeType(String filename) {
+            String type = MimeType.getByFilename(filename);
+            return type == null ? "application/octet-stream" : type;
+        }
+
+        /**
+         * 检查文件是否还存在， 开启了WatchThread时由其负责刷新； 否则每隔statinterval毫秒检查一次文件的长度和修改时间， 有变化则刷新
+         *
+         * @return 文件不存在返回false
+         */
+        public boolean validate() {
+            if (this.file == null || this.servlet.watchThread != null) return true;
+            final long now = System.currentTimeMillis();
+            if (now - this.lastChecked < this.servlet.statinterval) return true;
+            this.lastChecked = now;
+            if (!this.file.isFile() || !this.file.canRead()) return false;
+            final FileStat st = this.stat;
+            if (this.file.lastModified() != st.lastModified || this.file.length() != st.length) update();
+            return true;
+        }
+
+        //重新读取文件信息， 丢弃已缓存的内容并按需重新载入
         public void update() {
             if (this.file == null) return;
-            if (this.content != null) { 
-                this.servlet.cachedLength.add(0L - this.content.remaining());
+            synchronized (this) {
+                release();
+                this.stat = new FileStat(this.file, this.servlet.compressHandler != null);
+                this.lastChecked = System.currentTimeMillis();
+            }
+            load();
+        }
+
+        /**
+         * 丢弃已缓存的内容
+         *
+         * @return 是否有缓存的内容
+         */
+        public synchronized boolean release() {
+            boolean cached = false;
+            if (this.content != null) {
+                this.servlet.cachedLength.add(0L - this.content.length());
                 this.content = null;
+                cached = true;
+            }
+            if (this.gzipContent != null) {
+                this.servlet.cachedLength.add(0L - this.gzipContent.length());
+                this.gzipContent = null;
+                cached = true;
+            }
+            return cached;
+        }
+
+        //将文件内容载入内存， 空间不足时淘汰最久未访问的其他文件
+        //淘汰时会锁住其他FileEntry， 所以载入过程不能持有自身的锁
+        public void load() {
+            if (this.file == null || this.content != null) return;
+            final FileStat st = this.stat;
+            if (st.length > this.servlet.cachelengthmax) return;
+            synchronized (this) {
+                if (this.loading || this.content != null) return;
+                this.loading = true;
             }
-            long length = this.file.length();
-            if (length > this.servlet.cachelengthmax) return;
-            if (this.servlet.cachedLength.longValue() + length > this.servlet.cachelimit) return; //超过缓存总容量
             try {
-                FileInputStream in = new FileInputStream(file);
-                ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
-                byte[] bytes = new byte[10240];
-                int pos;
-                while ((pos = in.read(bytes)) != -1) {
-                    out.write(bytes, 0, pos);
-                }
-                in.close();
-                byte[] bs = out.toByteArray();
-                ByteBuffer buf = ByteBuffer.allocateDirect(bs.length);
-                buf.put(bs);
-                buf.flip();
-                this.content = buf.asReadOnlyBuffer();
-                this.servlet.cachedLength.add(this.content.remaining());
+                loadContent(st);
+            } finally {
+                this.loading = false;
+            }
+        }
+
+        //先按文件信息中的长度预留缓存空间再读取， 读取期间文件发生变化或FileEntry已被update则放弃缓存
+        private void loadContent(final FileStat st) {
+            final long length = st.length;
+            if (!this.servlet.reserveCache(this, length)) return; //超过缓存总容量
+            final HttpCompressHandler compressor = this.servlet.compressHandler;
+            byte[] bs;
+            try {
+                bs = Files.readAllBytes(this.file.toPath());
             } catch (Exception e) {
+                this.servlet.cachedLength.add(0L - length);
                 this.servlet.logger.log(Level.INFO, HttpResourceServlet.class.getSimpleName() + " update FileEntry(" + file + ") erroneous", e);
+                return;
+            }
+            if (bs.length != length || this.file.lastModified() != st.lastModified) { //读取期间文件被修改
+                this.servlet.cachedLength.add(0L - length);
+                return;
+            }
+            ByteBuffer buf = ByteBuffer.allocateDirect(bs.length);
+            buf.put(bs);
+            buf.flip();
+            synchronized (this) {
+                if (this.stat != st || this.content != null) {
+                    this.servlet.cachedLength.add(0L - length);
+                    return;
+                }
+                this.content = new CachedContent(buf.asReadOnlyBuffer(), st.etag);
+            }
+            if (compressor == null) return;
+            try {
+                byte[] gzbs = null;
+                String gzetag = null;
+                if (st.gzipFile != null) {
+                    if (st.gzipFileLength <= length) {
+                        gzbs = Files.readAllBytes(st.gzipFile.toPath());
+                        gzetag = st.gzipFileEtag;
+                        if (gzbs.length != st.gzipFileLength) gzbs = null; //.gz文件在读取期间被修改
+                    }
+                } else if (compressor.isCompressible(MimeType.getByFilename(this.filename), length)) {
+                    gzbs = compressor.gzip(bs);
+                    gzetag = st.lastModified + "-" + gzbs.length;
+                    if (gzbs.length >= length) gzbs = null; //压缩后没有变小
+                }
+                if (gzbs != null && this.servlet.reserveCache(this, gzbs.length)) {
+                    ByteBuffer gzbuf = ByteBuffer.allocateDirect(gzbs.length);
+                    gzbuf.put(gzbs);
+                    gzbuf.flip();
+                    synchronized (this) {
+                        if (this.stat != st || this.gzipContent != null) {
+                            this.servlet.cachedLength.add(0L - gzbs.length);
+                            return;
+                        }
+                        this.gzipContent = new CachedContent(gzbuf.asReadOnlyBuffer(), gzetag);
+                    }
+                }
+            } catch (Exception e) {
+                this.servlet.logger.log(Level.INFO, HttpResourceServlet.class.getSimpleName() + " gzip FileEntry(" + file + ") erroneous", e);
             }
         }
 
         @Override
         protected void finalize() throws Throwable {
-            if (this.content != null) this.servlet.cachedLength.add(0L - this.content.remaining());
+            final CachedContent c = this.content;
+            final CachedContent gc = this.gzipContent;
+            if (c != null) this.servlet.cachedLength.add(0L - c.length());
+            if (gc != null) this.servlet.cachedLength.add(0L - gc.length());
             super.finalize();
         }
 
         public long getCachedLength() {
-            return this.content == null ? 0L : this.content.remaining();
+            final CachedContent c = this.content;
+            final CachedContent gc = this.gzipContent;
+            return (c == null ? 0L : c.length()) + (gc == null ? 0L : gc.length());
         }
 
     }
+
+    /**
+     * 文件信息的快照， 文件变化时整体替换， 保证输出时长度与ETag来自同一次读取
+     */
+    protected static final class FileStat {
+
+        protected final long lastModified;
+
+        protected final long length; //文件或内容的大小
+
+        protected final String etag;
+
+        protected final File gzipFile; //同目录下预先压缩好的.gz文件
+
+        protected final long gzipFileLength;
+
+        protected final String gzipFileEtag;
+
+        protected FileStat(long lastModified, long length, String etag, File gzipFile) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.etag = etag;
+            this.gzipFile = gzipFile;
+            this.gzipFileLength = gzipFile == null ? 0L : gzipFile.length();
+            this.gzipFileEtag = gzipFile == null ? null : (gzipFile.lastModified() + "-" + this.gzipFileLength);
+        }
+
+        protected FileStat(File file, boolean gzip) {
+            this(file.lastModified(), file.length(), file.lastModified() + "-" + file.length(), gzip ? findGzipFile(file) : null);
+        }
+
+        private static File findGzipFile(File file) {
+            File gz = new File(file.getPath() + ".gz");
+            return gz.isFile() && gz.canRead() && gz.lastModified() >= file.lastModified() ? gz : null;
+        }
+    }
+
+    /**
+     * 缓存的内容及其ETag， 作为一个整体发布， 保证输出的Content-Length、ETag与内容来自同一个文件版本
+     */
+    protected static final class CachedContent {
+
+        protected final ByteBuffer buffer; //只读
+
+        protected final String etag;
+
+        protected CachedContent(ByteBuffer buffer, String etag) {
+            this.buffer = buffer;
+            this.etag = etag;
+        }
+
+        public long length() {
+            return buffer.remaining();
+        }
+    }
 }
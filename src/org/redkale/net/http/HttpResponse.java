@@ -12,12 +12,15 @@ import java.nio.ByteBuffer;
 import java.nio.channels.*;
 import java.nio.file.*;
 import java.text.*;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.*;
+import java.util.logging.Level;
 import org.redkale.convert.json.JsonConvert;
 import org.redkale.net.*;
-import org.redkale.util.AnyValue.DefaultAnyValue;
-import org.redkale.util.AnyValue.Entry;
 import org.redkale.util.*;
 
 /**
@@ -52,6 +55,27 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
 
     private static final Map<Integer, String> httpCodes = new HashMap<>();
 
+    //预先编码好的状态行， 如: HTTP/1.1 404 Not Found\r\n
+    private static final Map<Integer, byte[]> statusLines = new HashMap<>();
+
+    private static final Map<String, byte[]> contentTypeLines = new ConcurrentHashMap<>();
+
+    private static final byte[] STATUS_200_BYTES = "HTTP/1.1 200 OK\r\n".getBytes();
+
+    private static final byte[] CONTENT_TYPE_PLAIN_BYTES = "Content-Type: text/plain; charset=utf-8\r\n".getBytes();
+
+    private static final byte[] CONTENT_LENGTH_BYTES = "Content-Length: ".getBytes();
+
+    private static final byte[] CONNECTION_CLOSE_BYTES = "Connection: close\r\n".getBytes();
+
+    private static final byte[] SET_COOKIE_BYTES = "Set-Cookie: ".getBytes();
+
+    private static final ZoneId GMT_ZONE = ZoneId.of("GMT");
+
+    private static volatile byte[] dateLine;
+
+    private static volatile long dateSecond;
+
     static {
         options.add(StandardOpenOption.READ);
         GMT_DATE_FORMAT.setTimeZone(TimeZone.getTimeZone("GMT"));
@@ -100,6 +124,11 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
         httpCodes.put(503, "Service Unavailable");
         httpCodes.put(504, "Gateway Timeout");
         httpCodes.put(505, "HTTP Version Not Supported");
+
+        for (Map.Entry<Integer, String> en : httpCodes.entrySet()) {
+            statusLines.put(en.getKey(), ("HTTP/1.1 " + en.getKey() + " " + en.getValue() + "\r\n").getBytes());
+        }
+        contentTypeLines.put("text/plain; charset=utf-8", CONTENT_TYPE_PLAIN_BYTES);
     }
 
     private int status = 200;
@@ -115,7 +144,7 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
     private BufferHandler bufferHandler;
     //------------------------------------------------
 
-    private final DefaultAnyValue header = new DefaultAnyValue();
+    private final HttpValues header = new HttpValues(true);
 
     private final String[][] defaultAddHeaders;
 
@@ -123,15 +152,39 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
 
     private final HttpCookie defcookie;
 
+    //defaultAddHeaders、defaultSetHeaders中固定值的header预先编码
+    private final byte[] constAddHeaderBytes;
+
+    private final byte[] constSetHeaderBytes;
+
+    private final String[] constSetHeaderNames;
+
     public static ObjectPool<Response> createPool(AtomicLong creatCounter, AtomicLong cycleCounter, int max, Creator<Response> creator) {
         return new ObjectPool<>(creatCounter, cycleCounter, max, creator, (x) -> ((HttpResponse) x).prepare(), (x) -> ((HttpResponse) x).recycle());
     }
 
     public HttpResponse(HttpContext context, HttpRequest request, String[][] defaultAddHeaders, String[][] defaultSetHeaders, HttpCookie defcookie) {
         super(context, request);
-        this.defaultAddHeaders = defaultAddHeaders;
-        this.defaultSetHeaders = defaultSetHeaders;
         this.defcookie = defcookie;
+        List<String[]> constAdds = new ArrayList<>();
+        List<String[]> dynAdds = new ArrayList<>();
+        if (defaultAddHeaders != null) {
+            for (String[] headers : defaultAddHeaders) {
+                (headers.length > 2 ? dynAdds : constAdds).add(headers);
+            }
+        }
+        List<String[]> constSets = new ArrayList<>();
+        List<String[]> dynSets = new ArrayList<>();
+        if (defaultSetHeaders != null) {
+            for (String[] headers : defaultSetHeaders) {
+                (headers.length > 2 ? dynSets : constSets).add(headers);
+            }
+        }
+        this.defaultAddHeaders = dynAdds.isEmpty() ? null : dynAdds.toArray(new String[dynAdds.size()][]);
+        this.defaultSetHeaders = dynSets.isEmpty() ? null : dynSets.toArray(new String[dynSets.size()][]);
+        this.constAddHeaderBytes = encodeHeaderLines(constAdds);
+        this.constSetHeaderBytes = encodeHeaderLines(constSets);
+        this.constSetHeaderNames = constSets.isEmpty() ? null : constSets.stream().map(x -> x[0]).toArray(String[]::new);
     }
 
     @Override
@@ -228,6 +281,23 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
         finish(request.getJsonConvert().convertTo(context.getBufferSupplier(), obj));
     }
 
+    /**
+     * 异步结果完成后将结果以JSON格式输出， 异常时输出500状态码 <br>
+     * 通常用于DataSource的异步方法， 调用线程不需要等待数据库操作完成
+     *
+     * @param future 异步结果
+     */
+    public void finishJson(final CompletableFuture future) {
+        future.whenComplete((rs, e) -> {
+            if (e == null) {
+                finishJson(rs);
+            } else {
+                context.getLogger().log(Level.WARNING, "request(" + request.getRequestURI() + ") async result error", (Throwable) e);
+                finish(500, null);
+            }
+        });
+    }
+
     /**
      * 将对象以JSON格式输出
      *
@@ -301,6 +371,68 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
         finish(convert.convertTo(context.getBufferSupplier(), ret));
     }
 
+    /**
+     * 将对象以JSON格式、Transfer-Encoding: chunked方式输出
+     *
+     * @param obj 输出对象
+     */
+    public void finishJsonChunked(final Object obj) {
+        finishJsonChunked(request.getJsonConvert(), null, obj);
+    }
+
+    /**
+     * 将对象以JSON格式、Transfer-Encoding: chunked方式输出
+     *
+     * @param convert 指定的JsonConvert
+     * @param obj     输出对象
+     */
+    public void finishJsonChunked(final JsonConvert convert, final Object obj) {
+        finishJsonChunked(convert, null, obj);
+    }
+
+    /**
+     * 将对象以JSON格式、Transfer-Encoding: chunked方式输出
+     *
+     * @param type 指定的类型
+     * @param obj  输出对象
+     */
+    public void finishJsonChunked(final Type type, final Object obj) {
+        finishJsonChunked(request.getJsonConvert(), type, obj);
+    }
+
+    /**
+     * 将对象以JSON格式、Transfer-Encoding: chunked方式输出， 适用于结果集很大的接口(如数据导出)。
+     * 序列化时每写满一个ByteBuffer就作为一个chunk交给写操作的回调链依次发送， 写完后立即回收， 不需要先把整个结果序列化成一个byte[]。
+     * 客户端接收较慢时未写出的chunk暂存在队列中， 队列满时序列化线程等待写操作取走。 chunked方式的内容不会被压缩。
+     * HTTP/1.0不支持chunked, 此时按普通方式输出。
+     *
+     * @param convert 指定的JsonConvert
+     * @param type    指定的类型, 为null表示取obj的类型
+     * @param obj     输出对象
+     */
+    public void finishJsonChunked(final JsonConvert convert, final Type type, final Object obj) {
+        if ("HTTP/1.0".equals(request.getProtocol())) {
+            if (type == null) {
+                finishJson(convert, obj);
+            } else {
+                finishJson(convert, type, obj);
+            }
+            return;
+        }
+        this.contentType = "text/plain; charset=utf-8";
+        this.contentLength = -1;
+        this.header.setValue("Transfer-Encoding", "chunked");
+        final ChunkedOutput output = new ChunkedOutput();
+        try {
+            for (ByteBuffer buf : convert.convertTo(output, output, type, obj)) {
+                output.accept(buf);
+            }
+            output.close();
+        } catch (Exception e) { //header可能已输出， 只能关闭连接
+            output.abort();
+        }
+    }
+
     /**
      * 将对象以JavaScript格式输出
      *
@@ -336,12 +468,18 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
             super.finish(headbuf);
             return;
         }
+        final HttpCompressHandler compressHandler = context.getCompressHandler();
         if (context.getCharset() == null) {
+            final char[] chars = Utility.charArray(obj);
+            final int length = Utility.encodeUTF8Length(chars);
+            if (compressHandler != null && compressHandler.isCompressible(this.contentType, length)) { //按编码后的实际长度判断是否压缩
+                finish(false, new ByteBuffer[]{ByteBuffer.wrap(Utility.encodeUTF8(chars))});
+                return;
+            }
             if (bufferHandler != null) {
                 bufferHandler.execute(this, new ByteBuffer[]{ByteBuffer.wrap(Utility.encodeUTF8(obj))});
             }
-            final char[] chars = Utility.charArray(obj);
-            this.contentLength = Utility.encodeUTF8Length(chars);
+            this.contentLength = length;
             final ByteBuffer headbuf = createHeader();
             ByteBuffer buf2 = Utility.encodeUTF8(headbuf, (int) this.contentLength, chars);
             headbuf.flip();
@@ -352,6 +490,10 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
             }
         } else {
             ByteBuffer buffer = context.getCharset().encode(obj);
+            if (compressHandler != null && compressHandler.isCompressible(this.contentType, buffer.remaining())) {
+                finish(false, new ByteBuffer[]{buffer});
+                return;
+            }
             if (bufferHandler != null) {
                 ByteBuffer[] bufs = bufferHandler.execute(this, new ByteBuffer[]{buffer});
                 if (bufs != null) buffer = bufs[0];
@@ -408,6 +550,10 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
     @Override
     public void finish(boolean kill, ByteBuffer buffer) {
         if (!this.headsended) {
+            if (buffer != null && context.getCompressHandler() != null) {
+                finishBuffers(kill, new ByteBuffer[]{buffer});
+                return;
+            }
             this.contentLength = buffer == null ? 0 : buffer.remaining();
             ByteBuffer headbuf = createHeader();
             headbuf.flip();
@@ -443,8 +589,14 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
             ByteBuffer[] bufs = bufferHandler.execute(this, buffers);
             if (bufs != null) buffers = bufs;
         }
+        finishBuffers(kill, buffers);
+    }
+
+    private void finishBuffers(boolean kill, ByteBuffer[] buffers) {
         if (kill) refuseAlive();
         if (!this.headsended) {
+            ByteBuffer[] bufs = compress(buffers);
+            if (bufs != null) buffers = bufs;
             long len = 0;
             for (ByteBuffer buf : buffers) {
                 len += buf.remaining();
@@ -465,6 +617,13 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
         }
     }
 
+    //未配置压缩、内容不可压缩或请求方不支持压缩时返回null
+    private ByteBuffer[] compress(ByteBuffer[] buffers) {
+        final HttpCompressHandler compressHandler = context.getCompressHandler();
+        if (compressHandler == null || buffers == null || this.header.getValue("Content-Encoding") != null) return null;
+        return compressHandler.execute(this, buffers);
+    }
+
     /**
      * 异步输出指定内容
      *
@@ -535,24 +694,60 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
      * @throws IOException IO异常
      */
     protected void finishFile(final String filename, final File file, ByteBuffer fileBody) throws IOException {
+        finishFile(filename, file, fileBody, null);
+    }
+
+    /**
+     * 将指定文件句柄或文件内容按指定文件名输出，若fileBody不为null则只输出fileBody内容
+     * contentEncoding不为null表示file或fileBody是已压缩的内容， 此时filename用于确定Content-Type
+     *
+     * @param filename        输出文件名
+     * @param file            输出文件
+     * @param fileBody        文件内容， 没有则输出file
+     * @param contentEncoding 内容的压缩格式， 没有压缩为null
+     *
+     * @throws IOException IO异常
+     */
+    protected void finishFile(final String filename, final File file, ByteBuffer fileBody, final String contentEncoding) throws IOException {
         if ((file == null || !file.isFile() || !file.canRead()) && fileBody == null) {
             finish404();
             return;
         }
+        final long length = fileBody != null ? fileBody.remaining() : file.length();
+        final String etag = (file == null ? 0L : file.lastModified()) + "-" + length;
+        String type = MimeType.getByFilename(filename == null || filename.isEmpty() ? file.getName() : filename);
+        finishFile(filename, file, fileBody, contentEncoding, length, etag, type == null ? "application/octet-stream" : type);
+    }
+
+    /**
+     * 使用已知的文件信息输出文件， 不再访问文件系统获取长度和修改时间， 用于HttpResourceServlet缓存的文件
+     *
+     * @param filename        输出文件名
+     * @param file            输出文件
+     * @param fileBody        文件内容， 没有则输出file
+     * @param contentEncoding 内容的压缩格式， 没有压缩为null
+     * @param length          输出内容的长度
+     * @param etag            ETag
+     * @param contentType     Content-Type
+     *
+     * @throws IOException IO异常
+     */
+    protected void finishFile(final String filename, final File file, ByteBuffer fileBody, final String contentEncoding,
+        final long length, final String etag, final String contentType) throws IOException {
         if (fileBody != null) fileBody = fileBody.duplicate().asReadOnlyBuffer();
-        final long length = file == null ? fileBody.remaining() : file.length();
         final String match = request.getHeader("If-None-Match");
-        final String etag = (file == null ? 0L : file.lastModified()) + "-" + length;
         if (match != null && etag.equals(match)) {
             finish304();
             return;
         }
         this.contentLength = length;
-        if (filename != null && !filename.isEmpty() && file != null) {
+        if (contentEncoding != null) {
+            setHeader("Content-Encoding", contentEncoding);
+            setHeader("Vary", "Accept-Encoding");
+        } else if (filename != null && !filename.isEmpty() && file != null) {
             addHeader("Content-Disposition", "attachment;filename=" + URLEncoder.encode(filename, "UTF-8"));
         }
-        this.contentType = MimeType.getByFilename(filename == null || filename.isEmpty() ? file.getName() : filename);
-        if (this.contentType == null) this.contentType = "application/octet-stream";
+        this.contentType = contentType;
         String range = request.getHeader("Range");
         if (range != null && (!range.startsWith("bytes=") || range.indexOf(',') >= 0)) range = null;
         long start = -1;
@@ -584,32 +779,77 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
     }
 
     private void finishFile(ByteBuffer hbuffer, File file, long offset, long length) throws IOException {
-        this.channel.write(hbuffer, hbuffer, new TransferFileHandler(AsynchronousFileChannel.open(file.toPath(), options, ((HttpContext) context).getExecutor()), offset, length));
+        final long position = offset <= 0 ? 0 : offset;
+        final long count = length > 0 ? length : (file.length() - position);
+        if (count <= this.context.getBufferCapacity()) { //小文件一次读取即可， 不需要映射文件
+            this.channel.write(hbuffer, hbuffer, new TransferFileHandler(AsynchronousFileChannel.open(file.toPath(), options, context.getExecutor()), offset, length));
+            return;
+        }
+        //大文件由连接直接输出文件内容(sendfile或MappedByteBuffer)， 不经过读取缓冲区
+        final FileChannel filechannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        send(hbuffer, filechannel, new CompletionHandler<Integer, FileChannel>() {
+
+            @Override
+            public void completed(Integer result, FileChannel attachment) {
+                channel.transferFrom(attachment, position, count, attachment, new CompletionHandler<Long, FileChannel>() {
+
+                    @Override
+                    public void completed(Long result, FileChannel attachment) {
+                        closeFileChannel(attachment);
+                        finish(result < count); //文件被截短时输出的内容少于Content-Length， 只能关闭连接
+                    }
+
+                    @Override
+                    public void failed(Throwable exc, FileChannel attachment) {
+                        closeFileChannel(attachment);
+                        finish(true);
+                    }
+                });
+            }
+
+            @Override
+            public void failed(Throwable exc, FileChannel attachment) {
+                closeFileChannel(attachment);
+                finish(true);
+            }
+        });
+    }
+
+    private static void closeFileChannel(FileChannel filechannel) {
+        try {
+            filechannel.close();
+        } catch (IOException e) {
+            //do nothing
+        }
     }
 
-    private ByteBuffer createHeader() {
+    ByteBuffer createHeader() {
         this.headsended = true;
         ByteBuffer buffer = this.context.pollBuffer();
-        buffer.put(("HTTP/1.1 " + this.status + " " + (this.status == 200 ? "OK" : httpCodes.get(this.status)) + "\r\n").getBytes());
-
-        buffer.put(("Content-Type: " + (this.contentType == null ? "text/plain; charset=utf-8" : this.contentType) + "\r\n").getBytes());
-
+        if (this.status == 200) {
+            buffer.put(STATUS_200_BYTES);
+        } else {
+            byte[] statusBytes = statusLines.get(this.status);
+            buffer.put(statusBytes == null ? ("HTTP/1.1 " + this.status + " " + httpCodes.get(this.status) + "\r\n").getBytes() : statusBytes);
+        }
+        buffer.put(getContentTypeLine(this.contentType));
         if (this.contentLength > 0) {
-            buffer.put(("Content-Length: " + this.contentLength + "\r\n").getBytes());
+            buffer.put(CONTENT_LENGTH_BYTES);
+            writeLong(buffer, this.contentLength);
+            buffer.put(LINE);
         }
+        buffer.put(getDateLine());
         if (!this.request.isKeepAlive()) {
-            buffer.put("Connection: close\r\n".getBytes());
+            buffer.put(CONNECTION_CLOSE_BYTES);
         }
         if (this.defaultAddHeaders != null) {
             for (String[] headers : this.defaultAddHeaders) {
                 if (headers.length > 3) {
                     String v = request.getParameter(headers[2]);
                     if (v != null) this.header.addValue(headers[0], v);
-                } else if (headers.length > 2) {
+                } else {
                     String v = request.getHeader(headers[2]);
                     if (v != null) this.header.addValue(headers[0], v);
-                } else {
-                    this.header.addValue(headers[0], headers[1]);
                 }
             }
         }
@@ -618,31 +858,36 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
                 if (headers.length > 3) {
                     String v = request.getParameter(headers[2]);
                     if (v != null) this.header.setValue(headers[0], v);
-                } else if (headers.length > 2) {
+                } else {
                     String v = request.getHeader(headers[2]);
                     if (v != null) this.header.setValue(headers[0], v);
-                } else {
-                    this.header.setValue(headers[0], headers[1]);
                 }
             }
         }
-        for (Entry<String> en : this.header.getStringEntrys()) {
-            buffer.put((en.name + ": " + en.getValue() + "\r\n").getBytes());
+        final HttpValues hs = this.header;
+        for (int i = 0; i < hs.size(); i++) {
+            if (isConstSetHeader(hs.getName(i))) continue; //固定值的setheader会覆盖同名的header
+            writeHeaderLine(buffer, hs.getName(i), hs.getValue(i));
         }
+        if (this.constAddHeaderBytes != null) buffer.put(this.constAddHeaderBytes);
+        if (this.constSetHeaderBytes != null) buffer.put(this.constSetHeaderBytes);
         if (request.newsessionid != null) {
             String domain = defcookie == null ? null : defcookie.getDomain();
-            if (domain == null) {
-                domain = "";
-            } else {
-                domain = "Domain=" + domain + "; ";
-            }
             String path = defcookie == null ? null : defcookie.getPath();
             if (path == null || path.isEmpty()) path = "/";
-            if (request.newsessionid.isEmpty()) {
-                buffer.put(("Set-Cookie: " + HttpRequest.SESSIONID_NAME + "=; " + domain + "Path=" + path + "; Max-Age=0; HttpOnly\r\n").getBytes());
-            } else {
-                buffer.put(("Set-Cookie: " + HttpRequest.SESSIONID_NAME + "=" + request.newsessionid + "; " + domain + "Path=" + path + "; HttpOnly\r\n").getBytes());
+            buffer.put(SET_COOKIE_BYTES);
+            writeAscii(buffer, HttpRequest.SESSIONID_NAME);
+            buffer.put((byte) '=');
+            writeAscii(buffer, request.newsessionid);
+            writeAscii(buffer, "; ");
+            if (domain != null) {
+                writeAscii(buffer, "Domain=");
+                writeAscii(buffer, domain);
+                writeAscii(buffer, "; ");
             }
+            writeAscii(buffer, "Path=");
+            writeAscii(buffer, path);
+            writeAscii(buffer, request.newsessionid.isEmpty() ? "; Max-Age=0; HttpOnly\r\n" : "; HttpOnly\r\n");
         }
         if (this.cookies != null) {
             for (HttpCookie cookie : this.cookies) {
@@ -651,28 +896,122 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
                     if (defcookie.getDomain() != null && cookie.getDomain() == null) cookie.setDomain(defcookie.getDomain());
                     if (defcookie.getPath() != null && cookie.getPath() == null) cookie.setPath(defcookie.getPath());
                 }
-                buffer.put(("Set-Cookie: " + genString(cookie) + "\r\n").getBytes());
+                buffer.put(SET_COOKIE_BYTES);
+                writeCookie(buffer, cookie);
+                buffer.put(LINE);
             }
         }
         buffer.put(LINE);
         return buffer;
     }
 
-    private CharSequence genString(HttpCookie cookie) {
+    private boolean isConstSetHeader(String name) {
+        if (this.constSetHeaderNames == null) return false;
+        for (String n : this.constSetHeaderNames) {
+            if (n.equals(name)) return true;
+        }
+        return false;
+    }
+
+    private static byte[] getContentTypeLine(String contentType) {
+        if (contentType == null) return CONTENT_TYPE_PLAIN_BYTES;
+        byte[] bs = contentTypeLines.get(contentType);
+        if (bs == null) {
+            bs = ("Content-Type: " + contentType + "\r\n").getBytes();
+            if (contentTypeLines.size() < 1024) contentTypeLines.put(contentType, bs);
+        }
+        return bs;
+    }
+
+    //Date的值精确到秒， 每秒最多生成一次
+    private static byte[] getDateLine() {
+        final long second = System.currentTimeMillis() / 1000;
+        byte[] bs = dateLine;
+        if (second != dateSecond || bs == null) {
+            bs = ("Date: " + DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.ofInstant(Instant.ofEpochSecond(second), GMT_ZONE)) + "\r\n").getBytes();
+            dateLine = bs;
+            dateSecond = second;
+        }
+        return bs;
+    }
+
+    private static byte[] encodeHeaderLines(List<String[]> headers) {
+        if (headers.isEmpty()) return null;
         StringBuilder sb = new StringBuilder();
-        sb.append(cookie.getName()).append("=").append(cookie.getValue()).append("; Version=1");
-        if (cookie.getDomain() != null) sb.append("; Domain=").append(cookie.getDomain());
-        if (cookie.getPath() != null) sb.append("; Path=").append(cookie.getPath());
-        if (cookie.getPortlist() != null) sb.append("; Port=").append(cookie.getPortlist());
+        for (String[] header : headers) {
+            sb.append(header[0]).append(": ").append(header[1]).append("\r\n");
+        }
+        return sb.toString().getBytes();
+    }
+
+    private static void writeHeaderLine(ByteBuffer buffer, String name, String value) {
+        writeAscii(buffer, name);
+        buffer.put((byte) ':').put((byte) ' ');
+        writeAscii(buffer, value);
+        buffer.put(LINE);
+    }
+
+    //header内容通常都是ASCII字符， 直接按字节写入， 含非ASCII字符时才进行编码
+    private static void writeAscii(ByteBuffer buffer, String value) {
+        if (value == null) value = "null";
+        final int len = value.length();
+        for (int i = 0; i < len; i++) {
+            if (value.charAt(i) >= 0x80) {
+                buffer.put(value.getBytes());
+                return;
+            }
+        }
+        for (int i = 0; i < len; i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    //直接写入long的十进制字节， 不生成String
+    private static void writeLong(ByteBuffer buffer, long value) {
+        if (value == 0) {
+            buffer.put((byte) '0');
+            return;
+        }
+        final int start = buffer.position();
+        while (value > 0) {
+            buffer.put((byte) ('0' + (value % 10)));
+            value /= 10;
+        }
+        int end = buffer.position() - 1;
+        for (int i = start; i < end; i++, end--) {
+            byte b = buffer.get(i);
+            buffer.put(i, buffer.get(end));
+            buffer.put(end, b);
+        }
+    }
+
+    private void writeCookie(ByteBuffer buffer, HttpCookie cookie) {
+        writeAscii(buffer, cookie.getName());
+        buffer.put((byte) '=');
+        writeAscii(buffer, cookie.getValue());
+        writeAscii(buffer, "; Version=1");
+        if (cookie.getDomain() != null) {
+            writeAscii(buffer, "; Domain=");
+            writeAscii(buffer, cookie.getDomain());
+        }
+        if (cookie.getPath() != null) {
+            writeAscii(buffer, "; Path=");
+            writeAscii(buffer, cookie.getPath());
+        }
+        if (cookie.getPortlist() != null) {
+            writeAscii(buffer, "; Port=");
+            writeAscii(buffer, cookie.getPortlist());
+        }
         if (cookie.getMaxAge() > 0) {
-            sb.append("; Max-Age=").append(cookie.getMaxAge());
+            writeAscii(buffer, "; Max-Age=");
+            writeLong(buffer, cookie.getMaxAge());
+            writeAscii(buffer, "; Expires=");
             synchronized (GMT_DATE_FORMAT) {
-                sb.append("; Expires=").append(GMT_DATE_FORMAT.format(new Date(System.currentTimeMillis() + cookie.getMaxAge() * 1000)));
+                writeAscii(buffer, GMT_DATE_FORMAT.format(new Date(System.currentTimeMillis() + cookie.getMaxAge() * 1000)));
             }
         }
-        if (cookie.getSecure()) sb.append("; Secure");
-        if (cookie.isHttpOnly()) sb.append("; HttpOnly");
-        return sb;
+        if (cookie.getSecure()) writeAscii(buffer, "; Secure");
+        if (cookie.isHttpOnly()) writeAscii(buffer, "; HttpOnly");
     }
 
     /**
@@ -686,7 +1025,7 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
         return this;
     }
 
-    protected DefaultAnyValue duplicateHeader() {
+    protected HttpValues duplicateHeader() {
         return this.header.duplicate();
     }
 
@@ -812,6 +1151,176 @@ public class HttpResponse extends Response<HttpContext, HttpRequest> {
         this.bufferHandler = bufferHandler;
     }
 
+    //chunked方式的输出: 序列化线程只把chunk放入队列， 由写操作的CompletionHandler依次写出队列中的chunk， 队列满时序列化线程等待写操作取走
+    private final class ChunkedOutput implements Supplier<ByteBuffer>, Consumer<ByteBuffer>, CompletionHandler<Integer, ByteBuffer[]> {
+
+        private static final int MAX_GATHER = 16; //一次写操作最多合并的ByteBuffer数， 也是队列中未写出的ByteBuffer的上限
+
+        private static final int HEADROOM = 12; //ByteBuffer头部为chunk长度行预留的空间: \r\n + 8位十六进制长度 + \r\n
+
+        private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>(); //待写出的ByteBuffer, 第一个chunk之后长度行写在ByteBuffer的预留空间中
+
+        private boolean started;
+
+        private boolean writing; //是否有未完成的写操作
+
+        private boolean closed; //结束chunk是否已入队
+
+        private boolean failed; //序列化或写操作是否已失败
+
+        //序列化使用的ByteBuffer， 从头部预留的空间之后开始写入
+        @Override
+        public ByteBuffer get() {
+            final ByteBuffer buffer = context.pollBuffer();
+            buffer.position(HEADROOM);
+            return buffer;
+        }
+
+        //buffer已flip， 内容从HEADROOM开始
+        @Override
+        public void accept(ByteBuffer buffer) {
+            if (buffer.limit() <= HEADROOM) {
+                context.offerBuffer(buffer);
+                return;
+            }
+            final byte[] size = Integer.toHexString(buffer.limit() - HEADROOM).getBytes();
+            if (started) { //上一个chunk结尾的\r\n与本chunk的长度行
+                final int start = HEADROOM - size.length - 4;
+                buffer.position(start);
+                buffer.put(LINE).put(size).put(LINE);
+                buffer.position(start);
+                enqueue(false, buffer);
+            } else {
+                started = true;
+                final ByteBuffer line = createHeader();
+                line.put(size).put(LINE);
+                line.flip();
+                buffer.position(HEADROOM);
+                enqueue(false, line, buffer);
+            }
+        }
+
+        public void close() {
+            ByteBuffer last;
+            if (started) {
+                last = ByteBuffer.wrap(new byte[]{'\r', '\n', '0', '\r', '\n', '\r', '\n'});
+            } else {
+                last = createHeader();
+                last.put((byte) '0').put(LINE).put(LINE);
+                last.flip();
+            }
+            enqueue(true, last);
+        }
+
+        //序列化失败时调用， 回收所有未写出的ByteBuffer并关闭连接; 有写操作未完成时由其回调回收和关闭
+        public void abort() {
+            synchronized (this) {
+                if (failed) return;
+                failed = true;
+                if (writing) return;
+                releaseQueue();
+            }
+            finish(true);
+        }
+
+        private void enqueue(boolean last, ByteBuffer... buffers) {
+            synchronized (this) {
+                if (failed) {
+                    for (ByteBuffer buf : buffers) {
+                        context.offerBuffer(buf);
+                    }
+                    return;
+                }
+                Collections.addAll(queue, buffers);
+                if (last) closed = true;
+                if (writing) {
+                    if (!last) awaitDrain();
+                    return;
+                }
+                writing = true;
+            }
+            writeNext();
+        }
+
+        //未写出的ByteBuffer达到MAX_GATHER时等待写操作取走， 避免客户端接收较慢时队列无限增长; 须在持有锁时调用
+        //写操作的回调与Servlet共用线程池， 等待超过写超时(未设置时60秒)则放弃输出， 由finishJsonChunked调用abort关闭连接
+        private void awaitDrain() {
+            final int seconds = channel.getWriteTimeoutSecond() > 0 ? channel.getWriteTimeoutSecond() : 60;
+            final long deadline = System.currentTimeMillis() + seconds * 1000L;
+            try {
+                while (queue.size() >= MAX_GATHER && writing && !failed) {
+                    final long remain = deadline - System.currentTimeMillis();
+                    if (remain <= 0) throw new RuntimeException("chunked output wait write timeout(" + seconds + "s)");
+                    wait(remain);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("chunked output wait write interrupted", e);
+            }
+        }
+
+        private void writeNext() {
+            final ByteBuffer[] srcs;
+            synchronized (this) {
+                if (failed || queue.isEmpty()) {
+                    writing = false;
+                    if (failed) {
+                        releaseQueue();
+                    } else if (!closed) {
+                        return;
+                    }
+                    srcs = null;
+                } else {
+                    srcs = new ByteBuffer[Math.min(queue.size(), MAX_GATHER)];
+                    for (int i = 0; i < srcs.length; i++) {
+                        srcs[i] = queue.poll();
+                    }
+                }
+                notifyAll();
+            }
+            if (srcs == null) {
+                finish(failed);
+            } else {
+                channel.write(srcs, srcs, this);
+            }
+        }
+
+        @Override
+        public void completed(Integer result, ByteBuffer[] attachment) {
+            int index = 0;
+            while (index < attachment.length && !attachment[index].hasRemaining()) {
+                context.offerBuffer(attachment[index++]);
+            }
+            if (index < attachment.length) { //未写完继续写剩余部分
+                ByteBuffer[] remains = index == 0 ? attachment : Arrays.copyOfRange(attachment, index, attachment.length);
+                channel.write(remains, remains, this);
+                return;
+            }
+            writeNext();
+        }
+
+        @Override
+        public void failed(Throwable exc, ByteBuffer[] attachment) {
+            for (ByteBuffer buf : attachment) {
+                context.offerBuffer(buf);
+            }
+            synchronized (this) {
+                failed = true;
+                writing = false;
+                releaseQueue();
+                notifyAll();
+            }
+            finish(true);
+        }
+
+        private void releaseQueue() {
+            ByteBuffer buf;
+            while ((buf = queue.poll()) != null) {
+                context.offerBuffer(buf);
+            }
+        }
+    }
+
     protected final class TransferFileHandler implements CompletionHandler<Integer, ByteBuffer> {
 
         private final AsynchronousFileChannel filechannel;
@@ -0,0 +1,309 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * 按URL路径分段构建的前缀树路由， 支持三种mapping: <br>
+ * 1、精确匹配:  /user/info  <br>
+ * 2、前缀匹配:  /pipes/*    匹配以 /pipes/ 开头的所有URL <br>
+ * 3、路径参数:  /user/{userid}/info  {userid}匹配任意非空的一段， 值可通过HttpRequest.getPathVariable("userid")获取 <br>
+ * 含'.'等正则表达式字符的mapping不进入前缀树， 通过putPattern按正则表达式添加， '.'仍匹配任意字符。 <br>
+ * 匹配优先级与原先HashMap加正则表达式列表的方式一致: 精确匹配优先; 前缀匹配、路径参数与正则表达式之间按添加的顺序， 先添加的优先，
+ * 而不是按匹配的长度。 前缀树只遍历一次URL且不产生子字符串， 只有添加顺序在前缀树结果之前的正则表达式才需要逐个匹配。
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @param <T> 路由的目标对象类型
+ */
+public class HttpRouter<T> {
+
+    private final Node<T> root = new Node<>(null);
+
+    private int size;
+
+    //添加顺序， 精确匹配固定为-1
+    private int sequence;
+
+    //正则表达式mapping， 按添加顺序排列
+    private Predicate<String>[] patterns = new Predicate[0];
+
+    private T[] patternValues = (T[]) new Object[0];
+
+    private int[] patternOrders = new int[0];
+
+    /**
+     * 判断mapping是否可以由路由树处理
+     *
+     * @param mapping URL规则
+     *
+     * @return 是否可路由
+     */
+    public static boolean isRoutable(String mapping) {
+        if (mapping == null || mapping.isEmpty() || mapping.charAt(0) != '/') return false;
+        final int end = mapping.endsWith("/*") ? mapping.length() - 2 : mapping.length();
+        int start = 1;
+        while (start <= end) {
+            int pos = mapping.indexOf('/', start);
+            if (pos < 0 || pos > end) pos = end;
+            if (!isRoutableSegment(mapping, start, pos)) return false;
+            start = pos + 1;
+        }
+        return true;
+    }
+
+    private static boolean isRoutableSegment(String mapping, int start, int end) {
+        if (end - start > 2 && mapping.charAt(start) == '{' && mapping.charAt(end - 1) == '}') { //路径参数
+            for (int i = start + 1; i < end - 1; i++) {
+                char ch = mapping.charAt(i);
+                if (!Character.isLetterOrDigit(ch) && ch != '_') return false;
+            }
+            return true;
+        }
+        for (int i = start; i < end; i++) {
+            switch (mapping.charAt(i)) {
+                case '.':
+                case '*':
+                case '{':
+                case '}':
+                case '[':
+                case ']':
+                case '(':
+                case ')':
+                case '|':
+                case '^':
+                case '$':
+                case '+':
+                case '?':
+                case '\\':
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 添加路由， mapping必须先通过isRoutable判断
+     *
+     * @param mapping URL规则
+     * @param value   目标对象
+     *
+     * @return 该mapping已存在的目标对象， 没有返回null
+     */
+    public T put(String mapping, T value) {
+        final boolean wildcard = mapping.endsWith("/*");
+        final int end = wildcard ? mapping.length() - 2 : mapping.length();
+        final List<String> names = new ArrayList<>();
+        Node<T> node = root;
+        int start = 1;
+        while (start <= end) {
+            int pos = mapping.indexOf('/', start);
+            if (pos < 0 || pos > end) pos = end;
+            if (pos - start > 2 && mapping.charAt(start) == '{' && mapping.charAt(pos - 1) == '}') {
+                names.add(mapping.substring(start + 1, pos - 1));
+                if (node.param == null) node.param = new Node<>(null);
+                node = node.param;
+            } else {
+                node = node.addChild(mapping.substring(start, pos));
+            }
+            start = pos + 1;
+        }
+        final String[] vars = names.toArray(new String[names.size()]);
+        final int order = sequence++;
+        T old;
+        if (wildcard) {
+            old = node.wildcard;
+            node.wildcard = value;
+            node.wildcardNames = vars;
+            node.wildcardOrder = order;
+        } else {
+            old = node.exact;
+            node.exact = value;
+            node.exactNames = vars;
+            node.exactOrder = vars.length == 0 ? -1 : order;
+        }
+        if (old == null) size++;
+        return old;
+    }
+
+    /**
+     * 添加正则表达式mapping， 与put添加的mapping一起按添加顺序决定优先级
+     *
+     * @param predicate 正则表达式的Predicate
+     * @param value     目标对象
+     */
+    public void putPattern(Predicate<String> predicate, T value) {
+        final int count = patterns.length;
+        this.patterns = Arrays.copyOf(patterns, count + 1);
+        this.patternValues = Arrays.copyOf(patternValues, count + 1);
+        this.patternOrders = Arrays.copyOf(patternOrders, count + 1);
+        this.patterns[count] = predicate;
+        this.patternValues[count] = value;
+        this.patternOrders[count] = sequence++;
+        size++;
+    }
+
+    /**
+     * 查找请求URL对应的目标对象， 匹配的路径参数会设置到request中
+     *
+     * @param request HttpRequest
+     *
+     * @return 目标对象， 没有匹配返回null
+     */
+    public T match(HttpRequest request) {
+        final String uri = request.getRequestURI();
+        request.pathCount = 0;
+        request.pathNames = null;
+        if (size == 0 || uri == null || uri.isEmpty() || uri.charAt(0) != '/') return null;
+        final Found<T> found = new Found<>();
+        find(root, uri, 1, 0, request, found);
+        for (int i = 0; i < patternOrders.length && patternOrders[i] < found.order; i++) { //先于前缀树结果添加的正则表达式
+            if (patterns[i].test(uri)) return patternValues[i];
+        }
+        if (found.value == null) return null;
+        if (found.count > 0) {
+            System.arraycopy(found.indexs, 0, request.pathIndexs, 0, found.count * 2);
+            request.pathNames = found.names;
+            request.pathCount = found.count;
+        }
+        return found.value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //遍历所有可能匹配的分支， 保留添加顺序最靠前的结果， 遇到精确匹配时结束
+    private void find(final Node<T> node, final String uri, final int start, final int varCount, final HttpRequest request, final Found<T> found) {
+        if (node.wildcard != null && node.wildcardOrder < found.order) {
+            found.set(node.wildcard, node.wildcardNames, node.wildcardOrder, varCount, request.pathIndexs);
+        }
+        final int len = uri.length();
+        int end = start;
+        int hash = 0;
+        char ch;
+        while (end < len && (ch = uri.charAt(end)) != '/') {
+            hash = 31 * hash + ch;
+            end++;
+        }
+        final boolean last = end == len;
+        Node<T> next = node.findChild(uri, start, end, hash);
+        if (next != null) {
+            if (last) {
+                if (next.exact != null && next.exactOrder < found.order) found.set(next.exact, next.exactNames, next.exactOrder, varCount, request.pathIndexs);
+            } else {
+                find(next, uri, end + 1, varCount, request, found);
+            }
+        }
+        next = node.param;
+        if (next != null && end > start && found.order >= 0) {
+            int[] indexs = request.pathIndexs;
+            if (indexs.length < (varCount + 1) * 2) {
+                indexs = Arrays.copyOf(indexs, (varCount + 1) * 2 + 4);
+                request.pathIndexs = indexs;
+            }
+            indexs[varCount * 2] = start;
+            indexs[varCount * 2 + 1] = end;
+            if (last) {
+                if (next.exact != null && next.exactOrder < found.order) found.set(next.exact, next.exactNames, next.exactOrder, varCount + 1, indexs);
+            } else {
+                find(next, uri, end + 1, varCount + 1, request, found);
+            }
+        }
+    }
+
+    private static final class Found<T> {
+
+        private T value;
+
+        private String[] names;
+
+        private int order = Integer.MAX_VALUE;
+
+        private int count;
+
+        private int[] indexs;
+
+        public void set(T value, String[] names, int order, int count, int[] pathIndexs) {
+            this.value = value;
+            this.names = names;
+            this.order = order;
+            this.count = count;
+            if (count > 0) {
+                if (indexs == null || indexs.length < count * 2) indexs = new int[pathIndexs.length];
+                System.arraycopy(pathIndexs, 0, indexs, 0, count * 2);
+            }
+        }
+    }
+
+    private static final class Node<T> {
+
+        private static final Node[] EMPTY = new Node[0];
+
+        private final String segment;
+
+        private final int hash;
+
+        private Node<T>[] children = EMPTY; //按hash排序
+
+        private int[] hashes = new int[0]; //与children一一对应
+
+        private Node<T> param; //路径参数节点
+
+        private T exact;
+
+        private String[] exactNames;
+
+        private int exactOrder;
+
+        private T wildcard;
+
+        private String[] wildcardNames;
+
+        private int wildcardOrder;
+
+        public Node(String segment) {
+            this.segment = segment;
+            this.hash = segment == null ? 0 : segment.hashCode();
+        }
+
+        public Node<T> addChild(String segment) {
+            for (Node<T> child : children) {
+                if (child.segment.equals(segment)) return child;
+            }
+            Node<T> child = new Node<>(segment);
+            int pos = Arrays.binarySearch(hashes, child.hash);
+            if (pos < 0) pos = -pos - 1;
+            Node<T>[] newChildren = new Node[children.length + 1];
+            int[] newHashes = new int[hashes.length + 1];
+            System.arraycopy(children, 0, newChildren, 0, pos);
+            System.arraycopy(hashes, 0, newHashes, 0, pos);
+            newChildren[pos] = child;
+            newHashes[pos] = child.hash;
+            System.arraycopy(children, pos, newChildren, pos + 1, children.length - pos);
+            System.arraycopy(hashes, pos, newHashes, pos + 1, hashes.length - pos);
+            this.children = newChildren;
+            this.hashes = newHashes;
+            return child;
+        }
+
+        public Node<T> findChild(String uri, int start, int end, int hash) {
+            final int len = end - start;
+            int pos = Arrays.binarySearch(hashes, hash);
+            if (pos < 0) return null;
+            while (pos > 0 && hashes[pos - 1] == hash) pos--; //hash冲突时从第一个开始比较
+            for (; pos < hashes.length && hashes[pos] == hash; pos++) {
+                Node<T> child = children[pos];
+                if (child.segment.length() == len && uri.regionMatches(start, child.segment, 0, len)) return child;
+            }
+            return null;
+        }
+    }
+}
@@ -106,7 +106,8 @@ public final class HttpServer extends Server<String, HttpContext, HttpRequest, H
         final int port = this.address.getPort();
         AtomicLong createBufferCounter = watch == null ? new AtomicLong() : watch.createWatchNumber("HTTP_" + port + ".Buffer.creatCounter");
         AtomicLong cycleBufferCounter = watch == null ? new AtomicLong() : watch.createWatchNumber("HTTP_" + port + ".Buffer.cycleCounter");
-        this.bufferCapacity = Math.max(this.bufferCapacity, 16 * 1024 + 16); //兼容 HTTP 2.0;
+        //未配置bufferCapacity时默认16K+16B(兼容 HTTP 2.0)， 配置了则按配置值: header可以分多次读取， 不再要求请求header装得下一个buffer
+        if (config == null || config.getValue("bufferCapacity") == null) this.bufferCapacity = 16 * 1024 + 16;
         final int rcapacity = this.bufferCapacity;
         ObjectPool<ByteBuffer> bufferPool = new ObjectPool<>(createBufferCounter, cycleBufferCounter, this.bufferPoolSize,
             (Object... params) -> ByteBuffer.allocateDirect(rcapacity), null, (e) -> {
@@ -118,6 +119,7 @@ public final class HttpServer extends Server<String, HttpContext, HttpRequest, H
         final List<String[]> defaultSetHeaders = new ArrayList<>();
         HttpCookie defaultCookie = null;
         String remoteAddrHeader = null;
+        HttpCompressHandler compressHandler = null;
         if (config != null) {
             AnyValue reqs = config == null ? null : config.getAnyValue("request");
             if (reqs != null) {
@@ -178,6 +180,7 @@ public final class HttpServer extends Server<String, HttpContext, HttpRequest, H
                         defaultCookie.setPath(path);
                     }
                 }
+                compressHandler = HttpCompressHandler.create(resps.getAnyValue("compress"));
             }
         }
         final String[][] addHeaders = defaultAddHeaders.isEmpty() ? null : defaultAddHeaders.toArray(new String[defaultAddHeaders.size()][]);
@@ -189,6 +192,8 @@ public final class HttpServer extends Server<String, HttpContext, HttpRequest, H
         ObjectPool<Response> responsePool = HttpResponse.createPool(createResponseCounter, cycleResponseCounter, this.responsePoolSize, null);
         HttpContext httpcontext = new HttpContext(this.serverStartTime, this.logger, executor, rcapacity, bufferPool, responsePool,
             this.maxbody, this.charset, this.address, this.prepare, this.watch, this.readTimeoutSecond, this.writeTimeoutSecond);
+        httpcontext.setCompressHandler(compressHandler);
+        if (config != null) httpcontext.setMaxheader(config.getIntValue("maxheader", httpcontext.getMaxheader()));
         responsePool.setCreator((Object... params) -> new HttpResponse(httpcontext, new HttpRequest(httpcontext, addrHeader), addHeaders, setHeaders, defCookie));
         return httpcontext;
     }
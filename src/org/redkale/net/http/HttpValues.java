@@ -0,0 +1,400 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import org.redkale.util.*;
+
+/**
+ * HttpRequest、HttpResponse中header与参数的存储表 <br>
+ * 按添加顺序存放name-value， 同时维护一个开放寻址(线性探测)的索引表， 查找时先比较hash再比较name; 同名的多个值通过链表串联。 <br>
+ * 常见的header名预先计算好hash， 从原始字节添加header时可直接复用常量字符串。 <br>
+ * clear时只重置索引与计数， 数组保留给下一个请求复用。
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ */
+public final class HttpValues extends AnyValue {
+
+    private static final Entry<AnyValue>[] EMPTY_ANYENTRYS = new Entry[0];
+
+    private static final AnyValue[] EMPTY_ANYVALUES = new AnyValue[0];
+
+    private static final String[] EMPTY_STRINGS = new String[0];
+
+    //常见的header名， hash按不区分大小写的方式预先计算
+    private static final String[] KNOWN_NAMES = {"Accept", "Accept-Charset", "Accept-Encoding", "Accept-Language", "Accept-Ranges",
+        "Access-Control-Allow-Origin", "Age", "Allow", "Authorization", "Cache-Control", "Connection", "Content-Disposition",
+        "Content-Encoding", "Content-Language", "Content-Length", "Content-Range", "Content-Type", "Cookie", "DNT", "Date", "ETag",
+        "Expect", "Expires", "Forwarded", "From", "Host", "If-Match", "If-Modified-Since", "If-None-Match", "If-Range",
+        "If-Unmodified-Since", "Keep-Alive", "Last-Modified", "Location", "Origin", "Pragma", "Range", "Referer", "Sec-Fetch-Dest",
+        "Sec-Fetch-Mode", "Sec-Fetch-Site", "Sec-WebSocket-Key", "Sec-WebSocket-Version", "Server", "Set-Cookie", "TE",
+        "Transfer-Encoding", "Upgrade", "Upgrade-Insecure-Requests", "User-Agent", "Vary", "Via", "X-Forwarded-For",
+        "X-Forwarded-Host", "X-Forwarded-Proto", "X-Powered-By", "X-Real-IP", "X-Requested-With", "retcode", "retinfo"};
+
+    private static final int[] KNOWN_HASHES = new int[KNOWN_NAMES.length];
+
+    //KNOWN_NAMES的索引表， 值为下标+1， 0表示空位
+    private static final int[] KNOWN_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < KNOWN_NAMES.length; i++) {
+            final int hash = hashIgnoreCase(KNOWN_NAMES[i]);
+            KNOWN_HASHES[i] = hash;
+            int slot = hash & (KNOWN_TABLE.length - 1);
+            while (KNOWN_TABLE[slot] != 0) slot = (slot + 1) & (KNOWN_TABLE.length - 1);
+            KNOWN_TABLE[slot] = i + 1;
+        }
+    }
+
+    private final boolean ignoreCase;
+
+    private String[] names;
+
+    private String[] values;
+
+    private int[] hashes;
+
+    //同名的下一个值的下标， -1表示没有
+    private int[] nexts;
+
+    //同名的最后一个值的下标， 只在同名的第一个值上有效
+    private int[] lasts;
+
+    private int count;
+
+    //索引表， 值为同名的第一个值的下标+1， 0表示空位
+    private int[] table;
+
+    /**
+     * 创建区分name大小写的HttpValues对象
+     */
+    public HttpValues() {
+        this(false);
+    }
+
+    /**
+     * 创建HttpValues对象
+     *
+     * @param ignoreCase name是否不区分大小写
+     */
+    public HttpValues(boolean ignoreCase) {
+        this(ignoreCase, 16);
+    }
+
+    /**
+     * 创建HttpValues对象
+     *
+     * @param ignoreCase name是否不区分大小写
+     * @param capacity   初始容量
+     */
+    public HttpValues(boolean ignoreCase, int capacity) {
+        this.ignoreCase = ignoreCase;
+        int size = Math.max(4, capacity);
+        this.names = new String[size];
+        this.values = new String[size];
+        this.hashes = new int[size];
+        this.nexts = new int[size];
+        this.lasts = new int[size];
+        this.table = new int[Integer.highestOneBit(size - 1) << 2];
+    }
+
+    /**
+     * 创建内容相同的HttpValues对象， 与原对象不共享数组， 原对象clear后不受影响
+     *
+     * @return HttpValues对象
+     */
+    public HttpValues duplicate() {
+        HttpValues rs = new HttpValues(this.ignoreCase, this.names.length);
+        rs.names = this.names.clone();
+        rs.values = this.values.clone();
+        rs.hashes = this.hashes.clone();
+        rs.nexts = this.nexts.clone();
+        rs.lasts = this.lasts.clone();
+        rs.table = this.table.clone();
+        rs.count = this.count;
+        return rs;
+    }
+
+    /**
+     * 清空内容， 只重置索引与计数， 数组保留复用
+     *
+     * @return HttpValues
+     */
+    public HttpValues clear() {
+        if (this.count == 0) return this;
+        Arrays.fill(this.names, 0, this.count, null);
+        Arrays.fill(this.values, 0, this.count, null);
+        Arrays.fill(this.table, 0);
+        this.count = 0;
+        return this;
+    }
+
+    public boolean ignoreCase() {
+        return ignoreCase;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * 获取第index个添加的name
+     *
+     * @param index 下标
+     *
+     * @return name
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * 获取第index个添加的value
+     *
+     * @param index 下标
+     *
+     * @return value
+     */
+    public String getValue(int index) {
+        return values[index];
+    }
+
+    public HttpValues addValue(String name, boolean value) {
+        return addValue(name, String.valueOf(value));
+    }
+
+    public HttpValues addValue(String name, Number value) {
+        return addValue(name, String.valueOf(value));
+    }
+
+    public HttpValues addValue(String name, String value) {
+        if (name == null) return this;
+        return addValue(name, hash(name), value);
+    }
+
+    /**
+     * 按原始字节添加值， name为常见header名时复用常量字符串与预先计算的hash
+     *
+     * @param bytes     原始字节
+     * @param nameStart name开始位置
+     * @param nameEnd   name结束位置
+     * @param value     value值
+     * @param charset   字符集
+     *
+     * @return HttpValues
+     */
+    HttpValues addValue(final ByteArray bytes, final int nameStart, final int nameEnd, final String value, final Charset charset) {
+        if (!this.ignoreCase) return addValue(bytes.toString(nameStart, nameEnd - nameStart, charset), value);
+        final byte[] content = bytes.directBytes();
+        int hash = 0;
+        int flag = 0;
+        for (int i = nameStart; i < nameEnd; i++) {
+            final int ch = content[i];
+            flag |= ch;
+            hash = 31 * hash + (ch | 0x20);
+        }
+        if (flag < 0) return addValue(bytes.toString(nameStart, nameEnd - nameStart, charset), value); //含非ASCII字符
+        hash = spread(hash);
+        int slot = hash & (KNOWN_TABLE.length - 1);
+        for (int k = KNOWN_TABLE[slot]; k != 0; k = KNOWN_TABLE[slot = (slot + 1) & (KNOWN_TABLE.length - 1)]) {
+            if (KNOWN_HASHES[k - 1] == hash && equals(content, nameStart, nameEnd, KNOWN_NAMES[k - 1])) {
+                return addValue(KNOWN_NAMES[k - 1], hash, value);
+            }
+        }
+        return addValue(bytes.toString(nameStart, nameEnd - nameStart, charset), hash, value);
+    }
+
+    private HttpValues addValue(final String name, final int hash, final String value) {
+        if (this.count == this.names.length) grow();
+        final int index = this.count++;
+        this.names[index] = name;
+        this.values[index] = value;
+        this.hashes[index] = hash;
+        this.nexts[index] = -1;
+        this.lasts[index] = index;
+        final int[] tab = this.table;
+        final int mask = tab.length - 1;
+        int slot = hash & mask;
+        for (int k = tab[slot]; k != 0; k = tab[slot = (slot + 1) & mask]) {
+            if (matches(k - 1, name, hash)) { //同名追加到链表末尾
+                this.nexts[this.lasts[k - 1]] = index;
+                this.lasts[k - 1] = index;
+                return this;
+            }
+        }
+        tab[slot] = index + 1;
+        return this;
+    }
+
+    /**
+     * 设置值， 存在同名的值时替换第一个， 否则添加
+     *
+     * @param name  name
+     * @param value value值
+     *
+     * @return HttpValues
+     */
+    public HttpValues setValue(String name, String value) {
+        if (name == null) return this;
+        final int hash = hash(name);
+        final int index = find(name, hash);
+        if (index < 0) return addValue(name, hash, value);
+        this.values[index] = value;
+        return this;
+    }
+
+    @Override
+    public String getValue(String name) {
+        if (name == null) return null;
+        final int index = find(name, hash(name));
+        return index < 0 ? null : this.values[index];
+    }
+
+    @Override
+    public String[] getValues(String name) {
+        if (name == null) return EMPTY_STRINGS;
+        final int first = find(name, hash(name));
+        if (first < 0) return EMPTY_STRINGS;
+        int len = 0;
+        for (int i = first; i >= 0; i = this.nexts[i]) len++;
+        final String[] rs = new String[len];
+        len = 0;
+        for (int i = first; i >= 0; i = this.nexts[i]) rs[len++] = this.values[i];
+        return rs;
+    }
+
+    @Override
+    public String[] getValues(String... names) {
+        int len = 0;
+        final String[] rs = new String[this.count];
+        for (int i = 0; i < this.count; i++) {
+            for (String name : names) {
+                if (name != null && matches(i, name, hash(name))) {
+                    rs[len++] = this.values[i];
+                    break;
+                }
+            }
+        }
+        return len == rs.length ? rs : Arrays.copyOf(rs, len);
+    }
+
+    @Override
+    public String[] getNames() {
+        int len = 0;
+        final String[] rs = new String[this.count];
+        for (int i = 0; i < this.count; i++) {
+            if (find(this.names[i], this.hashes[i]) == i) rs[len++] = this.names[i];
+        }
+        return len == rs.length ? rs : Arrays.copyOf(rs, len);
+    }
+
+    @Override
+    public Entry<String>[] getStringEntrys() {
+        final Entry<String>[] rs = new Entry[this.count];
+        for (int i = 0; i < this.count; i++) {
+            rs[i] = new Entry<>(this.names[i], this.values[i]);
+        }
+        return rs;
+    }
+
+    @Override
+    public Entry<AnyValue>[] getAnyEntrys() {
+        return EMPTY_ANYENTRYS;
+    }
+
+    @Override
+    public AnyValue[] getAnyValues(String name) {
+        return EMPTY_ANYVALUES;
+    }
+
+    @Override
+    public AnyValue[] getAnyValues(String... names) {
+        return EMPTY_ANYVALUES;
+    }
+
+    @Override
+    public AnyValue getAnyValue(String name) {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return toString(0);
+    }
+
+    //返回同名的第一个值的下标， 没有返回-1
+    private int find(final String name, final int hash) {
+        final int[] tab = this.table;
+        final int mask = tab.length - 1;
+        int slot = hash & mask;
+        for (int k = tab[slot]; k != 0; k = tab[slot = (slot + 1) & mask]) {
+            if (matches(k - 1, name, hash)) return k - 1;
+        }
+        return -1;
+    }
+
+    private boolean matches(final int index, final String name, final int hash) {
+        if (this.hashes[index] != hash) return false;
+        final String n = this.names[index];
+        return n == name || (this.ignoreCase ? n.equalsIgnoreCase(name) : n.equals(name));
+    }
+
+    private int hash(final String name) {
+        return this.ignoreCase ? hashIgnoreCase(name) : spread(name.hashCode());
+    }
+
+    private void grow() {
+        final int size = this.names.length << 1;
+        this.names = Arrays.copyOf(this.names, size);
+        this.values = Arrays.copyOf(this.values, size);
+        this.hashes = Arrays.copyOf(this.hashes, size);
+        this.nexts = Arrays.copyOf(this.nexts, size);
+        this.lasts = Arrays.copyOf(this.lasts, size);
+        //索引表保持不超过一半的装载率
+        if (size << 1 > this.table.length) {
+            final int[] tab = new int[this.table.length << 1];
+            final int mask = tab.length - 1;
+            for (int i = 0; i < this.count; i++) {
+                if (find(this.names[i], this.hashes[i]) != i) continue; //只索引同名的第一个值
+                int slot = this.hashes[i] & mask;
+                while (tab[slot] != 0) slot = (slot + 1) & mask;
+                tab[slot] = i + 1;
+            }
+            this.table = tab;
+        }
+    }
+
+    //字符统一或上0x20， 大小写字母得到相同的hash; 其他字符可能因此相同， 但hash只用于初筛， 最终由equalsIgnoreCase判断
+    private static int hashIgnoreCase(final String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + (name.charAt(i) | 0x20);
+        }
+        return spread(hash);
+    }
+
+    //相近的name(如X-Header-1、X-Header-2)的hash低位也相近， 线性探测时会聚集成片， 乘以黄金分割数打散
+    private static int spread(final int hash) {
+        final int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equals(final byte[] bytes, final int start, final int end, final String value) {
+        if (end - start != value.length()) return false;
+        for (int i = start; i < end; i++) {
+            if (bytes[i] != value.charAt(i - start)) return false;
+        }
+        return true;
+    }
+}
@@ -12,7 +12,6 @@ import java.util.*;
 import java.util.concurrent.atomic.*;
 import java.util.logging.*;
 import java.util.regex.*;
-import org.redkale.util.AnyValue.DefaultAnyValue;
 
 /**
  *
@@ -39,7 +38,7 @@ public final class MultiContext {
 
     private final ByteArray buf = new ByteArray(64);
 
-    private final DefaultAnyValue parameters;
+    private final HttpValues parameters;
 
     private final Pattern fielnamePattern;
 
@@ -56,7 +55,7 @@ public final class MultiContext {
         }
     };
 
-    public MultiContext(final Charset charsetName, final String contentType, final DefaultAnyValue params, final InputStream in, String fielnameRegex) {
+    public MultiContext(final Charset charsetName, final String contentType, final HttpValues params, final InputStream in, String fielnameRegex) {
         this.charset = charsetName == null ? UTF8 : charsetName;
         this.contentType = contentType.trim();
         this.parameters = params;
@@ -89,7 +88,7 @@ public final class MultiContext {
         final byte[] boundarray = ("\n" + boundarystr).getBytes();
         final byte[] buffer = new byte[boundarray.length];
         final InputStream input = this.in;
-        final DefaultAnyValue params = this.parameters;
+        final HttpValues params = this.parameters;
         final AtomicBoolean finaled = new AtomicBoolean(false);
         return () -> new Iterator<MultiPart>() {
 
@@ -237,7 +236,7 @@ public final class MultiContext {
         return buf.toString(this.charset).trim();
     }
 
-    private static String parseValue(final String str, String name) {
+    static String parseValue(final String str, String name) {
         if (str == null) return null;
         final String key = "; " + name + "=\"";
         int pos = str.indexOf(key);
@@ -0,0 +1,141 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+
+/**
+ * AsyncMultiContext解析文件上传时接收文件内容的回调接口 <br>
+ * 回调在读取连接数据的IO线程或上一次data返回的CompletableFuture完成的线程中执行， 同一个请求的回调不会并发执行。
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ */
+public interface MultiPartHandler {
+
+    /**
+     * 文件part开始
+     *
+     * @param name        表单字段名
+     * @param filename    文件名(已去掉路径)
+     * @param contentType 文件的Content-Type
+     *
+     * @return 是否接收该文件， 返回false则跳过该part的内容
+     *
+     * @throws IOException IO异常
+     */
+    public boolean begin(String name, String filename, String contentType) throws IOException;
+
+    /**
+     * 文件part的一段内容， data在返回的CompletableFuture完成后会被复用， 完成之前不会继续读取连接数据
+     *
+     * @param data 内容
+     *
+     * @return 处理完成的CompletableFuture， 同步处理时可返回null
+     *
+     * @throws IOException IO异常
+     */
+    public CompletableFuture<?> data(ByteBuffer data) throws IOException;
+
+    /**
+     * 文件part结束
+     *
+     * @param size 文件大小
+     *
+     * @throws IOException IO异常
+     */
+    public void end(long size) throws IOException;
+
+    /**
+     * 解析失败， 如连接断开、part超出大小限制
+     *
+     * @param exc 异常
+     */
+    default void failed(Throwable exc) {
+    }
+
+    /**
+     * 创建将每个文件写入AsynchronousFileChannel的MultiPartHandler
+     *
+     * @param fileFunction 根据表单字段名、文件名返回保存的文件， 返回null表示跳过该文件
+     *
+     * @return MultiPartHandler
+     */
+    public static MultiPartHandler create(final BiFunction<String, String, File> fileFunction) {
+        return new MultiPartHandler() {
+
+            private File file;
+
+            private AsynchronousFileChannel out;
+
+            private long position;
+
+            @Override
+            public boolean begin(String name, String filename, String contentType) throws IOException {
+                this.file = fileFunction.apply(name, filename);
+                if (this.file == null) return false;
+                this.out = AsynchronousFileChannel.open(this.file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                this.position = 0;
+                return true;
+            }
+
+            @Override
+            public CompletableFuture<?> data(ByteBuffer data) {
+                final CompletableFuture<Void> future = new CompletableFuture<>();
+                write(data, future);
+                return future;
+            }
+
+            private void write(final ByteBuffer data, final CompletableFuture<Void> future) {
+                this.out.write(data, this.position, future, new CompletionHandler<Integer, CompletableFuture<Void>>() {
+
+                    @Override
+                    public void completed(Integer result, CompletableFuture<Void> attachment) {
+                        position += result;
+                        if (data.hasRemaining()) {
+                            write(data, attachment);
+                        } else {
+                            attachment.complete(null);
+                        }
+                    }
+
+                    @Override
+                    public void failed(Throwable exc, CompletableFuture<Void> attachment) {
+                        attachment.completeExceptionally(exc);
+                    }
+                });
+            }
+
+            @Override
+            public void end(long size) throws IOException {
+                final AsynchronousFileChannel channel = this.out;
+                this.out = null;
+                this.file = null;
+                channel.close();
+            }
+
+            @Override
+            public void failed(Throwable exc) {
+                if (this.out == null) return;
+                try {
+                    this.out.close();
+                } catch (IOException e) {
+                    //do nothing
+                }
+                this.out = null;
+                this.file.delete();
+                this.file = null;
+            }
+        };
+    }
+}
@@ -908,6 +908,7 @@ public abstract class Sncp {
         int mod = serviceClass.getModifiers();
         boolean realed = !(java.lang.reflect.Modifier.isAbstract(mod) || serviceClass.isInterface());
         if (!java.lang.reflect.Modifier.isPublic(mod)) return null;
+        if (transport != null) transport.start(); //预建连接
         final String supDynName = serviceClass.getName().replace('.', '/');
         final String clientName = SncpClient.class.getName().replace('.', '/');
         final String clientDesc = Type.getDescriptor(SncpClient.class);
@@ -12,6 +12,7 @@ import java.nio.*;
 import java.nio.channels.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.*;
 import java.util.logging.*;
 import org.redkale.convert.bson.*;
@@ -37,7 +38,7 @@ public final class SncpClient {
 
         protected final Method method;
 
-        protected final Type resultTypes;  //void 必须设为 null
+        protected final Type resultTypes;  //void 必须设为 null; 异步方法为CompletableFuture或CompletionHandler的结果类型
 
         protected final Type[] paramTypes;
 
@@ -47,19 +48,41 @@ public final class SncpClient {
 
         protected final int addressSourceParamIndex;
 
-        public SncpAction(Method method, DLong actionid) {
+        protected final int hashKeyParamIndex; //RpcHashKey参数的位置， -1表示没有
+
+        protected final boolean futureResult; //返回类型是否为CompletableFuture
+
+        protected final int handlerParamIndex; //CompletionHandler参数的位置， -1表示没有
+
+        protected final long timeout; //超时毫秒数
+
+        public SncpAction(Class serviceClass, Method method, DLong actionid) {
             this.actionid = actionid;
             Type rt = method.getGenericReturnType();
             if (rt instanceof TypeVariable) {
                 TypeVariable tv = (TypeVariable) rt;
                 if (tv.getBounds().length == 1) rt = tv.getBounds()[0];
             }
-            this.resultTypes = rt == void.class ? null : rt;
             this.paramTypes = method.getGenericParameterTypes();
             this.method = method;
+            this.futureResult = method.getReturnType() == CompletableFuture.class;
+            this.handlerParamIndex = getHandlerParamIndex(method);
+            if (this.handlerParamIndex >= 0 && method.getReturnType() != void.class) {
+                throw new RuntimeException(method + " has CompletionHandler parameter but return type not void");
+            }
+            if (this.futureResult) {
+                rt = getAsyncResultType(rt);
+            } else if (this.handlerParamIndex >= 0) {
+                rt = getAsyncResultType(this.paramTypes[this.handlerParamIndex]);
+            }
+            this.resultTypes = rt == void.class ? null : rt;
+            RpcTimeout rpcTimeout = method.getAnnotation(RpcTimeout.class);
+            if (rpcTimeout == null && serviceClass != null) rpcTimeout = (RpcTimeout) serviceClass.getAnnotation(RpcTimeout.class);
+            this.timeout = rpcTimeout == null ? DEFAULT_TIMEOUT : rpcTimeout.value();
             Annotation[][] anns = method.getParameterAnnotations();
             int targetAddrIndex = -1;
             int sourceAddrIndex = -1;
+            int hashKeyIndex = -1;
 
             boolean hasattr = false;
             Attribute[] atts = new Attribute[paramTypes.length + 1];
@@ -73,6 +96,8 @@ public final class SncpClient {
                                 targetAddrIndex = i;
                             } else if (ann.annotationType() == RpcSourceAddress.class && SocketAddress.class.isAssignableFrom(params[i])) {
                                 sourceAddrIndex = i;
+                            } else if (ann.annotationType() == RpcHashKey.class) {
+                                hashKeyIndex = i;
                             }
                         }
                         for (Annotation ann : anns[i]) {
@@ -91,6 +116,7 @@ public final class SncpClient {
             }
             this.addressTargetParamIndex = targetAddrIndex;
             this.addressSourceParamIndex = sourceAddrIndex;
+            this.hashKeyParamIndex = hashKeyIndex;
             this.paramAttrs = hasattr ? atts : null;
         }
 
@@ -100,8 +126,46 @@ public final class SncpClient {
         }
     }
 
+    //获取CompletionHandler参数的位置， 没有返回-1
+    static int getHandlerParamIndex(Method method) {
+        Class<?>[] params = method.getParameterTypes();
+        for (int i = 0; i < params.length; i++) {
+            if (params[i] == CompletionHandler.class) return i;
+        }
+        return -1;
+    }
+
+    //获取CompletableFuture<T>、CompletionHandler<T, A>中T的类型
+    static Type getAsyncResultType(Type type) {
+        if (!(type instanceof ParameterizedType)) return Object.class;
+        Type rt = ((ParameterizedType) type).getActualTypeArguments()[0];
+        if (rt instanceof WildcardType) rt = ((WildcardType) rt).getUpperBounds()[0];
+        if (rt instanceof TypeVariable) {
+            TypeVariable tv = (TypeVariable) rt;
+            rt = tv.getBounds().length == 1 ? tv.getBounds()[0] : Object.class;
+        }
+        return rt;
+    }
+
     protected static final Logger logger = Logger.getLogger(SncpClient.class.getSimpleName());
 
+    //默认的远程调用超时毫秒数
+    public static final long DEFAULT_TIMEOUT = 5000L;
+
+    //异步远程调用的超时由该定时器统一处理， 不占用调用线程
+    private static final ScheduledThreadPoolExecutor timeoutScheduler = new ScheduledThreadPoolExecutor(1, (Runnable r) -> {
+        Thread t = new Thread(r, "Redkale-SncpClient-Timeout-Thread");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        timeoutScheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    //多路复用连接中按seqid对应响应， seqid须在进程内唯一
+    private static final AtomicLong seqidSequence = new AtomicLong(System.nanoTime());
+
     protected final boolean finest = logger.isLoggable(Level.FINEST);
 
     protected final JsonConvert convert = JsonFactory.root().getConvert();
@@ -138,7 +202,7 @@ public final class SncpClient {
         final List<SncpAction> methodens = new ArrayList<>();
         //------------------------------------------------------------------------------
         for (java.lang.reflect.Method method : parseMethod(serviceClass)) {
-            methodens.add(new SncpAction(method, Sncp.hash(method)));
+            methodens.add(new SncpAction(serviceClass, method, Sncp.hash(method)));
         }
         this.actions = methodens.toArray(new SncpAction[methodens.size()]);
         this.addrBytes = clientAddress == null ? new byte[4] : clientAddress.getAddress().getAddress();
@@ -149,7 +213,7 @@ public final class SncpClient {
         final List<SncpAction> actions = new ArrayList<>();
         //------------------------------------------------------------------------------
         for (java.lang.reflect.Method method : parseMethod(serviceClass)) {
-            actions.add(new SncpAction(method, Sncp.hash(method)));
+            actions.add(new SncpAction(serviceClass, method, Sncp.hash(method)));
         }
         return actions;
     }
@@ -259,20 +323,73 @@ public final class SncpClient {
     //只给远程模式调用的
     public <T> T remote(final BsonConvert bsonConvert, final JsonConvert jsonConvert, Transport transport, final int index, final Object... params) {
         final SncpAction action = actions[index];
+        if (action.futureResult || action.handlerParamIndex >= 0) return (T) remoteAsync(bsonConvert, jsonConvert, transport, action, params);
         SncpFuture<byte[]> future = remote0(bsonConvert, jsonConvert, transport, null, action, params);
+        final byte[] body;
+        try {
+            body = future.get(action.timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            future.completeExceptionally(e); //多路复用连接需要清除等待中的seqid
+            logger.log(Level.SEVERE, actions[index].method + " sncp (params: " + jsonConvert.convertTo(params) + ") remote error", e);
+            throw new RuntimeException(actions[index].method + " sncp remote error", e);
+        }
+        return readResult(bsonConvert, action, body, params);
+    }
+
+    //异步方法立即返回， 收到响应后在IO线程中完成CompletableFuture或回调CompletionHandler
+    private CompletableFuture remoteAsync(final BsonConvert bsonConvert, final JsonConvert jsonConvert, final Transport transport, final SncpAction action, final Object... params) {
+        final CompletionHandler handler = action.handlerParamIndex >= 0 ? (CompletionHandler) params[action.handlerParamIndex] : null;
+        final CompletableFuture result = handler == null ? new CompletableFuture() : null;
+        final SncpFuture<byte[]> future;
+        try {
+            future = remote0(bsonConvert, jsonConvert, transport, null, action, params);
+        } catch (RuntimeException e) {
+            if (handler != null) {
+                handler.failed(e, null);
+            } else {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+        final ScheduledFuture timeoutFuture = timeoutScheduler.schedule(() -> {
+            future.completeExceptionally(new TimeoutException(action.method + " sncp remote timeout(" + action.timeout + "ms)"));
+        }, action.timeout, TimeUnit.MILLISECONDS);
+        future.whenComplete((body, exc) -> {
+            timeoutFuture.cancel(false);
+            Object rs = null;
+            if (exc == null) {
+                try {
+                    rs = readResult(bsonConvert, action, body, params);
+                } catch (Throwable t) {
+                    exc = t;
+                }
+            }
+            if (exc != null) {
+                logger.log(Level.SEVERE, action.method + " sncp remote async error", exc);
+                if (handler != null) {
+                    handler.failed(exc, null);
+                } else {
+                    result.completeExceptionally(exc);
+                }
+            } else if (handler != null) {
+                handler.completed(rs, null);
+            } else {
+                result.complete(rs);
+            }
+        });
+        return result;
+    }
 
+    private <T> T readResult(final BsonConvert bsonConvert, final SncpAction action, final byte[] body, final Object... params) {
         final BsonReader reader = bsonConvert.pollBsonReader();
         try {
-            reader.setBytes(future.get(5, TimeUnit.SECONDS));
+            reader.setBytes(body);
             byte i;
             while ((i = reader.readByte()) != 0) {
                 final Attribute attr = action.paramAttrs[i];
                 attr.set(params[i - 1], bsonConvert.convertFrom(attr.type(), reader));
             }
             return bsonConvert.convertFrom(action.resultTypes, reader);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            logger.log(Level.SEVERE, actions[index].method + " sncp (params: " + jsonConvert.convertTo(params) + ") remote error", e);
-            throw new RuntimeException(actions[index].method + " sncp remote error", e);
         } finally {
             bsonConvert.offerBsonReader(reader);
         }
@@ -303,22 +420,35 @@ public final class SncpClient {
         final BsonWriter writer = bsonConvert.pollBsonWriter(transport.getBufferSupplier()); // 将head写入
         writer.writeTo(DEFAULT_HEADER);
         for (int i = 0; i < params.length; i++) {
+            if (i == action.handlerParamIndex) continue; //CompletionHandler参数不传输
             bsonConvert.convertTo(writer, myparamtypes[i], params[i]);
         }
         final int reqBodyLength = writer.count() - HEADER_SIZE; //body总长度
-        final long seqid = System.nanoTime();
+        final long seqid = seqidSequence.incrementAndGet();
         final DLong actionid = action.actionid;
         final SocketAddress addr = addr0 == null ? (action.addressTargetParamIndex >= 0 ? (SocketAddress) params[action.addressTargetParamIndex] : null) : addr0;
-        final AsyncConnection conn = transport.pollConnection(addr);
-        if (conn == null || !conn.isOpen()) {
-            logger.log(Level.SEVERE, action.method + " sncp (params: " + convert.convertTo(params) + ") cannot connect " + (conn == null ? addr : conn.getRemoteAddress()));
-            throw new RuntimeException("sncp " + (conn == null ? addr : conn.getRemoteAddress()) + " cannot connect");
-        }
+        final Object hashKey = action.hashKeyParamIndex >= 0 ? params[action.hashKeyParamIndex] : null;
         final ByteBuffer[] sendBuffers = writer.toBuffers();
-        fillHeader(sendBuffers[0], seqid, actionid, reqBodyLength);
+        final boolean multiplex = transport.getMultiplex() > 0 && transport.isTCP();
+        fillHeader(sendBuffers[0], seqid, actionid, reqBodyLength, multiplex);
+        if (multiplex) {
+            return remoteMux0(transport, addr, hashKey, seqid, action, sendBuffers, params);
+        }
+        final SncpFuture<byte[]> future = new SncpFuture(false);
+        transport.pollConnectionAsync(addr, hashKey).whenComplete((conn, exc) -> {
+            if (exc != null) {
+                transport.offerBuffer(sendBuffers);
+                logger.log(Level.SEVERE, action.method + " sncp (params: " + convert.convertTo(params) + ") cannot connect " + addr, exc);
+                future.set(new RuntimeException("sncp " + addr + " cannot connect", exc));
+            } else {
+                remoteSncp0(transport, conn, seqid, action, sendBuffers, future, params);
+            }
+        });
+        return future;
+    }
 
+    private void remoteSncp0(final Transport transport, final AsyncConnection conn, final long seqid, final SncpAction action, final ByteBuffer[] sendBuffers, final SncpFuture<byte[]> future, final Object... params) {
         final ByteBuffer buffer = transport.pollBuffer();
-        final SncpFuture<byte[]> future = new SncpFuture(false);
         conn.write(sendBuffers, sendBuffers, new CompletionHandler<Integer, ByteBuffer[]>() {
 
             @Override
@@ -380,7 +510,10 @@ public final class SncpClient {
                         final int retcode = buffer.getInt();
                         if (retcode != 0) {
                             logger.log(Level.SEVERE, action.method + " sncp (params: " + convert.convertTo(params) + ") deal error (retcode=" + retcode + ", retinfo=" + SncpResponse.getRetCodeInfo(retcode) + ")");
-                            throw new RuntimeException("remote service(" + action.method + ") deal error (retcode=" + retcode + ", retinfo=" + SncpResponse.getRetCodeInfo(retcode) + ")");
+                            future.set(new RuntimeException("remote service(" + action.method + ") deal error (retcode=" + retcode + ", retinfo=" + SncpResponse.getRetCodeInfo(retcode) + ")"));
+                            transport.offerBuffer(buffer);
+                            transport.offerConnection(true, conn);
+                            return;
                         }
 
                         if (respBodyLength > buffer.remaining()) { // 数据不全，需要继续读取
@@ -407,6 +540,7 @@ public final class SncpClient {
                         logger.log(Level.SEVERE, action.method + " sncp (params: " + convert.convertTo(params) + ") remote read exec failed", exc);
                         future.set(new RuntimeException(action.method + " sncp remote exec failed"));
                         transport.offerBuffer(buffer);
+                        transport.markFailure(conn.getRemoteAddress(), exc);
                         transport.offerConnection(true, conn);
                     }
                 });
@@ -415,13 +549,59 @@ public final class SncpClient {
             @Override
             public void failed(Throwable exc, ByteBuffer[] attachment) {
                 logger.log(Level.SEVERE, action.method + " sncp (params: " + convert.convertTo(params) + ") remote write exec failed", exc);
+                future.set(new RuntimeException(action.method + " sncp remote write failed"));
                 transport.offerBuffer(buffer);
+                transport.markFailure(conn.getRemoteAddress(), exc);
                 transport.offerConnection(true, conn);
             }
         });
+    }
+
+    private SncpFuture<byte[]> remoteMux0(final Transport transport, final SocketAddress addr, final Object hashKey, final long seqid, final SncpAction action, final ByteBuffer[] sendBuffers, final Object... params) {
+        final SncpFuture<byte[]> future = new SncpFuture(false);
+        SncpMuxConnection.poll(transport, addr, hashKey).whenComplete((conn, exc) -> {
+            if (exc != null) {
+                transport.offerBuffer(sendBuffers);
+                logger.log(Level.SEVERE, action.method + " sncp (params: " + convert.convertTo(params) + ") cannot connect " + addr, exc);
+                future.set(new RuntimeException("sncp " + addr + " cannot connect", exc));
+            } else {
+                remoteMux0(conn, seqid, action, sendBuffers, future, params);
+            }
+        });
         return future;
     }
 
+    private void remoteMux0(final SncpMuxConnection conn, final long seqid, final SncpAction action, final ByteBuffer[] sendBuffers, final SncpFuture<byte[]> future, final Object... params) {
+        future.whenComplete((rs, exc) -> {
+            if (exc != null) conn.cancel(seqid); //超时后不再等待响应
+        });
+        conn.write(seqid, sendBuffers, new CompletionHandler<byte[], ByteBuffer>() {
+
+            @Override
+            public void completed(byte[] body, ByteBuffer header) {
+                try {
+                    checkResult(seqid, action, header);
+                    header.getInt(); //body长度
+                    final int retcode = header.getInt();
+                    if (retcode != 0) {
+                        logger.log(Level.SEVERE, action.method + " sncp (params: " + convert.convertTo(params) + ") deal error (retcode=" + retcode + ", retinfo=" + SncpResponse.getRetCodeInfo(retcode) + ")");
+                        future.set(new RuntimeException("remote service(" + action.method + ") deal error (retcode=" + retcode + ", retinfo=" + SncpResponse.getRetCodeInfo(retcode) + ")"));
+                        return;
+                    }
+                    future.set(body);
+                } catch (RuntimeException e) {
+                    future.set(e);
+                }
+            }
+
+            @Override
+            public void failed(Throwable exc, ByteBuffer header) {
+                logger.log(Level.SEVERE, action.method + " sncp (params: " + convert.convertTo(params) + ") remote multiplex exec failed", exc);
+                future.set(new RuntimeException(action.method + " sncp remote exec failed"));
+            }
+        });
+    }
+
     private void checkResult(long seqid, final SncpAction action, ByteBuffer buffer) {
         long rseqid = buffer.getLong();
         if (rseqid != seqid) throw new RuntimeException("sncp(" + action.method + ") response.seqid = " + seqid + ", but request.seqid =" + rseqid);
@@ -436,7 +616,7 @@ public final class SncpClient {
         buffer.getChar(); //端口
     }
 
-    private void fillHeader(ByteBuffer buffer, long seqid, DLong actionid, int bodyLength) {
+    private void fillHeader(ByteBuffer buffer, long seqid, DLong actionid, int bodyLength, boolean multiplex) {
         //---------------------head----------------------------------
         final int currentpos = buffer.position();
         buffer.position(0);
@@ -448,17 +628,11 @@ public final class SncpClient {
         buffer.put(addrBytes);
         buffer.putChar((char) this.addrPort);
         buffer.putInt(bodyLength); //body长度        
-        buffer.putInt(0); //结果码， 请求方固定传0
+        buffer.putInt(multiplex ? SncpRequest.FLAG_MULTIPLEX : 0); //结果码， 请求方只传标记位
         buffer.position(currentpos);
     }
 
-    protected static final class SncpFuture<T> implements Future<T> {
-
-        private volatile boolean done;
-
-        private T result;
-
-        private RuntimeException ex;
+    protected static final class SncpFuture<T> extends CompletableFuture<T> {
 
         private final boolean rest;
 
@@ -468,8 +642,7 @@ public final class SncpClient {
 
         public SncpFuture(boolean rest, T result) {
             this.rest = rest;
-            this.result = result;
-            this.done = true;
+            complete(result);
         }
 
         public boolean isRest() {
@@ -477,66 +650,11 @@ public final class SncpClient {
         }
 
         public void set(T result) {
-            this.result = result;
-            this.done = true;
-            synchronized (this) {
-                notifyAll();
-            }
+            complete(result);
         }
 
         public void set(RuntimeException ex) {
-            this.ex = ex;
-            this.done = true;
-            synchronized (this) {
-                notifyAll();
-            }
-        }
-
-        @Override
-        public boolean cancel(boolean mayInterruptIfRunning) {
-            return false;
-        }
-
-        @Override
-        public boolean isCancelled() {
-            return false;
-        }
-
-        @Override
-        public boolean isDone() {
-            return done;
-        }
-
-        @Override
-        public T get() throws InterruptedException, ExecutionException {
-            if (done) {
-                if (ex != null) throw ex;
-                return result;
-            }
-            synchronized (this) {
-                if (!done) wait(10_000);
-            }
-            if (done) {
-                if (ex != null) throw ex;
-                return result;
-            }
-            throw new InterruptedException();
-        }
-
-        @Override
-        public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-            if (done) {
-                if (ex != null) throw ex;
-                return result;
-            }
-            synchronized (this) {
-                if (!done) wait(unit.toMillis(timeout));
-            }
-            if (done) {
-                if (ex != null) throw ex;
-                return result;
-            }
-            throw new TimeoutException();
+            completeExceptionally(ex);
         }
     }
 }
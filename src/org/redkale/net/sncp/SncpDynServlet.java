@@ -10,7 +10,10 @@ import java.io.*;
 import java.lang.annotation.*;
 import java.lang.reflect.*;
 import java.nio.*;
+import java.nio.channels.CompletionHandler;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.*;
 import java.util.logging.*;
 import javax.annotation.*;
@@ -120,16 +123,21 @@ public final class SncpDynServlet extends SncpServlet {
             BsonWriter out = action.convert.pollBsonWriter(bufferSupplier);
             out.writeTo(DEFAULT_HEADER);
             BsonReader in = action.convert.pollBsonReader();
+            final SncpAsyncHandler handler = action.isAsync() ? new SncpAsyncHandler(action, response, out) : null;
             try {
                 in.setBytes(request.getBody());
-                action.action(in, out);
-                response.finish(0, out);
+                action.action(in, out, handler);
+                if (handler == null) response.finish(0, out);
             } catch (Throwable t) {
-                response.getContext().getLogger().log(Level.INFO, "sncp execute error(" + request + ")", t);
-                response.finish(SncpResponse.RETCODE_THROWEXCEPTION, null);
+                if (handler == null) {
+                    response.getContext().getLogger().log(Level.INFO, "sncp execute error(" + request + ")", t);
+                    response.finish(SncpResponse.RETCODE_THROWEXCEPTION, null);
+                } else {
+                    handler.failed(t, null);
+                }
             } finally {
                 action.convert.offerBsonReader(in);
-                action.convert.offerBsonWriter(out);
+                if (handler == null) action.convert.offerBsonWriter(out); //异步方法由handler完成时回收
             }
         }
     }
@@ -143,9 +151,26 @@ public final class SncpDynServlet extends SncpServlet {
 
         protected org.redkale.util.Attribute[] paramAttrs; // 为null表示无RpcCall处理，index=0固定为null, 其他为参数标记的RpcCall回调方法
 
-        protected java.lang.reflect.Type[] paramTypes;  //index=0表示返回参数的type， void的返回参数类型为null
+        protected java.lang.reflect.Type[] paramTypes;  //index=0表示返回参数的type， void的返回参数类型为null; 异步方法为结果的type
+
+        protected boolean futureResult; //返回类型是否为CompletableFuture
 
-        public abstract void action(final BsonReader in, final BsonWriter out) throws Throwable;
+        protected int handlerParamIndex = -1; //CompletionHandler参数的位置， -1表示没有
+
+        /**
+         * 读取参数并调用Service方法， 同步方法将结果写入out; 异步方法的结果由handler写入并结束response
+         *
+         * @param in      BsonReader
+         * @param out     BsonWriter
+         * @param handler 异步方法的回调， 同步方法为null
+         *
+         * @throws Throwable 异常
+         */
+        public abstract void action(final BsonReader in, final BsonWriter out, final SncpAsyncHandler handler) throws Throwable;
+
+        public boolean isAsync() {
+            return futureResult || handlerParamIndex >= 0;
+        }
 
         public final void _callParameter(final BsonWriter out, final Object... params) {
             if (paramAttrs != null) {
@@ -172,7 +197,7 @@ public final class SncpDynServlet extends SncpServlet {
          *      public TestService service;
          *
          *      &#64;Override
-         *      public void action(final BsonReader in, final BsonWriter out) throws Throwable {
+         *      public void action(final BsonReader in, final BsonWriter out, final SncpAsyncHandler handler) throws Throwable {
          *          TestBean arg1 = convert.convertFrom(paramTypes[1], in);
          *          String arg2 = convert.convertFrom(paramTypes[2], in);
          *          int arg3 = convert.convertFrom(paramTypes[3], in);
@@ -198,6 +223,10 @@ public final class SncpDynServlet extends SncpServlet {
             final String convertReaderDesc = Type.getDescriptor(BsonReader.class);
             final String convertWriterDesc = Type.getDescriptor(BsonWriter.class);
             final String serviceDesc = Type.getDescriptor(serviceClass);
+            final String handlerName = SncpAsyncHandler.class.getName().replace('.', '/');
+            final String handlerDesc = Type.getDescriptor(SncpAsyncHandler.class);
+            final int handlerParamIndex = SncpClient.getHandlerParamIndex(method);
+            final boolean futureResult = method.getReturnType() == CompletableFuture.class;
             String newDynName = serviceName.substring(0, serviceName.lastIndexOf('/') + 1)
                 + "DynAction" + serviceClass.getSimpleName() + "_" + method.getName() + "_" + actionid;
             while (true) {
@@ -237,14 +266,23 @@ public final class SncpDynServlet extends SncpServlet {
                 throw new RuntimeException(ex); //不可能会发生
             }
             { // action方法
-                mv = new AsmMethodVisitor(cw.visitMethod(ACC_PUBLIC, "action", "(" + convertReaderDesc + convertWriterDesc + ")V", null, new String[]{"java/lang/Throwable"}));
+                mv = new AsmMethodVisitor(cw.visitMethod(ACC_PUBLIC, "action", "(" + convertReaderDesc + convertWriterDesc + handlerDesc + ")V", null, new String[]{"java/lang/Throwable"}));
                 //mv.setDebug(true);
                 int iconst = ICONST_1;
                 int intconst = 1;
-                int store = 3; //action的参数个数+1
+                int store = 4; //action的参数个数+1
                 final Class[] paramClasses = method.getParameterTypes();
                 int[][] codes = new int[paramClasses.length][2];
                 for (int i = 0; i < paramClasses.length; i++) { //参数
+                    if (i == handlerParamIndex) { //CompletionHandler参数不从请求中读取， 由handler代替
+                        mv.visitVarInsn(ALOAD, 3);
+                        mv.visitVarInsn(ASTORE, store);
+                        codes[i] = new int[]{ALOAD, store};
+                        iconst++;
+                        intconst++;
+                        store++;
+                        continue;
+                    }
                     mv.visitVarInsn(ALOAD, 0);
                     mv.visitFieldInsn(GETFIELD, newDynName, "convert", Type.getDescriptor(BsonConvert.class));
                     mv.visitVarInsn(ALOAD, 0);
@@ -327,7 +365,7 @@ public final class SncpDynServlet extends SncpServlet {
                     mv.visitIntInsn(BIPUSH, paramClasses.length);
                 }
                 mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
-                int insn = 2;
+                int insn = 3;
                 for (int j = 0; j < paramClasses.length; j++) {
                     final Class pt = paramClasses[j];
                     mv.visitInsn(DUP);
@@ -361,6 +399,12 @@ public final class SncpDynServlet extends SncpServlet {
                 if (returnClass == void.class) { //返回
                     mv.visitInsn(RETURN);
                     maxStack = 8;
+                } else if (futureResult) { //结果由handler在CompletableFuture完成后写入
+                    mv.visitVarInsn(ALOAD, 3);
+                    mv.visitVarInsn(ALOAD, store);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, handlerName, "future", "(Ljava/util/concurrent/CompletableFuture;)V", false);
+                    mv.visitInsn(RETURN);
+                    store++;
                 } else {
                     mv.visitVarInsn(ALOAD, 0);
                     mv.visitFieldInsn(GETFIELD, newDynName, "convert", Type.getDescriptor(BsonConvert.class));
@@ -395,9 +439,16 @@ public final class SncpDynServlet extends SncpServlet {
                     TypeVariable tv = (TypeVariable) rt;
                     if (tv.getBounds().length == 1) rt = tv.getBounds()[0];
                 }
+                if (futureResult) {
+                    rt = SncpClient.getAsyncResultType(rt);
+                } else if (handlerParamIndex >= 0) {
+                    rt = SncpClient.getAsyncResultType(ptypes[handlerParamIndex]);
+                }
                 types[0] = rt;
                 System.arraycopy(ptypes, 0, types, 1, ptypes.length);
                 instance.paramTypes = types;
+                instance.futureResult = futureResult;
+                instance.handlerParamIndex = handlerParamIndex;
 
                 org.redkale.util.Attribute[] atts = new org.redkale.util.Attribute[ptypes.length + 1];
                 Annotation[][] anns = method.getParameterAnnotations();
@@ -426,4 +477,60 @@ public final class SncpDynServlet extends SncpServlet {
         }
     }
 
+    /**
+     * 异步方法(返回CompletableFuture或含CompletionHandler参数)的结果回调， 结果写入后结束response
+     */
+    public static final class SncpAsyncHandler implements CompletionHandler<Object, Object> {
+
+        private final SncpServletAction action;
+
+        private final SncpResponse response;
+
+        private final BsonWriter out;
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        public SncpAsyncHandler(SncpServletAction action, SncpResponse response, BsonWriter out) {
+            this.action = action;
+            this.response = response;
+            this.out = out;
+        }
+
+        public void future(CompletableFuture future) {
+            if (future == null) {
+                completed(null, null);
+                return;
+            }
+            future.whenComplete((rs, exc) -> {
+                if (exc != null) {
+                    failed((Throwable) exc, null);
+                } else {
+                    completed(rs, null);
+                }
+            });
+        }
+
+        @Override
+        public void completed(Object result, Object attachment) {
+            if (!done.compareAndSet(false, true)) return;
+            try {
+                action.convert.convertTo(out, action.paramTypes[0], result);
+                response.finish(0, out);
+            } catch (Throwable t) {
+                response.getContext().getLogger().log(Level.INFO, "sncp async complete error(" + action.method + ")", t);
+                response.finish(SncpResponse.RETCODE_THROWEXCEPTION, null);
+            } finally {
+                action.convert.offerBsonWriter(out);
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, Object attachment) {
+            if (!done.compareAndSet(false, true)) return;
+            response.getContext().getLogger().log(Level.INFO, "sncp async execute error(" + action.method + ")", exc);
+            action.convert.offerBsonWriter(out);
+            response.finish(SncpResponse.RETCODE_THROWEXCEPTION, null);
+        }
+    }
+
 }
@@ -0,0 +1,303 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.sncp;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+import org.redkale.net.*;
+import static org.redkale.net.sncp.SncpRequest.HEADER_SIZE;
+
+/**
+ * 多路复用的SNCP连接， 同一连接上可同时存在多个未完成的请求， 响应通过header中的seqid与请求对应。 <br>
+ * 写入时将排队中的请求合并为一次gathering write; 读取时持续解析响应帧并按seqid分发。 <br>
+ * 每个远程地址保持&lt;group&gt;节点multiplex属性指定数量的连接， 请求按轮询方式分配到各连接; 连接保存在所属的Transport中， 随Transport关闭。
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ */
+final class SncpMuxConnection implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(SncpMuxConnection.class.getSimpleName());
+
+    //一次gathering write最多合并的ByteBuffer数量
+    private static final int MAX_GATHER_BUFFERS = 64;
+
+    private static final AtomicInteger sequence = new AtomicInteger();
+
+    private final Transport transport;
+
+    private final AsyncConnection channel;
+
+    private final ConcurrentHashMap<Long, CompletionHandler<byte[], ByteBuffer>> handlers = new ConcurrentHashMap<>();
+
+    private final ConcurrentLinkedQueue<ByteBuffer[]> writeQueue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    private final ByteBuffer readBuffer;
+
+    private volatile boolean closed;
+
+    //----------------- 以下字段只在读取回调中访问 -----------------
+    private byte[] header;
+
+    private int headerOffset;
+
+    private byte[] body;
+
+    private int bodyOffset;
+
+    private SncpMuxConnection(Transport transport, AsyncConnection channel) {
+        this.transport = transport;
+        this.channel = channel;
+        this.channel.setReadTimeoutSecond(0); //读取循环常驻， 超时由请求方的Future控制
+        this.readBuffer = transport.pollBuffer();
+        //连接本身不计入节点进行中的请求数， 改为按等待响应的请求计数
+        transport.decrementInflight(channel.getRemoteAddress());
+    }
+
+    /**
+     * 获取指定地址的多路复用连接， addr为null时按Transport的负载均衡策略选择远程地址， 连接失败时依次尝试其他地址
+     *
+     * @param transport Transport
+     * @param addr      远程地址
+     * @param hashKey   一致性哈希的参数， 可以为null
+     *
+     * @return CompletableFuture
+     */
+    public static CompletableFuture<SncpMuxConnection> poll(final Transport transport, final SocketAddress addr, final Object hashKey) {
+        final int index = sequence.getAndIncrement() & 0x7fffffff;
+        if (addr != null) return poll(transport, addr, index);
+        final CompletableFuture<SncpMuxConnection> future = new CompletableFuture<>();
+        final List<InetSocketAddress> addrs = new ArrayList<>();
+        try {
+            addrs.add(transport.selectAddress(hashKey));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        for (InetSocketAddress other : transport.getRemoteAddresses()) {
+            if (!addrs.contains(other)) addrs.add(other);
+        }
+        poll(transport, addrs, 0, index, future);
+        return future;
+    }
+
+    private static void poll(final Transport transport, final List<InetSocketAddress> addrs, final int pos, final int index, final CompletableFuture<SncpMuxConnection> future) {
+        poll(transport, addrs.get(pos), index).whenComplete((conn, exc) -> {
+            if (exc == null) {
+                future.complete(conn);
+            } else if (pos + 1 < addrs.size()) {
+                poll(transport, addrs, pos + 1, index, future);
+            } else {
+                future.completeExceptionally(exc);
+            }
+        });
+    }
+
+    private static CompletableFuture<SncpMuxConnection> poll(final Transport transport, final SocketAddress addr, final int index) {
+        return transport.pollMultiplexConnection(addr, index, conn -> !conn.closed, () -> transport.pollConnectionAsync(addr, null).thenApply(channel -> {
+            SncpMuxConnection conn = new SncpMuxConnection(transport, channel);
+            conn.startRead();
+            return conn;
+        }));
+    }
+
+    /**
+     * 发送请求， buffers写完后会归还给Transport
+     *
+     * @param seqid   请求的seqid
+     * @param buffers 包含header的请求数据
+     * @param handler 响应回调， completed的参数分别为body和header
+     */
+    public void write(final long seqid, final ByteBuffer[] buffers, final CompletionHandler<byte[], ByteBuffer> handler) {
+        transport.incrementInflight(channel.getRemoteAddress());
+        handlers.put(seqid, handler);
+        if (closed) {
+            transport.offerBuffer(buffers);
+            if (removeHandler(seqid) != null) handler.failed(new IOException("sncp connection " + channel.getRemoteAddress() + " closed"), null);
+            return;
+        }
+        writeQueue.offer(buffers);
+        flush();
+    }
+
+    /**
+     * 取消等待响应， 用于请求超时
+     *
+     * @param seqid 请求的seqid
+     */
+    public void cancel(final long seqid) {
+        removeHandler(seqid);
+    }
+
+    private CompletionHandler<byte[], ByteBuffer> removeHandler(final long seqid) {
+        CompletionHandler<byte[], ByteBuffer> handler = handlers.remove(seqid);
+        if (handler != null) transport.decrementInflight(channel.getRemoteAddress());
+        return handler;
+    }
+
+    private void flush() {
+        if (!writing.compareAndSet(false, true)) return;
+        final List<ByteBuffer> list = new ArrayList<>();
+        ByteBuffer[] buffers;
+        while (list.size() < MAX_GATHER_BUFFERS && (buffers = writeQueue.poll()) != null) {
+            for (ByteBuffer buffer : buffers) {
+                list.add(buffer);
+            }
+        }
+        if (list.isEmpty() || closed) {
+            writing.set(false);
+            if (closed) clearWriteQueue();
+            else if (!writeQueue.isEmpty()) flush();
+            return;
+        }
+        final ByteBuffer[] srcs = list.toArray(new ByteBuffer[list.size()]);
+        channel.write(srcs, srcs, new CompletionHandler<Integer, ByteBuffer[]>() {
+
+            @Override
+            public void completed(Integer result, ByteBuffer[] attachments) {
+                int index = -1;
+                for (int i = 0; i < attachments.length; i++) {
+                    if (attachments[i].hasRemaining()) {
+                        index = i;
+                        break;
+                    } else {
+                        transport.offerBuffer(attachments[i]);
+                    }
+                }
+                if (index == 0) {
+                    channel.write(attachments, attachments, this);
+                    return;
+                } else if (index > 0) {
+                    ByteBuffer[] newattachs = new ByteBuffer[attachments.length - index];
+                    System.arraycopy(attachments, index, newattachs, 0, newattachs.length);
+                    channel.write(newattachs, newattachs, this);
+                    return;
+                }
+                writing.set(false);
+                if (!writeQueue.isEmpty()) flush();
+            }
+
+            @Override
+            public void failed(Throwable exc, ByteBuffer[] attachments) {
+                transport.offerBuffer(attachments);
+                writing.set(false);
+                close(exc);
+            }
+        });
+    }
+
+    private void startRead() {
+        readBuffer.clear();
+        channel.read(readBuffer, null, new CompletionHandler<Integer, Void>() {
+
+            @Override
+            public void completed(Integer count, Void attachment) {
+                if (count < 1) {
+                    failed(new IOException("sncp connection " + channel.getRemoteAddress() + " closed by peer"), attachment);
+                    return;
+                }
+                readBuffer.flip();
+                final List<Runnable> completions = new ArrayList<>();
+                try {
+                    while (readBuffer.hasRemaining()) {
+                        readFrame(readBuffer, completions);
+                    }
+                } catch (RuntimeException e) {
+                    failed(e, attachment);
+                    complete(completions);
+                    return;
+                }
+                readBuffer.clear();
+                //先发起下一次读取再执行响应回调， 回调中调用方的后续操作不会阻塞读取循环
+                channel.read(readBuffer, attachment, this);
+                complete(completions);
+            }
+
+            @Override
+            public void failed(Throwable exc, Void attachment) {
+                transport.offerBuffer(readBuffer);
+                close(exc);
+            }
+        });
+    }
+
+    private void complete(List<Runnable> completions) {
+        for (Runnable completion : completions) {
+            completion.run();
+        }
+    }
+
+    //解析一个响应帧， 帧完整时将对应请求的回调加入completions， 由调用方在发起下一次读取后执行
+    private void readFrame(ByteBuffer buffer, List<Runnable> completions) {
+        if (this.body == null) {
+            if (this.header == null) this.header = new byte[HEADER_SIZE];
+            int len = Math.min(buffer.remaining(), HEADER_SIZE - this.headerOffset);
+            buffer.get(this.header, this.headerOffset, len);
+            this.headerOffset += len;
+            if (this.headerOffset < HEADER_SIZE) return;
+            int bodylength = ((header[52] & 0xff) << 24) | ((header[53] & 0xff) << 16) | ((header[54] & 0xff) << 8) | (header[55] & 0xff);
+            if (bodylength < 0) throw new RuntimeException("sncp connection " + channel.getRemoteAddress() + " receive illegal bodylength " + bodylength);
+            this.body = new byte[bodylength];
+            this.bodyOffset = 0;
+        }
+        int len = Math.min(buffer.remaining(), this.body.length - this.bodyOffset);
+        buffer.get(this.body, this.bodyOffset, len);
+        this.bodyOffset += len;
+        if (this.bodyOffset < this.body.length) return;
+        transport.markSuccess(channel.getRemoteAddress());
+        final ByteBuffer headerBuffer = ByteBuffer.wrap(this.header);
+        final byte[] frameBody = this.body;
+        this.header = null;
+        this.headerOffset = 0;
+        this.body = null;
+        final CompletionHandler<byte[], ByteBuffer> handler = removeHandler(headerBuffer.getLong(0));
+        if (handler == null) { //已超时的请求
+            if (logger.isLoggable(Level.FINEST)) logger.finest("sncp connection " + channel.getRemoteAddress() + " receive expired response seqid = " + headerBuffer.getLong(0));
+            return;
+        }
+        completions.add(() -> {
+            try {
+                handler.completed(frameBody, headerBuffer);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "sncp connection " + channel.getRemoteAddress() + " response handler error", e);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        close(null);
+    }
+
+    private void close(Throwable exc) {
+        if (closed) return;
+        closed = true;
+        channel.dispose(); //创建时已从节点的请求数中减去， 不再经过offerConnection
+        clearWriteQueue();
+        if (exc != null) transport.markFailure(channel.getRemoteAddress(), exc);
+        for (Long seqid : new ArrayList<>(handlers.keySet())) {
+            CompletionHandler<byte[], ByteBuffer> handler = removeHandler(seqid);
+            if (handler != null) handler.failed(exc == null ? new IOException("sncp connection closed") : exc, null);
+        }
+    }
+
+    private void clearWriteQueue() {
+        ByteBuffer[] buffers;
+        while ((buffers = writeQueue.poll()) != null) {
+            transport.offerBuffer(buffers);
+        }
+    }
+}
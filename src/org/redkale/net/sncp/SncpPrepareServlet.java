@@ -58,6 +58,7 @@ public class SncpPrepareServlet extends PrepareServlet<DLong, SncpContext, SncpR
             response.finish(pongBuffer.duplicate());
             return;
         }
+        if (request.isMultiplex()) response.readNext(); //多路复用连接上的后续请求不必等待当前请求结束
         SncpServlet servlet = (SncpServlet) mappings.get(request.getServiceid());
         if (servlet == null) {
             response.finish(SncpResponse.RETCODE_ILLSERVICEID, null);  //无效serviceid
@@ -24,6 +24,9 @@ public final class SncpRequest extends Request<SncpContext> {
 
     public static final byte[] DEFAULT_HEADER = new byte[HEADER_SIZE];
 
+    //请求header中结果码位置的标记位: 请求来自多路复用连接， 同一连接上的请求可并发处理
+    public static final int FLAG_MULTIPLEX = 1;
+
     protected final BsonConvert convert;
 
     private long seqid;
@@ -40,10 +43,17 @@ public final class SncpRequest extends Request<SncpContext> {
 
     private boolean ping;
 
+    private boolean multiplex;
+
     private byte[] body;
 
     private byte[] bufferbytes = new byte[6];
 
+    //多路复用连接中请求头可能被拆分在多次读取中， 先缓存已读取的部分
+    private byte[] headerbytes;
+
+    private int headeroffset;
+
     protected SncpRequest(SncpContext context) {
         super(context);
         this.convert = context.getBsonConvert();
@@ -51,26 +61,37 @@ public final class SncpRequest extends Request<SncpContext> {
 
     @Override
     protected int readHeader(ByteBuffer buffer) {
-        if (buffer.remaining() < HEADER_SIZE) {
-            this.ping = true;
-            return 0;
+        ByteBuffer header = buffer;
+        if (this.headeroffset > 0 || buffer.remaining() < HEADER_SIZE) {
+            if (this.headeroffset == 0 && !this.pipelined && !isHeaderStart(buffer)) {
+                this.ping = true;
+                return 0;
+            }
+            if (this.headerbytes == null) this.headerbytes = new byte[HEADER_SIZE];
+            int len = Math.min(buffer.remaining(), HEADER_SIZE - this.headeroffset);
+            buffer.get(this.headerbytes, this.headeroffset, len);
+            this.headeroffset += len;
+            if (this.headeroffset < HEADER_SIZE) return -2;
+            header = ByteBuffer.wrap(this.headerbytes);
         }
         //---------------------head----------------------------------
-        this.seqid = buffer.getLong();
-        if (buffer.getChar() != HEADER_SIZE) {
+        this.seqid = header.getLong();
+        if (header.getChar() != HEADER_SIZE) {
             context.getLogger().finest("sncp buffer header.length not " + HEADER_SIZE);
             return -1;
         }
-        this.serviceid = DLong.read(buffer);
-        this.serviceversion = buffer.getInt();
-        this.actionid = DLong.read(buffer);
-        buffer.get(bufferbytes);
-        this.bodylength = buffer.getInt();
-
-        if (buffer.getInt() != 0) {
+        this.serviceid = DLong.read(header);
+        this.serviceversion = header.getInt();
+        this.actionid = DLong.read(header);
+        header.get(bufferbytes);
+        this.bodylength = header.getInt();
+
+        final int flags = header.getInt(); //请求方的结果码只用于标记位
+        if ((flags & ~FLAG_MULTIPLEX) != 0) {
             context.getLogger().finest("sncp buffer header.retcode not 0");
             return -1;
         }
+        this.multiplex = (flags & FLAG_MULTIPLEX) != 0;
         //---------------------body----------------------------------
         this.body = new byte[this.bodylength];
         int len = Math.min(this.bodylength, buffer.remaining());
@@ -79,9 +100,14 @@ public final class SncpRequest extends Request<SncpContext> {
         return bodylength - len;
     }
 
+    //不足一个请求头的数据中已包含headerlen字段时视为被拆分的请求头， 否则为ping
+    private static boolean isHeaderStart(ByteBuffer buffer) {
+        return buffer.remaining() >= 10 && buffer.getChar(buffer.position() + 8) == HEADER_SIZE;
+    }
+
     @Override
     protected int readBody(ByteBuffer buffer) {
-        final int framelen = buffer.remaining();
+        final int framelen = Math.min(buffer.remaining(), this.bodylength - this.bodyoffset);
         buffer.get(this.body, this.bodyoffset, framelen);
         this.bodyoffset += framelen;
         return framelen;
@@ -110,14 +136,26 @@ public final class SncpRequest extends Request<SncpContext> {
         this.bodyoffset = 0;
         this.body = null;
         this.ping = false;
+        this.multiplex = false;
+        this.headeroffset = 0;
         this.bufferbytes[0] = 0;
         super.recycle();
     }
 
+    ByteBuffer removePipelineBuffer() {
+        ByteBuffer buffer = this.pipelineBuffer;
+        this.pipelineBuffer = null;
+        return buffer;
+    }
+
     protected boolean isPing() {
         return ping;
     }
 
+    protected boolean isMultiplex() {
+        return multiplex;
+    }
+
     public byte[] getBody() {
         return body;
     }
@@ -7,6 +7,9 @@ package org.redkale.net.sncp;
 
 import static org.redkale.net.sncp.SncpRequest.HEADER_SIZE;
 import java.nio.*;
+import java.nio.channels.CompletionHandler;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.*;
 import org.redkale.convert.bson.*;
 import org.redkale.net.*;
@@ -37,6 +40,10 @@ public final class SncpResponse extends Response<SncpContext, SncpRequest> {
 
     private final int addrPort;
 
+    private ChannelWriter writer; //不为null表示同一连接上的请求并发处理， 响应须通过写队列写出
+
+    private ByteBuffer[] writeBuffers;
+
     public static String getRetCodeInfo(int retcode) {
         if (retcode == RETCODE_ILLSERVICEID) return "serviceid is invalid";
         if (retcode == RETCODE_ILLSERVICEVER) return "serviceversion is invalid";
@@ -51,10 +58,80 @@ public final class SncpResponse extends Response<SncpContext, SncpRequest> {
         this.addrPort = context.getServerAddress().getPort();
     }
 
+    /**
+     * 立即开始读取同一连接上的下一个请求， 多路复用的客户端可在一个连接上同时发送多个请求，
+     * 慢请求或异步方法不会阻塞后续请求; 当前响应改为通过连接共用的写队列写出。
+     */
+    protected void readNext() {
+        final AsyncConnection conn = this.channel;
+        if (conn == null || !conn.isTCP() || this.writer != null) return;
+        ChannelWriter w = conn.getSubobject();
+        if (w == null) {
+            w = new ChannelWriter(context, conn);
+            conn.setSubobject(w);
+        }
+        this.writer = w;
+        final ByteBuffer pipelineBuffer = request.removePipelineBuffer();
+        final PrepareRunner runner = new PrepareRunner(context, conn, pipelineBuffer, pipelineBuffer != null);
+        if (pipelineBuffer == null) {
+            runner.run(); //只是发起异步读取
+        } else {
+            context.submit(runner);
+        }
+    }
+
+    @Override
+    public void finish(boolean kill) {
+        if (kill && this.writer != null) this.writer.conn.dispose();
+        super.finish(kill);
+    }
+
+    @Override
+    public void finish(ByteBuffer buffer) {
+        if (this.writer == null) {
+            super.finish(buffer);
+        } else {
+            finish(new ByteBuffer[]{buffer});
+        }
+    }
+
+    @Override
+    public void finish(boolean kill, ByteBuffer buffer) {
+        if (kill) refuseAlive();
+        finish(buffer);
+    }
+
+    @Override
+    public void finish(ByteBuffer... buffers) {
+        if (this.writer == null) {
+            super.finish(buffers);
+        } else {
+            this.writeBuffers = buffers;
+            this.writer.write(this);
+        }
+    }
+
+    @Override
+    public void finish(boolean kill, ByteBuffer... buffers) {
+        if (kill) refuseAlive();
+        finish(buffers);
+    }
+
+    @Override
+    protected boolean recycle() {
+        if (this.writer != null) { //下一个请求已在读取， 不能再由recycle发起
+            removeChannel();
+            this.writer = null;
+            this.writeBuffers = null;
+        }
+        return super.recycle();
+    }
+
     public void finish(final int retcode, final BsonWriter out) {
         if (out == null) {
             final ByteBuffer buffer = context.pollBuffer();
             fillHeader(buffer, 0, retcode);
+            buffer.limit(HEADER_SIZE); //只输出header
             finish(buffer);
             return;
         }
@@ -79,4 +156,91 @@ public final class SncpResponse extends Response<SncpContext, SncpRequest> {
         buffer.putInt(retcode);
         buffer.position(currentpos);
     }
+
+    //同一连接上并发处理的请求共用的写队列， 排队中的响应合并为一次gathering write依次写出
+    private static final class ChannelWriter {
+
+        private final Context context;
+
+        private final AsyncConnection conn;
+
+        private final ConcurrentLinkedQueue<SncpResponse> queue = new ConcurrentLinkedQueue<>();
+
+        private final AtomicBoolean writing = new AtomicBoolean();
+
+        public ChannelWriter(Context context, AsyncConnection conn) {
+            this.context = context;
+            this.conn = conn;
+        }
+
+        public void write(SncpResponse response) {
+            queue.offer(response);
+            flush();
+        }
+
+        private void flush() {
+            if (!writing.compareAndSet(false, true)) return;
+            final List<SncpResponse> responses = new ArrayList<>();
+            final List<ByteBuffer> list = new ArrayList<>();
+            SncpResponse resp;
+            while (list.size() < 64 && (resp = queue.poll()) != null) {
+                responses.add(resp);
+                list.addAll(Arrays.asList(resp.writeBuffers));
+            }
+            if (responses.isEmpty()) {
+                writing.set(false);
+                if (!queue.isEmpty()) flush();
+                return;
+            }
+            final ByteBuffer[] srcs = list.toArray(new ByteBuffer[list.size()]);
+            conn.write(srcs, srcs, new CompletionHandler<Integer, ByteBuffer[]>() {
+
+                @Override
+                public void completed(Integer result, ByteBuffer[] attachments) {
+                    int index = -1;
+                    for (int i = 0; i < attachments.length; i++) {
+                        if (attachments[i].hasRemaining()) {
+                            index = i;
+                            break;
+                        } else {
+                            context.offerBuffer(attachments[i]);
+                        }
+                    }
+                    if (index == 0) {
+                        conn.write(attachments, attachments, this);
+                        return;
+                    } else if (index > 0) {
+                        ByteBuffer[] newattachs = new ByteBuffer[attachments.length - index];
+                        System.arraycopy(attachments, index, newattachs, 0, newattachs.length);
+                        conn.write(newattachs, newattachs, this);
+                        return;
+                    }
+                    writing.set(false);
+                    for (SncpResponse r : responses) {
+                        r.finish();
+                    }
+                    if (!queue.isEmpty()) flush();
+                }
+
+                @Override
+                public void failed(Throwable exc, ByteBuffer[] attachments) {
+                    for (ByteBuffer buffer : attachments) {
+                        context.offerBuffer(buffer);
+                    }
+                    conn.dispose();
+                    writing.set(false);
+                    for (SncpResponse r : responses) {
+                        r.finish(true);
+                    }
+                    SncpResponse r;
+                    while ((r = queue.poll()) != null) {
+                        for (ByteBuffer buffer : r.writeBuffers) {
+                            context.offerBuffer(buffer);
+                        }
+                        r.finish(true);
+                    }
+                }
+            });
+        }
+    }
 }
@@ -8,6 +8,7 @@ package org.redkale.service;
 import java.io.*;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.*;
 import javax.annotation.*;
 import org.redkale.source.*;
@@ -138,6 +139,11 @@ public class DataSourceService implements DataSource, Service, AutoCloseable {
         return source.queryColumnMap(entityClass, keyColumn, func, funcColumn, node);
     }
 
+    @Override
+    public <T, K extends Serializable> Map<K, Number[]> queryColumnMap(final Class<T> entityClass, final String keyColumn, final FilterFuncColumn[] funcColumns, final FilterNode node) {
+        return source.queryColumnMap(entityClass, keyColumn, funcColumns, node);
+    }
+
     @Override
     public <T> T find(final Class<T> clazz, final Serializable pk) {
         return source.find(clazz, pk);
@@ -173,6 +179,26 @@ public class DataSourceService implements DataSource, Service, AutoCloseable {
         return source.find(clazz, selects, node);
     }
 
+    @Override
+    public <T> List<T> findAll(final Class<T> clazz, final Serializable... pks) {
+        return source.findAll(clazz, pks);
+    }
+
+    @Override
+    public <T> List<T> findAll(final Class<T> clazz, final SelectColumn selects, final Serializable... pks) {
+        return source.findAll(clazz, selects, pks);
+    }
+
+    @Override
+    public <T, K extends Serializable> Map<K, T> findMap(final Class<T> clazz, final Serializable... pks) {
+        return source.findMap(clazz, pks);
+    }
+
+    @Override
+    public <T, K extends Serializable> Map<K, T> findMap(final Class<T> clazz, final SelectColumn selects, final Serializable... pks) {
+        return source.findMap(clazz, selects, pks);
+    }
+
     @Override
     public <T> Serializable findColumn(final Class<T> clazz, final String column, final Serializable pk) {
         return source.findColumn(clazz, column, pk);
@@ -318,6 +344,26 @@ public class DataSourceService implements DataSource, Service, AutoCloseable {
         return source.queryList(clazz, selects, flipper, node);
     }
 
+    @Override
+    public final <T> void forEach(final Class<T> clazz, final FilterNode node, final Consumer<T> consumer) {
+        source.forEach(clazz, node, consumer);
+    }
+
+    @Override
+    public final <T> void forEach(final Class<T> clazz, final FilterBean bean, final Consumer<T> consumer) {
+        forEach(clazz, FilterNodeBean.createFilterNode(bean), consumer);
+    }
+
+    @Override
+    public final <T> void forEach(final Class<T> clazz, final SelectColumn selects, final FilterBean bean, final Consumer<T> consumer) {
+        forEach(clazz, selects, FilterNodeBean.createFilterNode(bean), consumer);
+    }
+
+    @Override
+    public final <T> void forEach(final Class<T> clazz, final SelectColumn selects, final FilterNode node, final Consumer<T> consumer) {
+        source.forEach(clazz, selects, node, consumer);
+    }
+
     @Override
     public final <T> Sheet<T> querySheet(final Class<T> clazz, final Flipper flipper, final FilterBean bean) {
         return querySheet(clazz, flipper, FilterNodeBean.createFilterNode(bean));
@@ -338,6 +384,46 @@ public class DataSourceService implements DataSource, Service, AutoCloseable {
         return source.querySheet(clazz, selects, flipper, node);
     }
 
+    @Override
+    public <T> CompletableFuture<Void> insertAsync(@RpcCall(DataCallArrayAttribute.class) final T... values) {
+        return source.insertAsync(values);
+    }
+
+    @Override
+    public <T> CompletableFuture<Integer> deleteAsync(final T... values) {
+        return source.deleteAsync(values);
+    }
+
+    @Override
+    public <T> CompletableFuture<Integer> updateAsync(final T... values) {
+        return source.updateAsync(values);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> findAsync(final Class<T> clazz, final Serializable pk) {
+        return source.findAsync(clazz, pk);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> findAsync(final Class<T> clazz, final SelectColumn selects, final Serializable pk) {
+        return source.findAsync(clazz, selects, pk);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> findAsync(final Class<T> clazz, final SelectColumn selects, final FilterNode node) {
+        return source.findAsync(clazz, selects, node);
+    }
+
+    @Override
+    public <T> CompletableFuture<List<T>> queryListAsync(final Class<T> clazz, final SelectColumn selects, final Flipper flipper, final FilterNode node) {
+        return source.queryListAsync(clazz, selects, flipper, node);
+    }
+
+    @Override
+    public <T> CompletableFuture<Sheet<T>> querySheetAsync(final Class<T> clazz, final SelectColumn selects, final Flipper flipper, final FilterNode node) {
+        return source.querySheetAsync(clazz, selects, flipper, node);
+    }
+
     @Override
     public void close() throws Exception {
         source.getClass().getMethod("close").invoke(source);
@@ -0,0 +1,25 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.service;
+
+import java.lang.annotation.*;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * SNCP协议中标记为一致性哈希的参数， 当&lt;group&gt;节点的strategy="hash"时， 参数值相同的请求会发往同一个节点。
+ *
+ *
+ * 详情见: https://redkale.org
+ * @author zhangjx
+ */
+@Inherited
+@Documented
+@Target({PARAMETER})
+@Retention(RUNTIME)
+public @interface RpcHashKey {
+
+}
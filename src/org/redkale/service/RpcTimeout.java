@@ -0,0 +1,28 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.service;
+
+import java.lang.annotation.*;
+import static java.lang.annotation.ElementType.*;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * 远程模式Service调用的超时时间， 只对远程模式Service有效; 方法上的RpcTimeout优先于类上的RpcTimeout, 都没有时默认为5秒 <br>
+ * 返回CompletableFuture或含CompletionHandler参数的异步方法由公共定时器控制超时， 不会占用调用线程
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ */
+@Inherited
+@Documented
+@Target({TYPE, METHOD})
+@Retention(RUNTIME)
+public @interface RpcTimeout {
+
+    long value(); //超时毫秒数
+}
@@ -17,6 +17,11 @@ import org.redkale.util.*;
  *    1、只写一个Service实现类。
  *    2、先定义业务的Service接口或抽象类，再编写具体实现类。
  * 第二种方式需要在具体实现类上使用&#64;ResourceType指明资源注入的类型。
+ *
+ * 远程模式下的异步方法(调用线程不会等待远程结果):
+ *    1、返回类型为CompletableFuture&lt;T&gt;， 收到远程响应后完成该Future。
+ *    2、返回void且含一个CompletionHandler&lt;T, A&gt;参数， 收到远程响应后回调completed(result, null)或failed(exc, null)。
+ * 超时时间由&#64;RpcTimeout指定。
  * </pre></blockquote>
  *
  * <p>
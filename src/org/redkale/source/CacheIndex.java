@@ -0,0 +1,29 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.source;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import java.lang.annotation.*;
+
+/**
+ * 标记在Entity的字段上， 表示EntityCache需要为该字段建立二级索引。 <br>
+ * 哈希索引用于EQUAL、IN条件; 有序索引还可用于范围条件和单字段的Flipper排序。 <br>
+ * &#64;Table中indexes的首个字段会建立有序索引， uniqueConstraints的首个字段会建立哈希索引， 无需重复标记。
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ */
+@Documented
+@Target(FIELD)
+@Retention(RUNTIME)
+public @interface CacheIndex {
+
+    //是否为有序索引
+    boolean sorted() default false;
+}
@@ -10,6 +10,7 @@ import java.lang.reflect.Method;
 import java.net.URL;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.*;
 import java.util.logging.*;
@@ -50,8 +51,24 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
 
     static final String JDBC_SOURCE = "javax.persistence.jdbc.source";
 
+    static final String JDBC_PREPAREDCACHE_SIZE = "javax.persistence.preparedcache.size";
+
+    static final String JDBC_FETCH_SIZE = "javax.persistence.fetchsize";
+
+    static final String JDBC_BATCH_SIZE = "javax.persistence.batch.size";
+
+    static final String JDBC_BATCH_MULTIVALUES = "javax.persistence.batch.multivalues";
+
+    static final String JDBC_ASYNC_QUEUESIZE = "javax.persistence.async.queuesize";
+
     private static final Flipper FLIPPER_ONE = new Flipper(1);
 
+    private static final int PREPAREDSQL_LIMIT = 1024; //每个Entity缓存的参数化SQL个数上限
+
+    private static final int FINDALL_BATCH_SIZE = 256; //findAll每条IN查询的主键个数上限
+
+    private static final int MULTIVALUES_PARAM_LIMIT = 32767; //多行INSERT的参数个数上限， PostgreSQL最多支持32767个参数
+
     final Logger logger = Logger.getLogger(DataDefaultSource.class.getSimpleName());
 
     final AtomicBoolean debug = new AtomicBoolean(logger.isLoggable(Level.FINEST));
@@ -258,6 +275,7 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
 
     private void closeSQLConnection(final Connection sqlconn) {
         if (sqlconn == null) return;
+        if (readPool.offer(sqlconn) || writePool.offer(sqlconn)) return;
         try {
             sqlconn.close();
         } catch (Exception e) {
@@ -265,6 +283,78 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         }
     }
 
+    /**
+     * 生成参数化的SQL， keys与FilterNode的结构都相同时复用已生成的SQL， 只收集FilterNode的参数值 <br>
+     * creator只负责FilterNode部分的参数值， SQL中其他部分的参数值由调用方按顺序加入params
+     *
+     * @param info    EntityInfo
+     * @param node    过滤node， 可以为null
+     * @param params  参数值的集合
+     * @param creator 生成SQL的函数， 参数为收集FilterNode参数值的集合
+     * @param keys    除FilterNode外决定SQL的值， 如语句类型、表名
+     *
+     * @return SQL语句
+     */
+    private <T> String createPreparedSQL(final EntityInfo<T> info, final FilterNode node, final List<Object> params,
+        final Function<List<Object>, String> creator, final Object... keys) {
+        final List<Object> shape = new ArrayList<>(keys.length + 16);
+        for (Object key : keys) {
+            shape.add(key);
+        }
+        final int start = params.size();
+        if (node != null) node.putSQLShape(info, shape, params);
+        String sql = info.preparedSqls.get(shape);
+        if (sql != null) return sql;
+        final List<Object> nodeParams = new ArrayList<>();
+        sql = creator.apply(nodeParams);
+        final List<Object> shapeParams = params.subList(start, params.size());
+        if (nodeParams.equals(shapeParams)) {
+            if (info.preparedSqls.size() < PREPAREDSQL_LIMIT) info.preparedSqls.put(shape, sql);
+        } else { //参数值与结构不一致的FilterNode不缓存SQL
+            shapeParams.clear();
+            params.addAll(nodeParams);
+        }
+        return sql;
+    }
+
+    private <T> String createPreparedSQL(final EntityInfo<T> info, final Supplier<String> creator, final Object... keys) {
+        final List<Object> shape = Arrays.asList(keys);
+        String sql = info.preparedSqls.get(shape);
+        if (sql != null) return sql;
+        sql = creator.get();
+        if (info.preparedSqls.size() < PREPAREDSQL_LIMIT) info.preparedSqls.put(shape, sql);
+        return sql;
+    }
+
+    private static PreparedStatement prepareStatement(final JDBCPoolSource pool, final Connection conn, final String sql, final List<Object> params) throws SQLException {
+        final PreparedStatement prestmt = pool.prepareStatement(conn, sql);
+        int i = 0;
+        for (Object param : params) {
+            prestmt.setObject(++i, FilterNode.formatToParamValue(param));
+        }
+        return prestmt;
+    }
+
+    //打印调试信息时把参数值拼接到SQL中
+    private static String formatPreparedSQL(final String sql, final List<Object> params) {
+        final StringBuilder sb = new StringBuilder(sql.length() + params.size() * 8);
+        int i = 0;
+        for (int k = 0; k < sql.length(); k++) {
+            char ch = sql.charAt(k);
+            if (ch == '?' && i < params.size()) {
+                Object obj = params.get(i++);
+                if (obj != null && obj.getClass().isArray()) {
+                    sb.append("'[length=").append(java.lang.reflect.Array.getLength(obj)).append("]'");
+                } else {
+                    sb.append(FilterNode.formatToString(obj));
+                }
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
     @Override
     public EntityInfo apply(Class t) {
         return loadEntityInfo(t);
@@ -314,11 +404,8 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         if (values.length == 0) return;
         try {
             if (!info.isVirtualEntity()) {
-                final String sql = info.getInsertSQL(values[0]);
                 final Class primaryType = info.getPrimary().type();
-                final Attribute primary = info.getPrimary();
                 final boolean distributed = info.distributed;
-                Attribute<T, Serializable>[] attrs = info.insertAttributes;
                 if (distributed && !info.initedPrimaryValue && primaryType.isPrimitive()) { //由DataSource生成主键
                     synchronized (info) {
                         if (!info.initedPrimaryValue) { //初始化最大主键值
@@ -343,112 +430,157 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
                         }
                     }
                 }
-                PreparedStatement prestmt = createInsertPreparedStatement(conn, sql, info, values);
-                try {
-                    prestmt.executeBatch();
-                } catch (SQLException se) {
-                    if (info.tableStrategy == null || !info.tablenotexistSqlstates.contains(';' + se.getSQLState() + ';')) throw se;
-                    synchronized (info.tables) {
-                        final String oldTable = info.table;
-                        final String newTable = info.getTable(values[0]);
-                        if (!info.tables.contains(newTable)) {
-                            try {
-                                Statement st = conn.createStatement();
-                                st.execute(info.tablecopySQL.replace("${newtable}", newTable).replace("${oldtable}", oldTable));
-                                st.close();
-                                info.tables.add(newTable);
-                            } catch (SQLException sqle) { //多进程并发时可能会出现重复建表
-                                if (newTable.indexOf('.') > 0 && info.tablenotexistSqlstates.contains(';' + se.getSQLState() + ';')) {
-                                    Statement st;
-                                    try {
-                                        st = conn.createStatement();
-                                        st.execute("CREATE DATABASE " + newTable.substring(0, newTable.indexOf('.')));
-                                        st.close();
-                                    } catch (SQLException sqle1) {
-                                        logger.log(Level.SEVERE, "create database(" + newTable.substring(0, newTable.indexOf('.')) + ") error", sqle1);
-                                    }
-                                    try {
-                                        st = conn.createStatement();
-                                        st.execute(info.tablecopySQL.replace("${newtable}", newTable).replace("${oldtable}", oldTable));
-                                        st.close();
-                                        info.tables.add(newTable);
-                                    } catch (SQLException sqle2) {
-                                        logger.log(Level.SEVERE, "create table2(" + info.tablecopySQL.replace("${newtable}", newTable).replace("${oldtable}", oldTable) + ") error", sqle2);
-                                    }
-                                } else {
-                                    logger.log(Level.SEVERE, "create table(" + info.tablecopySQL.replace("${newtable}", newTable).replace("${oldtable}", oldTable) + ") error", sqle);
-                                }
-                            }
-                        }
+                if (info.distributed || info.autouuid) { //先生成主键， 分表策略可能依赖主键值
+                    for (final T value : values) {
+                        info.createPrimaryValue(value);
                     }
-                    prestmt.close();
-                    prestmt = createInsertPreparedStatement(conn, sql, info, values);
-                    prestmt.executeBatch();
                 }
+                for (Map.Entry<String, List<T>> en : groupByTable(info, values).entrySet()) {
+                    insertTable(conn, info, en.getKey(), en.getValue());
+                }
+            }
+            final EntityCache<T> cache = info.getCache();
+            if (cache != null) { //更新缓存
+                for (final T value : values) {
+                    cache.insert(value);
+                }
+                if (cacheListener != null) cacheListener.insertCache(info.getType(), values);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    //同一个表的记录按批次大小分块写入， 分表不存在时按模板表建表后重试
+    private <T> void insertTable(final Connection conn, final EntityInfo<T> info, final String table, final List<T> values) throws SQLException {
+        final boolean multi = !info.autoGenerated && writePool.isMultiValuesInsertable();
+        final int chunk = multi ? Math.max(1, Math.min(writePool.getBatchSize(), MULTIVALUES_PARAM_LIMIT / Math.max(1, info.insertAttributes.length))) : writePool.getBatchSize();
+        for (int from = 0; from < values.size(); from += chunk) {
+            final List<T> part = values.subList(from, Math.min(values.size(), from + chunk));
+            try {
+                insertChunk(conn, info, table, part, multi);
+            } catch (SQLException se) {
+                if (info.tableStrategy == null || !info.tablenotexistSqlstates.contains(';' + se.getSQLState() + ';')) throw se;
+                createTable(conn, info, table, se);
+                insertChunk(conn, info, table, part, multi);
+            }
+        }
+    }
+
+    private <T> void insertChunk(final Connection conn, final EntityInfo<T> info, final String table, final List<T> values, final boolean multi) throws SQLException {
+        final Attribute<T, Serializable>[] attrs = info.insertAttributes;
+        if (multi) {
+            final PreparedStatement prestmt = conn.prepareStatement(info.getInsertSQL(table, values.size()));
+            try {
+                int i = 0;
+                for (final T value : values) {
+                    for (Attribute<T, Serializable> attr : attrs) {
+                        prestmt.setObject(++i, FilterNode.formatToParamValue(attr.get(value)));
+                    }
+                }
+                prestmt.executeUpdate();
+            } finally {
+                prestmt.close();
+            }
+        } else {
+            final String sql = info.getInsertSQL(table, 1);
+            final PreparedStatement prestmt = info.autoGenerated ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) : conn.prepareStatement(sql);
+            try {
+                for (final T value : values) {
+                    int i = 0;
+                    for (Attribute<T, Serializable> attr : attrs) {
+                        prestmt.setObject(++i, FilterNode.formatToParamValue(attr.get(value)));
+                    }
+                    prestmt.addBatch();
+                }
+                prestmt.executeBatch();
                 if (info.autoGenerated) { //由数据库自动生成主键值
+                    final Attribute primary = info.getPrimary();
+                    final Class primaryType = primary.type();
                     ResultSet set = prestmt.getGeneratedKeys();
                     int i = -1;
                     while (set.next()) {
                         if (primaryType == int.class) {
-                            primary.set(values[++i], set.getInt(1));
+                            primary.set(values.get(++i), set.getInt(1));
                         } else if (primaryType == long.class) {
-                            primary.set(values[++i], set.getLong(1));
+                            primary.set(values.get(++i), set.getLong(1));
                         } else {
-                            primary.set(values[++i], set.getObject(1));
+                            primary.set(values.get(++i), set.getObject(1));
                         }
                     }
                     set.close();
                 }
+            } finally {
                 prestmt.close();
-                //------------------------------------------------------------
-                if (debug.get() && info.isLoggable(Level.FINEST)) {  //打印调试信息
-                    char[] sqlchars = sql.toCharArray();
-                    for (final T value : values) {
-                        //-----------------------------
-                        StringBuilder sb = new StringBuilder(128);
-                        int i = 0;
-                        for (char ch : sqlchars) {
-                            if (ch == '?') {
-                                Object obj = attrs[i++].get(value);
-                                if (obj != null && obj.getClass().isArray()) {
-                                    sb.append("'[length=").append(java.lang.reflect.Array.getLength(obj)).append("]'");
-                                } else {
-                                    sb.append(FilterNode.formatToString(obj));
-                                }
-                            } else {
-                                sb.append(ch);
-                            }
+            }
+        }
+        //------------------------------------------------------------
+        if (debug.get() && info.isLoggable(Level.FINEST)) {  //打印调试信息
+            char[] sqlchars = info.getInsertSQL(table, 1).toCharArray();
+            for (final T value : values) {
+                //-----------------------------
+                StringBuilder sb = new StringBuilder(128);
+                int i = 0;
+                for (char ch : sqlchars) {
+                    if (ch == '?') {
+                        Object obj = attrs[i++].get(value);
+                        if (obj != null && obj.getClass().isArray()) {
+                            sb.append("'[length=").append(java.lang.reflect.Array.getLength(obj)).append("]'");
+                        } else {
+                            sb.append(FilterNode.formatToString(obj));
                         }
-                        logger.finest(info.getType().getSimpleName() + " insert sql=" + sb.toString().replaceAll("(\r|\n)", "\\n"));
+                    } else {
+                        sb.append(ch);
                     }
-                } //打印结束
+                }
+                logger.finest(info.getType().getSimpleName() + " insert sql=" + sb.toString().replaceAll("(\r|\n)", "\\n"));
             }
-            final EntityCache<T> cache = info.getCache();
-            if (cache != null) { //更新缓存
-                for (final T value : values) {
-                    cache.insert(value);
+        } //打印结束
+    }
+
+    //按模板表创建分表
+    private <T> void createTable(final Connection conn, final EntityInfo<T> info, final String newTable, final SQLException se) {
+        synchronized (info.tables) {
+            final String oldTable = info.table;
+            if (info.tables.contains(newTable)) return;
+            try {
+                Statement st = conn.createStatement();
+                st.execute(info.tablecopySQL.replace("${newtable}", newTable).replace("${oldtable}", oldTable));
+                st.close();
+                info.tables.add(newTable);
+            } catch (SQLException sqle) { //多进程并发时可能会出现重复建表
+                if (newTable.indexOf('.') > 0 && info.tablenotexistSqlstates.contains(';' + se.getSQLState() + ';')) {
+                    Statement st;
+                    try {
+                        st = conn.createStatement();
+                        st.execute("CREATE DATABASE " + newTable.substring(0, newTable.indexOf('.')));
+                        st.close();
+                    } catch (SQLException sqle1) {
+                        logger.log(Level.SEVERE, "create database(" + newTable.substring(0, newTable.indexOf('.')) + ") error", sqle1);
+                    }
+                    try {
+                        st = conn.createStatement();
+                        st.execute(info.tablecopySQL.replace("${newtable}", newTable).replace("${oldtable}", oldTable));
+                        st.close();
+                        info.tables.add(newTable);
+                    } catch (SQLException sqle2) {
+                        logger.log(Level.SEVERE, "create table2(" + info.tablecopySQL.replace("${newtable}", newTable).replace("${oldtable}", oldTable) + ") error", sqle2);
+                    }
+                } else {
+                    logger.log(Level.SEVERE, "create table(" + info.tablecopySQL.replace("${newtable}", newTable).replace("${oldtable}", oldTable) + ") error", sqle);
                 }
-                if (cacheListener != null) cacheListener.insertCache(info.getType(), values);
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
     }
 
-    private <T> PreparedStatement createInsertPreparedStatement(final Connection conn, final String sql,
-        final EntityInfo<T> info, T... values) throws SQLException {
-        Attribute<T, Serializable>[] attrs = info.insertAttributes;
-        final PreparedStatement prestmt = info.autoGenerated ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) : conn.prepareStatement(sql);
-
-        for (final T value : values) {
-            int i = 0;
-            if (info.distributed || info.autouuid) info.createPrimaryValue(value);
-            for (Attribute<T, Serializable> attr : attrs) {
-                prestmt.setObject(++i, attr.get(value));
-            }
-            prestmt.addBatch();
+    //按实际表名分组， 没有分表策略时只有一组
+    private static <T> Map<String, List<T>> groupByTable(final EntityInfo<T> info, final T[] values) {
+        if (info.tableStrategy == null) return Collections.singletonMap(info.getTable(values[0]), Arrays.asList(values));
+        final Map<String, List<T>> groups = new LinkedHashMap<>();
+        for (T value : values) {
+            groups.computeIfAbsent(info.getTable(value), t -> new ArrayList<>()).add(value);
         }
-        return prestmt;
+        return groups;
     }
 
     public <T> void insertCache(Class<T> clazz, T... values) {
@@ -516,18 +648,26 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         int c2 = 0;
         try {
             if (!info.isVirtualEntity()) {
-                final Statement stmt = conn.createStatement();
+                final Map<String, PreparedStatement> prestmts = new LinkedHashMap<>(); //分表时每个表一个PreparedStatement
                 for (Serializable key : keys) {
-                    String sql = "DELETE FROM " + info.getTable(key) + " WHERE " + info.getPrimarySQLColumn() + " = " + FilterNode.formatToString(key);
-                    if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(info.getType().getSimpleName() + " delete sql=" + sql);
-                    stmt.addBatch(sql);
+                    final String table = info.getTable(key);
+                    PreparedStatement prestmt = prestmts.get(table);
+                    final String sql = createPreparedSQL(info, () -> "DELETE FROM " + table + " WHERE " + info.getPrimarySQLColumn() + " = ?", "delete", table);
+                    if (prestmt == null) {
+                        prestmt = conn.prepareStatement(sql);
+                        prestmts.put(table, prestmt);
+                    }
+                    if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(info.getType().getSimpleName() + " delete sql=" + formatPreparedSQL(sql, Arrays.asList(key)));
+                    prestmt.setObject(1, FilterNode.formatToParamValue(key));
+                    prestmt.addBatch();
                 }
-                int[] pc = stmt.executeBatch();
                 c = 0;
-                for (int p : pc) {
-                    if (p >= 0) c += p;
+                for (PreparedStatement prestmt : prestmts.values()) {
+                    for (int p : prestmt.executeBatch()) {
+                        if (p >= 0) c += p;
+                    }
+                    prestmt.close();
                 }
-                stmt.close();
             }
             //------------------------------------
             final EntityCache<T> cache = info.getCache();
@@ -575,25 +715,31 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         int c = -1;
         try {
             if (!info.isVirtualEntity()) {
-                Map<Class, String> joinTabalis = node.getJoinTabalis();
-                CharSequence join = node.createSQLJoin(this, true, joinTabalis, new HashSet<>(), info);
-                CharSequence where = node.createSQLExpress(info, joinTabalis);
-
-                StringBuilder join1 = null;
-                StringBuilder join2 = null;
-                if (join != null) {
-                    String joinstr = join.toString();
-                    join1 = multisplit('[', ']', ",", new StringBuilder(), joinstr, 0);
-                    join2 = multisplit('{', '}', " AND ", new StringBuilder(), joinstr, 0);
-                }
-                String sql = "DELETE " + (this.readPool.isMysql() ? "a" : "") + " FROM " + info.getTable(node) + " a" + (join1 == null ? "" : (", " + join1))
-                    + ((where == null || where.length() == 0) ? (join2 == null ? "" : (" WHERE " + join2))
-                        : (" WHERE " + where + (join2 == null ? "" : (" AND " + join2)))) + info.createSQLOrderby(flipper)
-                    + ((flipper == null || flipper.getLimit() < 1) ? "" : (" LIMIT " + flipper.getLimit()));
-                if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(info.getType().getSimpleName() + " delete sql=" + sql);
-                final Statement stmt = conn.createStatement();
-                c = stmt.executeUpdate(sql);
-                stmt.close();
+                final List<Object> params = new ArrayList<>();
+                final String table = info.getTable(node);
+                final boolean limit = flipper != null && flipper.getLimit() > 0;
+                final String sql = createPreparedSQL(info, node, params, (nodeParams) -> {
+                    Map<Class, String> joinTabalis = node.getJoinTabalis();
+                    CharSequence join = node.createSQLJoin(this, true, joinTabalis, new HashSet<>(), info);
+                    CharSequence where = node.createSQLExpress(info, joinTabalis, nodeParams);
+
+                    StringBuilder join1 = null;
+                    StringBuilder join2 = null;
+                    if (join != null) {
+                        String joinstr = join.toString();
+                        join1 = multisplit('[', ']', ",", new StringBuilder(), joinstr, 0);
+                        join2 = multisplit('{', '}', " AND ", new StringBuilder(), joinstr, 0);
+                    }
+                    return "DELETE " + (this.readPool.isMysql() ? "a" : "") + " FROM " + table + " a" + (join1 == null ? "" : (", " + join1))
+                        + ((where == null || where.length() == 0) ? (join2 == null ? "" : (" WHERE " + join2))
+                            : (" WHERE " + where + (join2 == null ? "" : (" AND " + join2)))) + info.createSQLOrderby(flipper)
+                        + (limit ? " LIMIT ?" : "");
+                }, "deleteNode", table, flipper == null ? null : flipper.getSort(), limit);
+                if (limit) params.add(flipper.getLimit());
+                if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(info.getType().getSimpleName() + " delete sql=" + formatPreparedSQL(sql, params));
+                final PreparedStatement prestmt = prepareStatement(writePool, conn, sql, params);
+                c = prestmt.executeUpdate();
+                writePool.closeStatement(conn, prestmt);
             }
             //------------------------------------
             final EntityCache<T> cache = info.getCache();
@@ -648,44 +794,52 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
             Class clazz = info.getType();
             int c = -1;
             if (!info.isVirtualEntity()) {
-                final String updateSQL = info.getUpdateSQL(values[0]);
                 final Attribute<T, Serializable> primary = info.getPrimary();
-                final PreparedStatement prestmt = conn.prepareStatement(updateSQL);
                 Attribute<T, Serializable>[] attrs = info.updateAttributes;
                 final boolean debugfinest = debug.get() && info.isLoggable(Level.FINEST);
-                char[] sqlchars = debugfinest ? updateSQL.toCharArray() : null;
-                for (final T value : values) {
-                    int k = 0;
-                    for (Attribute<T, Serializable> attr : attrs) {
-                        prestmt.setObject(++k, attr.get(value));
-                    }
-                    prestmt.setObject(++k, primary.get(value));
-                    prestmt.addBatch();//------------------------------------------------------------
-                    if (debugfinest) {  //打印调试信息
-                        //-----------------------------
-                        int i = 0;
-                        StringBuilder sb = new StringBuilder(128);
-                        for (char ch : sqlchars) {
-                            if (ch == '?') {
-                                Object obj = i == attrs.length ? primary.get(value) : attrs[i++].get(value);
-                                if (obj != null && obj.getClass().isArray()) {
-                                    sb.append("'[length=").append(java.lang.reflect.Array.getLength(obj)).append("]'");
-                                } else {
-                                    sb.append(FilterNode.formatToString(obj));
+                final int chunk = writePool.getBatchSize();
+                c = 0;
+                for (List<T> list : groupByTable(info, values).values()) {
+                    final String updateSQL = info.getUpdateSQL(list.get(0));
+                    final PreparedStatement prestmt = conn.prepareStatement(updateSQL);
+                    char[] sqlchars = debugfinest ? updateSQL.toCharArray() : null;
+                    try {
+                        int count = 0;
+                        for (final T value : list) {
+                            int k = 0;
+                            for (Attribute<T, Serializable> attr : attrs) {
+                                prestmt.setObject(++k, FilterNode.formatToParamValue(attr.get(value)));
+                            }
+                            prestmt.setObject(++k, FilterNode.formatToParamValue(primary.get(value)));
+                            prestmt.addBatch();//------------------------------------------------------------
+                            if (debugfinest) {  //打印调试信息
+                                //-----------------------------
+                                int i = 0;
+                                StringBuilder sb = new StringBuilder(128);
+                                for (char ch : sqlchars) {
+                                    if (ch == '?') {
+                                        Object obj = i == attrs.length ? primary.get(value) : attrs[i++].get(value);
+                                        if (obj != null && obj.getClass().isArray()) {
+                                            sb.append("'[length=").append(java.lang.reflect.Array.getLength(obj)).append("]'");
+                                        } else {
+                                            sb.append(FilterNode.formatToString(obj));
+                                        }
+                                    } else {
+                                        sb.append(ch);
+                                    }
+                                }
+                                logger.finest(info.getType().getSimpleName() + " update sql=" + sb.toString().replaceAll("(\r|\n)", "\\n"));
+                            } //打印结束
+                            if (++count % chunk == 0 || count == list.size()) { //按批次大小分块执行
+                                for (int p : prestmt.executeBatch()) {
+                                    if (p >= 0) c += p;
                                 }
-                            } else {
-                                sb.append(ch);
                             }
                         }
-                        logger.finest(info.getType().getSimpleName() + " update sql=" + sb.toString().replaceAll("(\r|\n)", "\\n"));
-                    } //打印结束
-                }
-                int[] pc = prestmt.executeBatch();
-                c = 0;
-                for (int p : pc) {
-                    if (p >= 0) c += p;
+                    } finally {
+                        prestmt.close();
+                    }
                 }
-                prestmt.close();
             }
             //---------------------------------------------------
             final EntityCache<T> cache = info.getCache();
@@ -730,12 +884,14 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         try {
             int c = -1;
             if (!info.isVirtualEntity()) {
-                String sql = "UPDATE " + info.getTable(id) + " SET " + info.getSQLColumn(null, column) + " = "
-                    + info.formatToString(value) + " WHERE " + info.getPrimarySQLColumn() + " = " + FilterNode.formatToString(id);
-                if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(info.getType().getSimpleName() + " update sql=" + sql);
-                final Statement stmt = conn.createStatement();
-                c = stmt.executeUpdate(sql);
-                stmt.close();
+                final String table = info.getTable(id);
+                final String sql = createPreparedSQL(info, () -> "UPDATE " + table + " SET " + info.getSQLColumn(null, column) + " = ?"
+                    + " WHERE " + info.getPrimarySQLColumn() + " = ?", "updateColumn", table, column);
+                final List<Object> params = Arrays.asList(value, id);
+                if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(info.getType().getSimpleName() + " update sql=" + formatPreparedSQL(sql, params));
+                final PreparedStatement prestmt = prepareStatement(writePool, conn, sql, params);
+                c = prestmt.executeUpdate();
+                writePool.closeStatement(conn, prestmt);
             }
             //---------------------------------------------------
             final EntityCache<T> cache = info.getCache();
@@ -745,8 +901,6 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
             return c >= 0 ? c : (rs == null ? 0 : 1);
         } catch (SQLException e) {
             throw new RuntimeException(e);
-        } finally {
-            if (conn != null) closeSQLConnection(conn);
         }
     }
 
@@ -779,25 +933,30 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         try {
             int c = -1;
             if (!info.isVirtualEntity()) {
-                Map<Class, String> joinTabalis = node.getJoinTabalis();
-                CharSequence join = node.createSQLJoin(this, true, joinTabalis, new HashSet<>(), info);
-                CharSequence where = node.createSQLExpress(info, joinTabalis);
-
-                StringBuilder join1 = null;
-                StringBuilder join2 = null;
-                if (join != null) {
-                    String joinstr = join.toString();
-                    join1 = multisplit('[', ']', ",", new StringBuilder(), joinstr, 0);
-                    join2 = multisplit('{', '}', " AND ", new StringBuilder(), joinstr, 0);
-                }
-                String sql = "UPDATE " + info.getTable(node) + " a " + (join1 == null ? "" : (", " + join1))
-                    + " SET " + info.getSQLColumn("a", column) + " = " + info.formatToString(value)
-                    + ((where == null || where.length() == 0) ? (join2 == null ? "" : (" WHERE " + join2))
-                        : (" WHERE " + where + (join2 == null ? "" : (" AND " + join2))));
-                if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(info.getType().getSimpleName() + " update sql=" + sql);
-                final Statement stmt = conn.createStatement();
-                c = stmt.executeUpdate(sql);
-                stmt.close();
+                final List<Object> params = new ArrayList<>();
+                params.add(value);
+                final String table = info.getTable(node);
+                final String sql = createPreparedSQL(info, node, params, (nodeParams) -> {
+                    Map<Class, String> joinTabalis = node.getJoinTabalis();
+                    CharSequence join = node.createSQLJoin(this, true, joinTabalis, new HashSet<>(), info);
+                    CharSequence where = node.createSQLExpress(info, joinTabalis, nodeParams);
+
+                    StringBuilder join1 = null;
+                    StringBuilder join2 = null;
+                    if (join != null) {
+                        String joinstr = join.toString();
+                        join1 = multisplit('[', ']', ",", new StringBuilder(), joinstr, 0);
+                        join2 = multisplit('{', '}', " AND ", new StringBuilder(), joinstr, 0);
+                    }
+                    return "UPDATE " + table + " a " + (join1 == null ? "" : (", " + join1))
+                        + " SET " + info.getSQLColumn("a", column) + " = ?"
+                        + ((where == null || where.length() == 0) ? (join2 == null ? "" : (" WHERE " + join2))
+                            : (" WHERE " + where + (join2 == null ? "" : (" AND " + join2))));
+                }, "updateColumnNode", table, column);
+                if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(info.getType().getSimpleName() + " update sql=" + formatPreparedSQL(sql, params));
+                final PreparedStatement prestmt = prepareStatement(writePool, conn, sql, params);
+                c = prestmt.executeUpdate();
+                writePool.closeStatement(conn, prestmt);
             }
             //---------------------------------------------------
             final EntityCache<T> cache = info.getCache();
@@ -807,8 +966,6 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
             return c >= 0 ? c : (rs == null ? 0 : rs.length);
         } catch (SQLException e) {
             throw new RuntimeException(e);
-        } finally {
-            if (conn != null) closeSQLConnection(conn);
         }
     }
 
@@ -839,28 +996,39 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
     private <T> int updateColumn(final Connection conn, final EntityInfo<T> info, final Serializable id, final ColumnValue... values) {
         if (values == null || values.length < 1) return -1;
         try {
-            StringBuilder setsql = new StringBuilder();
             final List<Attribute<T, Serializable>> attrs = new ArrayList<>();
             final List<ColumnValue> cols = new ArrayList<>();
+            final List<Object> params = new ArrayList<>();
+            final Object[] keys = new Object[values.length * 2 + 2];
             final boolean virtual = info.isVirtualEntity();
             for (ColumnValue col : values) {
                 Attribute<T, Serializable> attr = info.getUpdateAttribute(col.getColumn());
                 if (attr == null) continue;
                 attrs.add(attr);
                 cols.add(col);
-                if (!virtual) {
-                    if (setsql.length() > 0) setsql.append(", ");
-                    String c = info.getSQLColumn(null, col.getColumn());
-                    setsql.append(c).append(" = ").append(info.formatSQLValue(c, col));
-                }
+                keys[cols.size() * 2] = col.getColumn();
+                keys[cols.size() * 2 + 1] = col.getExpress();
+                params.add(col.getValue());
             }
             int c = -1;
             if (!virtual) {
-                String sql = "UPDATE " + info.getTable(id) + " SET " + setsql + " WHERE " + info.getPrimarySQLColumn() + " = " + FilterNode.formatToString(id);
-                if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(info.getType().getSimpleName() + ": " + sql);
-                final Statement stmt = conn.createStatement();
-                c = stmt.executeUpdate(sql);
-                stmt.close();
+                final String table = info.getTable(id);
+                keys[0] = "updateColumnValue";
+                keys[1] = table;
+                final String sql = createPreparedSQL(info, () -> {
+                    StringBuilder setsql = new StringBuilder();
+                    for (ColumnValue col : cols) {
+                        if (setsql.length() > 0) setsql.append(", ");
+                        String sc = info.getSQLColumn(null, col.getColumn());
+                        setsql.append(sc).append(" = ").append(info.formatSQLParam(sc, col));
+                    }
+                    return "UPDATE " + table + " SET " + setsql + " WHERE " + info.getPrimarySQLColumn() + " = ?";
+                }, keys);
+                params.add(id);
+                if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(info.getType().getSimpleName() + ": " + formatPreparedSQL(sql, params));
+                final PreparedStatement prestmt = prepareStatement(writePool, conn, sql, params);
+                c = prestmt.executeUpdate();
+                writePool.closeStatement(conn, prestmt);
             }
             //---------------------------------------------------
             final EntityCache<T> cache = info.getCache();
@@ -925,42 +1093,56 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
     private <T> int updateColumn(final Connection conn, final EntityInfo<T> info, final FilterNode node, final Flipper flipper, final ColumnValue... values) {
         if (values == null || values.length < 1) return -1;
         try {
-            StringBuilder setsql = new StringBuilder();
             final List<Attribute<T, Serializable>> attrs = new ArrayList<>();
             final List<ColumnValue> cols = new ArrayList<>();
+            final List<Object> params = new ArrayList<>();
+            final Object[] keys = new Object[values.length * 2 + 4];
             final boolean virtual = info.isVirtualEntity();
             for (ColumnValue col : values) {
                 Attribute<T, Serializable> attr = info.getUpdateAttribute(col.getColumn());
                 if (attr == null) continue;
                 attrs.add(attr);
                 cols.add(col);
-                if (!virtual) {
-                    if (setsql.length() > 0) setsql.append(", ");
-                    String c = info.getSQLColumn("a", col.getColumn());
-                    setsql.append(c).append(" = ").append(info.formatSQLValue(c, col));
-                }
+                keys[cols.size() * 2 + 2] = col.getColumn();
+                keys[cols.size() * 2 + 3] = col.getExpress();
+                params.add(col.getValue());
             }
             int c = -1;
             if (!virtual) {
-                Map<Class, String> joinTabalis = node.getJoinTabalis();
-                CharSequence join = node.createSQLJoin(this, true, joinTabalis, new HashSet<>(), info);
-                CharSequence where = node.createSQLExpress(info, joinTabalis);
-                StringBuilder join1 = null;
-                StringBuilder join2 = null;
-                if (join != null) {
-                    String joinstr = join.toString();
-                    join1 = multisplit('[', ']', ",", new StringBuilder(), joinstr, 0);
-                    join2 = multisplit('{', '}', " AND ", new StringBuilder(), joinstr, 0);
-                }
-                String sql = "UPDATE " + info.getTable(node) + " a " + (join1 == null ? "" : (", " + join1)) + " SET " + setsql
-                    + ((where == null || where.length() == 0) ? (join2 == null ? "" : (" WHERE " + join2))
-                        : (" WHERE " + where + (join2 == null ? "" : (" AND " + join2))));
-                //注：LIMIT 仅支持MySQL 且在多表关联式会异常， 该BUG尚未解决
-                sql += info.createSQLOrderby(flipper) + ((flipper == null || flipper.getLimit() < 1) ? "" : (" LIMIT " + flipper.getLimit()));
-                if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(info.getType().getSimpleName() + " update sql=" + sql);
-                final Statement stmt = conn.createStatement();
-                c = stmt.executeUpdate(sql);
-                stmt.close();
+                final String table = info.getTable(node);
+                final boolean limit = flipper != null && flipper.getLimit() > 0;
+                keys[0] = "updateColumnValueNode";
+                keys[1] = table;
+                keys[2] = flipper == null ? null : flipper.getSort();
+                keys[3] = limit;
+                final String sql = createPreparedSQL(info, node, params, (nodeParams) -> {
+                    StringBuilder setsql = new StringBuilder();
+                    for (ColumnValue col : cols) {
+                        if (setsql.length() > 0) setsql.append(", ");
+                        String sc = info.getSQLColumn("a", col.getColumn());
+                        setsql.append(sc).append(" = ").append(info.formatSQLParam(sc, col));
+                    }
+                    Map<Class, String> joinTabalis = node.getJoinTabalis();
+                    CharSequence join = node.createSQLJoin(this, true, joinTabalis, new HashSet<>(), info);
+                    CharSequence where = node.createSQLExpress(info, joinTabalis, nodeParams);
+                    StringBuilder join1 = null;
+                    StringBuilder join2 = null;
+                    if (join != null) {
+                        String joinstr = join.toString();
+                        join1 = multisplit('[', ']', ",", new StringBuilder(), joinstr, 0);
+                        join2 = multisplit('{', '}', " AND ", new StringBuilder(), joinstr, 0);
+                    }
+                    //注：LIMIT 仅支持MySQL 且在多表关联式会异常， 该BUG尚未解决
+                    return "UPDATE " + table + " a " + (join1 == null ? "" : (", " + join1)) + " SET " + setsql
+                        + ((where == null || where.length() == 0) ? (join2 == null ? "" : (" WHERE " + join2))
+                            : (" WHERE " + where + (join2 == null ? "" : (" AND " + join2))))
+                        + info.createSQLOrderby(flipper) + (limit ? " LIMIT ?" : "");
+                }, keys);
+                if (limit) params.add(flipper.getLimit());
+                if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(info.getType().getSimpleName() + " update sql=" + formatPreparedSQL(sql, params));
+                final PreparedStatement prestmt = prepareStatement(writePool, conn, sql, params);
+                c = prestmt.executeUpdate();
+                writePool.closeStatement(conn, prestmt);
             }
             //---------------------------------------------------
             final EntityCache<T> cache = info.getCache();
@@ -1000,26 +1182,32 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         if (bean == null || columns.length < 1) return -1;
         try {
             final Class<T> clazz = (Class<T>) bean.getClass();
-            StringBuilder setsql = new StringBuilder();
             final Serializable id = info.getPrimary().get(bean);
             final List<Attribute<T, Serializable>> attrs = new ArrayList<>();
+            final List<Object> params = new ArrayList<>();
             final boolean virtual = info.isVirtualEntity();
             for (String col : columns) {
                 Attribute<T, Serializable> attr = info.getUpdateAttribute(col);
                 if (attr == null) continue;
                 attrs.add(attr);
-                if (!virtual) {
-                    if (setsql.length() > 0) setsql.append(", ");
-                    setsql.append(info.getSQLColumn(null, col)).append(" = ").append(info.formatToString(attr.get(bean)));
-                }
+                params.add(attr.get(bean));
             }
             int c = -1;
             if (!virtual) {
-                String sql = "UPDATE " + info.getTable(id) + " SET " + setsql + " WHERE " + info.getPrimarySQLColumn() + " = " + FilterNode.formatToString(id);
-                if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(bean.getClass().getSimpleName() + ": " + sql);
-                final Statement stmt = conn.createStatement();
-                c = stmt.executeUpdate(sql);
-                stmt.close();
+                final String table = info.getTable(id);
+                final String sql = createPreparedSQL(info, () -> {
+                    StringBuilder setsql = new StringBuilder();
+                    for (Attribute<T, Serializable> attr : attrs) {
+                        if (setsql.length() > 0) setsql.append(", ");
+                        setsql.append(info.getSQLColumn(null, attr.field())).append(" = ?");
+                    }
+                    return "UPDATE " + table + " SET " + setsql + " WHERE " + info.getPrimarySQLColumn() + " = ?";
+                }, "updateColumns", table, Arrays.asList(columns));
+                params.add(id);
+                if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(bean.getClass().getSimpleName() + ": " + formatPreparedSQL(sql, params));
+                final PreparedStatement prestmt = prepareStatement(writePool, conn, sql, params);
+                c = prestmt.executeUpdate();
+                writePool.closeStatement(conn, prestmt);
             }
             //---------------------------------------------------
             final EntityCache<T> cache = info.getCache();
@@ -1060,38 +1248,42 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         if (bean == null || node == null || columns.length < 1) return -1;
         try {
             final Class<T> clazz = (Class<T>) bean.getClass();
-            StringBuilder setsql = new StringBuilder();
-            final Serializable id = info.getPrimary().get(bean);
             final List<Attribute<T, Serializable>> attrs = new ArrayList<>();
+            final List<Object> params = new ArrayList<>();
             final boolean virtual = info.isVirtualEntity();
             for (String col : columns) {
                 Attribute<T, Serializable> attr = info.getUpdateAttribute(col);
                 if (attr == null) continue;
                 attrs.add(attr);
-                if (!virtual) {
-                    if (setsql.length() > 0) setsql.append(", ");
-                    setsql.append(info.getSQLColumn("a", col)).append(" = ").append(info.formatToString(attr.get(bean)));
-                }
+                params.add(attr.get(bean));
             }
             int c = -1;
             if (!virtual) {
-                Map<Class, String> joinTabalis = node.getJoinTabalis();
-                CharSequence join = node.createSQLJoin(this, true, joinTabalis, new HashSet<>(), info);
-                CharSequence where = node.createSQLExpress(info, joinTabalis);
-                StringBuilder join1 = null;
-                StringBuilder join2 = null;
-                if (join != null) {
-                    String joinstr = join.toString();
-                    join1 = multisplit('[', ']', ",", new StringBuilder(), joinstr, 0);
-                    join2 = multisplit('{', '}', " AND ", new StringBuilder(), joinstr, 0);
-                }
-                String sql = "UPDATE " + info.getTable(node) + " a " + (join1 == null ? "" : (", " + join1)) + " SET " + setsql
-                    + ((where == null || where.length() == 0) ? (join2 == null ? "" : (" WHERE " + join2))
-                        : (" WHERE " + where + (join2 == null ? "" : (" AND " + join2))));
-                if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(info.getType().getSimpleName() + " update sql=" + sql);
-                final Statement stmt = conn.createStatement();
-                c = stmt.executeUpdate(sql);
-                stmt.close();
+                final String table = info.getTable(node);
+                final String sql = createPreparedSQL(info, node, params, (nodeParams) -> {
+                    StringBuilder setsql = new StringBuilder();
+                    for (Attribute<T, Serializable> attr : attrs) {
+                        if (setsql.length() > 0) setsql.append(", ");
+                        setsql.append(info.getSQLColumn("a", attr.field())).append(" = ?");
+                    }
+                    Map<Class, String> joinTabalis = node.getJoinTabalis();
+                    CharSequence join = node.createSQLJoin(this, true, joinTabalis, new HashSet<>(), info);
+                    CharSequence where = node.createSQLExpress(info, joinTabalis, nodeParams);
+                    StringBuilder join1 = null;
+                    StringBuilder join2 = null;
+                    if (join != null) {
+                        String joinstr = join.toString();
+                        join1 = multisplit('[', ']', ",", new StringBuilder(), joinstr, 0);
+                        join2 = multisplit('{', '}', " AND ", new StringBuilder(), joinstr, 0);
+                    }
+                    return "UPDATE " + table + " a " + (join1 == null ? "" : (", " + join1)) + " SET " + setsql
+                        + ((where == null || where.length() == 0) ? (join2 == null ? "" : (" WHERE " + join2))
+                            : (" WHERE " + where + (join2 == null ? "" : (" AND " + join2))));
+                }, "updateColumnsNode", table, Arrays.asList(columns));
+                if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(info.getType().getSimpleName() + " update sql=" + formatPreparedSQL(sql, params));
+                final PreparedStatement prestmt = prepareStatement(writePool, conn, sql, params);
+                c = prestmt.executeUpdate();
+                writePool.closeStatement(conn, prestmt);
             }
             //---------------------------------------------------
             final EntityCache<T> cache = info.getCache();
@@ -1167,13 +1359,17 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
                     return cache.getNumberResult(func, defVal, column, node);
                 }
             }
-            final Map<Class, String> joinTabalis = node == null ? null : node.getJoinTabalis();
-            final CharSequence join = node == null ? null : node.createSQLJoin(this, false, joinTabalis, new HashSet<>(), info);
-            final CharSequence where = node == null ? null : node.createSQLExpress(info, joinTabalis);
-            final String sql = "SELECT " + func.getColumn((column == null || column.isEmpty() ? "*" : ("a." + column))) + " FROM " + info.getTable(node) + " a"
-                + (join == null ? "" : join) + ((where == null || where.length() == 0) ? "" : (" WHERE " + where));
-            if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(entityClass.getSimpleName() + " single sql=" + sql);
-            final PreparedStatement prestmt = conn.prepareStatement(sql);
+            final List<Object> params = new ArrayList<>();
+            final String table = info.getTable(node);
+            final String sql = createPreparedSQL(info, node, params, (nodeParams) -> {
+                final Map<Class, String> joinTabalis = node == null ? null : node.getJoinTabalis();
+                final CharSequence join = node == null ? null : node.createSQLJoin(this, false, joinTabalis, new HashSet<>(), info);
+                final CharSequence where = node == null ? null : node.createSQLExpress(info, joinTabalis, nodeParams);
+                return "SELECT " + func.getColumn((column == null || column.isEmpty() ? "*" : ("a." + column))) + " FROM " + table + " a"
+                    + (join == null ? "" : join) + ((where == null || where.length() == 0) ? "" : (" WHERE " + where));
+            }, "number", table, func, column);
+            if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(entityClass.getSimpleName() + " single sql=" + formatPreparedSQL(sql, params));
+            final PreparedStatement prestmt = prepareStatement(readPool, conn, sql, params);
             Number rs = defVal;
             ResultSet set = prestmt.executeQuery();
             if (set.next()) {
@@ -1181,7 +1377,7 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
                 if (o != null) rs = (Number) o;
             }
             set.close();
-            prestmt.close();
+            readPool.closeStatement(conn, prestmt);
             return rs;
         } catch (SQLException e) {
             if (info.tableStrategy != null && info.tablenotexistSqlstates.contains(';' + e.getSQLState() + ';')) return defVal;
@@ -1213,14 +1409,18 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
                     return cache.queryColumnMap(keyColumn, func, funcColumn, node);
                 }
             }
-            final String sqlkey = info.getSQLColumn(null, keyColumn);
-            final Map<Class, String> joinTabalis = node == null ? null : node.getJoinTabalis();
-            final CharSequence join = node == null ? null : node.createSQLJoin(this, false, joinTabalis, new HashSet<>(), info);
-            final CharSequence where = node == null ? null : node.createSQLExpress(info, joinTabalis);
-            final String sql = "SELECT a." + sqlkey + ", " + func.getColumn((funcColumn == null || funcColumn.isEmpty() ? "*" : ("a." + funcColumn)))
-                + " FROM " + info.getTable(node) + " a" + (join == null ? "" : join) + ((where == null || where.length() == 0) ? "" : (" WHERE " + where)) + " GROUP BY a." + sqlkey;
-            if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(entityClass.getSimpleName() + " single sql=" + sql);
-            final PreparedStatement prestmt = conn.prepareStatement(sql);
+            final List<Object> params = new ArrayList<>();
+            final String table = info.getTable(node);
+            final String sql = createPreparedSQL(info, node, params, (nodeParams) -> {
+                final String sqlkey = info.getSQLColumn(null, keyColumn);
+                final Map<Class, String> joinTabalis = node == null ? null : node.getJoinTabalis();
+                final CharSequence join = node == null ? null : node.createSQLJoin(this, false, joinTabalis, new HashSet<>(), info);
+                final CharSequence where = node == null ? null : node.createSQLExpress(info, joinTabalis, nodeParams);
+                return "SELECT a." + sqlkey + ", " + func.getColumn((funcColumn == null || funcColumn.isEmpty() ? "*" : ("a." + funcColumn)))
+                    + " FROM " + table + " a" + (join == null ? "" : join) + ((where == null || where.length() == 0) ? "" : (" WHERE " + where)) + " GROUP BY a." + sqlkey;
+            }, "columnMap", table, keyColumn, func, funcColumn);
+            if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(entityClass.getSimpleName() + " single sql=" + formatPreparedSQL(sql, params));
+            final PreparedStatement prestmt = prepareStatement(readPool, conn, sql, params);
             Map<K, N> rs = new LinkedHashMap<>();
             ResultSet set = prestmt.executeQuery();
             ResultSetMetaData rsd = set.getMetaData();
@@ -1229,7 +1429,64 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
                 rs.put((K) (smallint ? set.getShort(1) : set.getObject(1)), (N) set.getObject(2));
             }
             set.close();
-            prestmt.close();
+            readPool.closeStatement(conn, prestmt);
+            return rs;
+        } catch (SQLException e) {
+            if (info.tableStrategy != null && info.tablenotexistSqlstates.contains(';' + e.getSQLState() + ';')) return new LinkedHashMap<>();
+            throw new RuntimeException(e);
+        } finally {
+            if (conn != null) closeSQLConnection(conn);
+        }
+    }
+
+    @Override
+    public <T, K extends Serializable> Map<K, Number[]> queryColumnMap(final Class<T> entityClass, final String keyColumn, final FilterFuncColumn[] funcColumns, FilterNode node) {
+        final EntityInfo info = loadEntityInfo(entityClass);
+        final Connection conn = createReadSQLConnection();
+        try {
+            final EntityCache cache = info.getCache();
+            if (cache != null && (info.isVirtualEntity() || cache.isFullLoaded())) {
+                if (node == null || node.isCacheUseable(this)) {
+                    return (Map) cache.queryColumnMap(keyColumn, funcColumns, node);
+                }
+            }
+            final List<Object> params = new ArrayList<>();
+            final String table = info.getTable(node);
+            final Object[] keys = new Object[funcColumns.length * 2 + 3];
+            keys[0] = "columnMaps";
+            keys[1] = table;
+            keys[2] = keyColumn;
+            for (int i = 0; i < funcColumns.length; i++) {
+                keys[i * 2 + 3] = funcColumns[i].getFunc();
+                keys[i * 2 + 4] = funcColumns[i].getColumn();
+            }
+            final String sql = createPreparedSQL(info, node, params, (nodeParams) -> {
+                final String sqlkey = info.getSQLColumn(null, keyColumn);
+                final StringBuilder funcs = new StringBuilder();
+                for (FilterFuncColumn fc : funcColumns) {
+                    funcs.append(", ").append(fc.getFunc().getColumn((fc.getColumn() == null || fc.getColumn().isEmpty() ? "*" : ("a." + fc.getColumn()))));
+                }
+                final Map<Class, String> joinTabalis = node == null ? null : node.getJoinTabalis();
+                final CharSequence join = node == null ? null : node.createSQLJoin(this, false, joinTabalis, new HashSet<>(), info);
+                final CharSequence where = node == null ? null : node.createSQLExpress(info, joinTabalis, nodeParams);
+                return "SELECT a." + sqlkey + funcs
+                    + " FROM " + table + " a" + (join == null ? "" : join) + ((where == null || where.length() == 0) ? "" : (" WHERE " + where)) + " GROUP BY a." + sqlkey;
+            }, keys);
+            if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(entityClass.getSimpleName() + " single sql=" + formatPreparedSQL(sql, params));
+            final PreparedStatement prestmt = prepareStatement(readPool, conn, sql, params);
+            Map<K, Number[]> rs = new LinkedHashMap<>();
+            ResultSet set = prestmt.executeQuery();
+            ResultSetMetaData rsd = set.getMetaData();
+            boolean smallint = rsd.getColumnType(1) == Types.SMALLINT;
+            while (set.next()) {
+                Number[] nums = new Number[funcColumns.length];
+                for (int i = 0; i < nums.length; i++) {
+                    nums[i] = (Number) set.getObject(i + 2);
+                }
+                rs.put((K) (smallint ? set.getShort(1) : set.getObject(1)), nums);
+            }
+            set.close();
+            readPool.closeStatement(conn, prestmt);
             return rs;
         } catch (SQLException e) {
             if (info.tableStrategy != null && info.tablenotexistSqlstates.contains(';' + e.getSQLState() + ';')) return new LinkedHashMap<>();
@@ -1266,13 +1523,15 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         final Connection conn = createReadSQLConnection();
         try {
             final SelectColumn sels = selects;
-            final String sql = "SELECT * FROM " + info.getTable(pk) + " WHERE " + info.getPrimarySQLColumn() + " = " + FilterNode.formatToString(pk);
-            if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(clazz.getSimpleName() + " find sql=" + sql);
-            final PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+            final String table = info.getTable(pk);
+            final String sql = createPreparedSQL(info, () -> "SELECT * FROM " + table + " WHERE " + info.getPrimarySQLColumn() + " = ?", "find", table);
+            final List<Object> params = Collections.singletonList(pk);
+            if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(clazz.getSimpleName() + " find sql=" + formatPreparedSQL(sql, params));
+            final PreparedStatement ps = prepareStatement(readPool, conn, sql, params);
             final ResultSet set = ps.executeQuery();
             T rs = set.next() ? info.getValue(sels, set) : null;
             set.close();
-            ps.close();
+            readPool.closeStatement(conn, ps);
             return rs;
         } catch (SQLException sex) {
             if (info.tableStrategy != null && info.tablenotexistSqlstates.contains(';' + sex.getSQLState() + ';')) return null;
@@ -1313,16 +1572,20 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         final Connection conn = createReadSQLConnection();
         try {
             final SelectColumn sels = selects;
-            final Map<Class, String> joinTabalis = node == null ? null : node.getJoinTabalis();
-            final CharSequence join = node == null ? null : node.createSQLJoin(this, false, joinTabalis, new HashSet<>(), info);
-            final CharSequence where = node == null ? null : node.createSQLExpress(info, joinTabalis);
-            final String sql = "SELECT a.* FROM " + info.getTable(node) + " a" + (join == null ? "" : join) + ((where == null || where.length() == 0) ? "" : (" WHERE " + where));
-            if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(clazz.getSimpleName() + " find sql=" + sql);
-            final PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+            final List<Object> params = new ArrayList<>();
+            final String table = info.getTable(node);
+            final String sql = createPreparedSQL(info, node, params, (nodeParams) -> {
+                final Map<Class, String> joinTabalis = node == null ? null : node.getJoinTabalis();
+                final CharSequence join = node == null ? null : node.createSQLJoin(this, false, joinTabalis, new HashSet<>(), info);
+                final CharSequence where = node == null ? null : node.createSQLExpress(info, joinTabalis, nodeParams);
+                return "SELECT a.* FROM " + table + " a" + (join == null ? "" : join) + ((where == null || where.length() == 0) ? "" : (" WHERE " + where));
+            }, "findNode", table);
+            if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(clazz.getSimpleName() + " find sql=" + formatPreparedSQL(sql, params));
+            final PreparedStatement ps = prepareStatement(readPool, conn, sql, params);
             final ResultSet set = ps.executeQuery();
             T rs = set.next() ? info.getValue(sels, set) : null;
             set.close();
-            ps.close();
+            readPool.closeStatement(conn, ps);
             return rs;
         } catch (SQLException se) {
             if (info.tableStrategy != null && info.tablenotexistSqlstates.contains(';' + se.getSQLState() + ';')) return null;
@@ -1334,6 +1597,110 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         }
     }
 
+    @Override
+    public <T> List<T> findAll(final Class<T> clazz, final Serializable... pks) {
+        return findAll(clazz, (SelectColumn) null, pks);
+    }
+
+    @Override
+    public <T> List<T> findAll(final Class<T> clazz, final SelectColumn selects, final Serializable... pks) {
+        final Map<Serializable, T> map = findMap(loadEntityInfo(clazz), selects, pks);
+        final List<T> list = new ArrayList<>(pks.length);
+        for (Serializable pk : pks) {
+            list.add(pk == null ? null : map.get(pk));
+        }
+        return list;
+    }
+
+    @Override
+    public <T, K extends Serializable> Map<K, T> findMap(final Class<T> clazz, final Serializable... pks) {
+        return findMap(clazz, (SelectColumn) null, pks);
+    }
+
+    @Override
+    public <T, K extends Serializable> Map<K, T> findMap(final Class<T> clazz, final SelectColumn selects, final Serializable... pks) {
+        final Map<Serializable, T> map = findMap(loadEntityInfo(clazz), selects, pks);
+        final Map<K, T> rs = new LinkedHashMap<>();
+        for (Serializable pk : pks) {
+            T val = pk == null ? null : map.get(pk);
+            if (val != null) rs.put((K) pk, val);
+        }
+        return rs;
+    }
+
+    private <T> Map<Serializable, T> findMap(final EntityInfo<T> info, final SelectColumn selects, final Serializable... pks) {
+        final Map<Serializable, T> map = new HashMap<>();
+        final EntityCache<T> cache = info.getCache();
+        //缓存未命中的主键按表分组
+        final Map<String, Set<Serializable>> misses = new LinkedHashMap<>();
+        for (Serializable pk : pks) {
+            if (pk == null || map.containsKey(pk)) continue;
+            if (cache != null) {
+                T rs = cache.find(selects, pk);
+                if (rs != null) {
+                    map.put(pk, rs);
+                    continue;
+                }
+                if (cache.isFullLoaded()) continue;
+            }
+            misses.computeIfAbsent(info.getTable(pk), t -> new LinkedHashSet<>()).add(pk);
+        }
+        if (misses.isEmpty()) return map;
+
+        final Connection conn = createReadSQLConnection();
+        try {
+            final Attribute<T, Serializable> primary = info.getPrimary();
+            for (Map.Entry<String, Set<Serializable>> en : misses.entrySet()) {
+                final String table = en.getKey();
+                final Serializable[] ids = en.getValue().toArray(new Serializable[en.getValue().size()]);
+                for (int from = 0; from < ids.length; from += FINDALL_BATCH_SIZE) {
+                    final int size = Math.min(FINDALL_BATCH_SIZE, ids.length - from);
+                    final int count = FilterNode.formatParamCount(size);
+                    final List<Object> params = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        params.add(ids[from + Math.min(i, size - 1)]);
+                    }
+                    final String sql = createPreparedSQL(info, () -> {
+                        final StringBuilder sb = new StringBuilder().append("SELECT * FROM ").append(table).append(" WHERE ").append(info.getPrimarySQLColumn()).append(" IN (");
+                        for (int i = 0; i < count; i++) {
+                            sb.append(i == 0 ? "?" : ",?");
+                        }
+                        return sb.append(')').toString();
+                    }, "findAll", table, count);
+                    if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(info.getType().getSimpleName() + " find sql=" + formatPreparedSQL(sql, params));
+                    try {
+                        final PreparedStatement ps = prepareStatement(readPool, conn, sql, params);
+                        final ResultSet set = ps.executeQuery();
+                        final int[] indexes = info.getColumnIndexes(null, set);
+                        while (set.next()) {
+                            //selects可能不包含主键， 先读取完整记录再复制需要的字段
+                            final T val = info.getValue(indexes, set);
+                            map.put(primary.get(val), selects == null ? val : copyValue(info, selects, val));
+                        }
+                        set.close();
+                        readPool.closeStatement(conn, ps);
+                    } catch (SQLException se) {
+                        if (info.tableStrategy != null && info.tablenotexistSqlstates.contains(';' + se.getSQLState() + ';')) break;
+                        throw se;
+                    }
+                }
+            }
+            return map;
+        } catch (SQLException se) {
+            throw new RuntimeException(se);
+        } finally {
+            closeSQLConnection(conn);
+        }
+    }
+
+    private static <T> T copyValue(final EntityInfo<T> info, final SelectColumn selects, final T value) {
+        final T rs = info.getCreator().create();
+        for (Attribute<T, Serializable> attr : info.attributes) {
+            if (selects.test(attr.field())) attr.set(rs, attr.get(value));
+        }
+        return rs;
+    }
+
     @Override
     public <T> Serializable findColumn(final Class<T> clazz, final String column, final Serializable pk) {
         return findColumn(clazz, column, null, pk);
@@ -1360,14 +1727,17 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
 
         final Connection conn = createReadSQLConnection();
         try {
-            final String sql = "SELECT " + info.getSQLColumn(null, column) + " FROM " + info.getTable(pk) + " WHERE " + info.getPrimarySQLColumn() + " = " + FilterNode.formatToString(pk);
-            if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(clazz.getSimpleName() + " find sql=" + sql);
-            final PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+            final String table = info.getTable(pk);
+            final String sql = createPreparedSQL(info, () -> "SELECT " + info.getSQLColumn(null, column) + " FROM " + table + " WHERE " + info.getPrimarySQLColumn() + " = ?",
+                "findColumn", table, column);
+            final List<Object> params = Collections.singletonList(pk);
+            if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(clazz.getSimpleName() + " find sql=" + formatPreparedSQL(sql, params));
+            final PreparedStatement ps = prepareStatement(readPool, conn, sql, params);
             final ResultSet set = ps.executeQuery();
             Serializable val = defValue;
             if (set.next()) val = (Serializable) set.getObject(1);
             set.close();
-            ps.close();
+            readPool.closeStatement(conn, ps);
             return val == null ? defValue : val;
         } catch (SQLException sex) {
             if (info.tableStrategy != null && info.tablenotexistSqlstates.contains(';' + sex.getSQLState() + ';')) return defValue;
@@ -1392,17 +1762,21 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
 
         final Connection conn = createReadSQLConnection();
         try {
-            final Map<Class, String> joinTabalis = node == null ? null : node.getJoinTabalis();
-            final CharSequence join = node == null ? null : node.createSQLJoin(this, false, joinTabalis, new HashSet<>(), info);
-            final CharSequence where = node == null ? null : node.createSQLExpress(info, joinTabalis);
-            final String sql = "SELECT " + info.getSQLColumn("a", column) + " FROM " + info.getTable(node) + " a" + (join == null ? "" : join) + ((where == null || where.length() == 0) ? "" : (" WHERE " + where));
-            if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(clazz.getSimpleName() + " find sql=" + sql);
-            final PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+            final List<Object> params = new ArrayList<>();
+            final String table = info.getTable(node);
+            final String sql = createPreparedSQL(info, node, params, (nodeParams) -> {
+                final Map<Class, String> joinTabalis = node == null ? null : node.getJoinTabalis();
+                final CharSequence join = node == null ? null : node.createSQLJoin(this, false, joinTabalis, new HashSet<>(), info);
+                final CharSequence where = node == null ? null : node.createSQLExpress(info, joinTabalis, nodeParams);
+                return "SELECT " + info.getSQLColumn("a", column) + " FROM " + table + " a" + (join == null ? "" : join) + ((where == null || where.length() == 0) ? "" : (" WHERE " + where));
+            }, "findColumnNode", table, column);
+            if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(clazz.getSimpleName() + " find sql=" + formatPreparedSQL(sql, params));
+            final PreparedStatement ps = prepareStatement(readPool, conn, sql, params);
             final ResultSet set = ps.executeQuery();
             Serializable val = defValue;
             if (set.next()) val = (Serializable) set.getObject(1);
             set.close();
-            ps.close();
+            readPool.closeStatement(conn, ps);
             return val == null ? defValue : val;
         } catch (SQLException se) {
             if (info.tableStrategy != null && info.tablenotexistSqlstates.contains(';' + se.getSQLState() + ';')) return defValue;
@@ -1427,14 +1801,16 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         final boolean log = debug.get() && info.isLoggable(Level.FINEST);
         String logstr = null;
         try {
-            final String sql = "SELECT COUNT(*) FROM " + info.getTable(pk) + " WHERE " + info.getPrimarySQLColumn() + " = " + FilterNode.formatToString(pk);
-            if (log) logstr = clazz.getSimpleName() + " exists sql=" + sql;
-            final PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+            final String table = info.getTable(pk);
+            final String sql = createPreparedSQL(info, () -> "SELECT COUNT(*) FROM " + table + " WHERE " + info.getPrimarySQLColumn() + " = ?", "exists", table);
+            final List<Object> params = Collections.singletonList(pk);
+            if (log) logstr = clazz.getSimpleName() + " exists sql=" + formatPreparedSQL(sql, params);
+            final PreparedStatement ps = prepareStatement(readPool, conn, sql, params);
             final ResultSet set = ps.executeQuery();
             boolean rs = set.next() ? (set.getInt(1) > 0) : false;
             set.close();
-            ps.close();
-            if (log) logstr = clazz.getSimpleName() + " exists (" + rs + ") sql=" + sql;
+            readPool.closeStatement(conn, ps);
+            if (log) logstr = clazz.getSimpleName() + " exists (" + rs + ") sql=" + formatPreparedSQL(sql, params);
             return rs;
         } catch (SQLException se) {
             if (info.tableStrategy != null && info.tablenotexistSqlstates.contains(';' + se.getSQLState() + ';')) return false;
@@ -1462,17 +1838,21 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         final boolean log = debug.get() && info.isLoggable(Level.FINEST);
         String logstr = null;
         try {
-            final Map<Class, String> joinTabalis = node == null ? null : node.getJoinTabalis();
-            final CharSequence join = node == null ? null : node.createSQLJoin(this, false, joinTabalis, new HashSet<>(), info);
-            final CharSequence where = node == null ? null : node.createSQLExpress(info, joinTabalis);
-            final String sql = "SELECT COUNT(" + info.getPrimarySQLColumn("a") + ") FROM " + info.getTable(node) + " a" + (join == null ? "" : join) + ((where == null || where.length() == 0) ? "" : (" WHERE " + where));
-            if (log) logstr = clazz.getSimpleName() + " exists sql=" + sql;
-            final PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+            final List<Object> params = new ArrayList<>();
+            final String table = info.getTable(node);
+            final String sql = createPreparedSQL(info, node, params, (nodeParams) -> {
+                final Map<Class, String> joinTabalis = node == null ? null : node.getJoinTabalis();
+                final CharSequence join = node == null ? null : node.createSQLJoin(this, false, joinTabalis, new HashSet<>(), info);
+                final CharSequence where = node == null ? null : node.createSQLExpress(info, joinTabalis, nodeParams);
+                return "SELECT COUNT(" + info.getPrimarySQLColumn("a") + ") FROM " + table + " a" + (join == null ? "" : join) + ((where == null || where.length() == 0) ? "" : (" WHERE " + where));
+            }, "existsNode", table);
+            if (log) logstr = clazz.getSimpleName() + " exists sql=" + formatPreparedSQL(sql, params);
+            final PreparedStatement ps = prepareStatement(readPool, conn, sql, params);
             final ResultSet set = ps.executeQuery();
             boolean rs = set.next() ? (set.getInt(1) > 0) : false;
             set.close();
-            ps.close();
-            if (log) logstr = clazz.getSimpleName() + " exists (" + rs + ") sql=" + sql;
+            readPool.closeStatement(conn, ps);
+            if (log) logstr = clazz.getSimpleName() + " exists (" + rs + ") sql=" + formatPreparedSQL(sql, params);
             return rs;
         } catch (SQLException se) {
             if (info.tableStrategy != null && info.tablenotexistSqlstates.contains(';' + se.getSQLState() + ';')) return false;
@@ -1652,6 +2032,60 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         return querySheet(true, false, clazz, selects, flipper, node).list(true);
     }
 
+    //-----------------------stream----------------------------
+    @Override
+    public <T> void forEach(final Class<T> clazz, final FilterNode node, final Consumer<T> consumer) {
+        forEach(clazz, (SelectColumn) null, node, consumer);
+    }
+
+    @Override
+    public <T> void forEach(final Class<T> clazz, final FilterBean bean, final Consumer<T> consumer) {
+        forEach(clazz, (SelectColumn) null, FilterNodeBean.createFilterNode(bean), consumer);
+    }
+
+    @Override
+    public <T> void forEach(final Class<T> clazz, final SelectColumn selects, final FilterBean bean, final Consumer<T> consumer) {
+        forEach(clazz, selects, FilterNodeBean.createFilterNode(bean), consumer);
+    }
+
+    @Override
+    public <T> void forEach(final Class<T> clazz, final SelectColumn selects, final FilterNode node, final Consumer<T> consumer) {
+        final EntityInfo<T> info = loadEntityInfo(clazz);
+        final EntityCache<T> cache = info.getCache();
+        if (cache != null && cache.isFullLoaded() && (node == null || node.isCacheUseable(this))) {
+            cache.querySheet(false, selects, null, node).forEach(consumer);
+            return;
+        }
+        if (info.isVirtualEntity()) return;
+        final Connection conn = createReadSQLConnection();
+        try {
+            final List<Object> params = new ArrayList<>();
+            final String table = info.getTable(node);
+            final String sql = createPreparedSQL(info, node, params, (nodeParams) -> "SELECT a.*" + createQueryFrom(info, table, node, nodeParams), "forEach", table);
+            if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(clazz.getSimpleName() + " forEach sql=" + formatPreparedSQL(sql, params));
+            final PreparedStatement ps = readPool.prepareStreamStatement(conn, sql);
+            try {
+                int i = 0;
+                for (Object param : params) {
+                    ps.setObject(++i, FilterNode.formatToParamValue(param));
+                }
+                final ResultSet set = ps.executeQuery();
+                final int[] indexes = info.getColumnIndexes(selects, set);
+                while (set.next()) {
+                    consumer.accept(info.getValue(indexes, set));
+                }
+                set.close();
+            } finally {
+                readPool.closeStreamStatement(conn, ps);
+            }
+        } catch (SQLException se) {
+            if (info.tableStrategy != null && info.tablenotexistSqlstates.contains(';' + se.getSQLState() + ';')) return;
+            throw new RuntimeException(se);
+        } finally {
+            closeSQLConnection(conn);
+        }
+    }
+
     //-----------------------sheet----------------------------
     /**
      * 根据过滤对象FilterBean和翻页对象Flipper查询一页的数据
@@ -1707,31 +2141,46 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         try {
             final SelectColumn sels = selects;
             final List<T> list = new ArrayList();
-            final Map<Class, String> joinTabalis = node == null ? null : node.getJoinTabalis();
-            final CharSequence join = node == null ? null : node.createSQLJoin(this, false, joinTabalis, new HashSet<>(), info);
-            final CharSequence where = node == null ? null : node.createSQLExpress(info, joinTabalis);
-            final String sql = "SELECT a.* FROM " + info.getTable(node) + " a" + (join == null ? "" : join)
-                + ((where == null || where.length() == 0) ? "" : (" WHERE " + where)) + info.createSQLOrderby(flipper);
-            if (debug.get() && info.isLoggable(Level.FINEST)) {
-                logger.finest(clazz.getSimpleName() + " query sql=" + sql + (flipper == null || flipper.getLimit() < 1 ? "" : (" LIMIT " + flipper.getOffset() + "," + flipper.getLimit())));
-            }
-            final PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
-            final ResultSet set = ps.executeQuery();
-            if (flipper != null && flipper.getOffset() > 0) set.absolute(flipper.getOffset());
+            final List<Object> params = new ArrayList<>();
+            final String table = info.getTable(node);
+            final boolean limitable = this.readPool.isLimitable();
             final int limit = flipper == null || flipper.getLimit() < 1 ? Integer.MAX_VALUE : flipper.getLimit();
+            final int offset = flipper == null ? 0 : Math.max(0, flipper.getOffset());
+            final String sql = createPreparedSQL(info, node, params, (nodeParams) -> {
+                final String from = createQueryFrom(info, table, node, nodeParams);
+                //无法识别的数据库不能分页， 只能跳过offset条记录
+                return limitable ? this.readPool.createLimitSQL("SELECT a.*" + from, info.createSQLOrderby(flipper), flipper) : ("SELECT a.*" + from + info.createSQLOrderby(flipper));
+            }, "query", this.readPool, table, flipper == null ? null : flipper.getSort(), limit != Integer.MAX_VALUE, offset > 0);
+            if (limitable) this.readPool.addLimitParams(flipper, params);
+            final int skip = limitable ? 0 : offset;
+            if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(clazz.getSimpleName() + " query sql=" + formatPreparedSQL(sql, params));
+            final PreparedStatement ps = prepareStatement(readPool, conn, sql, params);
+            ps.setMaxRows(limitable || limit == Integer.MAX_VALUE ? 0 : (int) Math.min(Integer.MAX_VALUE, (long) skip + limit)); //缓存的PreparedStatement需重置
+            final ResultSet set = ps.executeQuery();
+            final int[] indexes = info.getColumnIndexes(sels, set);
+            for (int i = 0; i < skip && set.next(); i++);
             int i = 0;
-            while (set.next()) {
+            while (i < limit && set.next()) {
                 i++;
-                list.add(info.getValue(sels, set));
-                if (limit <= i) break;
+                list.add(info.getValue(indexes, set));
             }
+            set.close();
+            readPool.closeStatement(conn, ps);
             long total = list.size();
             if (needtotal && flipper != null) {
-                set.last();
-                total = set.getRow();
+                if (list.size() < limit && (list.size() > 0 || offset == 0)) { //不满一页时已能确定总数
+                    total = offset + list.size();
+                } else {
+                    final List<Object> countparams = new ArrayList<>();
+                    final String countsql = createPreparedSQL(info, node, countparams, (nodeParams) -> "SELECT COUNT(*)" + createQueryFrom(info, table, node, nodeParams), "count", table);
+                    if (debug.get() && info.isLoggable(Level.FINEST)) logger.finest(clazz.getSimpleName() + " query countsql=" + formatPreparedSQL(countsql, countparams));
+                    final PreparedStatement countps = prepareStatement(readPool, conn, countsql, countparams);
+                    final ResultSet countset = countps.executeQuery();
+                    total = countset.next() ? countset.getLong(1) : 0;
+                    countset.close();
+                    readPool.closeStatement(conn, countps);
+                }
             }
-            set.close();
-            ps.close();
             return new Sheet<>(total, list);
         } catch (SQLException se) {
             if (info.tableStrategy != null && info.tablenotexistSqlstates.contains(';' + se.getSQLState() + ';')) return new Sheet<>();
@@ -1743,6 +2192,13 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         }
     }
 
+    private <T> String createQueryFrom(final EntityInfo<T> info, final String table, final FilterNode node, final List<Object> nodeParams) {
+        final Map<Class, String> joinTabalis = node == null ? null : node.getJoinTabalis();
+        final CharSequence join = node == null ? null : node.createSQLJoin(this, false, joinTabalis, new HashSet<>(), info);
+        final CharSequence where = node == null ? null : node.createSQLExpress(info, joinTabalis, nodeParams);
+        return " FROM " + table + " a" + (join == null ? "" : join) + ((where == null || where.length() == 0) ? "" : (" WHERE " + where));
+    }
+
     private static StringBuilder multisplit(char ch1, char ch2, String split, StringBuilder sb, String str, int from) {
         if (str == null) return sb;
         int pos1 = str.indexOf(ch1, from);
@@ -1780,6 +2236,86 @@ public final class DataDefaultSource implements DataSource, Function<Class, Enti
         }
     }
 
+    //-----------------------async----------------------------
+    @Override
+    public <T> CompletableFuture<Void> insertAsync(final T... values) {
+        if (values.length == 0) return CompletableFuture.completedFuture(null);
+        final EntityInfo<T> info = loadEntityInfo((Class<T>) values[0].getClass());
+        if (info.isVirtualEntity()) return completed(() -> { //虚拟表只更新缓存Cache
+            insert(null, info, values);
+            return null;
+        });
+        return writePool.supplyAsync(() -> {
+            insert(values);
+            return null;
+        });
+    }
+
+    @Override
+    public <T> CompletableFuture<Integer> deleteAsync(final T... values) {
+        if (values.length == 0) return CompletableFuture.completedFuture(-1);
+        final EntityInfo<T> info = loadEntityInfo((Class<T>) values[0].getClass());
+        if (info.isVirtualEntity()) return completed(() -> delete(values));
+        return writePool.supplyAsync(() -> delete(values));
+    }
+
+    @Override
+    public <T> CompletableFuture<Integer> updateAsync(final T... values) {
+        if (values.length == 0) return CompletableFuture.completedFuture(0);
+        final EntityInfo<T> info = loadEntityInfo((Class<T>) values[0].getClass());
+        if (info.isVirtualEntity()) return completed(() -> update(values));
+        return writePool.supplyAsync(() -> update(values));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> findAsync(final Class<T> clazz, final Serializable pk) {
+        return findAsync(clazz, (SelectColumn) null, pk);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> findAsync(final Class<T> clazz, final SelectColumn selects, final Serializable pk) {
+        final EntityCache<T> cache = loadEntityInfo(clazz).getCache();
+        if (cache != null) {
+            T rs = cache.find(selects, pk);
+            if (cache.isFullLoaded() || rs != null) return CompletableFuture.completedFuture(rs);
+        }
+        return readPool.supplyAsync(() -> find(clazz, selects, pk));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> findAsync(final Class<T> clazz, final SelectColumn selects, final FilterNode node) {
+        if (isCacheUseable(clazz, node)) return completed(() -> find(clazz, selects, node));
+        return readPool.supplyAsync(() -> find(clazz, selects, node));
+    }
+
+    @Override
+    public <T> CompletableFuture<List<T>> queryListAsync(final Class<T> clazz, final SelectColumn selects, final Flipper flipper, final FilterNode node) {
+        if (isCacheUseable(clazz, node)) return completed(() -> queryList(clazz, selects, flipper, node));
+        return readPool.supplyAsync(() -> queryList(clazz, selects, flipper, node));
+    }
+
+    @Override
+    public <T> CompletableFuture<Sheet<T>> querySheetAsync(final Class<T> clazz, final SelectColumn selects, final Flipper flipper, final FilterNode node) {
+        if (isCacheUseable(clazz, node)) return completed(() -> querySheet(clazz, selects, flipper, node));
+        return readPool.supplyAsync(() -> querySheet(clazz, selects, flipper, node));
+    }
+
+    //查询可以完全由缓存完成时不需要切换线程
+    private <T> boolean isCacheUseable(final Class<T> clazz, final FilterNode node) {
+        final EntityCache<T> cache = loadEntityInfo(clazz).getCache();
+        return cache != null && cache.isFullLoaded() && (node == null || node.isCacheUseable(this));
+    }
+
+    private static <T> CompletableFuture<T> completed(final Supplier<T> supplier) {
+        try {
+            return CompletableFuture.completedFuture(supplier.get());
+        } catch (Throwable t) {
+            final CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(t);
+            return future;
+        }
+    }
+
     @Override
     public final void directQuery(String sql, Consumer<ResultSet> consumer) {
         final Connection conn = createReadSQLConnection();
@@ -8,6 +8,7 @@ package org.redkale.source;
 import java.io.Serializable;
 import java.sql.ResultSet;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import org.redkale.util.*;
 
@@ -104,6 +105,21 @@ public interface DataSource {
 
     public <T, K extends Serializable, N extends Number> Map<K, N> queryColumnMap(final Class<T> entityClass, final String keyColumn, final FilterFunc func, final String funcColumn, final FilterNode node);
 
+    /**
+     * 按keyColumn分组， 一次查询同时计算多个聚合值 <br>
+     * 等价SQL: SELECT keyColumn, func1(column1), func2(column2) ... FROM {table} WHERE {filter node} GROUP BY keyColumn
+     *
+     * @param <T>         Entity泛型
+     * @param <K>         分组字段的数据类型
+     * @param entityClass Entity类
+     * @param keyColumn   分组字段
+     * @param funcColumns 聚合函数与字段
+     * @param node        过滤条件
+     *
+     * @return 分组值与各聚合值， 聚合值的顺序与funcColumns一致
+     */
+    public <T, K extends Serializable> Map<K, Number[]> queryColumnMap(final Class<T> entityClass, final String keyColumn, final FilterFuncColumn[] funcColumns, final FilterNode node);
+
     //-----------------------find----------------------------
     /**
      * 根据主键获取对象
@@ -128,6 +144,34 @@ public interface DataSource {
 
     public <T> T find(final Class<T> clazz, final SelectColumn selects, final FilterNode node);
 
+    /**
+     * 根据多个主键批量获取对象， 缓存中没有的主键按表分组后以 WHERE {primary} IN (...) 分批查询 <br>
+     * 结果与pks的顺序一致， 不存在的主键对应位置为null
+     *
+     * @param <T>   Entity泛型
+     * @param clazz Entity类
+     * @param pks   主键值集合
+     *
+     * @return Entity对象集合
+     */
+    public <T> List<T> findAll(final Class<T> clazz, final Serializable... pks);
+
+    public <T> List<T> findAll(final Class<T> clazz, final SelectColumn selects, final Serializable... pks);
+
+    /**
+     * 根据多个主键批量获取对象， 与findAll相同， 只是结果以主键为key， 顺序与pks一致， 不包含不存在的主键
+     *
+     * @param <T>   Entity泛型
+     * @param <K>   主键泛型
+     * @param clazz Entity类
+     * @param pks   主键值集合
+     *
+     * @return 主键与Entity对象的Map
+     */
+    public <T, K extends Serializable> Map<K, T> findMap(final Class<T> clazz, final Serializable... pks);
+
+    public <T, K extends Serializable> Map<K, T> findMap(final Class<T> clazz, final SelectColumn selects, final Serializable... pks);
+
     public <T> Serializable findColumn(final Class<T> clazz, final String column, final Serializable pk);
 
     public <T> Serializable findColumn(final Class<T> clazz, final String column, final FilterBean bean);
@@ -221,6 +265,24 @@ public interface DataSource {
 
     public <T> List<T> queryList(final Class<T> clazz, final SelectColumn selects, final Flipper flipper, final FilterNode node);
 
+    //-----------------------stream----------------------------
+    /**
+     * 逐行遍历满足过滤条件的对象， 不会把结果集合全部读入内存， 适用于大表的全量处理 <br>
+     * 使用只进游标并按javax.persistence.fetchsize分批读取， 回调执行期间会一直占用一个数据库连接
+     *
+     * @param <T>      Entity泛型
+     * @param clazz    Entity类
+     * @param node     过滤条件
+     * @param consumer 每条记录的回调函数
+     */
+    public <T> void forEach(final Class<T> clazz, final FilterNode node, final Consumer<T> consumer);
+
+    public <T> void forEach(final Class<T> clazz, final FilterBean bean, final Consumer<T> consumer);
+
+    public <T> void forEach(final Class<T> clazz, final SelectColumn selects, final FilterBean bean, final Consumer<T> consumer);
+
+    public <T> void forEach(final Class<T> clazz, final SelectColumn selects, final FilterNode node, final Consumer<T> consumer);
+
     //-----------------------sheet----------------------------
     /**
      * 根据指定参数查询对象某个对象的集合页
@@ -240,6 +302,33 @@ public interface DataSource {
 
     public <T> Sheet<T> querySheet(final Class<T> clazz, final SelectColumn selects, final Flipper flipper, final FilterNode node);
 
+    //-----------------------async----------------------------
+    /**
+     * 以下异步方法在DataSource专用的线程池中执行， 线程数与连接池的连接数上限一致， 避免调用线程阻塞在获取连接和查询上 <br>
+     * 结果可以直接从缓存得到时返回已完成的CompletableFuture， 不切换线程 <br>
+     * 例如: source.findAsync(Record.class, id).thenAccept(resp::finishJson)
+     *
+     * @param <T>    Entity泛型
+     * @param values Entity对象
+     *
+     * @return CompletableFuture
+     */
+    public <T> CompletableFuture<Void> insertAsync(final T... values);
+
+    public <T> CompletableFuture<Integer> deleteAsync(final T... values);
+
+    public <T> CompletableFuture<Integer> updateAsync(final T... values);
+
+    public <T> CompletableFuture<T> findAsync(final Class<T> clazz, final Serializable pk);
+
+    public <T> CompletableFuture<T> findAsync(final Class<T> clazz, final SelectColumn selects, final Serializable pk);
+
+    public <T> CompletableFuture<T> findAsync(final Class<T> clazz, final SelectColumn selects, final FilterNode node);
+
+    public <T> CompletableFuture<List<T>> queryListAsync(final Class<T> clazz, final SelectColumn selects, final Flipper flipper, final FilterNode node);
+
+    public <T> CompletableFuture<Sheet<T>> querySheetAsync(final Class<T> clazz, final SelectColumn selects, final Flipper flipper, final FilterNode node);
+
     //-----------------------direct----------------------------
     /**
      * 直接本地执行SQL语句进行查询，远程模式不可用
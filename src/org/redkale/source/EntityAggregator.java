@@ -0,0 +1,267 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.source;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Consumer;
+import org.redkale.util.Attribute;
+
+/**
+ * EntityCache按字段分组的聚合器， 一次遍历同时计算多个聚合函数。 <br>
+ * 分组字段为int、long等基本整数类型时使用以long为键的开放寻址hash表， 每个分组只装箱一次键值; 聚合字段为基本数值类型时通过Attribute的getLong、getDouble读取， 累加到基本类型数组中。 <br>
+ * 结果的分组顺序为首次出现的顺序， 各聚合值的类型与单个聚合函数的queryColumnMap一致。
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @param <T> Entity类的泛型
+ */
+@SuppressWarnings("unchecked")
+final class EntityAggregator<T> implements Consumer<T> {
+
+    private final Attribute<T, Serializable> keyAttr;
+
+    private final boolean longKey;
+
+    private final Accumulator<T>[] accumulators;
+
+    private Object[] groupKeys = new Object[16];
+
+    private int groupCount;
+
+    //基本整数类型分组键的hash表， tableGroups的值为分组下标 + 1， 0表示空
+    private long[] tableKeys;
+
+    private int[] tableGroups;
+
+    //其他类型的分组键
+    private Map<Object, Integer> objectGroups;
+
+    public EntityAggregator(Attribute<T, Serializable> keyAttr, Attribute<T, Serializable>[] funcAttrs, FilterFunc[] funcs) {
+        this.keyAttr = keyAttr;
+        final Class kt = keyAttr.type();
+        this.longKey = kt == int.class || kt == long.class || kt == short.class || kt == byte.class;
+        if (longKey) {
+            this.tableKeys = new long[32];
+            this.tableGroups = new int[32];
+        } else {
+            this.objectGroups = new HashMap<>();
+        }
+        this.accumulators = new Accumulator[funcs.length];
+        for (int i = 0; i < funcs.length; i++) {
+            this.accumulators[i] = new Accumulator<>(funcs[i], funcAttrs[i]);
+        }
+    }
+
+    @Override
+    public void accept(T value) {
+        final int group = longKey ? longGroup(value) : objectGroup(value);
+        for (Accumulator<T> accumulator : accumulators) {
+            accumulator.accept(group, value);
+        }
+    }
+
+    /**
+     * 获取聚合结果
+     *
+     * @return 分组键与各聚合值， 聚合值的顺序与构造时的funcs一致
+     */
+    public Map<Serializable, Number[]> result() {
+        final Map<Serializable, Number[]> rs = new LinkedHashMap<>();
+        for (int g = 0; g < groupCount; g++) {
+            final Number[] nums = new Number[accumulators.length];
+            for (int i = 0; i < nums.length; i++) {
+                nums[i] = (Number) accumulators[i].result(g);
+            }
+            rs.put((Serializable) groupKeys[g], nums);
+        }
+        return rs;
+    }
+
+    /**
+     * 获取单个聚合函数的结果
+     *
+     * @param index 聚合函数的下标
+     *
+     * @return 分组键与聚合值， MAX、MIN作用于非数值字段时值为字段值
+     */
+    public Map<Serializable, Object> result(int index) {
+        final Map<Serializable, Object> rs = new LinkedHashMap<>();
+        for (int g = 0; g < groupCount; g++) {
+            rs.put((Serializable) groupKeys[g], accumulators[index].result(g));
+        }
+        return rs;
+    }
+
+    private int longGroup(T value) {
+        final long key = keyAttr.getLong(value);
+        long h = key * 0x9E3779B97F4A7C15L;
+        final int hash = (int) (h ^ (h >>> 32));
+        int mask = tableKeys.length - 1;
+        int pos = hash & mask;
+        for (int g; (g = tableGroups[pos]) != 0; pos = (pos + 1) & mask) {
+            if (tableKeys[pos] == key) return g - 1;
+        }
+        final int group = newGroup(keyAttr.get(value));
+        tableKeys[pos] = key;
+        tableGroups[pos] = group + 1;
+        if (groupCount * 2 > tableKeys.length) { //扩容
+            final long[] oldKeys = tableKeys;
+            final int[] oldGroups = tableGroups;
+            tableKeys = new long[oldKeys.length * 2];
+            tableGroups = new int[oldKeys.length * 2];
+            mask = tableKeys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldGroups[i] == 0) continue;
+                h = oldKeys[i] * 0x9E3779B97F4A7C15L;
+                int p = (int) (h ^ (h >>> 32)) & mask;
+                while (tableGroups[p] != 0) p = (p + 1) & mask;
+                tableKeys[p] = oldKeys[i];
+                tableGroups[p] = oldGroups[i];
+            }
+        }
+        return group;
+    }
+
+    private int objectGroup(T value) {
+        final Object key = keyAttr.get(value);
+        Integer group = objectGroups.get(key);
+        if (group != null) return group;
+        int g = newGroup(key);
+        objectGroups.put(key, g);
+        return g;
+    }
+
+    private int newGroup(Object key) {
+        final int group = groupCount++;
+        if (group == groupKeys.length) groupKeys = Arrays.copyOf(groupKeys, group * 2);
+        groupKeys[group] = key;
+        for (Accumulator<T> accumulator : accumulators) {
+            accumulator.ensure(groupKeys.length);
+        }
+        return group;
+    }
+
+    private static final class Accumulator<T> {
+
+        final FilterFunc func;
+
+        final Attribute<T, Serializable> attr;
+
+        final Class type;
+
+        //是否按double累加
+        final boolean floating;
+
+        //MAX、MIN是否按基本类型比较
+        final boolean primitive;
+
+        long[] counts;
+
+        long[] longs;
+
+        double[] doubles;
+
+        Object[] objects;
+
+        Set<Object>[] sets;
+
+        Accumulator(FilterFunc func, Attribute<T, Serializable> attr) {
+            this.func = func;
+            this.attr = attr;
+            this.type = attr == null ? null : attr.type();
+            this.floating = type == float.class || type == Float.class || type == double.class || type == Double.class;
+            this.primitive = type != null && type.isPrimitive() && type != boolean.class && type != char.class;
+            if (attr == null && func != FilterFunc.COUNT) throw new RuntimeException(func + " need a column");
+            if ((func == FilterFunc.MIN || func == FilterFunc.MAX) && !primitive) {
+                this.objects = new Object[16];
+            } else if (func == FilterFunc.DISTINCTCOUNT) {
+                this.sets = new Set[16];
+            } else {
+                if (func != FilterFunc.SUM || !floating) this.counts = new long[16];
+                if (func == FilterFunc.MIN || func == FilterFunc.MAX || func == FilterFunc.SUM || func == FilterFunc.AVG) {
+                    if (floating) {
+                        this.doubles = new double[16];
+                    } else {
+                        this.longs = new long[16];
+                    }
+                }
+            }
+        }
+
+        void ensure(int capacity) {
+            if (counts != null && counts.length < capacity) counts = Arrays.copyOf(counts, capacity);
+            if (longs != null && longs.length < capacity) longs = Arrays.copyOf(longs, capacity);
+            if (doubles != null && doubles.length < capacity) doubles = Arrays.copyOf(doubles, capacity);
+            if (objects != null && objects.length < capacity) objects = Arrays.copyOf(objects, capacity);
+            if (sets != null && sets.length < capacity) sets = Arrays.copyOf(sets, capacity);
+        }
+
+        void accept(int g, T value) {
+            switch (func) {
+                case COUNT:
+                    counts[g]++;
+                    return;
+                case DISTINCTCOUNT: {
+                    Set<Object> set = sets[g];
+                    if (set == null) sets[g] = set = new HashSet<>();
+                    set.add(attr.get(value));
+                    return;
+                }
+                case SUM:
+                case AVG:
+                    if (floating) {
+                        doubles[g] += attr.getDouble(value);
+                    } else {
+                        longs[g] += attr.getLong(value);
+                    }
+                    if (counts != null) counts[g]++;
+                    return;
+                case MAX:
+                case MIN: {
+                    final boolean max = func == FilterFunc.MAX;
+                    if (!primitive) {
+                        Comparable v = (Comparable) attr.get(value);
+                        Object old = objects[g];
+                        if (old == null || (v != null && (max ? v.compareTo(old) > 0 : v.compareTo(old) < 0))) objects[g] = v;
+                        return;
+                    }
+                    final boolean first = counts[g]++ == 0;
+                    if (floating) {
+                        double v = attr.getDouble(value);
+                        if (first || (max ? v > doubles[g] : v < doubles[g])) doubles[g] = v;
+                    } else {
+                        long v = attr.getLong(value);
+                        if (first || (max ? v > longs[g] : v < longs[g])) longs[g] = v;
+                    }
+                }
+            }
+        }
+
+        Object result(int g) {
+            switch (func) {
+                case COUNT:
+                    return counts[g];
+                case DISTINCTCOUNT:
+                    return sets[g] == null ? 0 : sets[g].size();
+                case SUM:
+                    return floating ? (Number) doubles[g] : (Number) longs[g];
+                case AVG:
+                    return (floating ? doubles[g] : (double) longs[g]) / counts[g];
+                default: //MAX、MIN
+                    if (!primitive) return objects[g];
+                    if (type == int.class) return (int) longs[g];
+                    if (type == long.class) return longs[g];
+                    if (type == short.class) return (short) longs[g];
+                    if (type == byte.class) return (byte) longs[g];
+                    if (type == float.class) return (float) doubles[g];
+                    return doubles[g];
+            }
+        }
+    }
+}
@@ -32,12 +32,15 @@ public final class EntityCache<T> {
     private final ConcurrentHashMap<Serializable, T> map = new ConcurrentHashMap();
 
     // CopyOnWriteArrayList 插入慢、查询快; 10w数据插入需要3.2秒; ConcurrentLinkedQueue 插入快、查询慢；10w数据查询需要 0.062秒，  查询慢40%;
-    private final Collection<T> list = new ConcurrentLinkedQueue();
+    // EntityStore 按槽位存放在数组中， 插入、删除O(1)， 遍历与数组一样快
+    private final EntityStore<T> list;
 
     private final Map<String, Comparator<T>> sortComparators = new ConcurrentHashMap<>();
 
     private final Class<T> type;
 
+    //为false时(@VirtualEntity(direct = true))find、querySheet返回缓存中对象的真实引用， 调用方可能直接修改字段，
+    //EntityStore的基本类型数组只在update时刷新， 此时统计不能使用这些数组
     private final boolean needcopy;
 
     private final Creator<T> creator;
@@ -48,6 +51,11 @@ public final class EntityCache<T> {
 
     private final Reproduce<T, T> chgReproduce;
 
+    //二级索引， key为字段名
+    private final Map<String, EntityIndex<T>> indexes;
+
+    private final EntityIndex<T>[] indexArray;
+
     private volatile boolean fullloaded;
 
     final EntityInfo<T> info;
@@ -76,21 +84,82 @@ public final class EntityCache<T> {
                 return true;
             }
         });
+        this.list = new EntityStore<>(primary, info.attributes);
+        //返回真实引用时调用方修改索引字段不会经过reindex， 记录会留在旧的索引桶中， 因此不建索引
+        this.indexes = needcopy ? createIndexes() : Collections.emptyMap();
+        this.indexArray = this.indexes.values().toArray(new EntityIndex[this.indexes.size()]);
+    }
+
+    //根据@Table的indexes、uniqueConstraints和字段上的@CacheIndex创建索引
+    private Map<String, EntityIndex<T>> createIndexes() {
+        final Map<String, Boolean> fields = new LinkedHashMap<>(); //value为是否有序
+        Table table = type.getAnnotation(Table.class);
+        if (table != null) {
+            for (Index index : table.indexes()) {
+                String field = findIndexField(index.columnList().split(",")[0].trim());
+                if (field != null) fields.put(field, true);
+            }
+            for (UniqueConstraint uc : table.uniqueConstraints()) {
+                if (uc.columnNames().length == 0) continue;
+                String field = findIndexField(uc.columnNames()[0].trim());
+                if (field != null) fields.putIfAbsent(field, false);
+            }
+        }
+        Class clazz = type;
+        do {
+            for (java.lang.reflect.Field field : clazz.getDeclaredFields()) {
+                CacheIndex ci = field.getAnnotation(CacheIndex.class);
+                if (ci == null || findIndexField(field.getName()) == null) continue;
+                if (ci.sorted()) {
+                    fields.put(field.getName(), true);
+                } else {
+                    fields.putIfAbsent(field.getName(), false);
+                }
+            }
+        } while ((clazz = clazz.getSuperclass()) != Object.class && clazz != null);
+        if (fields.isEmpty()) return Collections.emptyMap();
+        final Map<String, EntityIndex<T>> rs = new HashMap<>();
+        fields.forEach((k, v) -> rs.put(k, new EntityIndex<>(primary, info.getAttribute(k), v)));
+        return rs;
+    }
+
+    //索引定义中可以是字段名或表字段名， 主键不需要索引
+    private String findIndexField(String column) {
+        if (column.isEmpty()) return null;
+        Attribute<T, Serializable> attr = info.getAttribute(column);
+        if (attr == null) {
+            for (Attribute<T, Serializable> a : info.attributes) {
+                if (column.equalsIgnoreCase(info.getSQLColumn(null, a.field()))) {
+                    attr = a;
+                    break;
+                }
+            }
+        }
+        if (attr == null || attr == primary || attr.field().equals(primary.field())) return null;
+        return attr.field();
     }
 
     public void fullLoad() {
         if (info.fullloader == null) return;
         clear();
-        List<T> all = info.fullloader.apply(info.source, type);
-        if (all != null) {
-            all.stream().filter(x -> x != null).forEach(x -> {
-                this.map.put(this.primary.get(x), x);
-            });
-            this.list.addAll(all);
+        if (info.source != null && !info.isVirtualEntity()) { //逐行读取加载， 不需要先把整表读入List
+            info.source.forEach(type, (SelectColumn) null, (FilterNode) null, this::fullAdd);
+        } else {
+            List<T> all = info.fullloader.apply(info.source, type);
+            if (all != null) all.forEach(this::fullAdd);
         }
         this.fullloaded = true;
     }
 
+    private void fullAdd(T value) {
+        if (value == null) return;
+        this.map.put(this.primary.get(value), value);
+        this.list.add(value);
+        for (EntityIndex<T> index : indexArray) {
+            index.add(value);
+        }
+    }
+
     public Class<T> getType() {
         return type;
     }
@@ -99,6 +168,9 @@ public final class EntityCache<T> {
         this.fullloaded = false;
         this.list.clear();
         this.map.clear();
+        for (EntityIndex<T> index : indexArray) {
+            index.clear();
+        }
     }
 
     public boolean isFullLoaded() {
@@ -124,10 +196,7 @@ public final class EntityCache<T> {
     }
 
     public T find(final SelectColumn selects, FilterNode node) {
-        final Predicate<T> filter = node == null ? null : node.createPredicate(this);
-        Stream<T> stream = this.list.stream();
-        if (filter != null) stream = stream.filter(filter);
-        Optional<T> opt = stream.findFirst();
+        Optional<T> opt = stream(node).findFirst();
         if (!opt.isPresent()) return null;
         if (selects == null) return (needcopy ? newReproduce.apply(this.creator.create(), opt.get()) : opt.get());
         T rs = opt.get();
@@ -152,10 +221,7 @@ public final class EntityCache<T> {
     }
 
     public Serializable findColumn(final String column, final Serializable defValue, FilterNode node) {
-        final Predicate<T> filter = node == null ? null : node.createPredicate(this);
-        Stream<T> stream = this.list.stream();
-        if (filter != null) stream = stream.filter(filter);
-        Optional<T> opt = stream.findFirst();
+        Optional<T> opt = stream(node).findFirst();
         if (!opt.isPresent()) return defValue;
         T rs = opt.get();
         for (Attribute attr : this.info.attributes) {
@@ -189,10 +255,7 @@ public final class EntityCache<T> {
     }
 
     public boolean exists(FilterNode node) {
-        final Predicate<T> filter = node == null ? null : node.createPredicate(this);
-        Stream<T> stream = this.list.stream();
-        if (filter != null) stream = stream.filter(filter);
-        return stream.findFirst().isPresent();
+        return stream(node).findFirst().isPresent();
     }
 
     public boolean exists(final Predicate<T> filter) {
@@ -200,137 +263,118 @@ public final class EntityCache<T> {
     }
 
     public <K, V> Map<Serializable, Number> queryColumnMap(final String keyColumn, final FilterFunc func, final String funcColumn, FilterNode node) {
-        final Attribute<T, Serializable> keyAttr = info.getAttribute(keyColumn);
-        final Predicate filter = node == null ? null : node.createPredicate(this);
-        final Attribute funcAttr = funcColumn == null ? null : info.getAttribute(funcColumn);
-        Stream<T> stream = this.list.stream();
-        if (filter != null) stream = stream.filter(filter);
-        Collector<T, Map, ?> collector = null;
-        final Class valtype = funcAttr == null ? null : funcAttr.type();
+        final Attribute<T, Serializable> funcAttr = funcColumn == null ? null : info.getAttribute(funcColumn);
+        final EntityAggregator<T> aggregator = new EntityAggregator<>(info.getAttribute(keyColumn), new Attribute[]{funcAttr}, new FilterFunc[]{func});
+        stream(node).forEach(aggregator);
+        return (Map) aggregator.result(0);
+    }
+
+    /**
+     * 按keyColumn分组， 一次遍历同时计算多个聚合值
+     *
+     * @param keyColumn   分组字段
+     * @param funcColumns 聚合函数与字段
+     * @param node        过滤条件
+     *
+     * @return 分组值与各聚合值， 聚合值的顺序与funcColumns一致
+     */
+    public Map<Serializable, Number[]> queryColumnMap(final String keyColumn, final FilterFuncColumn[] funcColumns, FilterNode node) {
+        final Attribute<T, Serializable>[] attrs = new Attribute[funcColumns.length];
+        final FilterFunc[] funcs = new FilterFunc[funcColumns.length];
+        for (int i = 0; i < funcColumns.length; i++) {
+            String column = funcColumns[i].getColumn();
+            attrs[i] = column == null || column.isEmpty() ? null : info.getAttribute(column);
+            funcs[i] = funcColumns[i].getFunc();
+        }
+        final EntityAggregator<T> aggregator = new EntityAggregator<>(info.getAttribute(keyColumn), attrs, funcs);
+        stream(node).forEach(aggregator);
+        return aggregator.result();
+    }
+
+    public <V> Number getNumberResult(final FilterFunc func, final Number defResult, final String column, final FilterNode node) {
+        final Attribute<T, Serializable> attr = column == null ? null : info.getAttribute(column);
+        if (func == COUNT) return node == null ? (long) this.list.size() : stream(node).count();
+        if (func == DISTINCTCOUNT) return stream(node).map(x -> attr.get(x)).distinct().count();
+        final Class t = attr.type();
+        final boolean floating = t == float.class || t == Float.class || t == double.class || t == Double.class;
+        if (!floating && t != int.class && t != Integer.class && t != long.class && t != Long.class && t != short.class && t != Short.class) {
+            throw new RuntimeException("getNumberResult error(type:" + type + ", attr.declaringClass: " + attr.declaringClass() + ", attr.field: " + attr.field() + ", attr.type: " + attr.type());
+        }
+        //一次遍历同时统计数量、合计、最大值和最小值; 没有过滤条件且对象不会被调用方直接修改时读取EntityStore中的基本类型数组
+        final NumberStats stats = new NumberStats();
+        final EntityStore.Column<T> col = node == null && needcopy ? this.list.getColumn(attr.field()) : null;
+        if (col != null) {
+            if (col.type() == double.class) {
+                this.list.forEachSlot((x, slot) -> stats.add(col.getDouble(slot)));
+            } else if (col.type() == int.class) {
+                this.list.forEachSlot((x, slot) -> stats.add((long) col.getInt(slot)));
+            } else {
+                this.list.forEachSlot((x, slot) -> stats.add(col.getLong(slot)));
+            }
+        } else if (floating) {
+            stream(node).forEach(x -> stats.add(attr.getDouble(x)));
+        } else {
+            stream(node).forEach(x -> stats.add(attr.getLong(x)));
+        }
+        if (stats.count == 0 && func != SUM) return defResult;
+        final boolean isint = t == int.class || t == Integer.class;
+        final boolean isshort = t == short.class || t == Short.class;
+        final boolean isfloat = t == float.class || t == Float.class;
         switch (func) {
             case AVG:
-                if (valtype == float.class || valtype == Float.class || valtype == double.class || valtype == Double.class) {
-                    collector = (Collector<T, Map, ?>) Collectors.averagingDouble((T t) -> ((Number) funcAttr.get(t)).doubleValue());
+                if (floating) {
+                    double avg = stats.dsum / stats.count;
+                    return isfloat ? (Number) (float) avg : (Number) avg;
                 } else {
-                    collector = (Collector<T, Map, ?>) Collectors.averagingLong((T t) -> ((Number) funcAttr.get(t)).longValue());
+                    double avg = (double) stats.lsum / stats.count;
+                    return isint ? (Number) (int) avg : (isshort ? (Number) (short) avg : (Number) (long) avg);
                 }
-                break;
-            case COUNT:
-                collector = (Collector<T, Map, ?>) Collectors.counting();
-                break;
-            case DISTINCTCOUNT:
-                collector = (Collector<T, Map, ?>) Collectors.mapping((t) -> funcAttr.get(t), Collectors.toSet());
-                break;
             case MAX:
             case MIN:
-                Comparator<T> comp = (o1, o2) -> o1 == null ? (o2 == null ? 0 : -1) : ((Comparable) funcAttr.get(o1)).compareTo(funcAttr.get(o2));
-                collector = (Collector<T, Map, ?>) ((func == MAX) ? Collectors.maxBy(comp) : Collectors.minBy(comp));
-                break;
-            case SUM:
-                if (valtype == float.class || valtype == Float.class || valtype == double.class || valtype == Double.class) {
-                    collector = (Collector<T, Map, ?>) Collectors.summingDouble((T t) -> ((Number) funcAttr.get(t)).doubleValue());
+                if (floating) {
+                    double v = func == MAX ? stats.dmax : stats.dmin;
+                    return isfloat ? (Number) (float) v : (Number) v;
                 } else {
-                    collector = (Collector<T, Map, ?>) Collectors.summingLong((T t) -> ((Number) funcAttr.get(t)).longValue());
+                    long v = func == MAX ? stats.lmax : stats.lmin;
+                    return isint ? (Number) (int) v : (isshort ? (Number) (short) v : (Number) v);
                 }
-                break;
-        }
-        Map rs = stream.collect(Collectors.groupingBy(t -> keyAttr.get(t), LinkedHashMap::new, collector));
-        if (func == MAX || func == MIN) {
-            Map rs2 = new LinkedHashMap();
-            rs.forEach((x, y) -> {
-                if (((Optional) y).isPresent()) rs2.put(x, funcAttr.get((T) ((Optional) y).get()));
-            });
-            rs = rs2;
-        } else if (func == DISTINCTCOUNT) {
-            Map rs2 = new LinkedHashMap();
-            rs.forEach((x, y) -> rs2.put(x, ((Set) y).size()));
-            rs = rs2;
+            case SUM:
+                if (floating) return isfloat ? (Number) (float) stats.dsum : (Number) stats.dsum;
+                return isint ? (Number) (int) stats.lsum : (isshort ? (Number) (short) stats.lsum : (Number) stats.lsum);
         }
-        return rs;
+        return defResult;
     }
 
-    public <V> Number getNumberResult(final FilterFunc func, final Number defResult, final String column, final FilterNode node) {
-        final Attribute<T, Serializable> attr = column == null ? null : info.getAttribute(column);
-        final Predicate<T> filter = node == null ? null : node.createPredicate(this);
-        Stream<T> stream = this.list.stream();
-        if (filter != null) stream = stream.filter(filter);
-        switch (func) {
-            case AVG:
-                if (attr.type() == int.class || attr.type() == Integer.class) {
-                    OptionalDouble rs = stream.mapToInt(x -> (Integer) attr.get(x)).average();
-                    return rs.isPresent() ? (int) rs.getAsDouble() : defResult;
-                } else if (attr.type() == long.class || attr.type() == Long.class) {
-                    OptionalDouble rs = stream.mapToLong(x -> (Long) attr.get(x)).average();
-                    return rs.isPresent() ? (long) rs.getAsDouble() : defResult;
-                } else if (attr.type() == short.class || attr.type() == Short.class) {
-                    OptionalDouble rs = stream.mapToInt(x -> ((Short) attr.get(x)).intValue()).average();
-                    return rs.isPresent() ? (short) rs.getAsDouble() : defResult;
-                } else if (attr.type() == float.class || attr.type() == Float.class) {
-                    OptionalDouble rs = stream.mapToDouble(x -> ((Float) attr.get(x)).doubleValue()).average();
-                    return rs.isPresent() ? (float) rs.getAsDouble() : defResult;
-                } else if (attr.type() == double.class || attr.type() == Double.class) {
-                    OptionalDouble rs = stream.mapToDouble(x -> (Double) attr.get(x)).average();
-                    return rs.isPresent() ? rs.getAsDouble() : defResult;
-                }
-                throw new RuntimeException("getNumberResult error(type:" + type + ", attr.declaringClass: " + attr.declaringClass() + ", attr.field: " + attr.field() + ", attr.type: " + attr.type());
-            case COUNT:
-                return stream.count();
-            case DISTINCTCOUNT:
-                return stream.map(x -> attr.get(x)).distinct().count();
+    //getNumberResult的统计值
+    private static final class NumberStats {
 
-            case MAX:
-                if (attr.type() == int.class || attr.type() == Integer.class) {
-                    OptionalInt rs = stream.mapToInt(x -> (Integer) attr.get(x)).max();
-                    return rs.isPresent() ? rs.getAsInt() : defResult;
-                } else if (attr.type() == long.class || attr.type() == Long.class) {
-                    OptionalLong rs = stream.mapToLong(x -> (Long) attr.get(x)).max();
-                    return rs.isPresent() ? rs.getAsLong() : defResult;
-                } else if (attr.type() == short.class || attr.type() == Short.class) {
-                    OptionalInt rs = stream.mapToInt(x -> ((Short) attr.get(x)).intValue()).max();
-                    return rs.isPresent() ? (short) rs.getAsInt() : defResult;
-                } else if (attr.type() == float.class || attr.type() == Float.class) {
-                    OptionalDouble rs = stream.mapToDouble(x -> ((Float) attr.get(x)).doubleValue()).max();
-                    return rs.isPresent() ? (float) rs.getAsDouble() : defResult;
-                } else if (attr.type() == double.class || attr.type() == Double.class) {
-                    OptionalDouble rs = stream.mapToDouble(x -> (Double) attr.get(x)).max();
-                    return rs.isPresent() ? rs.getAsDouble() : defResult;
-                }
-                throw new RuntimeException("getNumberResult error(type:" + type + ", attr.declaringClass: " + attr.declaringClass() + ", attr.field: " + attr.field() + ", attr.type: " + attr.type());
+        long count;
 
-            case MIN:
-                if (attr.type() == int.class || attr.type() == Integer.class) {
-                    OptionalInt rs = stream.mapToInt(x -> (Integer) attr.get(x)).min();
-                    return rs.isPresent() ? rs.getAsInt() : defResult;
-                } else if (attr.type() == long.class || attr.type() == Long.class) {
-                    OptionalLong rs = stream.mapToLong(x -> (Long) attr.get(x)).min();
-                    return rs.isPresent() ? rs.getAsLong() : defResult;
-                } else if (attr.type() == short.class || attr.type() == Short.class) {
-                    OptionalInt rs = stream.mapToInt(x -> ((Short) attr.get(x)).intValue()).min();
-                    return rs.isPresent() ? (short) rs.getAsInt() : defResult;
-                } else if (attr.type() == float.class || attr.type() == Float.class) {
-                    OptionalDouble rs = stream.mapToDouble(x -> ((Float) attr.get(x)).doubleValue()).min();
-                    return rs.isPresent() ? (float) rs.getAsDouble() : defResult;
-                } else if (attr.type() == double.class || attr.type() == Double.class) {
-                    OptionalDouble rs = stream.mapToDouble(x -> (Double) attr.get(x)).min();
-                    return rs.isPresent() ? rs.getAsDouble() : defResult;
-                }
-                throw new RuntimeException("getNumberResult error(type:" + type + ", attr.declaringClass: " + attr.declaringClass() + ", attr.field: " + attr.field() + ", attr.type: " + attr.type());
+        long lsum;
 
-            case SUM:
-                if (attr.type() == int.class || attr.type() == Integer.class) {
-                    return stream.mapToInt(x -> (Integer) attr.get(x)).sum();
-                } else if (attr.type() == long.class || attr.type() == Long.class) {
-                    return stream.mapToLong(x -> (Long) attr.get(x)).sum();
-                } else if (attr.type() == short.class || attr.type() == Short.class) {
-                    return (short) stream.mapToInt(x -> ((Short) attr.get(x)).intValue()).sum();
-                } else if (attr.type() == float.class || attr.type() == Float.class) {
-                    return (float) stream.mapToDouble(x -> ((Float) attr.get(x)).doubleValue()).sum();
-                } else if (attr.type() == double.class || attr.type() == Double.class) {
-                    return stream.mapToDouble(x -> (Double) attr.get(x)).sum();
-                }
-                throw new RuntimeException("getNumberResult error(type:" + type + ", attr.declaringClass: " + attr.declaringClass() + ", attr.field: " + attr.field() + ", attr.type: " + attr.type());
+        long lmax = Long.MIN_VALUE;
+
+        long lmin = Long.MAX_VALUE;
+
+        double dsum;
+
+        double dmax = Double.NEGATIVE_INFINITY;
+
+        double dmin = Double.POSITIVE_INFINITY;
+
+        void add(long v) {
+            count++;
+            lsum += v;
+            if (v > lmax) lmax = v;
+            if (v < lmin) lmin = v;
+        }
+
+        void add(double v) {
+            count++;
+            dsum += v;
+            if (v > dmax) dmax = v;
+            if (v < dmin) dmin = v;
         }
-        return defResult;
     }
 
     public Sheet<T> querySheet(final SelectColumn selects, final Flipper flipper, final FilterNode node) {
@@ -339,46 +383,57 @@ public final class EntityCache<T> {
 
     public Sheet<T> querySheet(final boolean needtotal, final SelectColumn selects, final Flipper flipper, FilterNode node) {
         final Predicate<T> filter = node == null ? null : node.createPredicate(this);
+        final Collection<T> candidates = node == null ? null : node.createIndexCandidates(this);
         final Comparator<T> comparator = createComparator(flipper);
-        long total = 0;
-        if (needtotal) {
-            Stream<T> stream = this.list.stream();
+        final Collection<T> source = candidates == null ? this.list : candidates;
+        //没有可用的过滤索引时， 若排序字段有有序索引则按索引顺序遍历， 省去排序
+        Stream<T> ordered = candidates == null && comparator != null ? orderedStream(flipper) : null;
+        long total = -1;
+        final List<T> rows;
+        if (ordered != null || flipper == null || (!needtotal && comparator == null)) {
+            Stream<T> stream = ordered == null ? source.stream() : ordered;
             if (filter != null) stream = stream.filter(filter);
-            total = stream.count();
+            if (ordered != null && needtotal) { //一次遍历统计总数并截取分页
+                final long start = flipper.getOffset();
+                final long end = start + flipper.getLimit();
+                final long[] counter = new long[1];
+                rows = new ArrayList<>();
+                stream.forEachOrdered(x -> {
+                    long index = counter[0]++;
+                    if (index >= start && index < end) rows.add(x);
+                });
+                total = counter[0];
+            } else {
+                if (flipper != null && flipper.getOffset() > 0) stream = stream.skip(flipper.getOffset());
+                if (flipper != null && flipper.getLimit() > 0) stream = stream.limit(flipper.getLimit());
+                rows = stream.collect(Collectors.toList());
+            }
+        } else { //一次遍历统计总数， 有排序时用有界堆只保留前offset+limit条记录
+            final int capacity = (int) Math.min(Integer.MAX_VALUE, (long) flipper.getOffset() + flipper.getLimit());
+            final EntitySheetCollector<T> collector = EntitySheetCollector.collect(source, filter, comparator, capacity);
+            rows = collector.result(flipper.getOffset());
+            total = collector.count();
         }
         if (needtotal && total == 0) return new Sheet<>();
-        Stream<T> stream = this.list.stream();
-        if (filter != null) stream = stream.filter(filter);
-        if (comparator != null) stream = stream.sorted(comparator);
-        if (flipper != null && flipper.getOffset() > 0) stream = stream.skip(flipper.getOffset());
-        if (flipper != null && flipper.getLimit() > 0) stream = stream.limit(flipper.getLimit());
-        final List<T> rs = new ArrayList<>();
+        if (!needtotal || total < 0) total = rows.size();
+        final List<T> rs = new ArrayList<>(rows.size());
         if (selects == null) {
-            Consumer<? super T> action = x -> rs.add(needcopy ? newReproduce.apply(creator.create(), x) : x);
-            if (comparator != null) {
-                stream.forEachOrdered(action);
-            } else {
-                stream.forEach(action);
+            for (T x : rows) {
+                rs.add(needcopy ? newReproduce.apply(creator.create(), x) : x);
             }
         } else {
             final List<Attribute<T, Serializable>> attrs = new ArrayList<>();
             info.forEachAttribute((k, v) -> {
                 if (selects.test(k)) attrs.add(v);
             });
-            Consumer<? super T> action = x -> {
+            for (T x : rows) {
                 final T item = creator.create();
                 for (Attribute attr : attrs) {
                     attr.set(item, attr.get(x));
                 }
                 rs.add(item);
-            };
-            if (comparator != null) {
-                stream.forEachOrdered(action);
-            } else {
-                stream.forEach(action);
             }
         }
-        if (!needtotal) total = rs.size();
         return new Sheet<>(total, rs);
     }
 
@@ -388,6 +443,9 @@ public final class EntityCache<T> {
         T old = this.map.put(this.primary.get(rs), rs);
         if (old == null) {
             this.list.add(rs);
+            for (EntityIndex<T> index : indexArray) {
+                index.add(rs);
+            }
         } else {
             logger.log(Level.WARNING, this.type + " cache repeat insert data: " + value);
         }
@@ -398,13 +456,16 @@ public final class EntityCache<T> {
         final T rs = this.map.remove(id);
         if (rs == null) return 0;
         this.list.remove(rs);
+        for (EntityIndex<T> index : indexArray) {
+            index.remove(rs);
+        }
         return 1;
     }
 
     public Serializable[] delete(final Flipper flipper, final FilterNode node) {
         if (node == null || this.list.isEmpty()) return new Serializable[0];
         final Comparator<T> comparator = createComparator(flipper);
-        Stream<T> stream = this.list.stream().filter(node.createPredicate(this));
+        Stream<T> stream = stream(node);
         if (comparator != null) stream = stream.sorted(comparator);
         if (flipper != null && flipper.getOffset() > 0) stream = stream.skip(flipper.getOffset());
         if (flipper != null && flipper.getLimit() > 0) stream = stream.limit(flipper.getLimit());
@@ -416,6 +477,9 @@ public final class EntityCache<T> {
             ids[++i] = this.primary.get(t);
             this.map.remove(ids[i]);
             this.list.remove(t);
+            for (EntityIndex<T> index : indexArray) {
+                index.remove(t);
+            }
         }
         return ids;
     }
@@ -425,7 +489,9 @@ public final class EntityCache<T> {
         T rs = this.map.get(this.primary.get(value));
         if (rs == null) return 0;
         synchronized (rs) {
+            final Object[] olds = indexKeys(rs);
             this.chgReproduce.apply(rs, value);
+            reindex(rs, olds);
         }
         return 1;
     }
@@ -435,21 +501,25 @@ public final class EntityCache<T> {
         T rs = this.map.get(this.primary.get(value));
         if (rs == null) return rs;
         synchronized (rs) {
+            final Object[] olds = indexKeys(rs);
             for (Attribute attr : attrs) {
                 attr.set(rs, attr.get(value));
             }
+            reindex(rs, olds);
         }
         return rs;
     }
 
     public T[] update(final T value, final Collection<Attribute<T, Serializable>> attrs, final FilterNode node) {
         if (value == null || node == null) return (T[]) Array.newInstance(type, 0);
-        T[] rms = this.list.stream().filter(node.createPredicate(this)).toArray(len -> (T[]) Array.newInstance(type, len));
+        T[] rms = stream(node).toArray(len -> (T[]) Array.newInstance(type, len));
         for (T rs : rms) {
             synchronized (rs) {
+                final Object[] olds = indexKeys(rs);
                 for (Attribute attr : attrs) {
                     attr.set(rs, attr.get(value));
                 }
+                reindex(rs, olds);
             }
         }
         return rms;
@@ -458,15 +528,25 @@ public final class EntityCache<T> {
     public <V> T update(final Serializable id, Attribute<T, V> attr, final V fieldValue) {
         if (id == null) return null;
         T rs = this.map.get(id);
-        if (rs != null) attr.set(rs, fieldValue);
+        if (rs != null) {
+            synchronized (rs) {
+                final Object[] olds = indexKeys(rs);
+                attr.set(rs, fieldValue);
+                reindex(rs, olds);
+            }
+        }
         return rs;
     }
 
     public <V> T[] update(Attribute<T, V> attr, final V fieldValue, final FilterNode node) {
         if (attr == null || node == null) return (T[]) Array.newInstance(type, 0);
-        T[] rms = this.list.stream().filter(node.createPredicate(this)).toArray(len -> (T[]) Array.newInstance(type, len));
+        T[] rms = stream(node).toArray(len -> (T[]) Array.newInstance(type, len));
         for (T rs : rms) {
-            attr.set(rs, fieldValue);
+            synchronized (rs) {
+                final Object[] olds = indexKeys(rs);
+                attr.set(rs, fieldValue);
+                reindex(rs, olds);
+            }
         }
         return rms;
     }
@@ -476,27 +556,31 @@ public final class EntityCache<T> {
         T rs = this.map.get(id);
         if (rs == null) return rs;
         synchronized (rs) {
+            final Object[] olds = indexKeys(rs);
             for (int i = 0; i < attrs.size(); i++) {
                 ColumnValue cv = values.get(i);
                 updateColumn(attrs.get(i), rs, cv.getExpress(), cv.getValue());
             }
+            reindex(rs, olds);
         }
         return rs;
     }
 
     public <V> T[] updateColumn(final FilterNode node, final Flipper flipper, List<Attribute<T, Serializable>> attrs, final List<ColumnValue> values) {
         if (attrs == null || attrs.isEmpty() || node == null) return (T[]) Array.newInstance(type, 0);
-        Stream<T> stream = this.list.stream();
+        Stream<T> stream = stream(node); //先过滤再排序、截取， 与SQL的语义一致
         final Comparator<T> comparator = createComparator(flipper);
         if (comparator != null) stream = stream.sorted(comparator);
         if (flipper != null && flipper.getLimit() > 0) stream = stream.limit(flipper.getLimit());
-        T[] rms = stream.filter(node.createPredicate(this)).toArray(len -> (T[]) Array.newInstance(type, len));
+        T[] rms = stream.toArray(len -> (T[]) Array.newInstance(type, len));
         for (T rs : rms) {
             synchronized (rs) {
+                final Object[] olds = indexKeys(rs);
                 for (int i = 0; i < attrs.size(); i++) {
                     ColumnValue cv = values.get(i);
                     updateColumn(attrs.get(i), rs, cv.getExpress(), cv.getValue());
                 }
+                reindex(rs, olds);
             }
         }
         return rms;
@@ -507,7 +591,10 @@ public final class EntityCache<T> {
         T rs = this.map.get(id);
         if (rs == null) return rs;
         synchronized (rs) {
-            return updateColumn(attr, rs, ColumnExpress.ORR, orvalue);
+            final Object[] olds = indexKeys(rs);
+            updateColumn(attr, rs, ColumnExpress.ORR, orvalue);
+            reindex(rs, olds);
+            return rs;
         }
     }
 
@@ -516,7 +603,10 @@ public final class EntityCache<T> {
         T rs = this.map.get(id);
         if (rs == null) return rs;
         synchronized (rs) {
-            return updateColumn(attr, rs, ColumnExpress.AND, andvalue);
+            final Object[] olds = indexKeys(rs);
+            updateColumn(attr, rs, ColumnExpress.AND, andvalue);
+            reindex(rs, olds);
+            return rs;
         }
     }
 
@@ -525,7 +615,10 @@ public final class EntityCache<T> {
         T rs = this.map.get(id);
         if (rs == null) return rs;
         synchronized (rs) {
-            return updateColumn(attr, rs, ColumnExpress.INC, incvalue);
+            final Object[] olds = indexKeys(rs);
+            updateColumn(attr, rs, ColumnExpress.INC, incvalue);
+            reindex(rs, olds);
+            return rs;
         }
     }
 
@@ -593,6 +686,53 @@ public final class EntityCache<T> {
         return info.getAttribute(fieldname);
     }
 
+    //缓存的记录数， 用于估算索引候选是否比全表遍历更划算
+    int size() {
+        return this.list.size();
+    }
+
+    EntityIndex<T> getIndex(String fieldname) {
+        return indexArray.length == 0 ? null : indexes.get(fieldname);
+    }
+
+    //优先从索引中取候选记录， 再用FilterNode的Predicate过滤
+    private Stream<T> stream(final FilterNode node) {
+        if (node == null) return this.list.stream();
+        final Predicate<T> filter = node.createPredicate(this);
+        final Collection<T> candidates = indexArray.length == 0 ? null : node.createIndexCandidates(this);
+        Stream<T> stream = (candidates == null ? this.list : candidates).stream();
+        return filter == null ? stream : stream.filter(filter);
+    }
+
+    //排序为单个字段且该字段有有序索引时按索引顺序返回全部记录， 否则返回null
+    private Stream<T> orderedStream(final Flipper flipper) {
+        if (indexArray.length == 0) return null;
+        final String sort = flipper.getSort().trim();
+        if (sort.indexOf(',') >= 0 || sort.indexOf('(') >= 0) return null;
+        final String[] sub = sort.split("\\s+");
+        final EntityIndex<T> index = indexes.get(sub[0]);
+        if (index == null || !index.isSorted()) return null;
+        return index.orderedStream(sub.length > 1 && sub[1].equalsIgnoreCase("DESC"));
+    }
+
+    //记录更新前的索引值
+    private Object[] indexKeys(final T rs) {
+        if (indexArray.length == 0) return null;
+        final Object[] keys = new Object[indexArray.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = indexArray[i].key(rs);
+        }
+        return keys;
+    }
+
+    private void reindex(final T rs, final Object[] olds) {
+        this.list.refresh(rs);
+        if (olds == null) return;
+        for (int i = 0; i < olds.length; i++) {
+            indexArray[i].update(olds[i], rs);
+        }
+    }
+
     //-------------------------------------------------------------------------------------------------------------------------------
     protected Comparator<T> createComparator(Flipper flipper) {
         if (flipper == null || flipper.getSort() == null || flipper.getSort().isEmpty() || flipper.getSort().indexOf(';') >= 0 || flipper.getSort().indexOf('\n') >= 0) return null;
@@ -0,0 +1,331 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.source;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+import org.redkale.util.Attribute;
+
+/**
+ * EntityCache中单个字段的二级索引， 索引值相同的记录按主键存放在同一个桶中。 <br>
+ * 哈希索引基于ConcurrentHashMap， 有序索引基于ConcurrentSkipListMap; 字段值为null的记录单独存放， 不参与范围查询。 <br>
+ * 查询返回的只是候选记录， 调用方仍需用FilterNode的Predicate过滤; IN和范围查询返回桶的视图， 不复制记录， size为各桶大小之和。
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @param <T> Entity类的泛型
+ */
+@SuppressWarnings("unchecked")
+final class EntityIndex<T> {
+
+    private final Attribute<T, Serializable> primary;
+
+    private final Attribute<T, Serializable> attr;
+
+    private final boolean sorted;
+
+    //有序索引的范围条件只对整数类型有效， 与FilterNode中按longValue比较的规则一致
+    private final boolean integral;
+
+    private final ConcurrentMap<Object, Map<Serializable, T>> buckets;
+
+    private final Map<Serializable, T> nulls = new ConcurrentHashMap<>();
+
+    public EntityIndex(Attribute<T, Serializable> primary, Attribute<T, Serializable> attr, boolean sorted) {
+        this.primary = primary;
+        this.attr = attr;
+        final Class t = attr.type();
+        this.sorted = sorted && (t.isPrimitive() || Comparable.class.isAssignableFrom(t)) && t != boolean.class;
+        this.integral = t == int.class || t == Integer.class || t == long.class || t == Long.class
+            || t == short.class || t == Short.class || t == byte.class || t == Byte.class;
+        this.buckets = this.sorted ? new ConcurrentSkipListMap<>() : new ConcurrentHashMap<>();
+    }
+
+    public String field() {
+        return attr.field();
+    }
+
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * 获取记录的索引值， 用于更新前记录旧值
+     *
+     * @param t 记录
+     *
+     * @return 索引值
+     */
+    public Object key(T t) {
+        return attr.get(t);
+    }
+
+    public void add(T t) {
+        add(attr.get(t), t);
+    }
+
+    public void remove(T t) {
+        remove(attr.get(t), t);
+    }
+
+    /**
+     * 记录的字段值由oldKey变更后调用
+     *
+     * @param oldKey 变更前的索引值
+     * @param t      记录
+     */
+    public void update(Object oldKey, T t) {
+        Object newKey = attr.get(t);
+        if (Objects.equals(oldKey, newKey)) return;
+        remove(oldKey, t);
+        add(newKey, t);
+    }
+
+    public void clear() {
+        buckets.clear();
+        nulls.clear();
+    }
+
+    private void add(Object key, T t) {
+        final Serializable pk = primary.get(t);
+        if (key == null) {
+            nulls.put(pk, t);
+            return;
+        }
+        buckets.compute(key, (k, b) -> {
+            if (b == null) b = new ConcurrentHashMap<>();
+            b.put(pk, t);
+            return b;
+        });
+    }
+
+    private void remove(Object key, T t) {
+        final Serializable pk = primary.get(t);
+        if (key == null) {
+            nulls.remove(pk);
+            return;
+        }
+        buckets.computeIfPresent(key, (k, b) -> {
+            b.remove(pk);
+            return b.isEmpty() ? null : b;
+        });
+    }
+
+    /**
+     * 等值查询
+     *
+     * @param value 查询值
+     *
+     * @return 候选记录， 无法使用索引时返回null
+     */
+    public Collection<T> findEqual(Object value) {
+        Object key = normalize(value);
+        if (key == null) return null;
+        Map<Serializable, T> b = buckets.get(key);
+        return b == null ? Collections.emptyList() : b.values();
+    }
+
+    /**
+     * IN查询
+     *
+     * @param values 数组或集合
+     *
+     * @return 候选记录， 无法使用索引时返回null
+     */
+    public Collection<T> findIn(Object values) {
+        final Set<Object> keys = new LinkedHashSet<>(); //重复的值只取一次
+        if (values instanceof Collection) {
+            for (Object v : (Collection) values) {
+                if (!addKey(v, keys)) return null;
+            }
+        } else if (values != null && values.getClass().isArray()) {
+            final int len = Array.getLength(values);
+            for (int i = 0; i < len; i++) {
+                if (!addKey(Array.get(values, i), keys)) return null;
+            }
+        } else {
+            return null;
+        }
+        final List<Map<Serializable, T>> rs = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            Map<Serializable, T> b = buckets.get(key);
+            if (b != null) rs.add(b);
+        }
+        return new BucketView<>(rs, false);
+    }
+
+    private boolean addKey(Object v, Set<Object> keys) {
+        if (v == null) return true;
+        Object key = normalize(v);
+        if (key == null) return false;
+        keys.add(key);
+        return true;
+    }
+
+    /**
+     * 范围查询， 只有有序索引可用
+     *
+     * @param express GREATERTHAN、LESSTHAN、GREATERTHANOREQUALTO、LESSTHANOREQUALTO、BETWEEN
+     * @param value   查询值， BETWEEN时为Range
+     *
+     * @return 候选记录， 无法使用索引时返回null
+     */
+    public Collection<T> findRange(FilterExpress express, Object value) {
+        if (!sorted) return null;
+        final ConcurrentNavigableMap<Object, Map<Serializable, T>> map = (ConcurrentNavigableMap) buckets;
+        ConcurrentNavigableMap<Object, Map<Serializable, T>> sub;
+        switch (express) {
+            case GREATERTHAN:
+            case GREATERTHANOREQUALTO:
+            case LESSTHAN:
+            case LESSTHANOREQUALTO: {
+                if (!integral || !(value instanceof Number)) return null;
+                Object key = normalize(value);
+                if (express == FilterExpress.GREATERTHAN) {
+                    sub = map.tailMap(key, false);
+                } else if (express == FilterExpress.GREATERTHANOREQUALTO) {
+                    sub = map.tailMap(key, true);
+                } else if (express == FilterExpress.LESSTHAN) {
+                    sub = map.headMap(key, false);
+                } else {
+                    sub = map.headMap(key, true);
+                }
+                break;
+            }
+            case BETWEEN: {
+                if (!(value instanceof Range)) return null;
+                Range range = (Range) value;
+                Object min = range.getMin() == null ? null : normalize(range.getMin());
+                Object max = range.getMax() == null ? null : normalize(range.getMax());
+                if ((range.getMin() != null && min == null) || (range.getMax() != null && max == null)) return null;
+                if (min != null && max != null) {
+                    if (((Comparable) min).compareTo(max) > 0) return Collections.emptyList();
+                    sub = map.subMap(min, true, max, true);
+                } else if (min != null) {
+                    sub = map.tailMap(min, true);
+                } else if (max != null) {
+                    sub = map.headMap(max, true);
+                } else {
+                    sub = map;
+                }
+                break;
+            }
+            default:
+                return null;
+        }
+        return new BucketView<>(sub.values(), true);
+    }
+
+    /**
+     * 按索引值顺序遍历全部记录， 只有有序索引可用; 与EntityCache的排序规则一致， 升序时null在前， 降序时null在后
+     *
+     * @param desc 是否降序
+     *
+     * @return Stream
+     */
+    public Stream<T> orderedStream(boolean desc) {
+        final ConcurrentNavigableMap<Object, Map<Serializable, T>> map = (ConcurrentNavigableMap) buckets;
+        Stream<T> stream = (desc ? map.descendingMap() : map).values().stream().flatMap(b -> b.values().stream());
+        if (nulls.isEmpty()) return stream;
+        return desc ? Stream.concat(stream, nulls.values().stream()) : Stream.concat(nulls.values().stream(), stream);
+    }
+
+    //将查询值转换成字段的类型， 无法转换时返回null
+    private Object normalize(Object value) {
+        if (value == null || value instanceof FilterKey) return null;
+        final Class t = attr.type();
+        if (value instanceof Number) {
+            Number n = (Number) value;
+            if (t == int.class || t == Integer.class) return n.intValue();
+            if (t == long.class || t == Long.class) return n.longValue();
+            if (t == short.class || t == Short.class) return n.shortValue();
+            if (t == byte.class || t == Byte.class) return n.byteValue();
+            if (t == float.class || t == Float.class) return n.floatValue();
+            if (t == double.class || t == Double.class) return n.doubleValue();
+        }
+        if (t.isPrimitive()) {
+            if (t == boolean.class && value instanceof Boolean) return value;
+            if (t == char.class && value instanceof Character) return value;
+            return null;
+        }
+        return t.isInstance(value) ? value : null;
+    }
+
+    //多个桶中记录的只读视图， 遍历时逐个桶读取; 范围查询的桶可能很多， 计算size时可以指定上限提前结束
+    static final class BucketView<T> extends AbstractCollection<T> {
+
+        private final Collection<Map<Serializable, T>> buckets;
+
+        final boolean range; //是否为范围查询的视图， 计算size需要遍历有序索引的区间
+
+        BucketView(Collection<Map<Serializable, T>> buckets, boolean range) {
+            this.buckets = buckets;
+            this.range = range;
+        }
+
+        @Override
+        public int size() {
+            return size(Integer.MAX_VALUE);
+        }
+
+        //计算记录数， 达到limit时提前返回
+        int size(int limit) {
+            int size = 0;
+            for (Map<Serializable, T> b : buckets) {
+                size += b.size();
+                if (size >= limit) break;
+            }
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            for (Map<Serializable, T> b : buckets) {
+                if (!b.isEmpty()) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            final Iterator<Map<Serializable, T>> it = buckets.iterator();
+            return new Iterator<T>() {
+
+                private Iterator<T> current = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext()) {
+                        if (!it.hasNext()) return false;
+                        current = it.next().values().iterator();
+                    }
+                    return true;
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return current.next();
+                }
+            };
+        }
+
+        @Override
+        public Stream<T> stream() {
+            return buckets.stream().flatMap(b -> b.values().stream());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return EntityIndex.class.getSimpleName() + "{field = " + attr.field() + ", sorted = " + sorted + ", keys = " + buckets.size() + "}";
+    }
+}
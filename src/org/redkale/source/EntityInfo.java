@@ -74,8 +74,12 @@ public final class EntityInfo<T> {
 
     private final Attribute<T, Serializable>[] queryAttributes; //数据库中所有字段
 
+    private final EntityRowMapper<T> rowMapper;
+
     private final String insertSQL;
 
+    private final String insertValuesSQL; //多行INSERT中每增加一行的VALUES部分
+
     final Attribute<T, Serializable>[] insertAttributes; //数据库中所有可新增字段
 
     private final String updateSQL;
@@ -88,6 +92,9 @@ public final class EntityInfo<T> {
 
     private final Map<String, String> sortOrderbySqls = new ConcurrentHashMap<>();
 
+    //参数化SQL的缓存， key为语句类型、表名等与FilterNode的结构
+    final Map<List<Object>, String> preparedSqls = new ConcurrentHashMap<>();
+
     //---------------------计算主键值----------------------------
     private final int nodeid;
 
@@ -244,6 +251,11 @@ public final class EntityInfo<T> {
         this.aliasmap = aliasmap0;
         this.attributes = attributeMap.values().toArray(new Attribute[attributeMap.size()]);
         this.queryAttributes = queryattrs.toArray(new Attribute[queryattrs.size()]);
+        final String[] querycols = new String[this.queryAttributes.length];
+        for (int i = 0; i < querycols.length; i++) {
+            querycols[i] = getSQLColumn(null, this.queryAttributes[i].field());
+        }
+        this.rowMapper = new EntityRowMapper<>(this.creator, this.queryAttributes, querycols);
         this.insertAttributes = insertattrs.toArray(new Attribute[insertattrs.size()]);
         this.updateAttributes = updateattrs.toArray(new Attribute[updateattrs.size()]);
         if (table != null) {
@@ -256,6 +268,7 @@ public final class EntityInfo<T> {
                 insertsb2.append('?');
             }
             this.insertSQL = "INSERT INTO " + (this.tableStrategy == null ? table : "${newtable}") + "(" + insertsb + ") VALUES(" + insertsb2 + ")";
+            this.insertValuesSQL = ",(" + insertsb2 + ")";
             StringBuilder updatesb = new StringBuilder();
             for (String col : updatecols) {
                 if (updatesb.length() > 0) updatesb.append(", ");
@@ -266,6 +279,7 @@ public final class EntityInfo<T> {
             this.querySQL = "SELECT * FROM " + table + " WHERE " + getPrimarySQLColumn(null) + " = ?";
         } else {
             this.insertSQL = null;
+            this.insertValuesSQL = null;
             this.updateSQL = null;
             this.deleteSQL = null;
             this.querySQL = null;
@@ -332,6 +346,24 @@ public final class EntityInfo<T> {
         return insertSQL.replace("${newtable}", getTable(bean));
     }
 
+    /**
+     * 获取指定表一次新增多行记录的INSERT语句
+     *
+     * @param table 表名
+     * @param rows  行数
+     *
+     * @return INSERT语句
+     */
+    public String getInsertSQL(String table, int rows) {
+        final String sql = this.tableStrategy == null ? insertSQL : insertSQL.replace("${newtable}", table);
+        if (rows < 2) return sql;
+        final StringBuilder sb = new StringBuilder(sql.length() + insertValuesSQL.length() * (rows - 1)).append(sql);
+        for (int i = 1; i < rows; i++) {
+            sb.append(insertValuesSQL);
+        }
+        return sb.toString();
+    }
+
     public String getUpdateSQL(T bean) {
         if (this.tableStrategy == null) return updateSQL;
         return updateSQL.replace("${newtable}", getTable(bean));
@@ -441,6 +473,21 @@ public final class EntityInfo<T> {
         return formatToString(cv.getValue());
     }
 
+    //参数化SQL中赋值的部分， 值以?代替
+    protected String formatSQLParam(String col, final ColumnValue cv) {
+        switch (cv.getExpress()) {
+            case INC:
+                return col + " + ?";
+            case MUL:
+                return col + " * ?";
+            case AND:
+                return col + " & ?";
+            case ORR:
+                return col + " | ?";
+        }
+        return "?";
+    }
+
     protected Map<String, Attribute<T, Serializable>> getAttributes() {
         return attributeMap;
     }
@@ -458,49 +505,24 @@ public final class EntityInfo<T> {
     }
 
     protected T getValue(final SelectColumn sels, final ResultSet set) throws SQLException {
-        T obj = creator.create();
-        for (Attribute<T, Serializable> attr : queryAttributes) {
-            if (sels == null || sels.test(attr.field())) {
-                Serializable o = (Serializable) set.getObject(this.getSQLColumn(null, attr.field()));
-                final Class t = attr.type();
-                if (t.isPrimitive()) {
-                    if (o != null) {
-                        if (t == int.class) {
-                            o = ((Number) o).intValue();
-                        } else if (t == long.class) {
-                            o = ((Number) o).longValue();
-                        } else if (t == short.class) {
-                            o = ((Number) o).shortValue();
-                        } else if (t == float.class) {
-                            o = ((Number) o).floatValue();
-                        } else if (t == double.class) {
-                            o = ((Number) o).doubleValue();
-                        } else if (t == byte.class) {
-                            o = ((Number) o).byteValue();
-                        } else if (t == char.class) {
-                            o = (char) ((Number) o).intValue();
-                        }
-                    } else if (t == int.class) {
-                        o = 0;
-                    } else if (t == long.class) {
-                        o = 0L;
-                    } else if (t == short.class) {
-                        o = (short) 0;
-                    } else if (t == float.class) {
-                        o = 0.0f;
-                    } else if (t == double.class) {
-                        o = 0.0d;
-                    } else if (t == byte.class) {
-                        o = (byte) 0;
-                    } else if (t == boolean.class) {
-                        o = false;
-                    } else if (t == char.class) {
-                        o = (char) 0;
-                    }
-                }
-                attr.set(obj, o);
-            }
-        }
-        return obj;
+        return rowMapper.map(set, rowMapper.columns(sels, set));
+    }
+
+    /**
+     * 解析需要读取的字段在ResultSet中的列下标， 读取多行时只需在第一行之前调用一次
+     *
+     * @param sels 需要读取的字段
+     * @param set  ResultSet
+     *
+     * @return 列下标
+     *
+     * @throws SQLException SQLException
+     */
+    protected int[] getColumnIndexes(final SelectColumn sels, final ResultSet set) throws SQLException {
+        return rowMapper.columns(sels, set);
+    }
+
+    protected T getValue(final int[] indexes, final ResultSet set) throws SQLException {
+        return rowMapper.map(set, indexes);
     }
 }
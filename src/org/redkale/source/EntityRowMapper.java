@@ -0,0 +1,166 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.source;
+
+import java.io.Serializable;
+import java.sql.*;
+import java.util.*;
+import org.redkale.util.*;
+
+/**
+ * ResultSet到Entity对象的映射器， 每个Entity一个实例。 <br>
+ * 字段的读取方式在创建时按字段类型确定; 列的下标在每个ResultSet开始读取前通过columns方法解析一次，
+ * 之后每行按下标读取。 int、long、double字段通过getInt、getLong、getDouble读取，
+ * 再经Attribute生成的setInt、setLong、setDouble赋值， 整个过程不装箱。
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @param <T> Entity类的泛型
+ */
+@SuppressWarnings("unchecked")
+final class EntityRowMapper<T> {
+
+    private static final byte KIND_INT = 1;
+
+    private static final byte KIND_LONG = 2;
+
+    private static final byte KIND_DOUBLE = 3;
+
+    private static final byte KIND_STRING = 4;
+
+    private static final byte KIND_INTEGER = 5;
+
+    private static final byte KIND_LONG_OBJECT = 6;
+
+    private static final byte KIND_OBJECT = 0;
+
+    private final Creator<T> creator;
+
+    private final Attribute<T, Serializable>[] attributes;
+
+    private final String[] columns;
+
+    private final byte[] kinds;
+
+    public EntityRowMapper(Creator<T> creator, Attribute<T, Serializable>[] attributes, String[] columns) {
+        this.creator = creator;
+        this.attributes = attributes;
+        this.columns = columns;
+        this.kinds = new byte[attributes.length];
+        for (int i = 0; i < attributes.length; i++) {
+            final Class t = attributes[i].type();
+            if (t == int.class) {
+                kinds[i] = KIND_INT;
+            } else if (t == long.class) {
+                kinds[i] = KIND_LONG;
+            } else if (t == double.class) {
+                kinds[i] = KIND_DOUBLE;
+            } else if (t == String.class) {
+                kinds[i] = KIND_STRING;
+            } else if (t == Integer.class) {
+                kinds[i] = KIND_INTEGER;
+            } else if (t == Long.class) {
+                kinds[i] = KIND_LONG_OBJECT;
+            } else {
+                kinds[i] = KIND_OBJECT;
+            }
+        }
+    }
+
+    /**
+     * 解析需要读取的字段在ResultSet中的列下标， 同一个ResultSet只需解析一次
+     *
+     * @param sels 需要读取的字段， 为null表示全部字段
+     * @param set  ResultSet
+     *
+     * @return 与字段一一对应的列下标， 0表示不读取该字段
+     *
+     * @throws SQLException SQLException
+     */
+    public int[] columns(final SelectColumn sels, final ResultSet set) throws SQLException {
+        final ResultSetMetaData meta = set.getMetaData();
+        final Map<String, Integer> labels = new HashMap<>();
+        if (meta != null) {
+            for (int i = meta.getColumnCount(); i > 0; i--) { //倒序使重名时取第一列， 与findColumn一致
+                labels.put(meta.getColumnLabel(i).toLowerCase(), i);
+            }
+        }
+        final int[] indexes = new int[attributes.length];
+        for (int i = 0; i < attributes.length; i++) {
+            if (sels != null && !sels.test(attributes[i].field())) continue;
+            Integer index = labels.get(columns[i].toLowerCase());
+            indexes[i] = index == null ? set.findColumn(columns[i]) : index;
+        }
+        return indexes;
+    }
+
+    /**
+     * 读取ResultSet当前行的记录
+     *
+     * @param set     ResultSet
+     * @param indexes columns方法返回的列下标
+     *
+     * @return Entity对象
+     *
+     * @throws SQLException SQLException
+     */
+    public T map(final ResultSet set, final int[] indexes) throws SQLException {
+        final T obj = creator.create();
+        final Attribute<T, Serializable>[] attrs = this.attributes;
+        for (int i = 0; i < attrs.length; i++) {
+            final int index = indexes[i];
+            if (index == 0) continue;
+            final Attribute<T, Serializable> attr = attrs[i];
+            switch (kinds[i]) {
+                case KIND_INT:
+                    attr.setInt(obj, set.getInt(index));
+                    break;
+                case KIND_LONG:
+                    attr.setLong(obj, set.getLong(index));
+                    break;
+                case KIND_DOUBLE:
+                    attr.setDouble(obj, set.getDouble(index));
+                    break;
+                case KIND_STRING:
+                    attr.set(obj, set.getString(index));
+                    break;
+                case KIND_INTEGER: {
+                    int v = set.getInt(index);
+                    attr.set(obj, set.wasNull() ? null : v);
+                    break;
+                }
+                case KIND_LONG_OBJECT: {
+                    long v = set.getLong(index);
+                    attr.set(obj, set.wasNull() ? null : v);
+                    break;
+                }
+                default:
+                    attr.set(obj, convert(attr.type(), set.getObject(index)));
+            }
+        }
+        return obj;
+    }
+
+    //其他基本类型的字段按数据库返回的Number转换， null转成默认值
+    private static Serializable convert(final Class t, final Object o) {
+        if (!t.isPrimitive()) return (Serializable) o;
+        if (o != null) {
+            if (t == short.class) return ((Number) o).shortValue();
+            if (t == float.class) return ((Number) o).floatValue();
+            if (t == byte.class) return ((Number) o).byteValue();
+            if (t == char.class) return (char) ((Number) o).intValue();
+            return (Serializable) o;
+        }
+        if (t == short.class) return (short) 0;
+        if (t == float.class) return 0.0f;
+        if (t == byte.class) return (byte) 0;
+        if (t == boolean.class) return false;
+        if (t == char.class) return (char) 0;
+        return null;
+    }
+}
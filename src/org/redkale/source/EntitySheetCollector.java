@@ -0,0 +1,157 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.source;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.Stream;
+
+/**
+ * EntityCache分页查询的收集器， 一次遍历同时统计满足条件的记录数和获取分页记录。 <br>
+ * 有排序时只用容量为offset+limit的有界堆保留排在前面的记录， 不对全部结果排序; 排序值相同的记录保持遍历顺序， 结果与稳定排序后再skip、limit一致。 <br>
+ * 有排序且记录数较多时按fork-join方式并行收集再合并。
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @param <T> Entity类的泛型
+ */
+@SuppressWarnings("unchecked")
+final class EntitySheetCollector<T> implements Consumer<T> {
+
+    //记录数不小于该值时并行收集
+    static final int PARALLEL_THRESHOLD = Integer.getInteger("source.cache.parallel.threshold", 100_000);
+
+    private final Comparator<T> comparator;
+
+    private final int capacity;
+
+    //堆顶为当前保留的记录中排在最后的一条， 只在有排序时使用
+    private final PriorityQueue<Entry<T>> heap;
+
+    //无排序时保留最先遍历到的记录
+    private final List<T> firsts;
+
+    private long count;
+
+    public EntitySheetCollector(Comparator<T> comparator, int capacity) {
+        this.comparator = comparator;
+        this.capacity = capacity;
+        if (comparator == null) {
+            this.heap = null;
+            this.firsts = new ArrayList<>(Math.min(capacity, 1024));
+        } else {
+            this.heap = new PriorityQueue<>(Math.max(1, Math.min(capacity, 1024)), (Entry<T> a, Entry<T> b) -> {
+                int rs = comparator.compare(b.value, a.value);
+                return rs != 0 ? rs : Long.compare(b.seq, a.seq);
+            });
+            this.firsts = null;
+        }
+    }
+
+    /**
+     * 收集记录
+     *
+     * @param <T>        Entity类的泛型
+     * @param source     数据源
+     * @param filter     过滤条件， 可以为null
+     * @param comparator 排序， 可以为null
+     * @param capacity   最多保留的记录数， 即offset+limit
+     *
+     * @return EntitySheetCollector
+     */
+    public static <T> EntitySheetCollector<T> collect(Collection<T> source, Predicate<T> filter, Comparator<T> comparator, int capacity) {
+        final boolean parallel = comparator != null && source.size() >= PARALLEL_THRESHOLD; //无排序时单线程遍历已足够快
+        Stream<T> stream = source.stream();
+        if (parallel) { //EntityStore可按槽位平均拆分， 其他来源的Spliterator拆分不均匀， 先转成数组再拆分
+            stream = source instanceof EntityStore ? source.parallelStream() : Arrays.stream((T[]) source.toArray()).parallel();
+        }
+        if (filter != null) stream = stream.filter(filter);
+        if (parallel) {
+            return stream.collect(() -> new EntitySheetCollector<>(comparator, capacity), EntitySheetCollector::accept, EntitySheetCollector::combine);
+        }
+        final EntitySheetCollector<T> collector = new EntitySheetCollector<>(comparator, capacity);
+        stream.forEach(collector);
+        return collector;
+    }
+
+    @Override
+    public void accept(T value) {
+        offer(value, count++);
+    }
+
+    private void offer(T value, long seq) {
+        if (comparator == null) {
+            if (firsts.size() < capacity) firsts.add(value);
+            return;
+        }
+        if (heap.size() < capacity) {
+            heap.add(new Entry<>(value, seq));
+            return;
+        }
+        if (capacity < 1) return;
+        final Entry<T> last = heap.peek();
+        if (comparator.compare(value, last.value) >= 0) return; //排序值相同时先遍历到的记录优先
+        heap.poll();
+        last.value = value;
+        last.seq = seq;
+        heap.add(last);
+    }
+
+    //合并并行收集的结果， other的记录均在当前对象的记录之后
+    public void combine(EntitySheetCollector<T> other) {
+        final long base = this.count;
+        if (comparator == null) {
+            for (T value : other.firsts) {
+                offer(value, 0);
+            }
+        } else {
+            for (Entry<T> entry : other.heap) {
+                offer(entry.value, base + entry.seq);
+            }
+        }
+        this.count += other.count;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * 获取排序后从offset开始的记录
+     *
+     * @param offset 起始位置
+     *
+     * @return 记录集合
+     */
+    public List<T> result(int offset) {
+        if (comparator == null) return offset >= firsts.size() ? new ArrayList<>() : firsts.subList(offset, firsts.size());
+        if (offset >= heap.size()) return new ArrayList<>();
+        final Entry<T>[] entries = heap.toArray(new Entry[heap.size()]);
+        Arrays.sort(entries, (Entry<T> a, Entry<T> b) -> {
+            int rs = comparator.compare(a.value, b.value);
+            return rs != 0 ? rs : Long.compare(a.seq, b.seq);
+        });
+        final List<T> rs = new ArrayList<>(entries.length - offset);
+        for (int i = offset; i < entries.length; i++) {
+            rs.add(entries[i].value);
+        }
+        return rs;
+    }
+
+    private static final class Entry<T> {
+
+        T value;
+
+        long seq; //遍历顺序
+
+        Entry(T value, long seq) {
+            this.value = value;
+            this.seq = seq;
+        }
+    }
+}
@@ -0,0 +1,430 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.source;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Consumer;
+import org.redkale.util.Attribute;
+
+/**
+ * EntityCache的记录存储， 记录存放在数组的槽位中， 删除的槽位放入空闲列表供新记录复用， 主键到槽位的映射使用开放寻址的int数组。 <br>
+ * 插入、删除都是O(1)， 遍历时直接扫描数组。 <br>
+ * int、long、double类型的字段另外按槽位存放在对应的基本类型数组中， 用于不装箱的统计。 <br>
+ * 写操作加锁串行执行， 完成后递增volatile的modCount; 遍历不加锁， 与ConcurrentLinkedQueue一样是弱一致的: 先读modCount再读数组，
+ * 可以看到开始遍历前完成的写操作， 遍历过程中的修改可能看到也可能看不到。 遍历顺序为槽位顺序， 没有删除时与插入顺序一致。 <br>
+ * 数组只扩容不缩小， clear时原地清零， 遍历中的线程不会因为数组变小而越界。
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ * @param <T> Entity类的泛型
+ */
+@SuppressWarnings("unchecked")
+final class EntityStore<T> extends AbstractCollection<T> {
+
+    private static final int INIT_CAPACITY = 16;
+
+    private final Attribute<T, Serializable> primary;
+
+    private final Column<T>[] columns;
+
+    private volatile Object[] values;
+
+    private int[] hashes; //每个槽位中记录的主键hash
+
+    private int high; //已使用过的最大槽位 + 1
+
+    private int[] frees; //空闲槽位
+
+    private int freeCount;
+
+    private int[] table; //主键hash表， 值为槽位 + 1， 0表示空
+
+    private volatile int size;
+
+    private volatile long modCount; //写操作完成后递增， 用于向不加锁的遍历发布写操作(包括refresh对基本类型数组的修改)
+
+    public EntityStore(Attribute<T, Serializable> primary, Attribute<T, Serializable>[] attributes) {
+        this.primary = primary;
+        final List<Column<T>> list = new ArrayList<>();
+        for (Attribute<T, Serializable> attr : attributes) {
+            if (attr.type() == int.class || attr.type() == long.class || attr.type() == double.class) list.add(new Column<>(attr));
+        }
+        this.columns = list.toArray(new Column[list.size()]);
+        for (Column<T> column : columns) {
+            column.init(INIT_CAPACITY);
+        }
+        this.hashes = new int[INIT_CAPACITY];
+        this.frees = new int[INIT_CAPACITY];
+        this.table = new int[INIT_CAPACITY * 2];
+        this.values = new Object[INIT_CAPACITY];
+    }
+
+    @Override
+    public synchronized boolean add(T value) {
+        final Serializable pk = primary.get(value);
+        final int hash = hash(pk);
+        if (find(pk, hash) >= 0) return false;
+        Object[] array = this.values;
+        final int slot;
+        if (freeCount > 0) {
+            slot = frees[--freeCount];
+        } else {
+            if (high == array.length) array = grow();
+            slot = high;
+            this.high = slot + 1;
+        }
+        hashes[slot] = hash;
+        for (Column<T> column : columns) {
+            column.set(slot, value);
+        }
+        array[slot] = value;
+        if ((size + 1) * 2 > table.length) rehash(table.length * 2);
+        insert(slot, hash);
+        this.size = size + 1;
+        this.modCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        if (o == null) return false;
+        final Serializable pk = primary.get((T) o);
+        final int pos = position(pk, hash(pk));
+        if (pos < 0) return false;
+        final int slot = table[pos] - 1;
+        erase(pos);
+        values[slot] = null;
+        if (freeCount == frees.length) frees = Arrays.copyOf(frees, frees.length * 2);
+        frees[freeCount++] = slot;
+        this.size = size - 1;
+        this.modCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        if (high == 0) return;
+        Arrays.fill(values, 0, high, null);
+        for (Column<T> column : columns) {
+            column.clear(high);
+        }
+        Arrays.fill(hashes, 0, high, 0);
+        Arrays.fill(table, 0);
+        this.freeCount = 0;
+        this.high = 0;
+        this.size = 0;
+        this.modCount++;
+    }
+
+    /**
+     * 记录的字段值被修改后同步基本类型字段的值
+     *
+     * @param value 记录
+     */
+    public void refresh(T value) {
+        if (columns.length == 0) return;
+        synchronized (this) {
+            final int slot = find(primary.get(value), hash(primary.get(value)));
+            if (slot < 0 || values[slot] != value) return;
+            for (Column<T> column : columns) {
+                column.set(slot, value);
+            }
+            this.modCount++;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 获取字段对应的基本类型数组存储， 字段不是int、long、double类型时返回null
+     *
+     * @param field 字段名
+     *
+     * @return Column
+     */
+    public Column<T> getColumn(String field) {
+        for (Column<T> column : columns) {
+            if (column.attr.field().equals(field)) return column;
+        }
+        return null;
+    }
+
+    /**
+     * 遍历全部记录的槽位， 供基本类型数组的统计使用
+     *
+     * @param consumer 参数为记录与槽位
+     */
+    public void forEachSlot(SlotConsumer<T> consumer) {
+        if (!readable()) return;
+        final Object[] array = this.values;
+        final int hi = Math.min(this.high, array.length);
+        for (int i = 0; i < hi; i++) {
+            Object v = array[i];
+            if (v != null) consumer.accept((T) v, i);
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (!readable()) return Collections.emptyIterator();
+        final Object[] array = this.values;
+        final int hi = Math.min(this.high, array.length);
+        return new Iterator<T>() {
+
+            private int index = advance(0);
+
+            private int advance(int i) {
+                while (i < hi && array[i] == null) i++;
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < hi;
+            }
+
+            @Override
+            public T next() {
+                if (index >= hi) throw new NoSuchElementException();
+                Object v = array[index];
+                index = advance(index + 1);
+                return (T) v;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        if (!readable()) return Spliterators.emptySpliterator();
+        final Object[] array = this.values;
+        return new SlotSpliterator<>(array, 0, Math.min(this.high, array.length));
+    }
+
+    //遍历前先读volatile的modCount, 之后读取的数组、high和基本类型数组可以看到在此之前完成的写操作
+    private boolean readable() {
+        return modCount != 0 && size != 0;
+    }
+
+    private Object[] grow() {
+        final int capacity = values.length * 2;
+        for (Column<T> column : columns) {
+            column.resize(capacity);
+        }
+        this.hashes = Arrays.copyOf(hashes, capacity);
+        Object[] array = Arrays.copyOf(values, capacity);
+        this.values = array;
+        return array;
+    }
+
+    //-------------------------------- 主键hash表 --------------------------------
+    private static int hash(Object pk) {
+        int h = pk.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int find(Serializable pk, int hash) {
+        final int pos = position(pk, hash);
+        return pos < 0 ? -1 : table[pos] - 1;
+    }
+
+    private int position(Serializable pk, int hash) {
+        final int[] tab = this.table;
+        final int mask = tab.length - 1;
+        for (int i = hash & mask;; i = (i + 1) & mask) {
+            int slot = tab[i] - 1;
+            if (slot < 0) return -1;
+            if (hashes[slot] == hash && pk.equals(primary.get((T) values[slot]))) return i;
+        }
+    }
+
+    private void insert(int slot, int hash) {
+        final int mask = table.length - 1;
+        int i = hash & mask;
+        while (table[i] != 0) i = (i + 1) & mask;
+        table[i] = slot + 1;
+    }
+
+    //线性探测的删除， 把后续冲突的项前移以保持探测链连续
+    private void erase(int pos) {
+        final int[] tab = this.table;
+        final int mask = tab.length - 1;
+        int hole = pos;
+        tab[hole] = 0;
+        for (int i = (pos + 1) & mask; tab[i] != 0; i = (i + 1) & mask) {
+            int home = hashes[tab[i] - 1] & mask;
+            //home不在(hole, i]区间内时可以移到hole
+            boolean movable = hole <= i ? (home <= hole || home > i) : (home <= hole && home > i);
+            if (movable) {
+                tab[hole] = tab[i];
+                tab[i] = 0;
+                hole = i;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        final int[] old = this.table;
+        this.table = new int[capacity];
+        for (int v : old) {
+            if (v != 0) insert(v - 1, hashes[v - 1]);
+        }
+    }
+
+    /**
+     * 按槽位遍历的回调
+     *
+     * @param <T> Entity类的泛型
+     */
+    @FunctionalInterface
+    public static interface SlotConsumer<T> {
+
+        public void accept(T value, int slot);
+    }
+
+    /**
+     * 基本类型字段的存储， 数组下标为槽位
+     *
+     * @param <T> Entity类的泛型
+     */
+    public static final class Column<T> {
+
+        final Attribute<T, Serializable> attr;
+
+        int[] ints;
+
+        long[] longs;
+
+        double[] doubles;
+
+        Column(Attribute<T, Serializable> attr) {
+            this.attr = attr;
+        }
+
+        public Class type() {
+            return attr.type();
+        }
+
+        public int getInt(int slot) {
+            return ints[slot];
+        }
+
+        public long getLong(int slot) {
+            return longs[slot];
+        }
+
+        public double getDouble(int slot) {
+            return doubles[slot];
+        }
+
+        void set(int slot, T value) {
+            Object v = attr.get(value);
+            if (ints != null) {
+                ints[slot] = ((Number) v).intValue();
+            } else if (longs != null) {
+                longs[slot] = ((Number) v).longValue();
+            } else {
+                doubles[slot] = ((Number) v).doubleValue();
+            }
+        }
+
+        void init(int capacity) {
+            final Class t = attr.type();
+            if (t == int.class) {
+                ints = new int[capacity];
+            } else if (t == long.class) {
+                longs = new long[capacity];
+            } else {
+                doubles = new double[capacity];
+            }
+        }
+
+        void clear(int high) {
+            if (ints != null) {
+                Arrays.fill(ints, 0, high, 0);
+            } else if (longs != null) {
+                Arrays.fill(longs, 0, high, 0L);
+            } else {
+                Arrays.fill(doubles, 0, high, 0.0);
+            }
+        }
+
+        void resize(int capacity) {
+            if (ints != null) {
+                ints = Arrays.copyOf(ints, capacity);
+            } else if (longs != null) {
+                longs = Arrays.copyOf(longs, capacity);
+            } else {
+                doubles = Arrays.copyOf(doubles, capacity);
+            }
+        }
+    }
+
+    private static final class SlotSpliterator<T> implements Spliterator<T> {
+
+        private final Object[] array;
+
+        private int index;
+
+        private final int fence;
+
+        SlotSpliterator(Object[] array, int origin, int fence) {
+            this.array = array;
+            this.index = origin;
+            this.fence = fence;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int lo = index, mid = (lo + fence) >>> 1;
+            return (lo >= mid) ? null : new SlotSpliterator<>(array, lo, index = mid);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (index < fence) {
+                Object v = array[index++];
+                if (v != null) {
+                    action.accept((T) v);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            final Object[] a = this.array;
+            final int hi = this.fence;
+            int i = this.index;
+            this.index = hi;
+            for (; i < hi; i++) {
+                Object v = a[i];
+                if (v != null) action.accept((T) v);
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.NONNULL;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.source;
+
+import java.io.Serializable;
+
+/**
+ * 聚合函数与其作用的字段， 用于一次查询同时计算多个聚合值， column为null表示COUNT(*)
+ *
+ * <p>
+ * 详情见: https://redkale.org
+ *
+ * @author zhangjx
+ */
+public final class FilterFuncColumn implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private FilterFunc func;
+
+    private String column;
+
+    public FilterFuncColumn() {
+    }
+
+    public FilterFuncColumn(FilterFunc func, String column) {
+        this.func = func;
+        this.column = column;
+    }
+
+    public static FilterFuncColumn create(FilterFunc func, String column) {
+        return new FilterFuncColumn(func, column);
+    }
+
+    public FilterFunc getFunc() {
+        return func;
+    }
+
+    public void setFunc(FilterFunc func) {
+        this.func = func;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public void setColumn(String column) {
+        this.column = column;
+    }
+
+    @Override
+    public String toString() {
+        return func.getColumn(column == null || column.isEmpty() ? "*" : column);
+    }
+}
@@ -114,8 +114,20 @@ public class FilterJoinNode extends FilterNode {
     }
 
     @Override
-    protected <T> CharSequence createSQLExpress(final EntityInfo<T> info, final Map<Class, String> joinTabalis) {
-        return super.createSQLExpress(this.joinEntity == null ? info : this.joinEntity, joinTabalis);
+    protected <T> CharSequence createSQLExpress(final EntityInfo<T> info, final Map<Class, String> joinTabalis, final List<Object> params) {
+        return super.createSQLExpress(this.joinEntity == null ? info : this.joinEntity, joinTabalis, params);
+    }
+
+    @Override
+    protected <T> void putSQLShape(final EntityInfo<T> info, final List<Object> shape, final List<Object> params) {
+        shape.add(this.joinClass);
+        shape.add(this.joinColumns == null ? null : Arrays.asList(this.joinColumns));
+        super.putSQLShape(info, shape, params);
+    }
+
+    @Override
+    protected <T> Collection<T> createIndexCandidates(final EntityCache<T> cache) {
+        return null; //关联表的条件不能使用当前表的索引
     }
 
     @Override
@@ -7,7 +7,9 @@ package org.redkale.source;
 
 import java.io.Serializable;
 import java.lang.reflect.Array;
+import java.math.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.*;
 import static org.redkale.source.FilterExpress.*;
 import org.redkale.util.Attribute;
@@ -243,9 +245,24 @@ public class FilterNode {  //FilterNode 不能实现Serializable接口， 否则
      *
      * @return JOIN的SQL语句
      */
-    protected <T> CharSequence createSQLExpress(final EntityInfo<T> info, final Map<Class, String> joinTabalis) {
+    protected final <T> CharSequence createSQLExpress(final EntityInfo<T> info, final Map<Class, String> joinTabalis) {
+        return createSQLExpress(info, joinTabalis, null);
+    }
+
+    /**
+     * 该方法需要重载 <br>
+     * params不为null时生成参数化的SQL， 过滤值以?代替并按顺序加入params
+     *
+     * @param <T>         Entity类的泛型
+     * @param joinTabalis 关联表的集合
+     * @param info        EntityInfo
+     * @param params      参数值的集合， 为null表示过滤值直接拼接在SQL中
+     *
+     * @return JOIN的SQL语句
+     */
+    protected <T> CharSequence createSQLExpress(final EntityInfo<T> info, final Map<Class, String> joinTabalis, final List<Object> params) {
         CharSequence sb0 = this.column == null || this.column.isEmpty() || this.column.charAt(0) == '#' || info == null
-            ? null : createElementSQLExpress(info, joinTabalis == null ? null : joinTabalis.get(info.getType()));
+            ? null : createElementSQLExpress(info, joinTabalis == null ? null : joinTabalis.get(info.getType()), params);
         if (this.nodes == null) return sb0;
         final StringBuilder rs = new StringBuilder();
         rs.append('(');
@@ -255,7 +272,7 @@ public class FilterNode {  //FilterNode 不能实现Serializable接口， 否则
             rs.append(sb0);
         }
         for (FilterNode node : this.nodes) {
-            CharSequence f = node.createSQLExpress(info, joinTabalis);
+            CharSequence f = node.createSQLExpress(info, joinTabalis, params);
             if (f == null || f.length() < 3) continue;
             if (more) rs.append(or ? " OR " : " AND ");
             rs.append(f);
@@ -266,6 +283,73 @@ public class FilterNode {  //FilterNode 不能实现Serializable接口， 否则
         return rs;
     }
 
+    /**
+     * 该方法需要重载 <br>
+     * 收集FilterNode的结构与参数化SQL的参数值， 结构相同的FilterNode生成的参数化SQL相同， 参数值的顺序与createSQLExpress一致
+     *
+     * @param <T>    Entity类的泛型
+     * @param info   EntityInfo
+     * @param shape  结构的集合
+     * @param params 参数值的集合
+     */
+    protected <T> void putSQLShape(final EntityInfo<T> info, final List<Object> shape, final List<Object> params) {
+        shape.add(this.column);
+        shape.add(this.express);
+        shape.add(this.or ? (this.itemand ? 3 : 2) : (this.itemand ? 1 : 0));
+        if (this.column != null && !this.column.isEmpty() && this.column.charAt(0) != '#') putElementSQLShape(info, shape, params);
+        if (this.nodes == null) {
+            shape.add(-1);
+            return;
+        }
+        shape.add(this.nodes.length);
+        for (FilterNode node : this.nodes) {
+            node.putSQLShape(info, shape, params);
+        }
+    }
+
+    private void putElementSQLShape(final EntityInfo info, final List<Object> shape, final List<Object> params) {
+        if (express == ISNULL || express == ISNOTNULL || express == ISEMPTY || express == ISNOTEMPTY) return;
+        final Object val0 = getValue();
+        if (val0 == null) {
+            shape.add(null);
+            return;
+        }
+        if (needSplit(val0) && (val0 instanceof Collection || val0.getClass().isArray())) {
+            final Collection fvs = val0 instanceof Collection ? (Collection) val0 : Arrays.asList((Object[]) val0);
+            shape.add(fvs.size());
+            for (Object fv : fvs) {
+                if (fv == null) {
+                    shape.add(null);
+                } else {
+                    putElementSQLShape(info, shape, params, fv);
+                }
+            }
+            return;
+        }
+        putElementSQLShape(info, shape, params, val0);
+    }
+
+    private void putElementSQLShape(final EntityInfo info, final List<Object> shape, final List<Object> params, final Object val0) {
+        if (express == FV_MOD || express == FV_DIV) {
+            FilterValue fv = (FilterValue) val0;
+            shape.add(fv.getExpress());
+            params.add(fv.getOptvalue());
+            params.add(fv.getDestvalue());
+        } else if (val0 instanceof FilterKey) {
+            shape.add(FilterKey.class);
+            shape.add(((FilterKey) val0).getColumn());
+        } else {
+            final CharSequence val = formatToParam(express, val0, params);
+            shape.add(val);
+            if (val == null) return;
+            if (express == CONTAIN || express == IGNORECASECONTAIN) {
+                repeatKeystr(info.containSQL, params);
+            } else if (express == NOTCONTAIN || express == IGNORECASENOTCONTAIN) {
+                repeatKeystr(info.notcontainSQL, params);
+            }
+        }
+    }
+
     public static FilterNode create(String column, Serializable value) {
         return create(column, null, value);
     }
@@ -287,14 +371,14 @@ public class FilterNode {  //FilterNode 不能实现Serializable接口， 否则
         if (!items) {
             if (val0.getClass().isArray()) {
                 Class comp = val0.getClass().getComponentType();
-                if (!(comp.isPrimitive() || CharSequence.class.isAssignableFrom(comp) || Number.class.isAssignableFrom(comp))) {
+                if (!(comp.isPrimitive() || CharSequence.class.isAssignableFrom(comp) || Number.class.isAssignableFrom(comp) || comp.isEnum())) {
                     items = true;
                 }
             } else if (val0 instanceof Collection) {
                 for (Object fv : (Collection) val0) {
                     if (fv == null) continue;
                     Class comp = fv.getClass();
-                    if (!(comp.isPrimitive() || CharSequence.class.isAssignableFrom(comp) || Number.class.isAssignableFrom(comp))) {
+                    if (!(comp.isPrimitive() || CharSequence.class.isAssignableFrom(comp) || Number.class.isAssignableFrom(comp) || fv instanceof Enum)) {
                         items = true;
                     }
                     break;  //只需检测第一个值
@@ -305,6 +389,10 @@ public class FilterNode {  //FilterNode 不能实现Serializable接口， 否则
     }
 
     protected final <T> CharSequence createElementSQLExpress(final EntityInfo<T> info, String talis) {
+        return createElementSQLExpress(info, talis, (List<Object>) null);
+    }
+
+    protected final <T> CharSequence createElementSQLExpress(final EntityInfo<T> info, String talis, final List<Object> params) {
         final Object val0 = getValue();
         if (needSplit(val0)) {
             if (val0 instanceof Collection) {
@@ -313,7 +401,7 @@ public class FilterNode {  //FilterNode 不能实现Serializable接口， 否则
                 if (more) sb.append('(');
                 for (Object fv : (Collection) val0) {
                     if (fv == null) continue;
-                    CharSequence cs = createElementSQLExpress(info, talis, fv);
+                    CharSequence cs = createElementSQLExpress(info, talis, fv, params);
                     if (cs == null) continue;
                     if (sb.length() > 2) sb.append(itemand ? " AND " : " OR ");
                     sb.append(cs);
@@ -327,7 +415,7 @@ public class FilterNode {  //FilterNode 不能实现Serializable接口， 否则
                 if (more) sb.append('(');
                 for (Object fv : fvs) {
                     if (fv == null) continue;
-                    CharSequence cs = createElementSQLExpress(info, talis, fv);
+                    CharSequence cs = createElementSQLExpress(info, talis, fv, params);
                     if (cs == null) continue;
                     if (sb.length() > 2) sb.append(itemand ? " AND " : " OR ");
                     sb.append(cs);
@@ -336,11 +424,11 @@ public class FilterNode {  //FilterNode 不能实现Serializable接口， 否则
                 return sb.length() > 3 ? sb : null;  //若sb的值只是()，则不过滤
             }
         }
-        return createElementSQLExpress(info, talis, val0);
+        return createElementSQLExpress(info, talis, val0, params);
 
     }
 
-    private <T> CharSequence createElementSQLExpress(final EntityInfo<T> info, String talis, Object val0) {
+    private <T> CharSequence createElementSQLExpress(final EntityInfo<T> info, String talis, Object val0, final List<Object> params) {
         if (column == null || this.column.isEmpty() || this.column.charAt(0) == '#') return null;
         if (talis == null) talis = "a";
         if (express == ISNULL || express == ISNOTNULL) {
@@ -352,17 +440,23 @@ public class FilterNode {  //FilterNode 不能实现Serializable接口， 否则
         if (val0 == null) return null;
         if (express == FV_MOD || express == FV_DIV) {
             FilterValue fv = (FilterValue) val0;
+            if (params != null) {
+                params.add(fv.getOptvalue());
+                params.add(fv.getDestvalue());
+                return new StringBuilder().append(info.getSQLColumn(talis, column)).append(' ').append(express.value()).append(" ? ")
+                    .append(fv.getExpress().value()).append(" ?");
+            }
             return new StringBuilder().append(info.getSQLColumn(talis, column)).append(' ').append(express.value()).append(' ').append(fv.getOptvalue())
                 .append(' ').append(fv.getExpress().value()).append(' ').append(fv.getDestvalue());
         }
         final boolean fk = (val0 instanceof FilterKey);
-        CharSequence val = fk ? info.getSQLColumn(talis, ((FilterKey) val0).getColumn()) : formatToString(express, val0);
+        CharSequence val = fk ? info.getSQLColumn(talis, ((FilterKey) val0).getColumn()) : (params == null ? formatToString(express, val0) : formatToParam(express, val0, params));
         if (val == null) return null;
         StringBuilder sb = new StringBuilder(32);
-        if (express == CONTAIN) return info.containSQL.replace("${column}", info.getSQLColumn(talis, column)).replace("${keystr}", val);
-        if (express == IGNORECASECONTAIN) return info.containSQL.replace("${column}", "LOWER(" + info.getSQLColumn(talis, column) + ")").replace("${keystr}", val);
-        if (express == NOTCONTAIN) return info.notcontainSQL.replace("${column}", info.getSQLColumn(talis, column)).replace("${keystr}", val);
-        if (express == IGNORECASENOTCONTAIN) return info.notcontainSQL.replace("${column}", "LOWER(" + info.getSQLColumn(talis, column) + ")").replace("${keystr}", val);
+        if (express == CONTAIN) return replaceKeystr(info.containSQL, info.getSQLColumn(talis, column), val, fk ? null : params);
+        if (express == IGNORECASECONTAIN) return replaceKeystr(info.containSQL, "LOWER(" + info.getSQLColumn(talis, column) + ")", val, fk ? null : params);
+        if (express == NOTCONTAIN) return replaceKeystr(info.notcontainSQL, info.getSQLColumn(talis, column), val, fk ? null : params);
+        if (express == IGNORECASENOTCONTAIN) return replaceKeystr(info.notcontainSQL, "LOWER(" + info.getSQLColumn(talis, column) + ")", val, fk ? null : params);
 
         if (express == IGNORECASEEQUAL || express == IGNORECASENOTEQUAL || express == IGNORECASELIKE || express == IGNORECASENOTLIKE) {
             sb.append("LOWER(").append(info.getSQLColumn(talis, column)).append(')');
@@ -386,6 +480,19 @@ public class FilterNode {  //FilterNode 不能实现Serializable接口， 否则
         return sb;
     }
 
+    private static String replaceKeystr(String template, String column, CharSequence val, List<Object> params) {
+        if (params != null) repeatKeystr(template, params);
+        return template.replace("${column}", column).replace("${keystr}", val);
+    }
+
+    //模板中${keystr}出现多次时参数值也要重复
+    private static void repeatKeystr(String template, List<Object> params) {
+        final Object keystr = params.get(params.size() - 1);
+        for (int i = template.indexOf("${keystr}"); (i = template.indexOf("${keystr}", i + 1)) >= 0;) {
+            params.add(keystr);
+        }
+    }
+
     protected <T, E> Predicate<T> createPredicate(final EntityCache<T> cache) {
         if (cache == null || (column == null && this.nodes == null)) return null;
         Predicate<T> filter = createElementPredicate(cache, false);
@@ -422,6 +529,109 @@ public class FilterNode {  //FilterNode 不能实现Serializable接口， 否则
         return filter;
     }
 
+    /**
+     * 根据EntityCache的二级索引获取可能满足条件的记录， 结果只是候选， 仍需用createPredicate的结果过滤。 <br>
+     * AND条件取各项中候选最少的一项; OR条件只有每一项都能使用索引、且各项候选数之和不超过记录数的1/4时才合并各项的候选，
+     * 否则合并去重比直接遍历全部记录更慢。
+     *
+     * @param <T>   Entity类的泛型
+     * @param cache EntityCache
+     *
+     * @return 候选记录， 返回null表示无可用索引， 需要遍历全部记录
+     */
+    protected <T> Collection<T> createIndexCandidates(final EntityCache<T> cache) {
+        if (cache == null || (column == null && this.nodes == null)) return null;
+        if (this.nodes == null) return createElementCandidates(cache);
+        if (or) {
+            final List<Collection<T>> list = new ArrayList<>(this.nodes.length + 1);
+            final Collection<T> rs = createElementCandidates(cache);
+            if (rs == null && column != null) return null;
+            if (rs != null) list.add(rs);
+            for (FilterNode node : this.nodes) {
+                Collection<T> c = node.createIndexCandidates(cache);
+                if (c == null) return null;
+                list.add(c);
+            }
+            final int limit = cache.size() / 4;
+            int estimate = 0;
+            for (int pass = 0; pass < 2; pass++) { //范围查询的候选需要遍历有序索引的区间才能计数， 放在最后并在超过上限时提前结束
+                for (Collection<T> c : list) {
+                    if (isRangeCandidates(c) != (pass == 1)) continue;
+                    estimate += candidateSize(c, limit - estimate + 1);
+                    if (estimate > limit) return null;
+                }
+            }
+            final Set<T> set = Collections.newSetFromMap(new IdentityHashMap<>((int) estimate));
+            for (Collection<T> c : list) {
+                set.addAll(c);
+            }
+            return set;
+        }
+        //AND条件优先使用等值索引， 有等值候选时不再展开代价较高的范围索引
+        //候选是桶的视图时size需要累加各桶， 只计算一次， 且只需数到当前最少的候选数
+        Collection<T> rs = isRangeExpress() ? null : createElementCandidates(cache);
+        int size = rs == null ? 0 : rs.size();
+        for (FilterNode node : this.nodes) {
+            if (node.nodes == null && node.isRangeExpress()) continue;
+            Collection<T> c = node.createIndexCandidates(cache);
+            if (c == null) continue;
+            int csize = candidateSize(c, rs == null ? Integer.MAX_VALUE : size);
+            if (rs == null || csize < size) {
+                rs = c;
+                size = csize;
+            }
+        }
+        if (rs != null) return rs;
+        if (isRangeExpress()) rs = createElementCandidates(cache);
+        size = rs == null ? 0 : rs.size();
+        for (FilterNode node : this.nodes) {
+            if (node.nodes != null || !node.isRangeExpress()) continue;
+            Collection<T> c = node.createIndexCandidates(cache);
+            if (c == null) continue;
+            int csize = candidateSize(c, rs == null ? Integer.MAX_VALUE : size);
+            if (rs == null || csize < size) {
+                rs = c;
+                size = csize;
+            }
+        }
+        return rs;
+    }
+
+    //候选记录数， 达到limit时可以提前返回
+    private static int candidateSize(Collection<?> candidates, int limit) {
+        return candidates instanceof EntityIndex.BucketView ? ((EntityIndex.BucketView) candidates).size(limit) : candidates.size();
+    }
+
+    private static boolean isRangeCandidates(Collection<?> candidates) {
+        return candidates instanceof EntityIndex.BucketView && ((EntityIndex.BucketView) candidates).range;
+    }
+
+    private boolean isRangeExpress() {
+        return express == GREATERTHAN || express == LESSTHAN || express == GREATERTHANOREQUALTO
+            || express == LESSTHANOREQUALTO || express == BETWEEN;
+    }
+
+    private <T> Collection<T> createElementCandidates(final EntityCache<T> cache) {
+        if (this.column == null || this.column.isEmpty() || this.column.charAt(0) == '#') return null;
+        final EntityIndex<T> index = cache.getIndex(this.column);
+        final Object val0 = getValue();
+        if (index == null || val0 == null || val0 instanceof FilterKey) return null;
+        switch (express) {
+            case EQUAL:
+                return (val0 instanceof Collection || val0.getClass().isArray()) ? null : index.findEqual(val0);
+            case IN:
+                return index.findIn(val0);
+            case GREATERTHAN:
+            case LESSTHAN:
+            case GREATERTHANOREQUALTO:
+            case LESSTHANOREQUALTO:
+            case BETWEEN:
+                return index.findRange(express, val0);
+            default:
+                return null;
+        }
+    }
+
     protected final <T> Predicate<T> createElementPredicate(final EntityCache<T> cache, final boolean join) {
         if (this.column == null || this.column.isEmpty() || this.column.charAt(0) == '#') return null;
         return createElementPredicate(cache, join, cache.getAttribute(column));
@@ -1783,23 +1993,113 @@ public class FilterNode {  //FilterNode 不能实现Serializable接口， 否则
         return sb == null ? null : sb.toString();
     }
 
+    private static String formatToLike(FilterExpress express, Object value) {
+        if (express == LIKE || express == NOTLIKE) {
+            return "%" + value + '%';
+        } else if (express == STARTSWITH || express == NOTSTARTSWITH) {
+            return value + "%";
+        } else if (express == ENDSWITH || express == NOTENDSWITH) {
+            return "%" + value;
+        } else if (express == IGNORECASELIKE || express == IGNORECASENOTLIKE) {
+            return "%" + value.toString().toLowerCase() + '%';
+        } else if (express == IGNORECASECONTAIN || express == IGNORECASENOTCONTAIN
+            || express == IGNORECASEEQUAL || express == IGNORECASENOTEQUAL) {
+            return value.toString().toLowerCase();
+        }
+        return value.toString();
+    }
+
+    //IN的参数个数按2的幂对齐， 不足的用最后一个值补齐， 避免每种个数都生成不同的SQL
+    static int formatParamCount(int size) {
+        return size <= 8 ? size : (Integer.highestOneBit(size - 1) << 1);
+    }
+
+    private static final ConcurrentHashMap<Integer, String> inParamSQLs = new ConcurrentHashMap<>();
+
+    //生成参数化SQL中过滤值的部分， 参数值按顺序加入params
+    private static CharSequence formatToParam(FilterExpress express, Object value, List<Object> params) {
+        if (value == null) return null;
+        if (value instanceof CharSequence) {
+            params.add(formatToLike(express, value));
+            return "?";
+        } else if (value instanceof Range) {
+            Range range = (Range) value;
+            params.add(formatToParamValue(range.getMin()));
+            params.add(formatToParamValue(range.getMax()));
+            return "? AND ?";
+        }
+        final boolean array = value.getClass().isArray();
+        if (!array && !(value instanceof Collection)) {
+            params.add(formatToParamValue(value));
+            return "?";
+        }
+        final int len = array ? Array.getLength(value) : ((Collection) value).size();
+        if (len == 0) return express == NOTIN ? null : "(NULL)";
+        if (array && len == 1) {
+            Object firstval = Array.get(value, 0);
+            if (firstval != null && firstval.getClass().isArray()) return formatToParam(express, firstval, params);
+        }
+        Object last = null;
+        if (array) {
+            for (int i = 0; i < len; i++) {
+                last = formatToParamValue(Array.get(value, i));
+                params.add(last);
+            }
+        } else {
+            for (Object o : (Collection) value) {
+                last = formatToParamValue(o);
+                params.add(last);
+            }
+        }
+        final int count = formatParamCount(len);
+        for (int i = len; i < count; i++) {
+            params.add(last);
+        }
+        return inParamSQLs.computeIfAbsent(count, c -> {
+            StringBuilder sb = new StringBuilder(c * 2 + 1).append('(');
+            for (int i = 0; i < c; i++) {
+                sb.append(i == 0 ? "?" : ",?");
+            }
+            return sb.append(')').toString();
+        });
+    }
+
+    /**
+     * 将参数值转换成JDBC标准类型， 用于PreparedStatement.setObject: <br>
+     * 各JDBC驱动对enum、自定义Serializable等非标准类型的处理不一致(如MySQL会序列化成blob)， 统一转成字符串或数值; <br>
+     * enum取name()， 其他Number转成BigDecimal， java.util.Date转成Timestamp， 其余类型取toString()。
+     *
+     * @param value 参数值
+     *
+     * @return JDBC标准类型的参数值
+     */
+    static Object formatToParamValue(Object value) {
+        if (value == null || value instanceof String || value instanceof Integer || value instanceof Long
+            || value instanceof Boolean || value instanceof Short || value instanceof Byte
+            || value instanceof Double || value instanceof Float || value instanceof BigDecimal || value instanceof byte[]
+            || value instanceof java.sql.Timestamp || value instanceof java.sql.Date || value instanceof java.sql.Time
+            || value instanceof java.time.LocalDate || value instanceof java.time.LocalTime || value instanceof java.time.LocalDateTime) {
+            return value;
+        }
+        if (value instanceof Enum) return ((Enum) value).name();
+        if (value instanceof BigInteger) return new BigDecimal((BigInteger) value);
+        if (value instanceof Number) { //AtomicInteger、AtomicLong等
+            final String str = value.toString();
+            try {
+                return new BigDecimal(str);
+            } catch (NumberFormatException e) {
+                return str;
+            }
+        }
+        if (value instanceof java.util.Date) return new java.sql.Timestamp(((java.util.Date) value).getTime());
+        return value.toString(); //CharSequence、Character及其他类型
+    }
+
     private static CharSequence formatToString(FilterExpress express, Object value) {
         if (value == null) return null;
         if (value instanceof Number) return String.valueOf(value);
         if (value instanceof CharSequence) {
-            if (express == LIKE || express == NOTLIKE) {
-                value = "%" + value + '%';
-            } else if (express == STARTSWITH || express == NOTSTARTSWITH) {
-                value = value + "%";
-            } else if (express == ENDSWITH || express == NOTENDSWITH) {
-                value = "%" + value;
-            } else if (express == IGNORECASELIKE || express == IGNORECASENOTLIKE) {
-                value = "%" + value.toString().toLowerCase() + '%';
-            } else if (express == IGNORECASECONTAIN || express == IGNORECASENOTCONTAIN
-                || express == IGNORECASEEQUAL || express == IGNORECASENOTEQUAL) {
-                value = value.toString().toLowerCase();
-            }
-            return new StringBuilder().append('\'').append(value.toString().replace("'", "\\'")).append('\'');
+            return new StringBuilder().append('\'').append(formatToLike(express, value).replace("'", "\\'")).append('\'');
         } else if (value instanceof Range) {
             Range range = (Range) value;
             boolean rangestring = range.getClass() == Range.StringRange.class;
@@ -14,7 +14,8 @@ import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.*;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import javax.sql.*;
 
@@ -49,6 +50,24 @@ public class JDBCPoolSource {
 
     private final int max;
 
+    private final int preparedCacheSize; //每个连接缓存的PreparedStatement个数， 0表示不缓存
+
+    private final int fetchSize; //逐行遍历时每次从数据库读取的记录数
+
+    private final int batchSize; //批量写入时每批的记录数
+
+    private final boolean multiValues; //批量新增时是否使用多行VALUES的INSERT语句
+
+    private final int asyncQueueSize; //异步操作等待队列的长度
+
+    private volatile ThreadPoolExecutor executor; //异步操作的线程池
+
+    //物理连接对应的逻辑连接与PreparedStatement缓存
+    private final Map<PooledConnection, PreparedCache> preparedCaches = new ConcurrentHashMap<>();
+
+    //key为逻辑连接
+    private final Map<Connection, PreparedCache> connections = new ConcurrentHashMap<>();
+
     private String url;
 
     private String user;
@@ -66,17 +85,24 @@ public class JDBCPoolSource {
         this.user = prop.getProperty(JDBC_USER);
         this.password = prop.getProperty(JDBC_PWD);
         this.max = Integer.decode(prop.getProperty(JDBC_CONNECTIONSMAX, "" + Runtime.getRuntime().availableProcessors() * 16));
+        this.preparedCacheSize = Integer.decode(prop.getProperty(JDBC_PREPAREDCACHE_SIZE, "32"));
+        this.fetchSize = Integer.decode(prop.getProperty(JDBC_FETCH_SIZE, "1000"));
+        this.batchSize = Math.max(1, Integer.decode(prop.getProperty(JDBC_BATCH_SIZE, "1000")));
+        this.multiValues = "true".equalsIgnoreCase(prop.getProperty(JDBC_BATCH_MULTIVALUES, "true"));
+        this.asyncQueueSize = Math.max(1, Integer.decode(prop.getProperty(JDBC_ASYNC_QUEUESIZE, "" + this.max * 16)));
         this.queue = new ArrayBlockingQueue<>(this.max);
         this.listener = new ConnectionEventListener() {
 
             @Override
             public void connectionClosed(ConnectionEvent event) {
                 PooledConnection pc = (PooledConnection) event.getSource();
+                removePreparedCache(pc);
                 if (queue.offer(pc)) saveCounter.incrementAndGet();
             }
 
             @Override
             public void connectionErrorOccurred(ConnectionEvent event) {
+                removePreparedCache((PooledConnection) event.getSource());
                 usingCounter.decrementAndGet();
                 if ("08S01".equals(event.getSQLException().getSQLState())) return; //MySQL特性， 长时间连接没使用会抛出com.mysql.jdbc.exceptions.jdbc4.CommunicationsException
                 dataSource.logger.log(Level.WARNING, "connectionErronOccurred  [" + event.getSQLException().getSQLState() + "]", event.getSQLException());
@@ -112,6 +138,151 @@ public class JDBCPoolSource {
     final boolean isPostgresql () {
         return source != null && source.getClass().getName().contains(".postgresql.");
     }
+
+    /**
+     * 在异步线程池中执行数据库操作 <br>
+     * 等待队列已满或线程池已关闭时不抛出异常， 返回的CompletableFuture以RejectedExecutionException结束
+     *
+     * @param <T>      结果类型
+     * @param supplier 数据库操作
+     *
+     * @return CompletableFuture
+     */
+    final <T> CompletableFuture<T> supplyAsync(final Supplier<T> supplier) {
+        final AsyncTask<T> task = new AsyncTask<>(supplier);
+        getExecutor().execute(task);
+        return task.future;
+    }
+
+    /**
+     * 获取异步操作的线程池， 线程数与连接数上限一致， 等待队列长度由javax.persistence.async.queuesize配置， 空闲60秒后回收， 首次使用时创建
+     *
+     * @return 线程池
+     */
+    private Executor getExecutor() {
+        ThreadPoolExecutor exec = this.executor;
+        if (exec != null) return exec;
+        synchronized (this) {
+            if (this.executor == null) {
+                final AtomicInteger counter = new AtomicInteger();
+                final String n = "DataSource-" + dataSource.name + (stype.isEmpty() ? "" : ("-" + stype)) + "-Thread-";
+                exec = new ThreadPoolExecutor(max, max, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(asyncQueueSize), (Runnable r) -> {
+                    Thread t = new Thread(r);
+                    t.setDaemon(true);
+                    t.setName(n + counter.incrementAndGet());
+                    return t;
+                }, (Runnable r, ThreadPoolExecutor e) -> { //拒绝时结束对应的CompletableFuture， 不能让调用方一直等待
+                    final String msg = n.substring(0, n.length() - "-Thread-".length()) + (e.isShutdown() ? " is closed" : (" async queue is full (" + asyncQueueSize + ")"));
+                    ((AsyncTask) r).future.completeExceptionally(new RejectedExecutionException(msg));
+                });
+                exec.allowCoreThreadTimeOut(true);
+                this.executor = exec;
+            }
+            return this.executor;
+        }
+    }
+
+    final int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 是否使用 INSERT INTO t (...) VALUES (...),(...) 的多行新增语句， 目前只用于MySQL和PostgreSQL
+     *
+     * @return 是否支持多行新增
+     */
+    final boolean isMultiValuesInsertable() {
+        return multiValues && (isMysql() || isPostgresql());
+    }
+
+    /**
+     * 按数据库类型给查询语句加上参数化的分页， 无法识别的数据库返回null， 由调用方跳过offset条记录 <br>
+     * 分页的参数值由addLimitParams按相同的顺序加入
+     *
+     * @param sql     不含ORDER BY的查询语句
+     * @param orderby ORDER BY子句， 可以为空字符串
+     * @param flipper 翻页对象， limit小于1表示不分页
+     *
+     * @return 分页后的查询语句
+     */
+    final String createLimitSQL(String sql, String orderby, Flipper flipper) {
+        if (flipper == null || flipper.getLimit() < 1) return sql + orderby;
+        final int offset = Math.max(0, flipper.getOffset());
+        if (isMysql() || isPostgresql()) {
+            return sql + orderby + " LIMIT ?" + (offset > 0 ? " OFFSET ?" : "");
+        } else if (isSqlserver()) { //OFFSET FETCH需要SQL Server 2012及以上版本， 且必须有ORDER BY
+            return sql + (orderby.isEmpty() ? " ORDER BY (SELECT NULL)" : orderby) + " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+        } else if (isOracle()) { //ROWNUM兼容12c之前的版本
+            if (offset < 1) return "SELECT * FROM (" + sql + orderby + ") WHERE ROWNUM <= ?";
+            return "SELECT * FROM (SELECT t_.*, ROWNUM rn_ FROM (" + sql + orderby + ") t_ WHERE ROWNUM <= ?) WHERE rn_ > ?";
+        }
+        return null;
+    }
+
+    /**
+     * 加入createLimitSQL生成的分页参数值
+     *
+     * @param flipper 翻页对象
+     * @param params  参数值的集合
+     */
+    final void addLimitParams(Flipper flipper, List<Object> params) {
+        if (flipper == null || flipper.getLimit() < 1) return;
+        final int offset = Math.max(0, flipper.getOffset());
+        final int limit = flipper.getLimit();
+        if (isMysql() || isPostgresql()) {
+            params.add(limit);
+            if (offset > 0) params.add(offset);
+        } else if (isSqlserver()) {
+            params.add(offset);
+            params.add(limit);
+        } else if (isOracle()) {
+            if (offset < 1) {
+                params.add(limit);
+            } else {
+                params.add((long) offset + limit);
+                params.add(offset);
+            }
+        }
+    }
+
+    /**
+     * 创建逐行读取的只进游标PreparedStatement， 不放入PreparedStatement缓存， 需使用closeStreamStatement关闭 <br>
+     * MySQL驱动只在fetchSize为Integer.MIN_VALUE时逐行读取; PostgreSQL驱动只在非自动提交时按fetchSize分批读取
+     *
+     * @param conn 数据库连接
+     * @param sql  SQL语句
+     *
+     * @return PreparedStatement
+     *
+     * @throws SQLException SQLException
+     */
+    final PreparedStatement prepareStreamStatement(Connection conn, String sql) throws SQLException {
+        final PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (isMysql()) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+        } else {
+            if (isPostgresql() && conn.getAutoCommit()) conn.setAutoCommit(false);
+            ps.setFetchSize(fetchSize);
+        }
+        return ps;
+    }
+
+    final void closeStreamStatement(Connection conn, PreparedStatement ps) throws SQLException {
+        ps.close();
+        if (isPostgresql() && !conn.getAutoCommit()) {
+            conn.rollback();
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * 是否能生成分页的SQL
+     *
+     * @return 是否支持分页
+     */
+    final boolean isLimitable() {
+        return isMysql() || isPostgresql() || isSqlserver() || isOracle();
+    }
     
     private void watch() throws IOException {
         if (dataSource.conf == null || dataSource.name == null) return;
@@ -231,21 +402,118 @@ public class JDBCPoolSource {
         }
         Connection conn;
         try {
-            conn = result.getConnection();
+            PreparedCache cache = preparedCacheSize > 0 ? preparedCaches.get(result) : null;
+            if (cache == null) {
+                conn = result.getConnection();
+                if (preparedCacheSize > 0) {
+                    cache = new PreparedCache(result, conn, preparedCacheSize);
+                    preparedCaches.put(result, cache);
+                    connections.put(conn, cache);
+                }
+            } else { //复用上次的逻辑连接与缓存的PreparedStatement
+                conn = cache.conn;
+            }
             if (!conn.isValid(1)) {
                 dataSource.logger.info("sql connection is not vaild");
+                removePreparedCache(result);
                 usingCounter.decrementAndGet();
                 return poll(0, null);
             }
+            if (cache != null) {
+                synchronized (cache) {
+                    cache.using = true;
+                }
+            }
         } catch (SQLException ex) {
             if (!"08S01".equals(ex.getSQLState())) {//MySQL特性， 长时间连接没使用会抛出com.mysql.jdbc.exceptions.jdbc4.CommunicationsException
                 dataSource.logger.log(Level.FINER, "result.getConnection from pooled connection abort [" + ex.getSQLState() + "]", ex);
             }
+            removePreparedCache(result);
             return poll(0, null);
         }
         return conn;
     }
 
+    /**
+     * 归还poll获取的连接， 开启PreparedStatement缓存时不关闭逻辑连接， 与缓存的PreparedStatement一起留给下次poll复用 <br>
+     * 归还前重置逻辑连接: 丢弃执行出错(未通过closeStatement释放)的PreparedStatement， 回滚未提交的事务并恢复自动提交， 重置失败则关闭物理连接
+     *
+     * @param conn 逻辑连接
+     *
+     * @return 不是当前连接池缓存的连接返回false， 需调用方自行close
+     */
+    public boolean offer(Connection conn) {
+        final PreparedCache cache = preparedCacheSize > 0 && conn != null ? connections.get(conn) : null;
+        if (cache == null) return false;
+        synchronized (cache) {
+            if (!cache.using) return true; //重复归还
+            cache.using = false;
+        }
+        try {
+            cache.reset();
+        } catch (SQLException e) {
+            dataSource.logger.log(Level.FINER, "reset pooled connection error", e);
+            discardPooledConnection(cache);
+            return true;
+        }
+        if (queue.offer(cache.pooled)) {
+            saveCounter.incrementAndGet();
+        } else {
+            discardPooledConnection(cache);
+        }
+        return true;
+    }
+
+    private void discardPooledConnection(PreparedCache cache) {
+        removePreparedCache(cache.pooled);
+        usingCounter.decrementAndGet();
+        try {
+            cache.pooled.close();
+        } catch (SQLException e) {
+            dataSource.logger.log(Level.FINER, "close pooled connection error", e);
+        }
+    }
+
+    /**
+     * 获取PreparedStatement， conn有缓存时复用相同SQL的PreparedStatement， 用完后必须调用closeStatement
+     *
+     * @param conn poll获取的连接
+     * @param sql  SQL语句
+     *
+     * @return PreparedStatement
+     *
+     * @throws SQLException SQLException
+     */
+    public PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+        final PreparedCache cache = preparedCacheSize > 0 ? connections.get(conn) : null;
+        if (cache == null) return conn.prepareStatement(sql);
+        return cache.prepare(sql);
+    }
+
+    /**
+     * 释放prepareStatement获取的PreparedStatement， 缓存的只清除参数， 不缓存的直接关闭
+     *
+     * @param conn poll获取的连接
+     * @param ps   PreparedStatement
+     *
+     * @throws SQLException SQLException
+     */
+    public void closeStatement(Connection conn, PreparedStatement ps) throws SQLException {
+        final PreparedCache cache = preparedCacheSize > 0 ? connections.get(conn) : null;
+        if (cache == null) {
+            ps.close();
+        } else {
+            cache.release(ps);
+        }
+    }
+
+    private void removePreparedCache(PooledConnection pc) {
+        final PreparedCache cache = preparedCaches.remove(pc);
+        if (cache == null) return;
+        connections.remove(cache.conn);
+        cache.clear();
+    }
+
     public long getCreatCount() {
         return creatCounter.longValue();
     }
@@ -259,11 +527,123 @@ public class JDBCPoolSource {
     }
 
     public void close() {
+        final ThreadPoolExecutor exec = this.executor;
+        if (exec != null) exec.shutdown();
         queue.stream().forEach(x -> {
             try {
+                removePreparedCache(x);
                 x.close();
             } catch (Exception e) {
             }
         });
     }
+
+    /**
+     * 单个连接的PreparedStatement缓存， 按最近使用淘汰， 只在借出连接的线程中访问
+     */
+    static final class PreparedCache extends LinkedHashMap<String, PreparedStatement> {
+
+        private static final long serialVersionUID = 1L;
+
+        final transient PooledConnection pooled;
+
+        final transient Connection conn;
+
+        private final int limit;
+
+        //已通过prepare借出但未通过release释放的PreparedStatement， 归还连接时仍存在说明执行出错， 不能再复用
+        private final transient List<PreparedStatement> pendings = new ArrayList<>(2);
+
+        boolean using; //只在synchronized(this)中读写
+
+        PreparedCache(PooledConnection pooled, Connection conn, int limit) {
+            super(Math.min(limit, 64) * 2, 0.75f, true);
+            this.pooled = pooled;
+            this.conn = conn;
+            this.limit = limit;
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement ps = get(sql);
+            if (ps == null || ps.isClosed()) {
+                ps = conn.prepareStatement(sql);
+                put(sql, ps);
+            }
+            pendings.add(ps);
+            return ps;
+        }
+
+        void release(PreparedStatement ps) throws SQLException {
+            for (int i = pendings.size() - 1; i >= 0; i--) {
+                if (pendings.get(i) == ps) {
+                    pendings.remove(i);
+                    break;
+                }
+            }
+            if (!ps.isClosed()) ps.clearParameters();
+        }
+
+        /**
+         * 归还连接前重置: 关闭并移除未释放的PreparedStatement， 回滚未提交的事务并恢复自动提交
+         *
+         * @throws SQLException SQLException
+         */
+        void reset() throws SQLException {
+            if (!pendings.isEmpty()) {
+                for (PreparedStatement ps : pendings) {
+                    values().removeIf(v -> v == ps);
+                    close(ps);
+                }
+                pendings.clear();
+            }
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            conn.clearWarnings();
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= limit) return false;
+            close(eldest.getValue());
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            values().forEach(PreparedCache::close);
+            super.clear();
+        }
+
+        private static void close(PreparedStatement ps) {
+            try {
+                ps.close();
+            } catch (SQLException e) {
+            }
+        }
+    }
+
+    /**
+     * 异步操作的任务， 被线程池拒绝时由RejectedExecutionHandler结束future
+     */
+    private static final class AsyncTask<T> implements Runnable {
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private final Supplier<T> supplier;
+
+        AsyncTask(Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
 }
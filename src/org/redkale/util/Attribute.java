@@ -114,6 +114,69 @@ public interface Attribute<T, F> {
      */
     public void set(T obj, F value);
 
+    /**
+     * 获取指定对象的该字段的int值， 字段为基本数值类型时生成的Attribute直接读取不装箱， 其他情况按Number转换
+     *
+     * @param obj 指定对象
+     *
+     * @return 字段的int值
+     */
+    default int getInt(T obj) {
+        return ((Number) get(obj)).intValue();
+    }
+
+    /**
+     * 获取指定对象的该字段的long值， 字段为基本数值类型时生成的Attribute直接读取不装箱， 其他情况按Number转换
+     *
+     * @param obj 指定对象
+     *
+     * @return 字段的long值
+     */
+    default long getLong(T obj) {
+        return ((Number) get(obj)).longValue();
+    }
+
+    /**
+     * 获取指定对象的该字段的double值， 字段为基本数值类型时生成的Attribute直接读取不装箱， 其他情况按Number转换
+     *
+     * @param obj 指定对象
+     *
+     * @return 字段的double值
+     */
+    default double getDouble(T obj) {
+        return ((Number) get(obj)).doubleValue();
+    }
+
+    /**
+     * 给指定对象的int字段赋值， 字段为int类型时生成的Attribute直接赋值不装箱
+     *
+     * @param obj   指定对象
+     * @param value 字段新值
+     */
+    default void setInt(T obj, int value) {
+        set(obj, (F) (Object) value);
+    }
+
+    /**
+     * 给指定对象的long字段赋值， 字段为long类型时生成的Attribute直接赋值不装箱
+     *
+     * @param obj   指定对象
+     * @param value 字段新值
+     */
+    default void setLong(T obj, long value) {
+        set(obj, (F) (Object) value);
+    }
+
+    /**
+     * 给指定对象的double字段赋值， 字段为double类型时生成的Attribute直接赋值不装箱
+     *
+     * @param obj   指定对象
+     * @param value 字段新值
+     */
+    default void setDouble(T obj, double value) {
+        set(obj, (F) (Object) value);
+    }
+
     /**
      * 根据一个Field生成 Attribute 对象。
      *
@@ -584,6 +647,51 @@ public interface Attribute<T, F> {
             mv.visitMaxs(3, 3);
             mv.visitEnd();
         }
+        //基本数值类型的getInt、getLong、getDouble方法， 直接读取字段不装箱
+        if (pcolumn.isPrimitive() && pcolumn != boolean.class && (tgetter != null || tfield != null)) {
+            final char src = pcolumn == long.class ? 'J' : (pcolumn == float.class ? 'F' : (pcolumn == double.class ? 'D' : 'I'));
+            for (char dest : new char[]{'I', 'J', 'D'}) {
+                mv = cw.visitMethod(ACC_PUBLIC, dest == 'I' ? "getInt" : (dest == 'J' ? "getLong" : "getDouble"), "(Ljava/lang/Object;)" + dest, null, null);
+                mv.visitVarInsn(ALOAD, 1);
+                mv.visitTypeInsn(CHECKCAST, interName);
+                if (tgetter != null) {
+                    mv.visitMethodInsn(INVOKEVIRTUAL, interName, tgetter.getName(), Type.getMethodDescriptor(tgetter), false);
+                } else {
+                    mv.visitFieldInsn(GETFIELD, interName, tfield.getName(), Type.getDescriptor(pcolumn));
+                }
+                if (src != dest) {
+                    if (src == 'I') {
+                        mv.visitInsn(dest == 'J' ? I2L : I2D);
+                    } else if (src == 'J') {
+                        mv.visitInsn(dest == 'I' ? L2I : L2D);
+                    } else if (src == 'F') {
+                        mv.visitInsn(dest == 'I' ? F2I : (dest == 'J' ? F2L : F2D));
+                    } else {
+                        mv.visitInsn(dest == 'I' ? D2I : D2L);
+                    }
+                }
+                mv.visitInsn(dest == 'I' ? IRETURN : (dest == 'J' ? LRETURN : DRETURN));
+                mv.visitMaxs(2, 2);
+                mv.visitEnd();
+            }
+        }
+        //int、long、double类型的setInt、setLong、setDouble方法， 直接赋值不装箱
+        if ((pcolumn == int.class || pcolumn == long.class || pcolumn == double.class)
+            && (tsetter != null ? tsetter.getParameterTypes()[0] == pcolumn : (tfield != null && !java.lang.reflect.Modifier.isFinal(tfield.getModifiers())))) {
+            final char src = pcolumn == int.class ? 'I' : (pcolumn == long.class ? 'J' : 'D');
+            mv = cw.visitMethod(ACC_PUBLIC, src == 'I' ? "setInt" : (src == 'J' ? "setLong" : "setDouble"), "(Ljava/lang/Object;" + src + ")V", null, null);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(CHECKCAST, interName);
+            mv.visitVarInsn(src == 'I' ? ILOAD : (src == 'J' ? LLOAD : DLOAD), 2);
+            if (tsetter != null) {
+                mv.visitMethodInsn(INVOKEVIRTUAL, interName, tsetter.getName(), Type.getMethodDescriptor(tsetter), false);
+            } else {
+                mv.visitFieldInsn(PUTFIELD, interName, tfield.getName(), Type.getDescriptor(pcolumn));
+            }
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(src == 'I' ? 2 : 3, src == 'I' ? 3 : 4);
+            mv.visitEnd();
+        }
         cw.visitEnd();
 
         byte[] bytes = cw.toByteArray();
@@ -0,0 +1,146 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net;
+
+import java.net.InetSocketAddress;
+import java.util.*;
+
+/**
+ * Transport负载均衡策略与节点剔除的测试: roundrobin、leastactive、hash、自定义实现类， 以及连续失败剔除、全部剔除时的选择、剔除期满后恢复。
+ *
+ * @author zhangjx
+ */
+public class TransportTest {
+
+    public static void main(String[] args) throws Throwable {
+        final List<InetSocketAddress> addrs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            addrs.add(new InetSocketAddress("127.0.0.1", 7001 + i));
+        }
+        //roundrobin: 每个节点被选中的次数相同
+        Transport transport = create(addrs, null);
+        Map<InetSocketAddress, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            counts.merge(transport.selectAddress(null), 1, Integer::sum);
+        }
+        System.out.println((counts.size() == 3 && counts.values().stream().allMatch(c -> c == 100) ? "OK    " : "ERROR ") + "roundrobin: " + counts);
+
+        //leastactive: 选择进行中请求数最少的节点， 请求数相同时轮询
+        transport = create(addrs, "leastactive");
+        TransportNode[] nodes = transport.getRemoteNodes();
+        nodes[0].inflight.set(5);
+        nodes[1].inflight.set(2);
+        nodes[2].inflight.set(7);
+        boolean ok = true;
+        for (int i = 0; i < 10; i++) {
+            if (!transport.selectAddress(null).equals(addrs.get(1))) ok = false;
+        }
+        nodes[2].inflight.set(2);
+        Set<InetSocketAddress> selected = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            selected.add(transport.selectAddress(null));
+        }
+        ok = ok && selected.equals(new HashSet<>(Arrays.asList(addrs.get(1), addrs.get(2))));
+        transport.incrementInflight(addrs.get(1));
+        ok = ok && nodes[1].getInflight() == 3 && transport.selectAddress(null).equals(addrs.get(2));
+        transport.decrementInflight(addrs.get(1));
+        System.out.println((ok ? "OK    " : "ERROR ") + "leastactive, 相同请求数时选中: " + selected);
+
+        //hash: 相同参数选中相同节点， 剔除一个节点后其他节点上的参数不迁移
+        transport = create(addrs, "hash");
+        Map<String, InetSocketAddress> owners = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            owners.put("key" + i, transport.selectAddress("key" + i));
+        }
+        ok = true;
+        for (int i = 0; i < 1000; i++) {
+            if (!owners.get("key" + i).equals(transport.selectAddress("key" + i))) ok = false;
+        }
+        counts.clear();
+        owners.values().forEach(a -> counts.merge(a, 1, Integer::sum));
+        ok = ok && counts.values().stream().allMatch(c -> c > 200);
+        System.out.println((ok ? "OK    " : "ERROR ") + "hash: 相同参数选中相同节点, 分布: " + counts);
+        eject(transport, addrs.get(0));
+        int moved = 0;
+        ok = true;
+        for (int i = 0; i < 1000; i++) {
+            InetSocketAddress addr = transport.selectAddress("key" + i);
+            if (addr.equals(addrs.get(0))) ok = false;
+            if (!owners.get("key" + i).equals(addrs.get(0)) && !owners.get("key" + i).equals(addr)) moved++;
+        }
+        System.out.println((ok && moved == 0 ? "OK    " : "ERROR ") + "hash: 剔除节点后只迁移该节点上的参数, 其他节点迁移数: " + moved);
+
+        //自定义实现类
+        transport = create(addrs, FirstStrategy.class.getName());
+        System.out.println((transport.getStrategy() instanceof FirstStrategy && transport.selectAddress(null).equals(addrs.get(0)) ? "OK    " : "ERROR ") + "自定义策略类");
+        ok = false;
+        try {
+            TransportStrategy.create("org.redkale.net.NotExistStrategy");
+        } catch (RuntimeException e) {
+            ok = true;
+        }
+        System.out.println((ok ? "OK    " : "ERROR ") + "不存在的策略类抛出异常");
+
+        //剔除: 连续失败maxfailures次后剔除， 成功一次清除失败记录
+        transport = create(addrs, null);
+        transport.setMaxFailures(3);
+        transport.setEjectTimeSeconds(1);
+        nodes = transport.getRemoteNodes();
+        transport.markFailure(addrs.get(0), null);
+        transport.markFailure(addrs.get(0), null);
+        transport.markSuccess(addrs.get(0));
+        transport.markFailure(addrs.get(0), null);
+        ok = nodes[0].isAvailable(System.currentTimeMillis()) && nodes[0].getFailures() == 1;
+        transport.markFailure(addrs.get(0), null);
+        transport.markFailure(addrs.get(0), null);
+        ok = ok && !nodes[0].isAvailable(System.currentTimeMillis());
+        for (int i = 0; i < 30; i++) {
+            if (transport.selectAddress(null).equals(addrs.get(0))) ok = false;
+        }
+        System.out.println((ok ? "OK    " : "ERROR ") + "连续失败3次后剔除, 剔除期间不被选中");
+
+        eject(transport, addrs.get(1));
+        eject(transport, addrs.get(2));
+        selected.clear();
+        for (int i = 0; i < 30; i++) {
+            selected.add(transport.selectAddress(null));
+        }
+        System.out.println((selected.size() == 3 ? "OK    " : "ERROR ") + "全部节点被剔除时从全部节点中选择");
+
+        Thread.sleep(1100);
+        ok = nodes[0].isAvailable(System.currentTimeMillis());
+        transport.markFailure(addrs.get(0), null);
+        ok = ok && !nodes[0].isAvailable(System.currentTimeMillis());
+        transport = create(addrs, null);
+        transport.setMaxFailures(3);
+        transport.setEjectTimeSeconds(1);
+        eject(transport, addrs.get(0));
+        Thread.sleep(1100);
+        transport.markSuccess(addrs.get(0));
+        ok = ok && transport.getRemoteNodes()[0].isAvailable(System.currentTimeMillis()) && transport.getRemoteNodes()[0].ejectTime == 0;
+        System.out.println((ok ? "OK    " : "ERROR ") + "剔除期满后恢复, 恢复后失败一次立即重新剔除, 成功一次恢复正常");
+    }
+
+    private static Transport create(List<InetSocketAddress> addrs, String strategy) {
+        Transport transport = new Transport("test", null, "", null, null, null, addrs);
+        transport.setStrategy(strategy);
+        return transport;
+    }
+
+    private static void eject(Transport transport, InetSocketAddress addr) {
+        for (int i = 0; i < transport.getMaxFailures(); i++) {
+            transport.markFailure(addr, null);
+        }
+    }
+
+    public static class FirstStrategy implements TransportStrategy {
+
+        @Override
+        public TransportNode select(TransportNode[] nodes, Object hashKey) {
+            return nodes[0];
+        }
+    }
+}
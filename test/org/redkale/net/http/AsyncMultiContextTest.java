@@ -0,0 +1,242 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import org.redkale.net.*;
+import org.redkale.util.*;
+
+/**
+ * AsyncMultiContext按随机大小分段读取上传内容的解析结果测试， 与MultiContext的结果对比
+ *
+ * @author zhangjx
+ */
+public class AsyncMultiContextTest {
+
+    private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor((Runnable r) -> {
+        Thread t = new Thread(r);
+        t.setDaemon(true);
+        return t;
+    });
+
+    public static void main(String[] args) throws Exception {
+        final AtomicLong polled = new AtomicLong();
+        final ObjectPool<ByteBuffer> bufferPool = new ObjectPool<>(new AtomicLong(), new AtomicLong(), 16, (Object... params) -> ByteBuffer.allocateDirect(1024), (e) -> polled.incrementAndGet(), (e) -> {
+            e.clear();
+            return true;
+        });
+        final ObjectPool<Response> responsePool = HttpResponse.createPool(null, null, 16, null);
+        final HttpContext context = new HttpContext(System.currentTimeMillis(), Logger.getLogger("test"), null, 1024, bufferPool, responsePool,
+            64 * 1024, Charset.forName("UTF-8"), new InetSocketAddress(80), null, null, 0, 0);
+        final Random random = new Random(1);
+        final byte[] file1 = new byte[300_000];
+        random.nextBytes(file1);
+        final byte[] file2 = ("abc\r\n--" + BOUNDARY.substring(0, 20) + "\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1) + "x").getBytes(); //包含不完整的boundary
+        final byte[] body = createBody(file1, file2);
+        final String contentType = "multipart/form-data; boundary=" + BOUNDARY;
+
+        for (int k = 0; k < 20; k++) {
+            final int first = random.nextInt(600);
+            final HttpValues params = new HttpValues();
+            final ByteArray initial = new ByteArray();
+            initial.write(Arrays.copyOf(body, first));
+            final Map<String, ByteArrayOutputStream> files = new LinkedHashMap<>();
+            AsyncMultiContext mc = new AsyncMultiContext(context, contentType, params, createConnection(body, first, random), initial);
+            mc.parts(0, createHandler(files)).get(10, TimeUnit.SECONDS);
+            boolean ok = params.getValue("title").equals("标题") && params.getValue("desc").equals("第一行\r\n第二行") && files.size() == 2
+                && Arrays.equals(files.get("avatar.png").toByteArray(), file1) && Arrays.equals(files.get("note.txt").toByteArray(), file2);
+            if (!ok || k == 0) System.out.println((ok ? "OK    " : "ERROR ") + "分段读取, first = " + first + ", params = " + Arrays.toString(params.getNames()) + ", files = " + files.keySet());
+        }
+
+        //与MultiContext的结果对比， MultiContext不支持第一个boundary前的内容
+        final HttpValues params2 = new HttpValues();
+        final int preamble = "preamble\r\n".length();
+        MultiContext old = new MultiContext(Charset.forName("UTF-8"), contentType, params2, new ByteArrayInputStream(body, preamble, body.length - preamble), null);
+        final Map<String, byte[]> oldfiles = new LinkedHashMap<>();
+        for (MultiPart part : old.parts()) {
+            oldfiles.put(part.getFilename(), part.getContentBytes());
+        }
+        System.out.println((Arrays.equals(oldfiles.get("avatar.png"), file1) && params2.getValue("title").equals("标题") ? "OK    " : "ERROR ") + "MultiContext结果一致");
+
+        //超出part大小限制
+        final Map<String, ByteArrayOutputStream> files = new LinkedHashMap<>();
+        final boolean[] failed = {false};
+        MultiPartHandler handler = createHandler(files);
+        AsyncMultiContext mc = new AsyncMultiContext(context, contentType, new HttpValues(), createConnection(body, 0, random), new ByteArray());
+        try {
+            mc.parts(100_000, new MultiPartHandler() {
+                @Override
+                public boolean begin(String name, String filename, String contentType) throws IOException {
+                    return handler.begin(name, filename, contentType);
+                }
+
+                @Override
+                public CompletableFuture<?> data(ByteBuffer data) throws IOException {
+                    return handler.data(data);
+                }
+
+                @Override
+                public void end(long size) throws IOException {
+                    handler.end(size);
+                }
+
+                @Override
+                public void failed(Throwable exc) {
+                    failed[0] = true;
+                }
+            }).get(10, TimeUnit.SECONDS);
+            System.out.println("ERROR 超出大小限制");
+        } catch (ExecutionException e) {
+            System.out.println((failed[0] ? "OK    " : "ERROR ") + "超出大小限制: " + e.getCause().getMessage());
+        }
+
+        //保存到文件
+        final File dir = Files.createTempDirectory("redkale-upload").toFile();
+        mc = new AsyncMultiContext(context, contentType, new HttpValues(), createConnection(body, 0, random), new ByteArray());
+        mc.parts(0, MultiPartHandler.create((name, filename) -> filename.endsWith(".png") ? new File(dir, filename) : null)).get(10, TimeUnit.SECONDS);
+        final File saved = new File(dir, "avatar.png");
+        System.out.println((Arrays.equals(Files.readAllBytes(saved.toPath()), file1) && !new File(dir, "note.txt").exists() ? "OK    " : "ERROR ") + "AsynchronousFileChannel保存文件");
+        saved.delete();
+        dir.delete();
+        System.out.println((polled.get() == bufferPool.getCycleCount() ? "OK    " : "ERROR ") + "ByteBuffer已归还");
+        executor.shutdown();
+    }
+
+    private static byte[] createBody(byte[] file1, byte[] file2) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("preamble\r\n".getBytes());
+        out.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"title\"\r\n\r\n标题\r\n").getBytes("UTF-8"));
+        out.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"avatar\"; filename=\"C:\\img\\avatar.png\"\r\nContent-Type: image/png\r\n\r\n").getBytes());
+        out.write(file1);
+        out.write(("\r\n--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"empty\"; filename=\"\"\r\nContent-Type: application/octet-stream\r\n\r\n\r\n").getBytes());
+        out.write(("--" + BOUNDARY + "\r\ncontent-disposition: form-data; name=\"note\"; filename=\"note.txt\"\r\n\r\n").getBytes());
+        out.write(file2);
+        out.write(("\r\n--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"desc\"\r\n\r\n第一行\r\n第二行\r\n").getBytes("UTF-8"));
+        out.write(("--" + BOUNDARY + "--\r\n").getBytes());
+        return out.toByteArray();
+    }
+
+    private static MultiPartHandler createHandler(final Map<String, ByteArrayOutputStream> files) {
+        return new MultiPartHandler() {
+
+            private ByteArrayOutputStream out;
+
+            @Override
+            public boolean begin(String name, String filename, String contentType) {
+                out = new ByteArrayOutputStream();
+                files.put(filename, out);
+                return true;
+            }
+
+            @Override
+            public CompletableFuture<?> data(ByteBuffer data) {
+                byte[] bs = new byte[data.remaining()];
+                data.get(bs);
+                if (bs.length % 3 == 0) { //同步写入
+                    out.write(bs, 0, bs.length);
+                    return null;
+                }
+                //模拟异步写入
+                return CompletableFuture.runAsync(() -> out.write(bs, 0, bs.length), executor);
+            }
+
+            @Override
+            public void end(long size) {
+                if (size != out.size()) throw new RuntimeException("size = " + size + ", but received " + out.size());
+            }
+        };
+    }
+
+    //每次read返回随机长度的数据， 完成回调在另一个线程中执行
+    private static AsyncConnection createConnection(final byte[] body, final int offset, final Random random) {
+        final int[] pos = {offset};
+        return new AsyncConnection() {
+
+            @Override
+            public <A> void read(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
+                executor.execute(() -> {
+                    if (pos[0] >= body.length) {
+                        handler.completed(-1, attachment);
+                        return;
+                    }
+                    int len = Math.min(Math.min(dst.remaining(), 1 + random.nextInt(700)), body.length - pos[0]);
+                    dst.put(body, pos[0], len);
+                    pos[0] += len;
+                    handler.completed(len, attachment);
+                });
+            }
+
+            @Override
+            public boolean isTCP() {
+                return true;
+            }
+
+            @Override
+            public SocketAddress getRemoteAddress() {
+                return null;
+            }
+
+            @Override
+            public SocketAddress getLocalAddress() {
+                return null;
+            }
+
+            @Override
+            public int getReadTimeoutSecond() {
+                return 0;
+            }
+
+            @Override
+            public int getWriteTimeoutSecond() {
+                return 0;
+            }
+
+            @Override
+            public void setReadTimeoutSecond(int readTimeoutSecond) {
+            }
+
+            @Override
+            public void setWriteTimeoutSecond(int writeTimeoutSecond) {
+            }
+
+            @Override
+            protected <A> void write(ByteBuffer[] srcs, int offset, int length, A attachment, CompletionHandler<Integer, ? super A> handler) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Future<Integer> read(ByteBuffer dst) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public <A> void write(ByteBuffer src, A attachment, CompletionHandler<Integer, ? super A> handler) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Future<Integer> write(ByteBuffer src) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import org.redkale.util.AnyValue;
+
+/**
+ * HttpResponse.finishJson(CompletableFuture)的测试: 结果在其他线程完成后输出JSON， keep-alive连接可以继续处理后续请求; 异常结束时输出500并关闭连接
+ *
+ * @author zhangjx
+ */
+public class HttpAsyncJsonTest {
+
+    public static void main(String[] args) throws Throwable {
+        final int port;
+        try (ServerSocket ss = new ServerSocket(0)) {
+            port = ss.getLocalPort();
+        }
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        HttpServer server = new HttpServer();
+        server.addHttpServlet(new HttpServlet() {
+            @Override
+            public void execute(HttpRequest req, HttpResponse resp) throws IOException {
+                final String uri = req.getRequestURI();
+                final CompletableFuture future = new CompletableFuture();
+                resp.finishJson(future); //先注册， 结果稍后在其他线程完成
+                scheduler.schedule(() -> {
+                    if (uri.endsWith("/error")) {
+                        future.completeExceptionally(new RejectedExecutionException("mock rejected"));
+                    } else if (uri.endsWith("/null")) {
+                        future.complete(null);
+                    } else {
+                        Map<String, Object> map = new LinkedHashMap<>();
+                        map.put("uri", uri);
+                        map.put("ids", new int[]{1, 2, 3});
+                        future.complete(map);
+                    }
+                }, 50, TimeUnit.MILLISECONDS);
+            }
+        }, "/p/*");
+        server.init(AnyValue.create().addValue("host", "127.0.0.1").addValue("port", "" + port).addValue("threads", "4"));
+        server.start();
+
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setSoTimeout(10_000);
+            final OutputStream out = socket.getOutputStream();
+            final InputStream in = new BufferedInputStream(socket.getInputStream());
+            String[] rs = request(out, in, "/p/ok");
+            System.out.println(("200".equals(rs[0]) && "{\"uri\":\"/p/ok\",\"ids\":[1,2,3]}".equals(rs[1]) ? "OK    " : "ERROR ") + "异步结果输出JSON, status = " + rs[0] + ", body = " + rs[1]);
+            rs = request(out, in, "/p/null");
+            System.out.println(("200".equals(rs[0]) && "null".equals(rs[1]) ? "OK    " : "ERROR ") + "结果为null, status = " + rs[0] + ", body = " + rs[1]);
+            rs = request(out, in, "/p/again");
+            System.out.println(("200".equals(rs[0]) && rs[1].contains("/p/again") ? "OK    " : "ERROR ") + "连接继续处理后续请求, body = " + rs[1]);
+        }
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setSoTimeout(10_000);
+            final InputStream in = new BufferedInputStream(socket.getInputStream());
+            String[] rs = request(socket.getOutputStream(), in, "/p/error");
+            boolean closed = in.read() < 0;
+            System.out.println(("500".equals(rs[0]) && closed ? "OK    " : "ERROR ") + "异常结束输出500并关闭连接, status = " + rs[0]);
+        }
+        scheduler.shutdown();
+        server.shutdown();
+        System.exit(0);
+    }
+
+    //发送一个请求， 返回状态码与body
+    private static String[] request(OutputStream out, InputStream in, String uri) throws IOException {
+        out.write(("GET " + uri + " HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: keep-alive\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        String status = readLine(in).split(" ")[1];
+        int length = 0;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            if (line.toLowerCase().startsWith("content-length:")) length = Integer.parseInt(line.substring(15).trim());
+        }
+        byte[] bs = new byte[length];
+        int pos = 0;
+        while (pos < length) {
+            int n = in.read(bs, pos, length - pos);
+            if (n < 0) throw new EOFException();
+            pos += n;
+        }
+        return new String[]{status, new String(bs, StandardCharsets.UTF_8)};
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) throw new EOFException();
+            if (b != '\r') out.write(b);
+        }
+        return out.toString("UTF-8");
+    }
+}
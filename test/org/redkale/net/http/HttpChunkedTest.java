@@ -0,0 +1,114 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import org.redkale.convert.json.JsonConvert;
+import org.redkale.util.AnyValue;
+
+/**
+ * finishJsonChunked的测试: HTTP/1.1按chunked输出且内容与convertTo一致， 客户端未读取时未写出的chunk达到上限后工作线程等待写出， 读取后继续输出; <br>
+ * HTTP/1.0按Content-Length输出。
+ *
+ * @author zhangjx
+ */
+public class HttpChunkedTest {
+
+    private static final AtomicLong elapsed = new AtomicLong();
+
+    public static void main(String[] args) throws Throwable {
+        final List<String> list = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            list.add("item-" + i + "-中文-abcdefghijklmnopqrstuvwxyz");
+        }
+        final String expect = JsonConvert.root().convertTo(list);
+        final int port;
+        try (ServerSocket ss = new ServerSocket(0)) {
+            port = ss.getLocalPort();
+        }
+        HttpServer server = new HttpServer();
+        server.addHttpServlet(new HttpServlet() {
+            @Override
+            public void execute(HttpRequest req, HttpResponse resp) throws IOException {
+                long s = System.currentTimeMillis();
+                resp.finishJsonChunked(list);
+                elapsed.set(System.currentTimeMillis() - s);
+            }
+        }, "/list/*");
+        server.init(AnyValue.create().addValue("host", "127.0.0.1").addValue("port", "" + port).addValue("threads", "4"));
+        server.start();
+
+        for (int k = 0; k < 2; k++) {
+            try (Socket socket = new Socket("127.0.0.1", port)) {
+                socket.setSoTimeout(10_000);
+                socket.getOutputStream().write("GET /list/a HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: keep-alive\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+                socket.getOutputStream().flush();
+                Thread.sleep(1000); //客户端暂不读取， 输出内容远大于socket缓冲区
+                final long worker = elapsed.get();
+                final InputStream in = new BufferedInputStream(socket.getInputStream());
+                Map<String, String> headers = readHeaders(in);
+                String body = readChunked(in);
+                Thread.sleep(100);
+                System.out.println((worker == 0 && elapsed.get() >= 1000 ? "OK    " : "ERROR ") + "客户端未读取时工作线程等待写出, 读取后输出完毕, 耗时: " + elapsed.get() + " ms");
+                System.out.println(("chunked".equals(headers.get("transfer-encoding")) && expect.equals(body) ? "OK    " : "ERROR ")
+                    + "HTTP/1.1 chunked输出, 长度: " + (body == null ? -1 : body.length()));
+                //keep-alive连接可继续使用
+                socket.getOutputStream().write("GET /list/b HTTP/1.0\r\nHost: 127.0.0.1\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+                socket.getOutputStream().flush();
+                headers = readHeaders(in);
+                String len = headers.get("content-length");
+                byte[] bs = new byte[len == null ? 0 : Integer.parseInt(len)];
+                new DataInputStream(in).readFully(bs);
+                System.out.println((headers.get("transfer-encoding") == null && expect.equals(new String(bs, StandardCharsets.UTF_8)) ? "OK    " : "ERROR ")
+                    + "HTTP/1.0按Content-Length输出, Content-Length: " + len);
+            }
+            elapsed.set(0);
+        }
+        server.shutdown();
+        System.exit(0);
+    }
+
+    private static Map<String, String> readHeaders(InputStream in) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        String line = readLine(in); //状态行
+        while (!(line = readLine(in)).isEmpty()) {
+            int pos = line.indexOf(':');
+            headers.put(line.substring(0, pos).trim().toLowerCase(), line.substring(pos + 1).trim());
+        }
+        return headers;
+    }
+
+    private static String readChunked(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataInputStream din = new DataInputStream(in);
+        for (;;) {
+            int size = Integer.parseInt(readLine(in), 16);
+            if (size == 0) {
+                readLine(in);
+                break;
+            }
+            byte[] bs = new byte[size];
+            din.readFully(bs);
+            out.write(bs);
+            readLine(in);
+        }
+        return out.toString("UTF-8");
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) throw new EOFException();
+            if (b != '\r') out.write(b);
+        }
+        return out.toString("UTF-8");
+    }
+}
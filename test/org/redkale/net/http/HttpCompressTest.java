@@ -0,0 +1,149 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.*;
+import org.redkale.util.AnyValue;
+
+/**
+ * HttpCompressHandler的测试: Accept-Encoding按q值选择压缩方式、 按编码后的实际长度判断是否压缩、 gzip/deflate输出可正确解压
+ *
+ * @author zhangjx
+ */
+public class HttpCompressTest {
+
+    public static void main(String[] args) throws Throwable {
+        //Accept-Encoding解析
+        String[][] accepts = {
+            {"gzip", "gzip"},
+            {"gzip, deflate, br", "gzip"},
+            {"deflate", "deflate"},
+            {"gzip;q=0", null},
+            {"gzip;q=0, deflate", "deflate"},
+            {"gzip;q=0.0", null},
+            {"gzip;q=0.5, deflate;q=0.8", "deflate"},
+            {"deflate;q=0.5, gzip;q=0.5", "gzip"},
+            {"GZIP ; Q=0.3", "gzip"},
+            {"x-gzip", "gzip"},
+            {"*", "gzip"},
+            {"*;q=0", null},
+            {"gzip;q=0, *", "deflate"},
+            {"br, identity", null},
+            {"gzip;q=abc", null},
+            {"", null}
+        };
+        for (String[] item : accepts) {
+            String rs = HttpCompressHandler.acceptEncoding(item[0]);
+            System.out.println((Objects.equals(rs, item[1]) ? "OK    " : "ERROR ") + "Accept-Encoding: " + item[0] + " -> " + rs);
+        }
+        final HttpCompressHandler handler = new HttpCompressHandler(1024, Deflater.DEFAULT_COMPRESSION, "text/", "application/json");
+        boolean ok = handler.isCompressible(null, 1024) && !handler.isCompressible(null, 1023)
+            && handler.isCompressible("application/json; charset=utf-8", 2048) && !handler.isCompressible("image/png", 2048);
+        System.out.println((ok ? "OK    " : "ERROR ") + "isCompressible按类型和长度判断");
+
+        final int port;
+        try (ServerSocket ss = new ServerSocket(0)) {
+            port = ss.getLocalPort();
+        }
+        final StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            large.append("line-").append(i).append(i % 3 == 0 ? "中文" : "").append('\n');
+        }
+        final String largeText = large.toString();
+        final String mediumText = "中文内容" + repeat('x', 500); //字符数*3超过1K， 实际字节数不足1K
+        HttpServer server = new HttpServer();
+        server.addHttpServlet(new HttpServlet() {
+            @Override
+            public void execute(HttpRequest req, HttpResponse resp) throws IOException {
+                resp.finish(req.getRequestURI().endsWith("/medium") ? mediumText : largeText);
+            }
+        }, "/p/*");
+        server.init(AnyValue.create().addValue("host", "127.0.0.1").addValue("port", "" + port).addValue("threads", "4")
+            .addValue("response", AnyValue.create().addValue("compress", AnyValue.create().addValue("minlength", "1K"))));
+        server.start();
+
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setSoTimeout(10_000);
+            final OutputStream out = socket.getOutputStream();
+            final InputStream in = new BufferedInputStream(socket.getInputStream());
+            Map<String, String> headers = new HashMap<>();
+            byte[] body = request(out, in, "/p/large", "gzip, deflate", headers);
+            String text = new String(read(new GZIPInputStream(new ByteArrayInputStream(body))), StandardCharsets.UTF_8);
+            System.out.println(("gzip".equals(headers.get("content-encoding")) && text.equals(largeText) && body.length < largeText.length() / 2 ? "OK    " : "ERROR ")
+                + "gzip输出, 原长度: " + largeText.getBytes(StandardCharsets.UTF_8).length + ", 压缩后: " + body.length);
+
+            headers.clear();
+            body = request(out, in, "/p/large", "gzip;q=0, deflate", headers);
+            text = new String(read(new InflaterInputStream(new ByteArrayInputStream(body))), StandardCharsets.UTF_8);
+            System.out.println(("deflate".equals(headers.get("content-encoding")) && text.equals(largeText) ? "OK    " : "ERROR ") + "gzip;q=0时使用deflate, Content-Encoding: " + headers.get("content-encoding"));
+
+            headers.clear();
+            body = request(out, in, "/p/large", "gzip;q=0", headers);
+            System.out.println((headers.get("content-encoding") == null && new String(body, StandardCharsets.UTF_8).equals(largeText) ? "OK    " : "ERROR ") + "gzip;q=0时不压缩");
+
+            headers.clear();
+            body = request(out, in, "/p/large", null, headers);
+            System.out.println((headers.get("content-encoding") == null && new String(body, StandardCharsets.UTF_8).equals(largeText) ? "OK    " : "ERROR ") + "没有Accept-Encoding时不压缩");
+
+            headers.clear();
+            body = request(out, in, "/p/medium", "gzip", headers);
+            System.out.println((headers.get("content-encoding") == null && new String(body, StandardCharsets.UTF_8).equals(mediumText) ? "OK    " : "ERROR ") + "实际长度不足minlength时不压缩, 长度: " + body.length);
+        }
+        server.shutdown();
+        System.exit(0);
+    }
+
+    private static String repeat(char ch, int count) {
+        char[] chs = new char[count];
+        Arrays.fill(chs, ch);
+        return new String(chs);
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] bs = new byte[8192];
+        int n;
+        while ((n = in.read(bs)) > 0) {
+            out.write(bs, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    //发送一个请求， 返回body， 响应头的名称转成小写放入headers
+    private static byte[] request(OutputStream out, InputStream in, String uri, String accept, Map<String, String> headers) throws IOException {
+        out.write(("GET " + uri + " HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: keep-alive\r\n" + (accept == null ? "" : ("Accept-Encoding: " + accept + "\r\n")) + "\r\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        readLine(in);
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int pos = line.indexOf(':');
+            headers.put(line.substring(0, pos).trim().toLowerCase(), line.substring(pos + 1).trim());
+        }
+        int length = Integer.parseInt(headers.getOrDefault("content-length", "0"));
+        byte[] bs = new byte[length];
+        int pos = 0;
+        while (pos < length) {
+            int n = in.read(bs, pos, length - pos);
+            if (n < 0) throw new EOFException();
+            pos += n;
+        }
+        return bs;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) throw new EOFException();
+            if (b != '\r') out.write(b);
+        }
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import org.redkale.net.AsyncConnection;
+
+/**
+ * 100MB的Range下载在三种输出方式下的吞吐量对比: <br>
+ * 1、原TransferFileHandler方式: AsynchronousFileChannel读入缓冲区再写到连接; <br>
+ * 2、AIO连接的transferFrom: MappedByteBuffer直接写到连接; <br>
+ * 3、BIO连接的transferFrom: FileChannel.transferTo(sendfile)。
+ *
+ * @author zhangjx
+ */
+public class HttpFileTransferTest {
+
+    private static final int BUFFER_CAPACITY = 16 * 1024 + 16; //与HttpServer的默认值一致
+
+    private static final long OFFSET = 5L * 1024 * 1024;
+
+    private static final long COUNT = 100L * 1024 * 1024;
+
+    public static void main(String[] args) throws Throwable {
+        final File file = File.createTempFile("redkale-transfer", ".bin");
+        file.deleteOnExit();
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            final ByteBuffer chunk = ByteBuffer.allocate(1024 * 1024);
+            for (int i = 0; i < chunk.capacity(); i++) {
+                chunk.put((byte) i);
+            }
+            for (long len = 0; len < OFFSET + COUNT + chunk.capacity(); len += chunk.capacity()) {
+                chunk.flip();
+                out.write(chunk);
+            }
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final AsynchronousChannelGroup group = AsynchronousChannelGroup.withThreadPool(executor);
+        for (int k = 0; k < 3; k++) {
+            report("buffered", k, runAio(group, file, false));
+            report("mmap(AIO)", k, runAio(group, file, true));
+            report("sendfile(BIO)", k, runBio(file));
+        }
+        group.shutdownNow();
+        file.delete();
+    }
+
+    private static void report(String title, int k, long nanos) {
+        if (k == 0) return; //第一轮为预热
+        System.out.println(String.format("%-14s 100MB range: %5d ms, %6.1f MB/s", title, nanos / 1000_000, COUNT * 1000_000_000.0 / nanos / 1024 / 1024));
+    }
+
+    private static long runAio(final AsynchronousChannelGroup group, final File file, final boolean transfer) throws Throwable {
+        try (AsynchronousServerSocketChannel server = AsynchronousServerSocketChannel.open(group).bind(new InetSocketAddress("127.0.0.1", 0))) {
+            final Future<Long> reader = startReader(server.getLocalAddress());
+            final AsyncConnection conn = AsyncConnection.create(server.accept().get());
+            final CompletableFuture<Long> future = new CompletableFuture<>();
+            final long s = System.nanoTime();
+            if (transfer) {
+                final FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                conn.transferFrom(fc, OFFSET, COUNT, fc, new CompletionHandler<Long, FileChannel>() {
+                    @Override
+                    public void completed(Long result, FileChannel attachment) {
+                        future.complete(result);
+                    }
+
+                    @Override
+                    public void failed(Throwable exc, FileChannel attachment) {
+                        future.completeExceptionally(exc);
+                    }
+                });
+                future.get();
+                fc.close();
+            } else {
+                bufferedTransfer(conn, AsynchronousFileChannel.open(file.toPath(), StandardOpenOption.READ), future);
+                future.get();
+            }
+            check(future.get(), reader.get());
+            conn.close();
+            return System.nanoTime() - s;
+        }
+    }
+
+    private static long runBio(final File file) throws Throwable {
+        try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0))) {
+            final Future<Long> reader = startReader(server.getLocalAddress());
+            final AsyncConnection conn = AsyncConnection.create(server.accept().socket());
+            final CompletableFuture<Long> future = new CompletableFuture<>();
+            final long s = System.nanoTime();
+            try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                conn.transferFrom(fc, OFFSET, COUNT, null, new CompletionHandler<Long, Void>() {
+                    @Override
+                    public void completed(Long result, Void attachment) {
+                        future.complete(result);
+                    }
+
+                    @Override
+                    public void failed(Throwable exc, Void attachment) {
+                        future.completeExceptionally(exc);
+                    }
+                });
+            }
+            check(future.get(), reader.get());
+            conn.close();
+            return System.nanoTime() - s;
+        }
+    }
+
+    //原HttpResponse.TransferFileHandler的方式
+    private static void bufferedTransfer(final AsyncConnection conn, final AsynchronousFileChannel fc, final CompletableFuture<Long> future) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_CAPACITY);
+        fc.read(buffer, OFFSET, OFFSET, new CompletionHandler<Integer, Long>() {
+
+            private long sent;
+
+            @Override
+            public void completed(Integer result, Long position) {
+                if (result < 0 || sent >= COUNT) {
+                    closeAndComplete();
+                    return;
+                }
+                buffer.flip();
+                if (buffer.remaining() > COUNT - sent) buffer.limit((int) (COUNT - sent));
+                final CompletionHandler<Integer, Long> readHandler = this;
+                conn.write(buffer, position, new CompletionHandler<Integer, Long>() {
+                    @Override
+                    public void completed(Integer result, Long position) {
+                        if (buffer.hasRemaining()) {
+                            conn.write(buffer, position, this);
+                            return;
+                        }
+                        final long next = position + buffer.limit();
+                        sent += buffer.limit();
+                        if (sent >= COUNT) {
+                            closeAndComplete();
+                            return;
+                        }
+                        buffer.clear();
+                        fc.read(buffer, next, next, readHandler);
+                    }
+
+                    @Override
+                    public void failed(Throwable exc, Long position) {
+                        future.completeExceptionally(exc);
+                    }
+                });
+            }
+
+            private void closeAndComplete() {
+                try {
+                    fc.close();
+                } catch (IOException e) {
+                }
+                future.complete(sent);
+            }
+
+            @Override
+            public void failed(Throwable exc, Long position) {
+                future.completeExceptionally(exc);
+            }
+        });
+    }
+
+    //客户端读取并丢弃COUNT个字节， 抽样校验内容
+    private static Future<Long> startReader(final SocketAddress address) {
+        final FutureTask<Long> task = new FutureTask<>(() -> {
+            try (SocketChannel client = SocketChannel.open(address)) {
+                final ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+                long total = 0;
+                while (total < COUNT) {
+                    buffer.clear();
+                    int n = client.read(buffer);
+                    if (n < 0) break;
+                    if (n > 0 && buffer.get(0) != (byte) (OFFSET + total)) throw new IOException("content error at " + total);
+                    total += n;
+                }
+                return total;
+            }
+        });
+        final Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+
+    private static void check(long sent, long received) {
+        if (sent != COUNT || received != COUNT) System.out.println("ERROR sent = " + sent + ", received = " + received);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.redkale.util.AnyValue;
+
+/**
+ * keep-alive连接中pipelining请求的测试: 多个请求一次写入， 响应按请求顺序返回， 且处理下一个请求不会加深调用栈; <br>
+ * chunked请求的body不能被当作下一个请求解析。
+ *
+ * @author zhangjx
+ */
+public class HttpPipelineTest {
+
+    private static final int COUNT = 50;
+
+    private static final AtomicInteger minDepth = new AtomicInteger(Integer.MAX_VALUE);
+
+    private static final AtomicInteger maxDepth = new AtomicInteger();
+
+    public static void main(String[] args) throws Throwable {
+        final int port;
+        try (ServerSocket ss = new ServerSocket(0)) {
+            port = ss.getLocalPort();
+        }
+        HttpServer server = new HttpServer();
+        server.addHttpServlet(new HttpServlet() {
+            @Override
+            public void execute(HttpRequest req, HttpResponse resp) throws IOException {
+                final int depth = Thread.currentThread().getStackTrace().length;
+                minDepth.accumulateAndGet(depth, Math::min);
+                maxDepth.accumulateAndGet(depth, Math::max);
+                String body = req.getBodyUTF8();
+                resp.finish(req.getRequestURI() + (body == null || body.isEmpty() ? "" : ("|" + body)));
+            }
+        }, "/p/*");
+        server.init(AnyValue.create().addValue("host", "127.0.0.1").addValue("port", "" + port).addValue("threads", "4"));
+        server.start();
+
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setSoTimeout(10_000);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < COUNT; i++) {
+                if (i % 2 == 0) {
+                    sb.append("GET /p/").append(i).append(" HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: keep-alive\r\n\r\n");
+                } else {
+                    sb.append("POST /p/").append(i).append(" HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: keep-alive\r\nContent-Length: 3\r\n\r\nb").append(i % 10).append('x');
+                }
+            }
+            socket.getOutputStream().write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            socket.getOutputStream().flush();
+            final InputStream in = new BufferedInputStream(socket.getInputStream());
+            boolean ok = true;
+            for (int i = 0; i < COUNT; i++) {
+                String body = readResponse(in);
+                String expect = "/p/" + i + (i % 2 == 0 ? "" : ("|b" + (i % 10) + "x"));
+                if (!expect.equals(body)) {
+                    ok = false;
+                    System.out.println("ERROR 第" + i + "个响应: " + body + ", 应为: " + expect);
+                    break;
+                }
+            }
+            System.out.println((ok ? "OK    " : "ERROR ") + COUNT + "个pipelining请求按顺序响应");
+            System.out.println((maxDepth.get() - minDepth.get() < 10 ? "OK    " : "ERROR ") + "调用栈深度不随请求数增长, min = " + minDepth + ", max = " + maxDepth);
+        }
+
+        //chunked body不能被当作下一个请求
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setSoTimeout(10_000);
+            String req = "POST /p/chunked HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: keep-alive\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nGET /\r\n0\r\n\r\n";
+            socket.getOutputStream().write(req.getBytes(StandardCharsets.UTF_8));
+            socket.getOutputStream().flush();
+            final InputStream in = new BufferedInputStream(socket.getInputStream());
+            String body = readResponse(in);
+            boolean closed = in.read() < 0;
+            System.out.println((body != null && body.startsWith("/p/chunked|") && closed ? "OK    " : "ERROR ") + "chunked请求关闭keep-alive, body = " + body);
+        }
+        server.shutdown();
+        System.exit(0);
+    }
+
+    //读取一个响应， 返回body
+    private static String readResponse(InputStream in) throws IOException {
+        int length = -1;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            if (line.toLowerCase().startsWith("content-length:")) length = Integer.parseInt(line.substring(15).trim());
+        }
+        if (length < 0) return null;
+        byte[] bs = new byte[length];
+        int pos = 0;
+        while (pos < length) {
+            int n = in.read(bs, pos, length - pos);
+            if (n < 0) throw new EOFException();
+            pos += n;
+        }
+        return new String(bs, StandardCharsets.UTF_8);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) throw new EOFException();
+            if (b != '\r') out.write(b);
+        }
+        return out.toString("UTF-8");
+    }
+}
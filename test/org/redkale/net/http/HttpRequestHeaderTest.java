@@ -0,0 +1,204 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import org.redkale.net.*;
+import org.redkale.util.*;
+
+/**
+ * HttpRequest.readHeader的测试: header分多次读取、 header长度按maxheader限制而不是maxbody、 toString输出延迟解析的Host与Cookie、
+ * header未读完整时连接断开或read抛出异常都会归还buffer、 配置的bufferCapacity小于header时header分多次读取
+ *
+ * @author zhangjx
+ */
+public class HttpRequestHeaderTest {
+
+    private static final AtomicInteger offered = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        final ObjectPool<ByteBuffer> bufferPool = new ObjectPool<>(null, null, 16, (Object... params) -> ByteBuffer.allocate(8192), null, (e) -> {
+            offered.incrementAndGet();
+            e.clear();
+            return true;
+        });
+        final ObjectPool<Response> responsePool = HttpResponse.createPool(null, null, 16, null);
+        final HttpContext context = new HttpContext(System.currentTimeMillis(), Logger.getLogger("test"), null, 8192, bufferPool, responsePool,
+            64 * 1024, Charset.forName("UTF-8"), new InetSocketAddress(80), null, null, 0, 0);
+
+        final String header = "GET /user/info?id=1 HTTP/1.1\r\nHost: localhost\r\nCookie: token=abc\r\nX-Trace: t1\r\nConnection: keep-alive\r\n\r\n";
+        HttpRequest request = new HttpRequest(context, null);
+        new HttpResponse(context, request, null, null, null).init(new FakeConnection(false));
+        final int rs1 = request.readHeader(wrap(header.substring(0, 10)));
+        final int rs2 = request.readHeader(wrap(header.substring(10, 50)));
+        final int rs3 = request.readHeader(wrap(header.substring(50)));
+        final String str = request.toString();
+        boolean ok = rs1 == -2 && rs2 == -2 && rs3 == 0 && "/user/info".equals(request.getRequestURI()) && "t1".equals(request.getHeader("X-Trace"))
+            && "1".equals(request.getParameter("id"));
+        System.out.println((ok ? "OK    " : "ERROR ") + "header分3次读取, readHeader = " + rs1 + ", " + rs2 + ", " + rs3);
+        System.out.println((str.contains("host: localhost") && str.contains("cookies: token=abc") ? "OK    " : "ERROR ") + "toString输出延迟解析的Host与Cookie");
+
+        //header长度限制与body长度限制分开
+        context.setMaxheader(256);
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            body.append('b');
+        }
+        request = new HttpRequest(context, null);
+        int rs = request.readHeader(wrap("POST /p HTTP/1.1\r\nHost: localhost\r\nContent-Length: 1000\r\n\r\n" + body));
+        System.out.println((rs == 0 && request.getBodyUTF8().length() == 1000 ? "OK    " : "ERROR ") + "body超过maxheader时不受header长度限制, readHeader = " + rs);
+        final StringBuilder longHeader = new StringBuilder("GET /p HTTP/1.1\r\nX-Long: ");
+        for (int i = 0; i < 300; i++) {
+            longHeader.append('x');
+        }
+        request = new HttpRequest(context, null);
+        rs = request.readHeader(wrap(longHeader + "\r\n\r\n"));
+        System.out.println((rs == -1 ? "OK    " : "ERROR ") + "header超过maxheader时返回-1, readHeader = " + rs);
+        context.setMaxheader(16 * 1024);
+
+        //header未读完整时连接断开或read抛出异常
+        final HttpPrepareServlet prepare = new HttpPrepareServlet();
+        for (final boolean throwing : new boolean[]{false, true}) {
+            request = new HttpRequest(context, null);
+            final HttpResponse response = new HttpResponse(context, request, null, null, null);
+            final FakeConnection conn = new FakeConnection(throwing);
+            response.init(conn);
+            final ByteBuffer buffer = bufferPool.get();
+            buffer.put(header.substring(0, 30).getBytes(StandardCharsets.UTF_8)).flip();
+            final int before = offered.get();
+            prepare.prepare(buffer, request, response);
+            ok = offered.get() == before + 1 && conn.reads == 1;
+            System.out.println((ok ? "OK    " : "ERROR ") + (throwing ? "read抛出异常" : "连接断开") + "时归还buffer, offered = " + (offered.get() - before));
+        }
+
+        //配置的bufferCapacity不会被调大到16K， 超过buffer大小的header分多次读取
+        final int port;
+        try (ServerSocket ss = new ServerSocket(0)) {
+            port = ss.getLocalPort();
+        }
+        final HttpServer server = new HttpServer();
+        server.addHttpServlet(new HttpServlet() {
+            @Override
+            public void execute(HttpRequest req, HttpResponse resp) throws IOException {
+                resp.finish(req.getContext().getBufferCapacity() + "|" + req.getHeader("X-Long").length());
+            }
+        }, "/h/*");
+        server.init(AnyValue.create().addValue("host", "127.0.0.1").addValue("port", "" + port).addValue("bufferCapacity", "1024"));
+        server.start();
+        final StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            value.append('v');
+        }
+        String result = null;
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setSoTimeout(10_000);
+            socket.getOutputStream().write(("GET /h/long HTTP/1.1\r\nHost: 127.0.0.1\r\nX-Long: " + value + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                result = line;
+            }
+        }
+        System.out.println(("1024|3000".equals(result) ? "OK    " : "ERROR ") + "bufferCapacity=1K时读取超过1K的header, bufferCapacity|header长度 = " + result);
+        server.shutdown();
+        System.exit(0);
+    }
+
+    private static ByteBuffer wrap(String str) {
+        return ByteBuffer.wrap(str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //read时连接已断开(返回-1)或者直接抛出异常
+    private static class FakeConnection extends AsyncConnection {
+
+        private final boolean throwing;
+
+        private int reads;
+
+        private boolean open = true;
+
+        public FakeConnection(boolean throwing) {
+            this.throwing = throwing;
+        }
+
+        @Override
+        public <A> void read(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
+            reads++;
+            if (throwing) throw new IllegalStateException("channel closed");
+            handler.completed(-1, attachment);
+        }
+
+        @Override
+        public boolean isTCP() {
+            return true;
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public SocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public int getReadTimeoutSecond() {
+            return 0;
+        }
+
+        @Override
+        public int getWriteTimeoutSecond() {
+            return 0;
+        }
+
+        @Override
+        public void setReadTimeoutSecond(int readTimeoutSecond) {
+        }
+
+        @Override
+        public void setWriteTimeoutSecond(int writeTimeoutSecond) {
+        }
+
+        @Override
+        protected <A> void write(ByteBuffer[] srcs, int offset, int length, A attachment, CompletionHandler<Integer, ? super A> handler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Future<Integer> read(ByteBuffer dst) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <A> void write(ByteBuffer src, A attachment, CompletionHandler<Integer, ? super A> handler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Future<Integer> write(ByteBuffer src) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            open = false;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * HttpResourceServlet的LRU淘汰、文件信息缓存测试
+ *
+ * @author zhangjx
+ */
+public class HttpResourceCacheTest {
+
+    private static final int FILE_SIZE = 100 * 1024;
+
+    public static void main(String[] args) throws Throwable {
+        final File root = Files.createTempDirectory("redkale-resource").toFile();
+        for (int i = 0; i < 100; i++) {
+            byte[] bs = new byte[FILE_SIZE];
+            Arrays.fill(bs, (byte) i);
+            Files.write(new File(root, "f" + i + ".bin").toPath(), bs);
+        }
+        HttpResourceServlet servlet = createServlet(root, 5 * FILE_SIZE);
+        for (int i = 0; i < 5; i++) {
+            servlet.findFileEntry("/f" + i + ".bin");
+        }
+        servlet.findFileEntry("/f0.bin");
+        servlet.findFileEntry("/f5.bin"); //淘汰到90%以下: f1、f2
+        boolean ok = cached(servlet, 0) && !cached(servlet, 1) && !cached(servlet, 2) && cached(servlet, 3) && cached(servlet, 5)
+            && servlet.cachedLength.longValue() == 4 * FILE_SIZE && servlet.cacheEvictCounter.get() == 2
+            && servlet.cacheHitCounter.get() == 1 && servlet.cacheMissCounter.get() == 6;
+        System.out.println((ok ? "OK    " : "ERROR ") + "LRU淘汰, cachedLength = " + servlet.cachedLength + ", hit = " + servlet.cacheHitCounter
+            + ", miss = " + servlet.cacheMissCounter + ", evict = " + servlet.cacheEvictCounter);
+
+        servlet.findFileEntry("/f1.bin"); //被淘汰的文件再次访问时重新载入
+        System.out.println((cached(servlet, 1) && servlet.cachedLength.longValue() <= 5 * FILE_SIZE ? "OK    " : "ERROR ") + "重新载入被淘汰的文件");
+
+        //文件信息缓存, 不监控文件时按statinterval检查变化
+        final File f3 = new File(root, "f3.bin");
+        HttpResourceServlet.FileEntry entry = servlet.findFileEntry("/f3.bin");
+        ok = entry.stat.length == FILE_SIZE && entry.stat.etag.equals(f3.lastModified() + "-" + FILE_SIZE) && entry.contentType.equals("application/octet-stream");
+        System.out.println((ok ? "OK    " : "ERROR ") + "文件信息缓存, etag = " + entry.stat.etag);
+        Files.write(f3.toPath(), new byte[10]);
+        f3.setLastModified(f3.lastModified() + 5000);
+        entry = servlet.findFileEntry("/f3.bin");
+        System.out.println((entry.stat.length == FILE_SIZE ? "OK    " : "ERROR ") + "statinterval内不检查文件");
+        entry.lastChecked = 0;
+        entry = servlet.findFileEntry("/f3.bin");
+        System.out.println((entry.stat.length == 10 && entry.content.length() == 10 && entry.content.etag.equals(f3.lastModified() + "-10") ? "OK    " : "ERROR ") + "文件变化后刷新, etag = " + entry.content.etag);
+        f3.delete();
+        entry.lastChecked = 0;
+        System.out.println((servlet.findFileEntry("/f3.bin") == null && !servlet.files.containsKey("/f3.bin") ? "OK    " : "ERROR ") + "文件删除后返回null");
+        Files.write(f3.toPath(), new byte[FILE_SIZE]);
+
+        //并发访问后cachedLength与各FileEntry的缓存之和一致
+        servlet = createServlet(root, 20 * FILE_SIZE);
+        final HttpResourceServlet cs = servlet;
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final Random random = new Random(t);
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    if (cs.findFileEntry("/f" + random.nextInt(60) + ".bin") == null) throw new RuntimeException("not found");
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        executor.shutdown();
+        long sum = 0;
+        for (HttpResourceServlet.FileEntry en : servlet.files.values()) {
+            sum += en.getCachedLength();
+        }
+        System.out.println((sum == servlet.cachedLength.longValue() && sum <= 20 * FILE_SIZE ? "OK    " : "ERROR ") + "并发访问, cachedLength = " + sum / FILE_SIZE + " files");
+
+        //文件不断被改写时， 缓存内容的长度必须与其ETag一致， 否则输出的Content-Length与内容不符
+        servlet = createServlet(root, 20 * FILE_SIZE);
+        servlet.statinterval = 0;
+        final HttpResourceServlet ms = servlet;
+        final File mfile = new File(root, "m.bin");
+        Files.write(mfile.toPath(), new byte[1000]);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicInteger bad = new AtomicInteger();
+        final AtomicInteger checked = new AtomicInteger();
+        final Thread writer = new Thread(() -> {
+            try {
+                for (int i = 1; !stop.get(); i++) {
+                    Files.write(mfile.toPath(), new byte[1000 + (i % 50) * 100]);
+                    mfile.setLastModified(System.currentTimeMillis() + i * 1000L);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        final ExecutorService readers = Executors.newFixedThreadPool(3);
+        final List<Future<?>> rfutures = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            rfutures.add(readers.submit(() -> {
+                for (int i = 0; i < 3000; i++) {
+                    HttpResourceServlet.FileEntry en = ms.findFileEntry("/m.bin");
+                    if (en == null) continue;
+                    HttpResourceServlet.CachedContent c = en.content;
+                    if (c == null) continue;
+                    checked.incrementAndGet();
+                    if (!c.etag.endsWith("-" + c.length())) bad.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> f : rfutures) {
+            f.get();
+        }
+        stop.set(true);
+        writer.join();
+        readers.shutdown();
+        sum = 0;
+        for (HttpResourceServlet.FileEntry en : servlet.files.values()) {
+            sum += en.getCachedLength();
+        }
+        System.out.println((bad.get() == 0 && sum == servlet.cachedLength.longValue() ? "OK    " : "ERROR ") + "文件改写时缓存内容与ETag一致, 检查 " + checked + " 次, 不一致 " + bad + " 次");
+
+        //热点文件在缓存被占满之后才出现: 前50个文件先各访问一次， 之后90%的请求落在f50~f59， 原先先到先得的方式热点文件永远不会被缓存
+        servlet = createServlet(root, 20 * FILE_SIZE);
+        final Random random = new Random(1);
+        for (int i = 0; i < 50; i++) {
+            servlet.findFileEntry("/f" + i + ".bin");
+        }
+        servlet.cacheHitCounter.set(0);
+        servlet.cacheMissCounter.set(0);
+        for (int i = 0; i < 20_000; i++) {
+            int n = random.nextInt(10) < 9 ? (50 + random.nextInt(10)) : random.nextInt(50);
+            servlet.findFileEntry("/f" + n + ".bin");
+        }
+        final double rate = servlet.cacheHitCounter.get() * 100.0 / (servlet.cacheHitCounter.get() + servlet.cacheMissCounter.get());
+        System.out.println((rate > 85 && cached(servlet, 55) ? "OK    " : "ERROR ") + String.format("后出现的热点文件命中率: %.1f%%", rate));
+        for (File f : root.listFiles()) {
+            f.delete();
+        }
+        root.delete();
+    }
+
+    private static HttpResourceServlet createServlet(File root, long cachelimit) {
+        HttpResourceServlet servlet = new HttpResourceServlet();
+        servlet.root = root;
+        servlet.cachelimit = cachelimit;
+        return servlet;
+    }
+
+    private static boolean cached(HttpResourceServlet servlet, int n) {
+        HttpResourceServlet.FileEntry entry = servlet.files.get("/f" + n + ".bin");
+        return entry != null && entry.content != null;
+    }
+}
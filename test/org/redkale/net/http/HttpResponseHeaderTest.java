@@ -0,0 +1,116 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.text.*;
+import java.util.*;
+import java.util.logging.Logger;
+import org.redkale.net.Response;
+import org.redkale.util.AnyValue.DefaultAnyValue;
+import org.redkale.util.AnyValue.Entry;
+import org.redkale.util.ObjectPool;
+
+/**
+ * HttpResponse.createHeader 与原String拼接方式生成header的性能对比
+ *
+ * @author zhangjx
+ */
+public class HttpResponseHeaderTest {
+
+    private static final int COUNT = 1000000;
+
+    public static void main(String[] args) throws Exception {
+        final String[][] addHeaders = new String[][]{{"X-Powered-By", "Redkale"}, {"Access-Control-Allow-Origin", "*"}};
+        final String[][] setHeaders = new String[][]{{"Server", "Redkale/1.0"}};
+        final ObjectPool<ByteBuffer> bufferPool = new ObjectPool<>(null, null, 16, (Object... params) -> ByteBuffer.allocateDirect(8192), null, (e) -> {
+            e.clear();
+            return true;
+        });
+        final ObjectPool<Response> responsePool = HttpResponse.createPool(null, null, 16, null);
+        final HttpContext context = new HttpContext(System.currentTimeMillis(), Logger.getLogger("test"), null, 8192, bufferPool, responsePool,
+            64 * 1024, Charset.forName("UTF-8"), new InetSocketAddress(80), null, null, 0, 0);
+        final HttpRequest request = new HttpRequest(context, null);
+        request.readHeader(ByteBuffer.wrap("GET /pipes/user/info HTTP/1.1\r\nHost: localhost\r\nConnection: keep-alive\r\n\r\n".getBytes()));
+        final HttpResponse response = new HttpResponse(context, request, addHeaders, setHeaders, null);
+        response.setContentType("application/json; charset=utf-8");
+        response.setContentLength(12345);
+        response.addHeader("retcode", 0);
+        response.addHeader("Cache-Control", "no-cache");
+        response.addHeader("X-Request-Id", "a1b2c3d4e5f6");
+        HttpCookie cookie = new HttpCookie("token", "7f3a9c0d1e");
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        response.addCookie(cookie);
+
+        ByteBuffer buf = response.createHeader();
+        buf.flip();
+        byte[] bs = new byte[buf.remaining()];
+        buf.get(bs);
+        bufferPool.offer(buf);
+        System.out.println(new String(bs));
+        buf = legacyCreateHeader(bufferPool.get(), response, addHeaders, setHeaders, cookie);
+        buf.flip();
+        bs = new byte[buf.remaining()];
+        buf.get(bs);
+        bufferPool.offer(buf);
+        System.out.println(new String(bs));
+
+        for (int k = 0; k < 3; k++) {
+            long s = System.nanoTime();
+            for (int i = 0; i < COUNT; i++) {
+                bufferPool.offer(response.createHeader());
+            }
+            long e = System.nanoTime() - s;
+            System.out.println("createHeader:       " + (e / COUNT) + " ns/op");
+            s = System.nanoTime();
+            for (int i = 0; i < COUNT; i++) {
+                bufferPool.offer(legacyCreateHeader(bufferPool.get(), response, addHeaders, setHeaders, cookie));
+            }
+            e = System.nanoTime() - s;
+            System.out.println("legacyCreateHeader: " + (e / COUNT) + " ns/op");
+        }
+    }
+
+    private static final DateFormat GMT_DATE_FORMAT = new SimpleDateFormat("EEE, dd-MMM-yyyy HH:mm:ss z", Locale.ENGLISH);
+
+    //原HttpResponse.createHeader的实现方式
+    private static ByteBuffer legacyCreateHeader(ByteBuffer buffer, HttpResponse response, String[][] addHeaders, String[][] setHeaders, HttpCookie cookie) {
+        DefaultAnyValue header = new DefaultAnyValue();
+        header.addValue("retcode", "0");
+        header.addValue("Cache-Control", "no-cache");
+        header.addValue("X-Request-Id", "a1b2c3d4e5f6");
+        int status = response.getStatus();
+        buffer.put(("HTTP/1.1 " + status + " " + (status == 200 ? "OK" : response.getHttpCode(status)) + "\r\n").getBytes());
+        buffer.put(("Content-Type: " + response.getContentType() + "\r\n").getBytes());
+        buffer.put(("Content-Length: " + response.getContentLength() + "\r\n").getBytes());
+        for (String[] headers : addHeaders) {
+            header.addValue(headers[0], headers[1]);
+        }
+        for (String[] headers : setHeaders) {
+            header.setValue(headers[0], headers[1]);
+        }
+        for (Entry<String> en : header.getStringEntrys()) {
+            buffer.put((en.name + ": " + en.getValue() + "\r\n").getBytes());
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(cookie.getName()).append("=").append(cookie.getValue()).append("; Version=1");
+        if (cookie.getDomain() != null) sb.append("; Domain=").append(cookie.getDomain());
+        if (cookie.getPath() != null) sb.append("; Path=").append(cookie.getPath());
+        if (cookie.getMaxAge() > 0) {
+            sb.append("; Max-Age=").append(cookie.getMaxAge());
+            synchronized (GMT_DATE_FORMAT) {
+                sb.append("; Expires=").append(GMT_DATE_FORMAT.format(new Date(System.currentTimeMillis() + cookie.getMaxAge() * 1000)));
+            }
+        }
+        if (cookie.isHttpOnly()) sb.append("; HttpOnly");
+        buffer.put(("Set-Cookie: " + sb + "\r\n").getBytes());
+        buffer.put(HttpResponse.LINE);
+        return buffer;
+    }
+}
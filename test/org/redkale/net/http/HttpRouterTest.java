@@ -0,0 +1,147 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import org.redkale.net.Response;
+import org.redkale.util.ObjectPool;
+
+/**
+ * HttpRouter的测试: 精确、前缀、路径参数的匹配， 与原先HashMap加正则表达式列表一致的优先级(精确优先， 其他按声明顺序)， '.'按正则表达式处理; <br>
+ * 以及300个前缀mapping时路由树与逐个匹配正则表达式的性能对比。
+ *
+ * @author zhangjx
+ */
+public class HttpRouterTest {
+
+    private static HttpRequest request;
+
+    public static void main(String[] args) throws Exception {
+        final ObjectPool<ByteBuffer> bufferPool = new ObjectPool<>(null, null, 16, (Object... params) -> ByteBuffer.allocateDirect(8192), null, (e) -> {
+            e.clear();
+            return true;
+        });
+        final ObjectPool<Response> responsePool = HttpResponse.createPool(null, null, 16, null);
+        final HttpContext context = new HttpContext(System.currentTimeMillis(), Logger.getLogger("test"), null, 8192, bufferPool, responsePool,
+            64 * 1024, Charset.forName("UTF-8"), new InetSocketAddress(80), null, null, 0, 0);
+        request = new HttpRequest(context, null);
+
+        final HttpPrepareServlet prepare = new HttpPrepareServlet();
+        add(prepare, "exact", "/user/info");
+        add(prepare, "pipes", "/pipes/*");
+        add(prepare, "uservar", "/user/{userid}/info");
+        add(prepare, "groupvar", "/g/{gid}/u/{uid}");
+        add(prepare, "a", "/a/*");
+        add(prepare, "ab", "/a/b/*"); //声明在/a/*之后， 不会被匹配到
+        add(prepare, "cd", "/c/d/*");
+        add(prepare, "c", "/c/*");
+        add(prepare, "aexact", "/a/exact"); //精确匹配优先于先声明的/a/*
+        add(prepare, "regex", "^/r/\\d+");
+        add(prepare, "r", "/r/*");
+        add(prepare, "v", "/v/*");
+        add(prepare, "vvar", "/v/{id}");
+        add(prepare, "html", "/index.html");
+        add(prepare, "root", "/*");
+
+        check(prepare, "/user/info", "exact");
+        check(prepare, "/user/1001/info", "uservar", "userid", "1001");
+        check(prepare, "/g/7/u/1001", "groupvar", "gid", "7", "uid", "1001");
+        check(prepare, "/pipes/x/y", "pipes");
+        check(prepare, "/pipes/", "pipes");
+        check(prepare, "/pipes", "root");
+        check(prepare, "/a/b/c", "a");
+        check(prepare, "/a/exact", "aexact");
+        check(prepare, "/c/d/x", "cd");
+        check(prepare, "/c/x", "c");
+        check(prepare, "/r/123", "regex");
+        check(prepare, "/r/abc", "r");
+        check(prepare, "/v/1", "v");
+        check(prepare, "/index.html", "html");
+        check(prepare, "/indexXhtml", "html"); //'.'与原先一样按正则表达式匹配任意字符
+        check(prepare, "/other", "root");
+        System.out.println((!HttpRouter.isRoutable("/index.html") && HttpRouter.isRoutable("/user/{userid}/info") && HttpRouter.isRoutable("/pipes/*")
+            && !HttpRouter.isRoutable("/p*/x") ? "OK    " : "ERROR ") + "isRoutable");
+
+        //300个前缀mapping， 路由树与逐个匹配正则表达式的对比
+        final int count = 300;
+        final HttpRouter<String> router = new HttpRouter<>();
+        final List<Predicate<String>> regexs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            router.put("/pipes" + i + "/*", "p" + i);
+            regexs.add(Pattern.compile("^/pipes" + i + "/.*").asPredicate());
+        }
+        final String[] uris = new String[1024];
+        final Random random = new Random(1);
+        for (int i = 0; i < uris.length; i++) {
+            uris[i] = "/pipes" + random.nextInt(count) + "/user/info";
+        }
+        for (int k = 0; k < 3; k++) {
+            final boolean print = k == 2; //前两轮为预热
+            final int times = 200_000;
+            long s = System.nanoTime();
+            int hit = 0;
+            for (int i = 0; i < times; i++) {
+                request.requestURI = uris[i & 1023];
+                if (router.match(request) != null) hit++;
+            }
+            long e1 = System.nanoTime() - s;
+            s = System.nanoTime();
+            for (int i = 0; i < times / 10; i++) {
+                String uri = uris[i & 1023];
+                for (Predicate<String> p : regexs) {
+                    if (p.test(uri)) {
+                        hit++;
+                        break;
+                    }
+                }
+            }
+            long e2 = System.nanoTime() - s;
+            if (print) {
+                System.out.println(String.format("%d个前缀mapping: HttpRouter %.1f ns/op, 正则表达式列表 %.1f ns/op, hit = %d", count, e1 * 1.0 / times, e2 * 10.0 / times, hit));
+            }
+        }
+    }
+
+    private static void add(HttpPrepareServlet prepare, String name, String mapping) {
+        prepare.addServlet(new NamedServlet(name), null, null, mapping);
+    }
+
+    private static void check(HttpPrepareServlet prepare, String uri, String expect, String... vars) {
+        request.requestURI = uri;
+        HttpServlet servlet = prepare.router.match(request);
+        String name = servlet == null ? null : ((NamedServlet) servlet).name;
+        boolean ok = expect.equals(name);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < vars.length; i += 2) {
+            String val = request.getPathVariable(vars[i], null);
+            sb.append(", ").append(vars[i]).append(" = ").append(val);
+            if (!vars[i + 1].equals(val)) ok = false;
+        }
+        if (vars.length == 0 && request.pathCount != 0) ok = false;
+        System.out.println((ok ? "OK    " : "ERROR ") + uri + " -> " + name + sb);
+    }
+
+    private static class NamedServlet extends HttpServlet {
+
+        private final String name;
+
+        public NamedServlet(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void execute(HttpRequest req, HttpResponse resp) throws IOException {
+            resp.finish(name);
+        }
+    }
+}
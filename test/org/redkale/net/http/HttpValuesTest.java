@@ -0,0 +1,140 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.net.http;
+
+import java.nio.charset.Charset;
+import java.util.*;
+import org.redkale.util.AnyValue.DefaultAnyValue;
+import org.redkale.util.ByteArray;
+
+/**
+ * HttpValues与DefaultAnyValue在25个header、15个参数的请求上的结果与性能对比
+ *
+ * @author zhangjx
+ */
+public class HttpValuesTest {
+
+    private static final int COUNT = 1000000;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String[][] HEADERS = {{"Host", "www.redkale.org"}, {"Connection", "keep-alive"}, {"Cache-Control", "max-age=0"},
+    {"Upgrade-Insecure-Requests", "1"}, {"User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 Chrome/90.0 Safari/537.36"},
+    {"Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8"}, {"Sec-Fetch-Site", "none"}, {"Sec-Fetch-Mode", "navigate"},
+    {"Sec-Fetch-Dest", "document"}, {"Accept-Encoding", "gzip, deflate, br"}, {"Accept-Language", "zh-CN,zh;q=0.9,en;q=0.8"},
+    {"Cookie", "JSESSIONID=7f3a9c0d1e; theme=dark"}, {"If-None-Match", "W/\"1a2b3c\""}, {"If-Modified-Since", "Tue, 15 Nov 1994 08:12:31 GMT"},
+    {"Referer", "https://www.redkale.org/index.html"}, {"Origin", "https://www.redkale.org"}, {"X-Requested-With", "XMLHttpRequest"},
+    {"X-Forwarded-For", "10.0.0.1, 10.0.0.2"}, {"X-Forwarded-Proto", "https"}, {"X-Real-IP", "10.0.0.1"}, {"Content-Type", "application/json"},
+    {"Content-Length", "128"}, {"X-Request-Id", "a1b2c3d4e5f6"}, {"X-Trace-Span", "9f8e7d"}, {"Accept", "application/json"}};
+
+    private static final String[] LOOKUPS = {"User-Agent", "Content-Type", "X-Forwarded-For", "Accept-Encoding", "Cookie", "X-Not-Exists"};
+
+    public static void main(String[] args) throws Exception {
+        final ByteArray bytes = new ByteArray();
+        final int[] indexs = new int[HEADERS.length * 2];
+        for (int i = 0; i < HEADERS.length; i++) {
+            indexs[i * 2] = bytes.size();
+            bytes.write(HEADERS[i][0].getBytes(UTF8));
+            indexs[i * 2 + 1] = bytes.size();
+        }
+        final String[][] params = new String[15][];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = new String[]{"param" + i, String.valueOf(i * 1000)};
+        }
+
+        final HttpValues header = new HttpValues(true);
+        final HttpValues param = new HttpValues(false);
+        fillValues(header, param, bytes, indexs, params);
+        final DefaultAnyValue header2 = new DefaultAnyValue(true);
+        final DefaultAnyValue param2 = new DefaultAnyValue(false);
+        fillAnyValue(header2, param2, params);
+        check("getValue", lookup(header, param), lookup(header2, param2));
+        check("getValues", Arrays.toString(header.getValues("accept")), Arrays.toString(header2.getValues("Accept")));
+        check("getNames", Arrays.toString(header.getNames()), Arrays.toString(header2.getNames()));
+        check("toString", header.toString(4), header2.toString(4));
+        check("常见header名复用常量", header.getName(0) == "Host" && header.getName(22) != "X-Request-Id", true);
+        check("参数区分大小写", param.getValue("PARAM1") == null && "1000".equals(param.getValue("param1")), true);
+        header.setValue("content-type", "text/plain");
+        check("setValue替换第一个", header.getValue("Content-Type") + "," + header.size(), "text/plain," + HEADERS.length);
+        HttpValues dup = header.duplicate();
+        header.clear();
+        check("clear", header.size() + "," + header.getValue("Host") + "," + header.getNames().length, "0,null,0");
+        check("duplicate不受clear影响", dup.getValue("Host"), "www.redkale.org");
+        fillValues(header, param, bytes, indexs, params);
+        check("clear后复用", header.getValue("sec-fetch-mode") + "," + header.size(), "navigate," + HEADERS.length);
+        HttpValues big = new HttpValues(true, 4);
+        for (int i = 0; i < 100; i++) {
+            big.addValue("Name" + (i % 60), String.valueOf(i));
+        }
+        check("扩容", big.getNames().length + "," + Arrays.toString(big.getValues("name7")), "60,[7, 67]");
+
+        long sum = 0;
+        for (int k = 0; k < 5; k++) {
+            long s = System.nanoTime();
+            for (int i = 0; i < COUNT; i++) {
+                header.clear();
+                param.clear();
+                fillValues(header, param, bytes, indexs, params);
+                sum += probe(header, param);
+            }
+            long e = System.nanoTime() - s;
+            System.out.println("HttpValues:      " + (e / COUNT) + " ns/op");
+            s = System.nanoTime();
+            for (int i = 0; i < COUNT; i++) {
+                header2.clear();
+                param2.clear();
+                fillAnyValue(header2, param2, params);
+                sum += probe(header2, param2);
+            }
+            e = System.nanoTime() - s;
+            System.out.println("DefaultAnyValue: " + (e / COUNT) + " ns/op");
+        }
+        System.out.println("sum = " + sum);
+    }
+
+    //与HttpRequest.parsedHeader一样按原始字节添加header
+    private static void fillValues(HttpValues header, HttpValues param, ByteArray bytes, int[] indexs, String[][] params) {
+        for (int i = 0; i < HEADERS.length; i++) {
+            header.addValue(bytes, indexs[i * 2], indexs[i * 2 + 1], HEADERS[i][1], UTF8);
+        }
+        for (String[] kv : params) {
+            param.addValue(kv[0], kv[1]);
+        }
+    }
+
+    //原HttpRequest.parsedHeader的方式， header名每次都生成新的String
+    private static void fillAnyValue(DefaultAnyValue header, DefaultAnyValue param, String[][] params) {
+        for (String[] kv : HEADERS) {
+            header.addValue(new String(kv[0].toCharArray()), kv[1]);
+        }
+        for (String[] kv : params) {
+            param.addValue(kv[0], kv[1]);
+        }
+    }
+
+    private static String lookup(org.redkale.util.AnyValue header, org.redkale.util.AnyValue param) {
+        StringBuilder sb = new StringBuilder();
+        for (String name : LOOKUPS) {
+            sb.append(header.getValue(name)).append(';');
+        }
+        sb.append(param.getValue("param3")).append(';').append(param.getValue("param14")).append(';').append(param.getIntValue("param7", 0));
+        return sb.toString();
+    }
+
+    //计时用的查找， 不拼接字符串
+    private static int probe(org.redkale.util.AnyValue header, org.redkale.util.AnyValue param) {
+        int rs = 0;
+        for (String name : LOOKUPS) {
+            String v = header.getValue(name);
+            if (v != null) rs += v.length();
+        }
+        return rs + param.getValue("param3").length() + param.getValue("param14").length() + param.getIntValue("param7", 0);
+    }
+
+    private static void check(String title, Object rs, Object expect) {
+        System.out.println((Objects.equals(rs, expect) ? "OK    " : "ERROR ") + title + " = " + rs);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.source;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+import javax.persistence.Id;
+import javax.sql.*;
+
+/**
+ * DataDefaultSource的*Async方法测试: 在DataSource线程池中执行、 SQL异常时以异常结束、 等待队列满或关闭后返回以RejectedExecutionException结束的CompletableFuture <br>
+ * 数据库连接使用内存中的模拟实现
+ *
+ * @author zhangjx
+ */
+public class DataSourceAsyncTest {
+
+    //executeQuery执行的线程名
+    private static final List<String> threads = new CopyOnWriteArrayList<>();
+
+    private static volatile CountDownLatch blocker;
+
+    private static volatile boolean failing;
+
+    public static void main(String[] args) throws Exception {
+        final Properties prop = new Properties();
+        prop.setProperty(DataDefaultSource.JDBC_SOURCE, FakePoolDataSource.class.getName());
+        prop.setProperty(DataDefaultSource.JDBC_URL, "jdbc:fake://127.0.0.1/test");
+        prop.setProperty(DataDefaultSource.JDBC_USER, "root");
+        prop.setProperty(DataDefaultSource.JDBC_PWD, "");
+        prop.setProperty(DataDefaultSource.JDBC_CONNECTIONSMAX, "1");
+        prop.setProperty(DataDefaultSource.JDBC_ASYNC_QUEUESIZE, "1");
+        final DataDefaultSource source = new DataDefaultSource("async", prop, prop);
+
+        final String caller = Thread.currentThread().getName();
+        Object rs = source.findAsync(AsyncRecord.class, 1).get(3, TimeUnit.SECONDS);
+        List<AsyncRecord> list = source.queryListAsync(AsyncRecord.class, null, new Flipper(10), FilterNode.create("name", "a")).get(3, TimeUnit.SECONDS);
+        boolean ok = rs == null && list.isEmpty() && threads.size() == 2 && threads.stream().allMatch(n -> n.startsWith("DataSource-async-read-Thread-"));
+        System.out.println((ok ? "OK    " : "ERROR ") + "查询在DataSource线程池中执行, threads = " + threads + ", caller = " + caller);
+
+        int c = source.updateAsync(new AsyncRecord(1, "a"), new AsyncRecord(2, "b")).get(3, TimeUnit.SECONDS);
+        int d = source.deleteAsync(new AsyncRecord(3, "c")).get(3, TimeUnit.SECONDS);
+        System.out.println((c == 2 && d == 1 ? "OK    " : "ERROR ") + "updateAsync = " + c + ", deleteAsync = " + d);
+
+        failing = true;
+        CompletableFuture<AsyncRecord> future = source.findAsync(AsyncRecord.class, 1);
+        Throwable cause = null;
+        try {
+            future.get(3, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            cause = e.getCause();
+        }
+        failing = false;
+        System.out.println((cause != null && cause.getCause() instanceof SQLException ? "OK    " : "ERROR ") + "SQL异常时以异常结束, cause = " + cause);
+
+        //1个线程 + 长度为1的等待队列， 第3个请求被拒绝
+        blocker = new CountDownLatch(1);
+        final int executed = threads.size();
+        final CompletableFuture<AsyncRecord> f1 = source.findAsync(AsyncRecord.class, 1);
+        while (threads.size() == executed) { //等f1被线程取走后再提交
+            Thread.sleep(1);
+        }
+        final CompletableFuture<AsyncRecord> f2 = source.findAsync(AsyncRecord.class, 2);
+        CompletableFuture<AsyncRecord> f3 = null;
+        Throwable thrown = null;
+        try {
+            f3 = source.findAsync(AsyncRecord.class, 3);
+        } catch (Throwable t) {
+            thrown = t;
+        }
+        ok = thrown == null && f3 != null && f3.isCompletedExceptionally() && !f1.isDone() && !f2.isDone();
+        System.out.println((ok ? "OK    " : "ERROR ") + "等待队列满时返回异常结束的CompletableFuture, thrown = " + thrown + ", f3 = " + rejectCause(f3));
+        blocker.countDown();
+        blocker = null;
+        f1.get(3, TimeUnit.SECONDS);
+        f2.get(3, TimeUnit.SECONDS);
+        System.out.println((f1.isDone() && !f1.isCompletedExceptionally() && !f2.isCompletedExceptionally() ? "OK    " : "ERROR ") + "排队中的请求正常完成");
+
+        source.close();
+        CompletableFuture<Integer> closed = source.updateAsync(new AsyncRecord(1, "a"));
+        System.out.println((closed.isCompletedExceptionally() ? "OK    " : "ERROR ") + "关闭后返回异常结束的CompletableFuture, " + rejectCause(closed));
+    }
+
+    private static Throwable rejectCause(CompletableFuture future) {
+        if (future == null) return null;
+        try {
+            future.getNow(null);
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause() instanceof RejectedExecutionException ? e.getCause() : e;
+        }
+    }
+
+    private static Object defaultValue(Class type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == float.class) return 0f;
+        if (type == double.class) return 0d;
+        return null;
+    }
+
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, handler);
+    }
+
+    private static PreparedStatement createStatement() {
+        final int[] batchs = new int[1];
+        return proxy(PreparedStatement.class, (p, method, margs) -> {
+            switch (method.getName()) {
+                case "executeQuery":
+                    threads.add(Thread.currentThread().getName());
+                    final CountDownLatch latch = blocker;
+                    if (latch != null) latch.await();
+                    if (failing) throw new SQLException("mock error", "42000");
+                    return proxy(ResultSet.class, (p2, m2, a2) -> defaultValue(m2.getReturnType()));
+                case "executeUpdate":
+                    return 1;
+                case "addBatch":
+                    batchs[0]++;
+                    return null;
+                case "executeBatch":
+                    int[] rs = new int[batchs[0]];
+                    Arrays.fill(rs, 1);
+                    batchs[0] = 0;
+                    return rs;
+            }
+            return defaultValue(method.getReturnType());
+        });
+    }
+
+    public static class FakePoolDataSource implements ConnectionPoolDataSource {
+
+        public void setUrl(String url) {
+        }
+
+        public void setUser(String user) {
+        }
+
+        public void setPassword(String password) {
+        }
+
+        @Override
+        public PooledConnection getPooledConnection() throws SQLException {
+            final Connection conn = proxy(Connection.class, (p, method, margs) -> {
+                switch (method.getName()) {
+                    case "prepareStatement":
+                        return createStatement();
+                    case "isValid":
+                    case "getAutoCommit":
+                        return true;
+                }
+                return defaultValue(method.getReturnType());
+            });
+            return proxy(PooledConnection.class, (p, method, margs) -> method.getName().equals("getConnection") ? conn : defaultValue(method.getReturnType()));
+        }
+
+        @Override
+        public PooledConnection getPooledConnection(String user, String password) throws SQLException {
+            return getPooledConnection();
+        }
+
+        @Override
+        public PrintWriter getLogWriter() throws SQLException {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) throws SQLException {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) throws SQLException {
+        }
+
+        @Override
+        public int getLoginTimeout() throws SQLException {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+    public static class AsyncRecord {
+
+        @Id
+        private int id;
+
+        private String name;
+
+        public AsyncRecord() {
+        }
+
+        public AsyncRecord(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
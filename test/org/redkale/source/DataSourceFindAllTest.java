@@ -0,0 +1,130 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.source;
+
+import java.io.Serializable;
+import java.util.*;
+import javax.persistence.Id;
+import org.redkale.util.SelectColumn;
+
+/**
+ * DataDefaultSource.findAll/findMap的测试: 结果顺序与主键顺序一致、 null和不存在的主键、 重复的主键只查询一次、 IN参数个数超过8个时按2的幂补齐、 超过256个主键时分批查询、
+ * 分表时按表分组且分表不存在时跳过 <br>
+ * 数据库连接使用MemoryPoolDataSource
+ *
+ * @author zhangjx
+ */
+public class DataSourceFindAllTest {
+
+    public static void main(String[] args) throws Exception {
+        final Properties prop = new Properties();
+        prop.setProperty(DataDefaultSource.JDBC_SOURCE, MemoryPoolDataSource.class.getName());
+        prop.setProperty(DataDefaultSource.JDBC_URL, "jdbc:memory://127.0.0.1/test");
+        prop.setProperty(DataDefaultSource.JDBC_USER, "root");
+        prop.setProperty(DataDefaultSource.JDBC_PWD, "");
+        final DataDefaultSource source = new DataDefaultSource("findall", prop, prop);
+        MemoryPoolDataSource.createTable("findrecord", "id", "name");
+        for (int i = 1; i <= 300; i++) {
+            MemoryPoolDataSource.insertRow("findrecord", i, "n" + i);
+        }
+
+        MemoryPoolDataSource.reset();
+        List<FindRecord> list = source.findAll(FindRecord.class, 3, null, 999, 1, 3);
+        boolean ok = list.size() == 5 && idOf(list.get(0)) == 3 && list.get(1) == null && list.get(2) == null && idOf(list.get(3)) == 1 && idOf(list.get(4)) == 3
+            && MemoryPoolDataSource.sqls.size() == 1 && MemoryPoolDataSource.sqls.get(0).endsWith(" IN (?,?,?)");
+        System.out.println((ok ? "OK    " : "ERROR ") + "findAll按主键顺序返回, null与不存在的主键对应null: " + list + ", sql = " + MemoryPoolDataSource.sqls);
+
+        Map<Integer, FindRecord> map = source.findMap(FindRecord.class, 5, null, 998, 2, 5);
+        ok = new ArrayList<>(map.keySet()).equals(Arrays.asList(5, 2)) && map.get(5).getName().equals("n5") && map.get(2).getName().equals("n2");
+        System.out.println((ok ? "OK    " : "ERROR ") + "findMap按主键顺序, 不含null与不存在的主键: " + map);
+
+        MemoryPoolDataSource.reset();
+        list = source.findAll(FindRecord.class, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        ok = list.size() == 10 && idOf(list.get(9)) == 10 && MemoryPoolDataSource.sqls.get(0).split("\\?").length - 1 == 16;
+        System.out.println((ok ? "OK    " : "ERROR ") + "10个主键补齐为16个IN参数: " + MemoryPoolDataSource.sqls);
+
+        list = source.findAll(FindRecord.class, SelectColumn.createIncludes("name"), 7);
+        System.out.println((list.size() == 1 && list.get(0).getId() == 0 && "n7".equals(list.get(0).getName()) ? "OK    " : "ERROR ") + "findAll只读取SelectColumn的字段: " + list);
+
+        list = source.findAll(FindRecord.class);
+        map = source.findMap(FindRecord.class, (Serializable) null);
+        System.out.println((list.isEmpty() && map.isEmpty() ? "OK    " : "ERROR ") + "没有主键时返回空集合");
+
+        MemoryPoolDataSource.reset();
+        final Integer[] ids = new Integer[300];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ids.length - i;
+        }
+        list = source.findAll(FindRecord.class, (Serializable[]) ids);
+        ok = list.size() == ids.length && MemoryPoolDataSource.sqls.size() == 2;
+        for (int i = 0; ok && i < ids.length; i++) {
+            ok = idOf(list.get(i)) == ids[i];
+        }
+        System.out.println((ok ? "OK    " : "ERROR ") + "300个主键分 " + MemoryPoolDataSource.sqls.size() + " 次查询");
+
+        //分表: 只有findshardrecord_1存在
+        MemoryPoolDataSource.createTable("findshardrecord", "id", "name");
+        MemoryPoolDataSource.createTable("findshardrecord_1", "id", "name");
+        MemoryPoolDataSource.insertRow("findshardrecord_1", 1, "s1");
+        MemoryPoolDataSource.insertRow("findshardrecord_1", 3, "s3");
+        MemoryPoolDataSource.reset();
+        List<FindShardRecord> slist = source.findAll(FindShardRecord.class, 1, 2, 3, 4);
+        ok = slist.size() == 4 && slist.get(0).getId() == 1 && slist.get(1) == null && slist.get(2).getId() == 3 && slist.get(3) == null
+            && MemoryPoolDataSource.sqls.size() == 2 && MemoryPoolDataSource.sqls.get(0).contains(" findshardrecord_1 ") && MemoryPoolDataSource.sqls.get(1).contains(" findshardrecord_0 ");
+        System.out.println((ok ? "OK    " : "ERROR ") + "分表按表分组查询, 分表不存在时跳过: " + slist + ", sql = " + MemoryPoolDataSource.sqls);
+        source.close();
+    }
+
+    private static int idOf(FindRecord record) {
+        return record == null ? -1 : record.getId();
+    }
+
+    public static class FindRecord {
+
+        @Id
+        private int id;
+
+        private String name;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return "{id:" + id + ", name:" + name + "}";
+        }
+    }
+
+    @DistributeTable(strategy = FindShardRecord.TableStrategy.class)
+    public static class FindShardRecord extends FindRecord {
+
+        public static class TableStrategy implements DistributeTableStrategy<FindShardRecord> {
+
+            @Override
+            public String getTable(String table, Serializable primary) {
+                return table + "_" + ((Integer) primary % 2);
+            }
+
+            @Override
+            public String getTable(String table, FindShardRecord bean) {
+                return getTable(table, bean.getId());
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.source;
+
+import java.util.*;
+import javax.persistence.*;
+
+/**
+ * DataDefaultSource.forEach的测试: 使用只进游标逐行读取、 虚拟表只遍历缓存不访问数据库、 @Cacheable实体的全量加载使用forEach且加载后遍历缓存 <br>
+ * 数据库连接使用MemoryPoolDataSource
+ *
+ * @author zhangjx
+ */
+public class DataSourceForEachTest {
+
+    public static void main(String[] args) throws Exception {
+        final Properties prop = new Properties();
+        prop.setProperty(DataDefaultSource.JDBC_SOURCE, MemoryPoolDataSource.class.getName());
+        prop.setProperty(DataDefaultSource.JDBC_URL, "jdbc:memory://127.0.0.1/test");
+        prop.setProperty(DataDefaultSource.JDBC_USER, "root");
+        prop.setProperty(DataDefaultSource.JDBC_PWD, "");
+        final DataDefaultSource source = new DataDefaultSource("foreach", prop, prop);
+        MemoryPoolDataSource.createTable("streamrecord", "id", "name");
+        MemoryPoolDataSource.createTable("cachedrecord", "id", "name");
+        for (int i = 1; i <= 1000; i++) {
+            MemoryPoolDataSource.insertRow("streamrecord", i, "s" + i);
+            MemoryPoolDataSource.insertRow("cachedrecord", i, "c" + i);
+        }
+
+        MemoryPoolDataSource.reset();
+        final List<StreamRecord> list = new ArrayList<>();
+        source.forEach(StreamRecord.class, (FilterNode) null, list::add);
+        boolean ok = list.size() == 1000 && list.get(0).getId() == 1 && list.get(999).getId() == 1000 && "s1000".equals(list.get(999).getName())
+            && MemoryPoolDataSource.streams.get() == 1 && MemoryPoolDataSource.sqls.equals(Arrays.asList("SELECT a.* FROM streamrecord a"));
+        System.out.println((ok ? "OK    " : "ERROR ") + "forEach使用只进游标逐行读取 " + list.size() + " 条记录, sql = " + MemoryPoolDataSource.sqls);
+
+        //虚拟表
+        MemoryPoolDataSource.reset();
+        source.insert(new VirtualRecord(1, "a"), new VirtualRecord(2, "b"), new VirtualRecord(3, "a"));
+        final List<VirtualRecord> vlist = new ArrayList<>();
+        source.forEach(VirtualRecord.class, FilterNode.create("name", "a"), vlist::add);
+        ok = vlist.size() == 2 && vlist.get(0).getId() == 1 && vlist.get(1).getId() == 3;
+        vlist.clear();
+        source.forEach(VirtualRecord.class, (FilterNode) null, vlist::add);
+        ok = ok && vlist.size() == 3 && MemoryPoolDataSource.sqls.isEmpty();
+        System.out.println((ok ? "OK    " : "ERROR ") + "虚拟表只遍历缓存, sql = " + MemoryPoolDataSource.sqls);
+
+        //@Cacheable实体在第一次使用时全量加载
+        MemoryPoolDataSource.reset();
+        final CachedRecord one = source.find(CachedRecord.class, 2);
+        ok = one != null && "c2".equals(one.getName()) && MemoryPoolDataSource.streams.get() == 1
+            && MemoryPoolDataSource.sqls.equals(Arrays.asList("SELECT a.* FROM cachedrecord a"));
+        System.out.println((ok ? "OK    " : "ERROR ") + "@Cacheable实体使用forEach全量加载, sql = " + MemoryPoolDataSource.sqls);
+        final List<CachedRecord> clist = new ArrayList<>();
+        source.forEach(CachedRecord.class, FilterNode.create("id", FilterExpress.GREATERTHAN, 995), clist::add);
+        ok = clist.size() == 5 && MemoryPoolDataSource.sqls.size() == 1 && MemoryPoolDataSource.streams.get() == 1;
+        System.out.println((ok ? "OK    " : "ERROR ") + "加载后forEach遍历缓存, 记录数 = " + clist.size());
+        source.close();
+    }
+
+    public static class StreamRecord {
+
+        @Id
+        private int id;
+
+        private String name;
+
+        public StreamRecord() {
+        }
+
+        public StreamRecord(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    @Cacheable
+    public static class CachedRecord extends StreamRecord {
+    }
+
+    @VirtualEntity
+    public static class VirtualRecord extends StreamRecord {
+
+        public VirtualRecord() {
+        }
+
+        public VirtualRecord(int id, String name) {
+            super(id, name);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.source;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Supplier;
+import javax.persistence.Id;
+
+/**
+ * DataDefaultSource.insert的测试: 按批次大小分块executeBatch、 多行INSERT语句的格式、 分表按表分组写入、 分表不存在时按模板表建表后重试、
+ * 没有分表策略时表不存在直接抛出异常 <br>
+ * 数据库连接使用MemoryPoolDataSource
+ *
+ * @author zhangjx
+ */
+public class DataSourceInsertTest {
+
+    public static void main(String[] args) throws Exception {
+        final Properties prop = new Properties();
+        prop.setProperty(DataDefaultSource.JDBC_SOURCE, MemoryPoolDataSource.class.getName());
+        prop.setProperty(DataDefaultSource.JDBC_URL, "jdbc:memory://127.0.0.1/test");
+        prop.setProperty(DataDefaultSource.JDBC_USER, "root");
+        prop.setProperty(DataDefaultSource.JDBC_PWD, "");
+        prop.setProperty(DataDefaultSource.JDBC_BATCH_SIZE, "2");
+        final DataDefaultSource source = new DataDefaultSource("insert", prop, prop);
+        MemoryPoolDataSource.createTable("batchrecord", "id", "name");
+        MemoryPoolDataSource.createTable("shardrecord", "id", "name");
+
+        MemoryPoolDataSource.reset();
+        source.insert(records(BatchRecord::new, 1, 2, 3, 4, 5));
+        boolean ok = MemoryPoolDataSource.batchs.equals(Arrays.asList(2, 2, 1)) && ids("batchrecord").equals(Arrays.asList(1, 2, 3, 4, 5));
+        System.out.println((ok ? "OK    " : "ERROR ") + "按批次大小分块, batchs = " + MemoryPoolDataSource.batchs + ", ids = " + ids("batchrecord"));
+
+        final EntityInfo<BatchRecord> info = EntityInfo.load(BatchRecord.class, 0, false, prop, source, null);
+        final String sql = info.getInsertSQL("batchrecord", 3);
+        System.out.println(("INSERT INTO batchrecord(id,name) VALUES(?,?),(?,?),(?,?)".equals(sql) && info.getInsertSQL("batchrecord", 1).equals(info.getInsertSQL(new BatchRecord()))
+            ? "OK    " : "ERROR ") + "多行INSERT: " + sql);
+
+        //分表: 只有模板表存在
+        MemoryPoolDataSource.reset();
+        source.insert(records(ShardRecord::new, 1, 2, 3, 4, 5));
+        ok = MemoryPoolDataSource.sqls.contains("CREATE TABLE shardrecord_1 LIKE shardrecord") && MemoryPoolDataSource.sqls.contains("CREATE TABLE shardrecord_0 LIKE shardrecord")
+            && MemoryPoolDataSource.batchs.equals(Arrays.asList(2, 1, 2)) && ids("shardrecord_1").equals(Arrays.asList(1, 3, 5)) && ids("shardrecord_0").equals(Arrays.asList(2, 4))
+            && ids("shardrecord").isEmpty();
+        System.out.println((ok ? "OK    " : "ERROR ") + "分表不存在时建表后重试, batchs = " + MemoryPoolDataSource.batchs + ", shardrecord_1 = " + ids("shardrecord_1") + ", shardrecord_0 = " + ids("shardrecord_0"));
+
+        MemoryPoolDataSource.reset();
+        source.insert(records(ShardRecord::new, 6, 7));
+        ok = MemoryPoolDataSource.batchs.equals(Arrays.asList(1, 1)) && MemoryPoolDataSource.sqls.stream().noneMatch(s -> s.startsWith("CREATE "))
+            && ids("shardrecord_0").equals(Arrays.asList(2, 4, 6)) && ids("shardrecord_1").equals(Arrays.asList(1, 3, 5, 7));
+        System.out.println((ok ? "OK    " : "ERROR ") + "分表已存在时不再建表, sql = " + MemoryPoolDataSource.sqls);
+
+        MemoryPoolDataSource.reset();
+        Throwable error = null;
+        try {
+            source.insert(records(MissingRecord::new, 1));
+        } catch (RuntimeException e) {
+            error = e.getCause();
+        }
+        ok = error instanceof SQLException && "42S02".equals(((SQLException) error).getSQLState())
+            && MemoryPoolDataSource.sqls.stream().noneMatch(s -> s.startsWith("CREATE "));
+        System.out.println((ok ? "OK    " : "ERROR ") + "没有分表策略时表不存在抛出异常: " + error);
+        source.close();
+    }
+
+    private static <T extends BatchRecord> T[] records(Supplier<T> creator, int... ids) {
+        final List<T> list = new ArrayList<>();
+        for (int id : ids) {
+            T record = creator.get();
+            record.setId(id);
+            record.setName("n" + id);
+            list.add(record);
+        }
+        return list.toArray((T[]) java.lang.reflect.Array.newInstance(list.get(0).getClass(), list.size()));
+    }
+
+    private static List<Integer> ids(String table) {
+        final List<Integer> list = new ArrayList<>();
+        for (Object[] row : MemoryPoolDataSource.rows(table)) {
+            list.add((Integer) row[0]);
+        }
+        return list;
+    }
+
+    public static class BatchRecord {
+
+        @Id
+        private int id;
+
+        private String name;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    public static class MissingRecord extends BatchRecord {
+    }
+
+    @DistributeTable(strategy = ShardRecord.TableStrategy.class)
+    public static class ShardRecord extends BatchRecord {
+
+        public static class TableStrategy implements DistributeTableStrategy<ShardRecord> {
+
+            @Override
+            public String getTable(String table, Serializable primary) {
+                return table + "_" + ((Integer) primary % 2);
+            }
+
+            @Override
+            public String getTable(String table, ShardRecord bean) {
+                return getTable(table, bean.getId());
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.source;
+
+import java.io.Serializable;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import org.redkale.source.FilterNodeTest.CarTestTable;
+import org.redkale.util.*;
+
+/**
+ * EntityInfo.getValue按列下标读取与原先按列名getObject读取的结果对比与每秒行数对比， ResultSet使用内存中的模拟实现
+ *
+ * @author zhangjx
+ */
+public class EntityRowMapperTest {
+
+    private static final String[] LABELS = {"carid", "cartype", "userid", "username", "cartitle"};
+
+    public static void main(String[] args) throws Exception {
+        final EntityInfo<CarTestTable> info = EntityInfo.load(CarTestTable.class, 0, false, new Properties(), null, (s, t) -> CarTestTable.createList());
+        final int count = 20_0000;
+        final Object[][] rows = new Object[count][];
+        for (int i = 0; i < count; i++) {
+            rows[i] = new Object[]{70000L + i, 100 + i % 50, 1000000 + i, i % 7 == 0 ? null : ("用户" + i), "车型" + (i % 20)};
+        }
+
+        List<CarTestTable> list1 = readOld(info, null, createResultSet(rows));
+        List<CarTestTable> list2 = readNew(info, null, createResultSet(rows));
+        System.out.println((list1.toString().equals(list2.toString()) ? "OK    " : "ERROR ") + "全部字段 " + list2.get(1));
+        SelectColumn sels = SelectColumn.createIncludes("carid", "username");
+        list1 = readOld(info, sels, createResultSet(rows));
+        list2 = readNew(info, sels, createResultSet(rows));
+        System.out.println((list1.toString().equals(list2.toString()) ? "OK    " : "ERROR ") + "部分字段 " + list2.get(1));
+
+        for (int k = 0; k < 3; k++) { //预热后取最后一次
+            long s = System.nanoTime();
+            readOld(info, null, createResultSet(rows));
+            long e1 = System.nanoTime() - s;
+            s = System.nanoTime();
+            readNew(info, null, createResultSet(rows));
+            long e2 = System.nanoTime() - s;
+            if (k == 2) System.out.println(count + " rows, 按列名getObject: " + count * 1000_000_000L / e1 + " rows/s, 按列下标: " + count * 1000_000_000L / e2 + " rows/s");
+        }
+    }
+
+    private static List<CarTestTable> readNew(EntityInfo<CarTestTable> info, SelectColumn sels, ResultSet set) throws SQLException {
+        final List<CarTestTable> list = new ArrayList<>();
+        final int[] indexes = info.getColumnIndexes(sels, set);
+        while (set.next()) {
+            list.add(info.getValue(indexes, set));
+        }
+        return list;
+    }
+
+    //原先EntityInfo.getValue的实现： 每行每个字段按列名getObject， 再按字段类型转换后装箱赋值
+    private static List<CarTestTable> readOld(EntityInfo<CarTestTable> info, SelectColumn sels, ResultSet set) throws SQLException {
+        final List<CarTestTable> list = new ArrayList<>();
+        while (set.next()) {
+            CarTestTable obj = info.getCreator().create();
+            for (String field : LABELS) {
+                Attribute<CarTestTable, Serializable> attr = info.getAttribute(field);
+                if (sels == null || sels.test(attr.field())) {
+                    Serializable o = (Serializable) set.getObject(info.getSQLColumn(null, attr.field()));
+                    final Class t = attr.type();
+                    if (t.isPrimitive()) {
+                        if (o != null) {
+                            if (t == int.class) {
+                                o = ((Number) o).intValue();
+                            } else if (t == long.class) {
+                                o = ((Number) o).longValue();
+                            }
+                        } else if (t == int.class) {
+                            o = 0;
+                        } else if (t == long.class) {
+                            o = 0L;
+                        }
+                    }
+                    attr.set(obj, o);
+                }
+            }
+            list.add(obj);
+        }
+        return list;
+    }
+
+    private static ResultSet createResultSet(final Object[][] rows) {
+        final Map<String, Integer> labels = new HashMap<>();
+        for (int i = 0; i < LABELS.length; i++) {
+            labels.put(LABELS[i], i + 1);
+        }
+        final ResultSetMetaData meta = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+            if (method.getName().equals("getColumnCount")) return LABELS.length;
+            if (method.getName().equals("getColumnLabel")) return LABELS[(Integer) args[0] - 1];
+            throw new UnsupportedOperationException(method.getName());
+        });
+        final int[] cursor = {-1};
+        final boolean[] wasNull = {false};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class[]{ResultSet.class}, (proxy, method, args) -> {
+            final String name = method.getName();
+            if (name.equals("next")) return ++cursor[0] < rows.length;
+            if (name.equals("getMetaData")) return meta;
+            if (name.equals("wasNull")) return wasNull[0];
+            //与多数驱动一样按列名查找时不区分大小写
+            if (name.equals("findColumn")) return labels.get(((String) args[0]).toLowerCase());
+            final Object v = rows[cursor[0]][(args[0] instanceof String ? labels.get(((String) args[0]).toLowerCase()) : (Integer) args[0]) - 1];
+            wasNull[0] = v == null;
+            switch (name) {
+                case "getObject":
+                    return v;
+                case "getString":
+                    return v == null ? null : v.toString();
+                case "getInt":
+                    return v == null ? 0 : ((Number) v).intValue();
+                case "getLong":
+                    return v == null ? 0L : ((Number) v).longValue();
+                case "getDouble":
+                    return v == null ? 0.0 : ((Number) v).doubleValue();
+            }
+            throw new UnsupportedOperationException(name);
+        });
+    }
+}
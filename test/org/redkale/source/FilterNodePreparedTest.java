@@ -0,0 +1,166 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.source;
+
+import static org.redkale.source.FilterExpress.*;
+import java.lang.reflect.Proxy;
+import java.math.*;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import javax.persistence.Id;
+import org.redkale.source.FilterNodeTest.CarTestTable;
+
+/**
+ * FilterNode参数化SQL、SQL结构缓存键与PreparedStatement缓存的测试
+ *
+ * @author zhangjx
+ */
+public class FilterNodePreparedTest {
+
+    public static void main(String[] args) throws Exception {
+        final Properties props = new Properties();
+        final EntityInfo<CarTestTable> info = EntityInfo.load(CarTestTable.class, 0, false, props, null, (s, t) -> CarTestTable.createList());
+
+        FilterNode node = FilterNode.create("carid", GREATERTHAN, 70002L).and("username", LIKE, "用户1").and("cartype", IN, new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10});
+        List<Object> params = new ArrayList<>();
+        CharSequence where = node.createSQLExpress(info, null, params);
+        System.out.println("where = " + where);
+        System.out.println("params = " + params);
+        check("占位符与参数个数一致", count(where, '?') == params.size());
+        check("IN参数补齐到16个", params.size() == 2 + 16 && params.get(params.size() - 1).equals(10));
+        check("LIKE参数", params.contains("%用户1%"));
+        check("字面SQL不变", node.createSQLExpress(info, null).toString().contains("70002"));
+
+        //值不同但结构相同的FilterNode得到相同的结构键与参数
+        FilterNode node2 = FilterNode.create("carid", GREATERTHAN, 80003L).and("username", LIKE, "用户2").and("cartype", IN, new int[]{11, 12, 13, 14, 15, 16, 17, 18, 19});
+        List<Object> shape1 = new ArrayList<>(), shape2 = new ArrayList<>(), shapeParams1 = new ArrayList<>(), shapeParams2 = new ArrayList<>();
+        node.putSQLShape(info, shape1, shapeParams1);
+        node2.putSQLShape(info, shape2, shapeParams2);
+        check("结构键相同", shape1.equals(shape2));
+        check("结构参数与SQL参数一致", shapeParams1.equals(params));
+        List<Object> params2 = new ArrayList<>();
+        check("SQL相同", where.toString().equals(node2.createSQLExpress(info, null, params2).toString()) && params2.equals(shapeParams2));
+
+        FilterNode node3 = FilterNode.create("carid", GREATERTHAN, 70002L).or("username", LIKE, "用户1");
+        List<Object> shape3 = new ArrayList<>();
+        node3.putSQLShape(info, shape3, new ArrayList<>());
+        check("AND与OR结构键不同", !shape1.equals(shape3));
+
+        //enum等非JDBC类型的参数转成字符串或数值， 不能直接交给setObject
+        final EntityInfo<CarStatusTable> statusInfo = EntityInfo.load(CarStatusTable.class, 0, true, props, null, null);
+        FilterNode statusNode = FilterNode.create("status", EQUAL, CarStatus.SOLD).and("status", IN, new CarStatus[]{CarStatus.NORMAL, CarStatus.SOLD});
+        List<Object> statusParams = new ArrayList<>();
+        CharSequence statusWhere = statusNode.createSQLExpress(statusInfo, null, statusParams);
+        System.out.println("where = " + statusWhere);
+        System.out.println("params = " + statusParams);
+        check("enum参数转成name", statusParams.equals(Arrays.asList("SOLD", "NORMAL", "SOLD")) && statusWhere.toString().contains("IN (?,?)"));
+        List<Object> statusShapeParams = new ArrayList<>();
+        statusNode.putSQLShape(statusInfo, new ArrayList<>(), statusShapeParams);
+        check("enum结构参数与SQL参数一致", statusShapeParams.equals(statusParams));
+        check("BigInteger转成BigDecimal", FilterNode.formatToParamValue(BigInteger.TEN).equals(BigDecimal.TEN));
+        check("AtomicLong转成BigDecimal", FilterNode.formatToParamValue(new AtomicLong(5)).equals(BigDecimal.valueOf(5)));
+        check("java.util.Date转成Timestamp", FilterNode.formatToParamValue(new Date(1000)).equals(new java.sql.Timestamp(1000)));
+        check("Character转成String", "c".equals(FilterNode.formatToParamValue('c')));
+        check("JDBC类型不变", FilterNode.formatToParamValue(7L).equals(7L) && FilterNode.formatToParamValue(true).equals(true));
+
+        //PreparedStatement缓存按LRU淘汰并关闭
+        final AtomicInteger closed = new AtomicInteger();
+        JDBCPoolSource.PreparedCache cache = new JDBCPoolSource.PreparedCache(null, null, 2);
+        for (int i = 0; i < 3; i++) {
+            cache.put("sql" + i, (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class[]{PreparedStatement.class}, (proxy, method, margs) -> {
+                if (method.getName().equals("close")) closed.incrementAndGet();
+                return null;
+            }));
+            if (i == 1) cache.get("sql0");
+        }
+        check("淘汰最久未使用的PreparedStatement", cache.size() == 2 && cache.containsKey("sql0") && !cache.containsKey("sql1") && closed.get() == 1);
+        cache.clear();
+        check("清空时关闭全部PreparedStatement", closed.get() == 3);
+
+        //执行出错(未调用release)的PreparedStatement在归还连接时移除， 未提交的事务回滚
+        final List<String> calls = new ArrayList<>();
+        final boolean[] autoCommit = {true};
+        final Connection conn = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class}, (proxy, method, margs) -> {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return newStatement(calls, (String) margs[0]);
+                case "getAutoCommit":
+                    return autoCommit[0];
+                case "setAutoCommit":
+                    autoCommit[0] = (Boolean) margs[0];
+                    break;
+            }
+            calls.add(method.getName());
+            return null;
+        });
+        cache = new JDBCPoolSource.PreparedCache(null, conn, 8);
+        PreparedStatement ok1 = cache.prepare("select 1");
+        cache.release(ok1);
+        PreparedStatement bad = cache.prepare("select 2"); //模拟executeQuery抛出SQLException， 没有release
+        autoCommit[0] = false;
+        cache.reset();
+        check("出错的PreparedStatement被移除并关闭", cache.containsKey("select 1") && !cache.containsKey("select 2") && calls.contains("close:select 2") && !calls.contains("close:select 1"));
+        check("归还时回滚未提交的事务", calls.contains("rollback") && autoCommit[0] && calls.contains("clearWarnings"));
+        check("正常释放的PreparedStatement被复用", cache.prepare("select 1") == ok1 && cache.prepare("select 2") != bad);
+    }
+
+    private static PreparedStatement newStatement(List<String> calls, String sql) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class[]{PreparedStatement.class}, (proxy, method, margs) -> {
+            calls.add(method.getName() + ":" + sql);
+            return method.getReturnType() == boolean.class ? false : null;
+        });
+    }
+
+    public static enum CarStatus {
+        NORMAL, SOLD;
+    }
+
+    public static class CarStatusTable {
+
+        @Id
+        private long carid;
+
+        private CarStatus status;
+
+        public CarStatusTable() {
+        }
+
+        public CarStatusTable(long carid, CarStatus status) {
+            this.carid = carid;
+            this.status = status;
+        }
+
+        public long getCarid() {
+            return carid;
+        }
+
+        public void setCarid(long carid) {
+            this.carid = carid;
+        }
+
+        public CarStatus getStatus() {
+            return status;
+        }
+
+        public void setStatus(CarStatus status) {
+            this.status = status;
+        }
+    }
+
+    private static int count(CharSequence cs, char ch) {
+        int c = 0;
+        for (int i = 0; i < cs.length(); i++) {
+            if (cs.charAt(i) == ch) c++;
+        }
+        return c;
+    }
+
+    private static void check(String title, boolean ok) {
+        System.out.println((ok ? "OK    " : "ERROR ") + title);
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.source;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.regex.*;
+import javax.sql.*;
+
+/**
+ * DataDefaultSource测试用的内存数据库， 只支持以下几种SQL: <br>
+ * INSERT INTO t(...) VALUES(...)[,(...)]、 SELECT * FROM t WHERE pk IN (...)、 SELECT a.* FROM t a(忽略WHERE条件)、 CREATE TABLE t2 LIKE t <br>
+ * 表不存在时抛出SQLState为42S02的SQLException; 执行过的SQL、 每次executeBatch的行数、 只进游标的查询次数记录在静态字段中供测试检查
+ *
+ * @author zhangjx
+ */
+public class MemoryPoolDataSource implements ConnectionPoolDataSource {
+
+    private static final Pattern INSERT_PATTERN = Pattern.compile("^INSERT INTO (\\S+)\\((.+?)\\) VALUES");
+
+    private static final Pattern FINDALL_PATTERN = Pattern.compile("^SELECT \\* FROM (\\S+) WHERE (\\S+) IN \\(");
+
+    private static final Pattern FOREACH_PATTERN = Pattern.compile("^SELECT a\\.\\* FROM (\\S+) a");
+
+    private static final Pattern CREATE_PATTERN = Pattern.compile("^CREATE TABLE (\\S+) LIKE (\\S+)$");
+
+    //执行过的SQL
+    public static final List<String> sqls = new CopyOnWriteArrayList<>();
+
+    //每次executeBatch的行数
+    public static final List<Integer> batchs = new CopyOnWriteArrayList<>();
+
+    //只进游标的查询次数
+    public static final AtomicInteger streams = new AtomicInteger();
+
+    private static final Map<String, MemoryTable> tables = new ConcurrentHashMap<>();
+
+    public static void reset() {
+        sqls.clear();
+        batchs.clear();
+        streams.set(0);
+    }
+
+    public static void createTable(String table, String... columns) {
+        tables.put(table, new MemoryTable(columns));
+    }
+
+    public static void insertRow(String table, Object... row) {
+        tables.get(table).rows.add(row);
+    }
+
+    //表中的记录， 表不存在返回null
+    public static List<Object[]> rows(String table) {
+        MemoryTable t = tables.get(table);
+        return t == null ? null : t.rows;
+    }
+
+    private static MemoryTable table(String table) throws SQLException {
+        MemoryTable t = tables.get(table);
+        if (t == null) throw new SQLException("Table '" + table + "' doesn't exist", "42S02");
+        return t;
+    }
+
+    private static int execute(String sql, Map<Integer, Object> params) throws SQLException {
+        sqls.add(sql);
+        Matcher m = INSERT_PATTERN.matcher(sql);
+        if (!m.find()) return 0;
+        final MemoryTable t = table(m.group(1));
+        final String[] columns = m.group(2).split(",");
+        final int rows = params.size() / columns.length;
+        for (int r = 0; r < rows; r++) {
+            final Object[] row = new Object[t.columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                row[t.index(columns[i])] = params.get(r * columns.length + i + 1);
+            }
+            t.rows.add(row);
+        }
+        return rows;
+    }
+
+    private static ResultSet query(String sql, Map<Integer, Object> params) throws SQLException {
+        sqls.add(sql);
+        Matcher m = FINDALL_PATTERN.matcher(sql);
+        if (m.find()) {
+            final MemoryTable t = table(m.group(1));
+            final int index = t.index(m.group(2));
+            final Set<String> keys = new HashSet<>();
+            for (Object v : params.values()) {
+                keys.add(String.valueOf(v));
+            }
+            final List<Object[]> list = new ArrayList<>();
+            for (Object[] row : t.rows) {
+                if (keys.contains(String.valueOf(row[index]))) list.add(row);
+            }
+            return createResultSet(t.columns, list);
+        }
+        m = FOREACH_PATTERN.matcher(sql);
+        if (m.find()) {
+            final MemoryTable t = table(m.group(1));
+            return createResultSet(t.columns, new ArrayList<>(t.rows));
+        }
+        return createResultSet(new String[0], new ArrayList<>());
+    }
+
+    private static ResultSet createResultSet(final String[] labels, final List<Object[]> rows) {
+        final ResultSetMetaData meta = proxy(ResultSetMetaData.class, (p, method, args) -> {
+            if (method.getName().equals("getColumnCount")) return labels.length;
+            if (method.getName().equals("getColumnLabel")) return labels[(Integer) args[0] - 1];
+            throw new UnsupportedOperationException(method.getName());
+        });
+        final int[] cursor = {-1};
+        final boolean[] wasNull = {false};
+        return proxy(ResultSet.class, (p, method, args) -> {
+            final String name = method.getName();
+            if (name.equals("next")) return ++cursor[0] < rows.size();
+            if (name.equals("getMetaData")) return meta;
+            if (name.equals("wasNull")) return wasNull[0];
+            if (name.equals("close")) return null;
+            if (name.equals("findColumn")) return Arrays.asList(labels).indexOf(((String) args[0]).toLowerCase()) + 1;
+            final Object v = rows.get(cursor[0])[(Integer) args[0] - 1];
+            wasNull[0] = v == null;
+            switch (name) {
+                case "getObject":
+                    return v;
+                case "getString":
+                    return v == null ? null : v.toString();
+                case "getInt":
+                    return v == null ? 0 : ((Number) v).intValue();
+                case "getLong":
+                    return v == null ? 0L : ((Number) v).longValue();
+                case "getDouble":
+                    return v == null ? 0.0 : ((Number) v).doubleValue();
+            }
+            throw new UnsupportedOperationException(name);
+        });
+    }
+
+    private static PreparedStatement createPreparedStatement(final String sql) {
+        final Map<Integer, Object> params = new HashMap<>();
+        final List<Map<Integer, Object>> batch = new ArrayList<>();
+        return proxy(PreparedStatement.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "setObject":
+                    params.put((Integer) args[0], args[1]);
+                    return null;
+                case "clearParameters":
+                    params.clear();
+                    return null;
+                case "addBatch":
+                    batch.add(new HashMap<>(params));
+                    return null;
+                case "executeBatch":
+                    final int[] rs = new int[batch.size()];
+                    for (int i = 0; i < rs.length; i++) {
+                        rs[i] = execute(sql, batch.get(i));
+                    }
+                    batchs.add(rs.length);
+                    batch.clear();
+                    return rs;
+                case "executeUpdate":
+                    return execute(sql, params);
+                case "executeQuery":
+                    return query(sql, params);
+            }
+            return defaultValue(method.getReturnType());
+        });
+    }
+
+    private static Statement createStatement() {
+        return proxy(Statement.class, (p, method, args) -> {
+            if (method.getName().equals("execute")) {
+                final String sql = (String) args[0];
+                sqls.add(sql);
+                final Matcher m = CREATE_PATTERN.matcher(sql);
+                if (m.find()) tables.putIfAbsent(m.group(1), new MemoryTable(table(m.group(2)).columns));
+                return false;
+            }
+            if (method.getName().equals("executeQuery")) return query((String) args[0], new HashMap<>());
+            return defaultValue(method.getReturnType());
+        });
+    }
+
+    private static Object defaultValue(Class type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == float.class) return 0f;
+        if (type == double.class) return 0d;
+        return null;
+    }
+
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, handler);
+    }
+
+    public void setUrl(String url) {
+    }
+
+    public void setUser(String user) {
+    }
+
+    public void setPassword(String password) {
+    }
+
+    @Override
+    public PooledConnection getPooledConnection() throws SQLException {
+        final Connection conn = proxy(Connection.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    if (args.length == 3 && ((Integer) args[1]) == ResultSet.TYPE_FORWARD_ONLY) streams.incrementAndGet();
+                    return createPreparedStatement((String) args[0]);
+                case "createStatement":
+                    return createStatement();
+                case "isValid":
+                case "getAutoCommit":
+                    return true;
+            }
+            return defaultValue(method.getReturnType());
+        });
+        return proxy(PooledConnection.class, (p, method, args) -> method.getName().equals("getConnection") ? conn : defaultValue(method.getReturnType()));
+    }
+
+    @Override
+    public PooledConnection getPooledConnection(String user, String password) throws SQLException {
+        return getPooledConnection();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    private static class MemoryTable {
+
+        private final String[] columns;
+
+        private final List<Object[]> rows = new CopyOnWriteArrayList<>();
+
+        public MemoryTable(String[] columns) {
+            this.columns = columns;
+        }
+
+        public int index(String column) {
+            return Arrays.asList(columns).indexOf(column.trim().toLowerCase());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.test.convert;
+
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Supplier;
+import org.redkale.convert.json.*;
+
+/**
+ * JsonBytesWriter与JsonWriter输出结果的一致性测试， 以及与原先convertTo方式的性能对比: <br>
+ * 1、convertTo(value).getBytes: char[]输出成String再编码成UTF-8; <br>
+ * 2、JsonByteBufferWriter: 逐个char编码写入ByteBuffer(原HttpResponse.finishJson的方式); <br>
+ * 3、convertToBytes: JsonBytesWriter直接输出UTF-8字节; <br>
+ * 4、convertTo(supplier, value): JsonBytesWriter的byte[]写满后整块复制到ByteBuffer(现HttpResponse.finishJson的方式)。
+ *
+ * @author zhangjx
+ */
+public class JsonBytesWriterTest {
+
+    private static final JsonConvert convert = JsonConvert.root();
+
+    //模拟连接的ByteBuffer池
+    private static final ByteBuffer[] pool = new ByteBuffer[32];
+
+    private static int polled;
+
+    private static final Supplier<ByteBuffer> supplier = () -> {
+        ByteBuffer buffer = pool[polled++];
+        buffer.clear();
+        return buffer;
+    };
+
+    public static void main(String[] args) throws Exception {
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = ByteBuffer.allocateDirect(16 * 1024 + 16);
+        }
+        final SimpleChildEntity child = SimpleChildEntity.create();
+        final ConvertRecord record = ConvertRecord.createDefault();
+        check("SimpleChildEntity", SimpleChildEntity.class, child);
+        check("SimpleEntity", SimpleEntity.class, child);
+        check("ConvertRecord", ConvertRecord.class, record);
+        final ConvertRecord unicode = ConvertRecord.createDefault();
+        unicode.setAname("中文\t\\名称\r\n\"引号\" é 😀 end");
+        unicode.setDesc("描述");
+        unicode.setLongs(new long[]{Long.MIN_VALUE, Long.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE + 1L, 0, -1, 9, 10, 99999, 100000});
+        unicode.setIntegers(new int[]{Integer.MIN_VALUE, Integer.MAX_VALUE, 0, -1, 65535, 65536, -65536, 999999999, 1000000000});
+        check("Unicode/数字边界", ConvertRecord.class, unicode);
+        final List<ConvertRecord> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ConvertRecord r = ConvertRecord.createDefault();
+            r.setId(i);
+            list.add(r);
+        }
+        final Type listType = new org.redkale.util.TypeToken<List<ConvertRecord>>() {
+        }.getType();
+        check("List<ConvertRecord>(多个ByteBuffer)", listType, list);
+        check("List<ConvertRecord>(空)", listType, new ArrayList<>());
+        check("List<ConvertRecord>(3个)", listType, list.subList(0, 3));
+        final List<String> strings = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) { //多字节字符与转义字符落在byte[]与ByteBuffer的边界上
+            strings.add(i % 3 == 0 ? ("中文" + i + "\"\t😀") : ("s" + i));
+        }
+        final Type stringsType = new org.redkale.util.TypeToken<List<String>>() {
+        }.getType();
+        check("List<String>(中文/转义/代理对)", stringsType, strings);
+        final List<Integer> ints = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            ints.add(i % 2 == 0 ? i * 100003 : -i);
+        }
+        final Type intsType = new org.redkale.util.TypeToken<List<Integer>>() {
+        }.getType();
+        check("List<Integer>x20000", intsType, ints);
+        polled = 0;
+        ByteBuffer[] rs = convert.convertTo(supplier, list);
+        System.out.println((Arrays.equals(toBytes(rs), convert.convertTo(list).getBytes(StandardCharsets.UTF_8)) ? "OK    " : "ERROR ") + "convertTo(supplier, value)不指定类型, ByteBuffer: " + rs.length);
+
+        //设置bufferSupplier后byte[]不随内容增长， count与toString包含已复制到ByteBuffer的内容
+        polled = 0;
+        JsonBytesWriter writer = convert.pollJsonBytesWriter().bufferSupplier(supplier);
+        convert.convertTo(writer, stringsType, strings);
+        final String expect = convert.convertTo(stringsType, strings);
+        final int count = writer.count();
+        final boolean ok = writer.toString().equals(expect) && count == expect.getBytes(StandardCharsets.UTF_8).length && polled > 1;
+        rs = writer.toBuffers();
+        convert.offerJsonBytesWriter(writer);
+        System.out.println((ok && toBytes(rs).length == count ? "OK    " : "ERROR ") + "bufferSupplier的count/toString, count = " + count + ", ByteBuffer: " + polled);
+
+        System.out.println("------------------------------ 性能对比 ------------------------------");
+        for (int k = 0; k < 3; k++) {
+            final boolean print = k == 2; //前两轮为预热
+            bench(print, "SimpleChildEntity", SimpleChildEntity.class, child, 500_000);
+            bench(print, "ConvertRecord", ConvertRecord.class, record, 500_000);
+            bench(print, "List<ConvertRecord>x1000", listType, list, 500);
+            bench(print, "List<String>x5000", stringsType, strings, 500);
+        }
+    }
+
+    private static void check(String title, Type type, Object value) {
+        final byte[] expect = convert.convertTo(type, value).getBytes(StandardCharsets.UTF_8);
+        final byte[] bytes = convert.convertToBytes(type, value);
+        polled = 0;
+        final byte[] buffers = toBytes(convert.convertTo(supplier, type, value));
+        final boolean ok = Arrays.equals(expect, bytes) && Arrays.equals(expect, buffers);
+        System.out.println((ok ? "OK    " : "ERROR ") + title + ", 长度: " + bytes.length + ", ByteBuffer: " + polled
+            + (ok ? "" : "\r\n\t" + new String(expect, StandardCharsets.UTF_8) + "\r\n\t" + new String(bytes, StandardCharsets.UTF_8)));
+    }
+
+    private static void bench(boolean print, String title, Type type, Object value, int count) {
+        long s = System.nanoTime();
+        long len = 0;
+        for (int i = 0; i < count; i++) {
+            len += convert.convertTo(type, value).getBytes(StandardCharsets.UTF_8).length;
+        }
+        long e1 = System.nanoTime() - s;
+        s = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            polled = 0;
+            JsonByteBufferWriter writer = convert.pollJsonWriter(supplier);
+            convert.convertTo(writer, type, value);
+            len += writer.toBuffers().length;
+        }
+        long e2 = System.nanoTime() - s;
+        s = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            len += convert.convertToBytes(type, value).length;
+        }
+        long e3 = System.nanoTime() - s;
+        s = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            polled = 0;
+            len += convert.convertTo(supplier, type, value).length;
+        }
+        long e4 = System.nanoTime() - s;
+        if (!print || len == 0) return;
+        System.out.println(title + ":");
+        System.out.println(String.format("    convertTo(String).getBytes : %8.1f ns/op", e1 * 1.0 / count));
+        System.out.println(String.format("    JsonByteBufferWriter       : %8.1f ns/op", e2 * 1.0 / count));
+        System.out.println(String.format("    convertToBytes             : %8.1f ns/op", e3 * 1.0 / count));
+        System.out.println(String.format("    convertTo(supplier)        : %8.1f ns/op", e4 * 1.0 / count));
+    }
+
+    private static byte[] toBytes(ByteBuffer[] buffers) {
+        int len = 0;
+        for (ByteBuffer buffer : buffers) {
+            len += buffer.remaining();
+        }
+        byte[] bs = new byte[len];
+        int pos = 0;
+        for (ByteBuffer buffer : buffers) {
+            int n = buffer.remaining();
+            buffer.duplicate().get(bs, pos, n);
+            pos += n;
+        }
+        return bs;
+    }
+}
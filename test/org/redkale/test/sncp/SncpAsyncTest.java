@@ -0,0 +1,145 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.test.sncp;
+
+import java.net.*;
+import java.nio.channels.CompletionHandler;
+import java.util.*;
+import java.util.concurrent.*;
+import org.redkale.convert.bson.*;
+import org.redkale.convert.json.*;
+import org.redkale.net.Transport;
+import org.redkale.net.sncp.*;
+import org.redkale.util.*;
+import org.redkale.watch.WatchFactory;
+
+/**
+ * 异步SNCP方法的往返测试: 返回CompletableFuture的方法、含CompletionHandler参数的方法在普通连接和多路复用连接上的调用结果， <br>
+ * 以及多路复用连接上慢请求不阻塞后续请求、响应回调中的耗时操作不阻塞后续响应、多路复用连接随所属Transport关闭。
+ *
+ * @author zhangjx
+ */
+public class SncpAsyncTest {
+
+    public static void main(String[] args) throws Throwable {
+        ResourceFactory.root().register("", BsonConvert.class, BsonFactory.root().getConvert());
+        ResourceFactory.root().register("", JsonConvert.class, JsonFactory.root().getConvert());
+        final int port;
+        try (ServerSocket ss = new ServerSocket(0)) {
+            port = ss.getLocalPort();
+        }
+        final InetSocketAddress addr = new InetSocketAddress("127.0.0.1", port);
+        SncpServer server = new SncpServer();
+        SncpAsyncTestService local = Sncp.createLocalService("", null, ResourceFactory.root(), SncpAsyncTestService.class, addr, null, null);
+        server.addSncpServlet(new ServiceWrapper(local, "", "", new HashSet<>(), null));
+        server.init(AnyValue.create().addValue("host", "127.0.0.1").addValue("port", "" + port));
+        server.start();
+
+        run("普通连接", addr, 0);
+        final Transport first = run("多路复用连接", addr, 1);
+        final Transport second = run("多路复用连接(multiplex=2)", addr, 2);
+
+        //多路复用连接属于各自的Transport, 关闭一个Transport不影响另一个
+        final SncpAsyncTestService firstService = Sncp.createRemoteService("", null, SncpAsyncTestService.class, null, first);
+        ResourceFactory.root().inject(firstService);
+        final CompletableFuture<String> pending = firstService.queryFuture("pending", 2000);
+        Thread.sleep(100);
+        first.close();
+        boolean closed = false;
+        try {
+            pending.get(1, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            closed = true;
+        }
+        System.out.println((closed ? "OK    " : "ERROR ") + "Transport关闭时多路复用连接一并关闭, 等待中的请求立即失败");
+        final SncpAsyncTestService service = Sncp.createRemoteService("", null, SncpAsyncTestService.class, null, second);
+        ResourceFactory.root().inject(service);
+        String rs = service.queryFuture("e", 10).get(3, TimeUnit.SECONDS);
+        System.out.println(("future: e".equals(rs) ? "OK    " : "ERROR ") + "关闭其他Transport后多路复用连接仍可用, 结果: " + rs);
+        server.shutdown();
+        System.exit(0);
+    }
+
+    private static Transport run(String title, InetSocketAddress addr, int multiplex) throws Throwable {
+        final Transport transport = new Transport("", WatchFactory.root(), "", SncpTest.newBufferPool(), SncpTest.newChannelGroup(), null, Arrays.asList(addr));
+        transport.setMultiplex(multiplex);
+        final SncpAsyncTestService service = Sncp.createRemoteService("", null, SncpAsyncTestService.class, null, transport);
+        ResourceFactory.root().inject(service);
+        System.out.println("------------------------------ " + title + " ------------------------------");
+
+        String rs = service.echo("a");
+        System.out.println(("echo: a".equals(rs) ? "OK    " : "ERROR ") + "同步方法, 结果: " + rs);
+
+        rs = service.queryFuture("b", 10).get(3, TimeUnit.SECONDS);
+        System.out.println(("future: b".equals(rs) ? "OK    " : "ERROR ") + "CompletableFuture方法, 结果: " + rs);
+
+        final CompletableFuture<String> handlerResult = new CompletableFuture<>();
+        service.queryHandler(10L, new CompletionHandler<String, Void>() {
+            @Override
+            public void completed(String result, Void attachment) {
+                handlerResult.complete(result);
+            }
+
+            @Override
+            public void failed(Throwable exc, Void attachment) {
+                handlerResult.completeExceptionally(exc);
+            }
+        }, "c", 3);
+        rs = handlerResult.get(3, TimeUnit.SECONDS);
+        System.out.println(("handler: c x 3".equals(rs) ? "OK    " : "ERROR ") + "CompletionHandler方法, 结果: " + rs);
+
+        boolean failed = false;
+        try {
+            service.failFuture("d").get(3, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            failed = true;
+        }
+        System.out.println((failed ? "OK    " : "ERROR ") + "CompletableFuture异常结束");
+
+        //先发慢请求再发快请求， 多路复用时两者在同一连接上
+        final CompletableFuture<String> slow = service.queryFuture("slow", 1000);
+        final long start = System.currentTimeMillis();
+        rs = service.queryFuture("fast", 10).get(3, TimeUnit.SECONDS);
+        final long cost = System.currentTimeMillis() - start;
+        System.out.println(("future: fast".equals(rs) && !slow.isDone() && cost < 800 ? "OK    " : "ERROR ") + "慢请求不阻塞后续请求, 耗时: " + cost + "ms");
+        System.out.println(("future: slow".equals(slow.get(3, TimeUnit.SECONDS)) ? "OK    " : "ERROR ") + "慢请求结果");
+        boolean ok;
+
+        if (multiplex > 0) {
+            //响应回调阻塞时读取循环仍在继续
+            final CountDownLatch latch = new CountDownLatch(1);
+            final CompletableFuture<String> blocked = service.queryFuture("blocked", 100).thenApply(r -> {
+                try {
+                    latch.await(3, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                }
+                return r;
+            });
+            Thread.sleep(200);
+            String next = null;
+            try {
+                next = service.queryFuture("next", 10).get(2, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+            }
+            latch.countDown();
+            ok = "future: next".equals(next) && "future: blocked".equals(blocked.get(3, TimeUnit.SECONDS));
+            System.out.println((ok ? "OK    " : "ERROR ") + "响应回调阻塞时不影响同一连接上的后续响应, 结果: " + next);
+        }
+
+        final List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(service.queryFuture("n" + i, i % 20));
+        }
+        ok = true;
+        for (int i = 0; i < futures.size(); i++) {
+            if (!("future: n" + i).equals(futures.get(i).get(5, TimeUnit.SECONDS))) ok = false;
+        }
+        System.out.println((ok ? "OK    " : "ERROR ") + "200个并发的异步请求");
+        final int inflight = transport.getRemoteNodes()[0].getInflight();
+        System.out.println((inflight == 0 ? "OK    " : "ERROR ") + "请求结束后节点的进行中请求数归零, inflight = " + inflight);
+        return transport;
+    }
+}
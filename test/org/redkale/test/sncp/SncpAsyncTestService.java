@@ -0,0 +1,46 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.test.sncp;
+
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.*;
+import org.redkale.service.*;
+
+/**
+ * SncpAsyncTest使用的Service， 包含同步方法、返回CompletableFuture的方法和含CompletionHandler参数的方法
+ *
+ * @author zhangjx
+ */
+@RpcTimeout(5000)
+public class SncpAsyncTestService implements Service {
+
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(2, (Runnable r) -> {
+        Thread t = new Thread(r, "SncpAsyncTestService-Timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public String echo(String name) {
+        return "echo: " + name;
+    }
+
+    public CompletableFuture<String> queryFuture(String name, long delay) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        timer.schedule(() -> future.complete("future: " + name), delay, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    //CompletionHandler放在中间， long参数之后， 用于检查生成的action方法中的局部变量位置
+    public void queryHandler(long delay, CompletionHandler<String, Void> handler, String name, int times) {
+        timer.schedule(() -> handler.completed("handler: " + name + " x " + times, null), delay, TimeUnit.MILLISECONDS);
+    }
+
+    public CompletableFuture<Integer> failFuture(String name) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        timer.schedule(() -> future.completeExceptionally(new RuntimeException("fail: " + name)), 10, TimeUnit.MILLISECONDS);
+        return future;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.test.sncp;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import org.redkale.convert.bson.*;
+import org.redkale.net.sncp.*;
+import static org.redkale.net.sncp.SncpRequest.HEADER_SIZE;
+import org.redkale.util.*;
+
+/**
+ * 错误响应(无效serviceid等)只输出header的测试: 同一连接上连续发送多个错误请求， 每个响应都必须是完整且只有header的帧， 否则后续响应会错位。
+ *
+ * @author zhangjx
+ */
+public class SncpErrorResponseTest {
+
+    public static void main(String[] args) throws Throwable {
+        ResourceFactory.root().register("", BsonConvert.class, BsonFactory.root().getConvert());
+        final int port;
+        try (ServerSocket ss = new ServerSocket(0)) {
+            port = ss.getLocalPort();
+        }
+        final InetSocketAddress addr = new InetSocketAddress("127.0.0.1", port);
+        SncpServer server = new SncpServer();
+        SncpAsyncTestService local = Sncp.createLocalService("", null, ResourceFactory.root(), SncpAsyncTestService.class, addr, null, null);
+        server.addSncpServlet(new ServiceWrapper(local, "", "", new HashSet<>(), null));
+        server.init(AnyValue.create().addValue("host", "127.0.0.1").addValue("port", "" + port));
+        server.start();
+
+        run("普通连接", port, 0);
+        run("多路复用连接", port, SncpRequest.FLAG_MULTIPLEX);
+        server.shutdown();
+        System.exit(0);
+    }
+
+    private static void run(String title, int port, int flags) throws Throwable {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setSoTimeout(5_000);
+            final OutputStream out = socket.getOutputStream();
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            boolean ok = true;
+            for (int i = 1; i <= 3; i++) {
+                out.write(createHeader(i, flags));
+                out.flush();
+                byte[] bs = new byte[HEADER_SIZE];
+                in.readFully(bs);
+                ByteBuffer header = ByteBuffer.wrap(bs);
+                long seqid = header.getLong();
+                int bodylength = header.getInt(52);
+                int retcode = header.getInt(56);
+                if (seqid != i || bodylength != 0 || retcode != SncpResponse.RETCODE_ILLSERVICEID) {
+                    ok = false;
+                    System.out.println("ERROR 第" + i + "个响应: seqid = " + seqid + ", bodylength = " + bodylength + ", retcode = " + retcode);
+                    break;
+                }
+            }
+            System.out.println((ok ? "OK    " : "ERROR ") + title + "上连续的错误响应只有header");
+        }
+    }
+
+    //serviceid为0的请求， 服务端返回RETCODE_ILLSERVICEID
+    private static byte[] createHeader(long seqid, int flags) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        buffer.putLong(seqid);
+        buffer.putChar((char) HEADER_SIZE);
+        DLong.write(buffer, DLong.ZERO); //serviceid
+        buffer.putInt(0); //serviceversion
+        DLong.write(buffer, DLong.ZERO); //actionid
+        buffer.put(new byte[6]); //地址
+        buffer.putInt(0); //body长度
+        buffer.putInt(flags);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.test.source;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+import org.redkale.source.*;
+import org.redkale.test.source.TestSourceCacheIndex.PlainEntity;
+import org.redkale.util.Attribute;
+
+/**
+ * 对比EntityCache聚合结果与Stream装箱方式的结果与耗时
+ *
+ * @author zhangjx
+ */
+public class TestSourceCacheAggregate {
+
+    public static void main(String[] args) throws Exception {
+        Method method = EntityInfo.class.getDeclaredMethod("load", Class.class, int.class, boolean.class, Properties.class,
+            DataSource.class, BiFunction.class);
+        method.setAccessible(true);
+        final BiFunction<DataSource, Class, List> fullloader = (s, t) -> null;
+        final EntityInfo<PlainEntity> info = (EntityInfo<PlainEntity>) method.invoke(null, PlainEntity.class, 0, true, new Properties(), null, fullloader);
+        final EntityCache<PlainEntity> cache = new EntityCache<>(info);
+        final List<PlainEntity> list = new ArrayList<>();
+        final Random random = new Random(1);
+        final int count = 100_0000;
+        for (int i = 1; i <= count; i++) {
+            PlainEntity bean = new PlainEntity(i, random.nextInt(1000), "user" + i + "@redkale.org", 1_000_000L + random.nextInt(count));
+            cache.insert(bean);
+            list.add(bean);
+        }
+        final FilterNode node = FilterNode.create("groupid", FilterExpress.LESSTHAN, 500);
+        final Predicate<PlainEntity> filter = x -> x.getGroupid() < 500;
+        check("SUM createtime", cache.getNumberResult(FilterFunc.SUM, 0, "createtime", null), list.stream().mapToLong(x -> x.getCreatetime()).sum());
+        check("MAX createtime", cache.getNumberResult(FilterFunc.MAX, 0, "createtime", node), list.stream().filter(filter).mapToLong(x -> x.getCreatetime()).max().getAsLong());
+        check("MIN groupid", cache.getNumberResult(FilterFunc.MIN, 0, "groupid", null), list.stream().mapToInt(x -> x.getGroupid()).min().getAsInt());
+        check("AVG groupid", cache.getNumberResult(FilterFunc.AVG, 0, "groupid", node), (int) list.stream().filter(filter).mapToInt(x -> x.getGroupid()).average().getAsDouble());
+        check("COUNT", cache.getNumberResult(FilterFunc.COUNT, 0, null, node), list.stream().filter(filter).count());
+
+        Map<Serializable, Number> counts = cache.queryColumnMap("groupid", FilterFunc.COUNT, null, node);
+        check("queryColumnMap COUNT", counts, list.stream().filter(filter).collect(Collectors.groupingBy(x -> (Serializable) x.getGroupid(), LinkedHashMap::new, Collectors.counting())));
+        Map<Serializable, Number> sums = cache.queryColumnMap("groupid", FilterFunc.SUM, "createtime", null);
+        check("queryColumnMap SUM", sums, list.stream().collect(Collectors.groupingBy(x -> (Serializable) x.getGroupid(), LinkedHashMap::new, Collectors.summingLong(x -> x.getCreatetime()))));
+        Map<Serializable, Number> maxs = cache.queryColumnMap("groupid", FilterFunc.MAX, "createtime", null);
+        Map<Serializable, Number> maxs2 = new LinkedHashMap<>();
+        list.forEach(x -> maxs2.merge(x.getGroupid(), x.getCreatetime(), (a, b) -> Math.max(a.longValue(), b.longValue())));
+        check("queryColumnMap MAX", maxs, maxs2);
+        final FilterFuncColumn[] funcColumns = {FilterFuncColumn.create(FilterFunc.COUNT, null),
+            FilterFuncColumn.create(FilterFunc.SUM, "createtime"), FilterFuncColumn.create(FilterFunc.MAX, "createtime")};
+        Map<Serializable, Number[]> multi = cache.queryColumnMap("groupid", funcColumns, null);
+        boolean same = multi.size() == sums.size();
+        for (Map.Entry<Serializable, Number[]> en : multi.entrySet()) {
+            if (!en.getValue()[1].equals(sums.get(en.getKey())) || !en.getValue()[2].equals(maxs.get(en.getKey()))) same = false;
+        }
+        System.out.println((same ? "OK    " : "ERROR ") + "queryColumnMap " + Arrays.toString(funcColumns));
+
+        final int times = 10;
+        long s = System.nanoTime();
+        for (int i = 0; i < times; i++) {
+            cache.getNumberResult(FilterFunc.SUM, 0, "createtime", null);
+        }
+        long e1 = System.nanoTime() - s;
+        s = System.nanoTime();
+        for (int i = 0; i < times; i++) {
+            list.stream().mapToLong(x -> (Long) info.getAttribute("createtime").get(x)).sum();
+        }
+        long e2 = System.nanoTime() - s;
+        System.out.println("SUM createtime, cache: " + e1 / times / 1000 + "us, stream: " + e2 / times / 1000 + "us");
+        s = System.nanoTime();
+        for (int i = 0; i < times; i++) {
+            cache.queryColumnMap("groupid", funcColumns, null);
+        }
+        e1 = System.nanoTime() - s;
+        s = System.nanoTime();
+        for (int i = 0; i < times; i++) {
+            final Attribute<PlainEntity, Serializable> key = info.getAttribute("groupid");
+            final Attribute<PlainEntity, Serializable> val = info.getAttribute("createtime");
+            list.stream().collect(Collectors.groupingBy(x -> key.get(x), LinkedHashMap::new, Collectors.counting()));
+            list.stream().collect(Collectors.groupingBy(x -> key.get(x), LinkedHashMap::new, Collectors.summingLong(x -> ((Number) val.get(x)).longValue())));
+            list.stream().collect(Collectors.groupingBy(x -> key.get(x), LinkedHashMap::new, Collectors.maxBy((a, b) -> ((Comparable) val.get(a)).compareTo(val.get(b)))));
+        }
+        e2 = System.nanoTime() - s;
+        System.out.println("COUNT, SUM, MAX group by groupid, cache: " + e1 / times / 1000 + "us, stream: " + e2 / times / 1000 + "us");
+    }
+
+    private static void check(String title, Object rs, Object expect) {
+        System.out.println((Objects.equals(String.valueOf(rs), String.valueOf(expect)) ? "OK    " : "ERROR ") + title + (rs instanceof Map ? (", groups = " + ((Map) rs).size()) : (" = " + rs)));
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.test.source;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.function.BiFunction;
+import javax.persistence.*;
+import org.redkale.convert.json.JsonConvert;
+import org.redkale.source.*;
+import org.redkale.util.Sheet;
+
+/**
+ * 对比有二级索引和无索引的EntityCache查询结果与耗时
+ *
+ * @author zhangjx
+ */
+public class TestSourceCacheIndex {
+
+    public static void main(String[] args) throws Exception {
+        final int count = 20_0000;
+        final EntityCache<IndexEntity> indexed = createCache(IndexEntity.class);
+        final EntityCache<PlainEntity> plain = createCache(PlainEntity.class);
+        final Random random = new Random(1);
+        for (int i = 1; i <= count; i++) {
+            int groupid = random.nextInt(1000);
+            String email = "user" + i + "@redkale.org";
+            long createtime = 1_000_000L + random.nextInt(count * 10);
+            indexed.insert(new IndexEntity(i, groupid, email, createtime));
+            plain.insert(new PlainEntity(i, groupid, email, createtime));
+        }
+        final int[] groups = new int[500];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = i;
+        }
+        final FilterNode[] nodes = new FilterNode[]{
+            FilterNode.create("groupid", 10),
+            FilterNode.create("groupid", FilterExpress.IN, new int[]{1, 2, 3}),
+            FilterNode.create("email", "user99@redkale.org"),
+            FilterNode.create("createtime", FilterExpress.GREATERTHAN, 1_000_000L + count * 10 - 5000),
+            FilterNode.create("createtime", FilterExpress.BETWEEN, new Range.LongRange(2_000_000L, 2_010_000L)),
+            FilterNode.create("groupid", 10).and("createtime", FilterExpress.LESSTHAN, 2_000_000L),
+            FilterNode.create("groupid", 10).or("groupid", 20),
+            FilterNode.create("groupid", 10).or("userid", FilterExpress.LESSTHAN, 100),
+            FilterNode.create("groupid", FilterExpress.IN, new int[]{1, 2, 2, 3}),
+            //候选数之和超过记录数的1/4， 直接遍历
+            FilterNode.create("createtime", FilterExpress.GREATERTHAN, 1_000_000L + count * 5).or("groupid", FilterExpress.IN, groups)
+        };
+        final Flipper flipper = new Flipper(10, 20, "createtime DESC, userid ASC");
+        for (FilterNode node : nodes) {
+            Sheet<IndexEntity> rs1 = indexed.querySheet(null, flipper, node);
+            Sheet<PlainEntity> rs2 = plain.querySheet(null, flipper, node);
+            long s = System.nanoTime();
+            for (int i = 0; i < 20; i++) indexed.querySheet(null, flipper, node);
+            long e1 = System.nanoTime() - s;
+            s = System.nanoTime();
+            for (int i = 0; i < 20; i++) plain.querySheet(null, flipper, node);
+            long e2 = System.nanoTime() - s;
+            boolean same = rs1.getTotal() == rs2.getTotal() && rs1.toString().equals(rs2.toString());
+            System.out.println((same ? "OK    " : "ERROR ") + node + " total=" + rs1.getTotal() + ", index: " + e1 / 20_000 + "us, scan: " + e2 / 20_000 + "us");
+        }
+        //无过滤条件时按有序索引排序
+        Flipper sortFlipper = new Flipper(10, 1000, "createtime ASC");
+        long s = System.nanoTime();
+        Sheet<IndexEntity> rs1 = indexed.querySheet(false, null, sortFlipper, null);
+        long e1 = System.nanoTime() - s;
+        s = System.nanoTime();
+        Sheet<PlainEntity> rs2 = plain.querySheet(false, null, sortFlipper, null);
+        long e2 = System.nanoTime() - s;
+        //createtime相同的记录顺序不确定， 只比较排序字段
+        boolean same = Arrays.equals(rs1.stream().mapToLong(x -> x.getCreatetime()).toArray(), rs2.stream().mapToLong(x -> x.getCreatetime()).toArray());
+        System.out.println((same ? "OK    " : "ERROR ") + "sort createtime ASC, index: " + e1 / 1000 + "us, scan: " + e2 / 1000 + "us");
+        //更新、删除后索引同步
+        IndexEntity bean = new IndexEntity(99, 777, "changed@redkale.org", 1L);
+        indexed.update(bean);
+        System.out.println((indexed.exists(FilterNode.create("email", "changed@redkale.org")) && !indexed.exists(FilterNode.create("email", "user99@redkale.org")) ? "OK    " : "ERROR ") + "update");
+        indexed.delete(99);
+        System.out.println((!indexed.exists(FilterNode.create("email", "changed@redkale.org")) ? "OK    " : "ERROR ") + "delete");
+
+        //direct的虚拟表返回真实引用， 调用方直接修改索引字段后仍能查到
+        final EntityCache<DirectIndexEntity> direct = createCache(DirectIndexEntity.class);
+        for (int i = 1; i <= 100; i++) {
+            direct.insert(new DirectIndexEntity(i, i % 10, i));
+        }
+        direct.find(5).setGroupid(77);
+        direct.find(6).setCreatetime(5000);
+        boolean found = direct.exists(FilterNode.create("groupid", 77)) && !direct.exists(FilterNode.create("groupid", 5).and("userid", 5))
+            && direct.querySheet(null, new Flipper(10), FilterNode.create("groupid", FilterExpress.IN, new int[]{77, 1})).getTotal() == 11
+            && direct.querySheet(false, null, new Flipper(1, 0, "createtime DESC"), null).list().get(0).getUserid() == 6;
+        System.out.println((found ? "OK    " : "ERROR ") + "direct虚拟表修改真实引用的索引字段");
+    }
+
+    private static <T> EntityCache<T> createCache(Class<T> clazz) throws Exception {
+        final BiFunction<DataSource, Class, List> fullloader = (s, t) -> null;
+        Method method = EntityInfo.class.getDeclaredMethod("load", Class.class, int.class, boolean.class, Properties.class,
+            DataSource.class, BiFunction.class);
+        method.setAccessible(true);
+        final EntityInfo<T> info = (EntityInfo<T>) method.invoke(null, clazz, 0, true, new Properties(), null, fullloader);
+        return new EntityCache<>(info);
+    }
+
+    @Table(indexes = {@Index(columnList = "createtime")}, uniqueConstraints = {@UniqueConstraint(columnNames = {"email"})})
+    public static class IndexEntity extends PlainEntity {
+
+        @CacheIndex
+        private int groupid;
+
+        public IndexEntity() {
+        }
+
+        public IndexEntity(int userid, int groupid, String email, long createtime) {
+            super(userid, groupid, email, createtime);
+            this.groupid = groupid;
+        }
+
+        @Override
+        public int getGroupid() {
+            return groupid;
+        }
+
+        @Override
+        public void setGroupid(int groupid) {
+            this.groupid = groupid;
+        }
+    }
+
+    @VirtualEntity(direct = true)
+    @Table(indexes = {@Index(columnList = "createtime")})
+    public static class DirectIndexEntity extends PlainEntity {
+
+        @CacheIndex
+        private int groupid;
+
+        public DirectIndexEntity() {
+        }
+
+        public DirectIndexEntity(int userid, int groupid, long createtime) {
+            super(userid, groupid, "user" + userid, createtime);
+            this.groupid = groupid;
+        }
+
+        @Override
+        public int getGroupid() {
+            return groupid;
+        }
+
+        @Override
+        public void setGroupid(int groupid) {
+            this.groupid = groupid;
+        }
+    }
+
+    public static class PlainEntity {
+
+        @Id
+        private int userid;
+
+        private int groupid;
+
+        private String email;
+
+        private long createtime;
+
+        public PlainEntity() {
+        }
+
+        public PlainEntity(int userid, int groupid, String email, long createtime) {
+            this.userid = userid;
+            this.groupid = groupid;
+            this.email = email;
+            this.createtime = createtime;
+        }
+
+        public int getUserid() {
+            return userid;
+        }
+
+        public void setUserid(int userid) {
+            this.userid = userid;
+        }
+
+        public int getGroupid() {
+            return groupid;
+        }
+
+        public void setGroupid(int groupid) {
+            this.groupid = groupid;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+
+        public long getCreatetime() {
+            return createtime;
+        }
+
+        public void setCreatetime(long createtime) {
+            this.createtime = createtime;
+        }
+
+        @Override
+        public String toString() {
+            return JsonConvert.root().convertTo(this);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.test.source;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+import org.redkale.source.*;
+import org.redkale.test.source.TestSourceCacheIndex.PlainEntity;
+import org.redkale.util.Sheet;
+
+/**
+ * 对比EntityCache.querySheet的有界堆收集与 先count再sorted/skip/limit 的Stream方式的结果与耗时
+ *
+ * @author zhangjx
+ */
+public class TestSourceCacheSheet {
+
+    public static void main(String[] args) throws Exception {
+        Method method = EntityInfo.class.getDeclaredMethod("load", Class.class, int.class, boolean.class, Properties.class,
+            DataSource.class, BiFunction.class);
+        method.setAccessible(true);
+        final BiFunction<DataSource, Class, List> fullloader = (s, t) -> null;
+        for (int count : new int[]{5_0000, 100_0000}) {
+            final EntityInfo<PlainEntity> info = (EntityInfo<PlainEntity>) method.invoke(null, PlainEntity.class, 0, true, new Properties(), null, fullloader);
+            final EntityCache<PlainEntity> cache = new EntityCache<>(info);
+            final List<PlainEntity> list = new ArrayList<>();
+            final Random random = new Random(1);
+            for (int i = 1; i <= count; i++) {
+                PlainEntity bean = new PlainEntity(i, random.nextInt(1000), "user" + i + "@redkale.org", 1_000_000L + random.nextInt(count));
+                cache.insert(bean);
+                list.add(bean);
+            }
+            System.out.println("------------------- " + count + " records -------------------");
+            test(cache, list, new Flipper(20, 0, "createtime DESC"), null, null);
+            test(cache, list, new Flipper(20, 1000, "createtime DESC"), null, null);
+            test(cache, list, new Flipper(20, 0, "createtime ASC"), FilterNode.create("groupid", FilterExpress.LESSTHAN, 500), x -> x.getGroupid() < 500);
+            test(cache, list, new Flipper(20, 100), FilterNode.create("groupid", FilterExpress.LESSTHAN, 500), x -> x.getGroupid() < 500);
+        }
+    }
+
+    private static void test(EntityCache<PlainEntity> cache, List<PlainEntity> list, Flipper flipper, FilterNode node, Predicate<PlainEntity> filter) {
+        Comparator<PlainEntity> comparator = null;
+        if (flipper.getSort() != null && !flipper.getSort().isEmpty()) {
+            comparator = Comparator.comparingLong(PlainEntity::getCreatetime);
+            if (flipper.getSort().endsWith("DESC")) comparator = comparator.reversed();
+        }
+        Sheet<PlainEntity> rs1 = null;
+        Sheet<PlainEntity> rs2 = null;
+        final int times = 20;
+        long e1 = 0;
+        long e2 = 0;
+        for (int i = 0; i < times + 5; i++) { //前5次为预热
+            long s = System.nanoTime();
+            rs1 = cache.querySheet(null, flipper, node);
+            if (i >= 5) e1 += System.nanoTime() - s;
+            s = System.nanoTime();
+            rs2 = streamSheet(list, flipper, filter, comparator);
+            if (i >= 5) e2 += System.nanoTime() - s;
+        }
+        boolean same = rs1.getTotal() == rs2.getTotal() && ids(rs1).equals(ids(rs2));
+        System.out.println((same ? "OK    " : "ERROR ") + flipper + (node == null ? "" : (", " + node)) + " total=" + rs1.getTotal()
+            + ", collector: " + e1 / times / 1000 + "us, stream: " + e2 / times / 1000 + "us");
+    }
+
+    //EntityCache原有的分页方式
+    private static Sheet<PlainEntity> streamSheet(List<PlainEntity> list, Flipper flipper, Predicate<PlainEntity> filter, Comparator<PlainEntity> comparator) {
+        Stream<PlainEntity> stream = list.stream();
+        if (filter != null) stream = stream.filter(filter);
+        long total = stream.count();
+        stream = list.stream();
+        if (filter != null) stream = stream.filter(filter);
+        if (comparator != null) stream = stream.sorted(comparator);
+        List<PlainEntity> rows = stream.skip(flipper.getOffset()).limit(flipper.getLimit()).collect(Collectors.toList());
+        return new Sheet<>(total, rows);
+    }
+
+    private static List<Integer> ids(Sheet<PlainEntity> sheet) {
+        return sheet.stream().map(PlainEntity::getUserid).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.redkale.test.source;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.*;
+import java.util.function.BiFunction;
+import org.redkale.source.*;
+import org.redkale.test.source.TestSourceCacheIndex.PlainEntity;
+import org.redkale.util.Sheet;
+
+/**
+ * EntityCache在大量插入、删除交替时的正确性， 以及与ConcurrentLinkedQueue删除耗时的对比
+ *
+ * @author zhangjx
+ */
+public class TestSourceCacheStore {
+
+    public static void main(String[] args) throws Exception {
+        Method method = EntityInfo.class.getDeclaredMethod("load", Class.class, int.class, boolean.class, Properties.class,
+            DataSource.class, BiFunction.class);
+        method.setAccessible(true);
+        final BiFunction<DataSource, Class, List> fullloader = (s, t) -> null;
+        final EntityInfo<PlainEntity> info = (EntityInfo<PlainEntity>) method.invoke(null, PlainEntity.class, 0, true, new Properties(), null, fullloader);
+        final EntityCache<PlainEntity> cache = new EntityCache<>(info);
+        final int count = 20_0000;
+        final Map<Integer, PlainEntity> expects = new HashMap<>();
+        final ConcurrentLinkedQueue<PlainEntity> queue = new ConcurrentLinkedQueue<>();
+        for (int i = 1; i <= count; i++) {
+            PlainEntity bean = new PlainEntity(i, i % 100, "user" + i + "@redkale.org", i);
+            cache.insert(bean);
+            expects.put(i, bean);
+            queue.add(bean);
+        }
+        //随机删除再插入新记录， 新记录复用空闲槽位
+        final Random random = new Random(1);
+        final int churn = 2_0000;
+        int nextid = count + 1;
+        long s = System.nanoTime();
+        for (int i = 0; i < churn; i++) {
+            int id = 1 + random.nextInt(nextid - 1);
+            if (expects.remove(id) != null) cache.delete(id);
+            PlainEntity bean = new PlainEntity(nextid, nextid % 100, "user" + nextid + "@redkale.org", nextid);
+            cache.insert(bean);
+            expects.put(nextid++, bean);
+        }
+        long e1 = System.nanoTime() - s;
+        random.setSeed(1);
+        nextid = count + 1;
+        s = System.nanoTime();
+        for (int i = 0; i < churn; i++) {
+            int id = 1 + random.nextInt(nextid - 1);
+            queue.remove(new PlainEntity(id, 0, null, 0) {
+                @Override
+                public boolean equals(Object obj) {
+                    return ((PlainEntity) obj).getUserid() == getUserid();
+                }
+            });
+            queue.add(new PlainEntity(nextid, nextid % 100, "user" + nextid + "@redkale.org", nextid));
+            nextid++;
+        }
+        long e2 = System.nanoTime() - s;
+        System.out.println("delete + insert " + churn + " times, EntityCache: " + e1 / 1000_000 + "ms, ConcurrentLinkedQueue: " + e2 / 1000_000 + "ms");
+
+        Sheet<PlainEntity> sheet = cache.querySheet(null, new Flipper(expects.size() + 10), null);
+        Set<Integer> ids = new HashSet<>();
+        sheet.forEach(x -> ids.add(x.getUserid()));
+        System.out.println((sheet.getTotal() == expects.size() && ids.equals(expects.keySet()) ? "OK    " : "ERROR ") + "records " + sheet.getTotal());
+        long sum = expects.values().stream().mapToLong(PlainEntity::getCreatetime).sum();
+        Number sum2 = cache.getNumberResult(FilterFunc.SUM, 0, "createtime", null);
+        System.out.println((sum2.longValue() == sum ? "OK    " : "ERROR ") + "sum createtime " + sum2);
+        boolean found = true;
+        for (Integer id : expects.keySet()) {
+            if (cache.find(id) == null) found = false;
+        }
+        System.out.println((found && cache.find(nextid) == null ? "OK    " : "ERROR ") + "find");
+        cache.clear();
+        System.out.println((cache.querySheet(null, new Flipper(10), null).isEmpty() ? "OK    " : "ERROR ") + "clear");
+
+        //clear与不加锁的统计、遍历并发执行时不能越界
+        final EntityCache<PlainEntity> cc = new EntityCache<>(info);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicInteger reads = new AtomicInteger();
+        final Thread[] readers = new Thread[3];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(() -> {
+                while (!stop.get()) {
+                    try {
+                        cc.getNumberResult(FilterFunc.SUM, 0, "createtime", null);
+                        cc.querySheet(null, new Flipper(5000), null);
+                        reads.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+            readers[t].start();
+        }
+        for (int k = 0; k < 300; k++) {
+            cc.clear();
+            for (int i = 1; i <= 5000; i++) {
+                cc.insert(new PlainEntity(i, i % 100, "user" + i, i));
+            }
+        }
+        stop.set(true);
+        for (Thread t : readers) {
+            t.join();
+        }
+        sum2 = cc.getNumberResult(FilterFunc.SUM, 0, "createtime", null);
+        System.out.println((errors.get() == 0 && sum2.longValue() == 5000L * 5001 / 2 ? "OK    " : "ERROR ") + "clear与遍历并发, 遍历 " + reads + " 次, 异常 " + errors + " 次");
+
+        //direct的虚拟表返回真实引用， 调用方直接修改字段后无过滤条件的统计与有过滤条件的一致
+        final EntityInfo<DirectEntity> dinfo = (EntityInfo<DirectEntity>) method.invoke(null, DirectEntity.class, 0, true, new Properties(), null, fullloader);
+        final EntityCache<DirectEntity> dc = new EntityCache<>(dinfo);
+        for (int i = 1; i <= 10; i++) {
+            dc.insert(new DirectEntity(i, i));
+        }
+        dc.find(3).setCreatetime(1000);
+        Number all = dc.getNumberResult(FilterFunc.SUM, 0, "createtime", null);
+        Number filtered = dc.getNumberResult(FilterFunc.SUM, 0, "createtime", FilterNode.create("userid", FilterExpress.GREATERTHAN, 0));
+        Number max = dc.getNumberResult(FilterFunc.MAX, 0, "createtime", null);
+        System.out.println((all.longValue() == 55 - 3 + 1000 && all.longValue() == filtered.longValue() && max.longValue() == 1000 ? "OK    " : "ERROR ")
+            + "direct虚拟表修改真实引用后统计, sum = " + all + ", 带过滤条件sum = " + filtered + ", max = " + max);
+    }
+
+    @VirtualEntity(direct = true)
+    public static class DirectEntity extends PlainEntity {
+
+        public DirectEntity() {
+        }
+
+        public DirectEntity(int userid, long createtime) {
+            super(userid, userid % 10, "user" + userid, createtime);
+        }
+    }
+}